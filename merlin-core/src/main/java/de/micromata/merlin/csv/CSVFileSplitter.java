@@ -0,0 +1,149 @@
+package de.micromata.merlin.csv;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Splits csv files into chunks of complete lines for parallel parsing (see
+ * {@link CSVReader#forEachRowParallel(File, Charset, char, int, java.util.function.Consumer)}).
+ * <p>
+ * The pre-pass works on the bytes of the file, so only charsets are supported in which the bytes of " and \n can't be
+ * part of other chars (UTF-8, US-ASCII and ISO-8859-1).
+ */
+class CSVFileSplitter {
+    private static final Logger log = LoggerFactory.getLogger(CSVFileSplitter.class);
+
+    private static final int MAX_CHUNK_SIZE = 1 << 24;
+
+    private static final int READ_BUFFER_SIZE = 1 << 20;
+
+    static class Chunk {
+        private final long start;
+
+        private final long end;
+
+        private final int firstLineNumber;
+
+        Chunk(final long start, final long end, final int firstLineNumber) {
+            this.start = start;
+            this.end = end;
+            this.firstLineNumber = firstLineNumber;
+        }
+
+        long getStart() {
+            return start;
+        }
+
+        long getEnd() {
+            return end;
+        }
+
+        int getFirstLineNumber() {
+            return firstLineNumber;
+        }
+    }
+
+    /**
+     * @param file        The csv file.
+     * @param charset     The charset of the file.
+     * @param parallelism The number of threads (at least this number of chunks will be created for larger files).
+     * @return The chunks or null, if the file isn't splittable (quoted new lines, unsupported charset, small file).
+     */
+    static List<Chunk> split(final File file, final Charset charset, final int parallelism) {
+        if (!isSupported(charset)) {
+            log.info("Charset '" + charset + "' not supported for parallel parsing of csv file '" + file.getAbsolutePath() + "', parsing sequentially.");
+            return null;
+        }
+        final long size = file.length();
+        final int chunkCount = (int) Math.max(parallelism, (size + MAX_CHUNK_SIZE - 1) / MAX_CHUNK_SIZE);
+        if (chunkCount <= 1 || size < CSVReader.DEFAULT_BUFFER_SIZE) {
+            return null;
+        }
+        final List<Chunk> chunks = new ArrayList<>();
+        try (final FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            final ByteBuffer buffer = ByteBuffer.allocate(READ_BUFFER_SIZE);
+            long offset = 0;
+            long chunkStart = 0;
+            int chunkFirstLine = 1;
+            int lines = 0;
+            boolean quoted = false;
+            long nextBoundary = size / chunkCount;
+            while (channel.read(buffer) >= 0) {
+                buffer.flip();
+                final byte[] bytes = buffer.array();
+                final int length = buffer.limit();
+                for (int i = 0; i < length; i++) {
+                    final byte b = bytes[i];
+                    if (b == '"') {
+                        quoted = !quoted; // Escaped quotation marks ("") toggle twice.
+                    } else if (b == '\n') {
+                        if (quoted) {
+                            log.info("Csv file '" + file.getAbsolutePath() + "' contains quoted new lines (line " + (lines + 1) + "), parsing sequentially.");
+                            return null;
+                        }
+                        ++lines;
+                        if (offset + i >= nextBoundary) {
+                            final long end = offset + i + 1;
+                            chunks.add(new Chunk(chunkStart, end, chunkFirstLine));
+                            chunkStart = end;
+                            chunkFirstLine = lines + 1;
+                            nextBoundary = Math.max(end, size * (chunks.size() + 1) / chunkCount);
+                        }
+                    }
+                }
+                offset += length;
+                buffer.clear();
+            }
+            if (chunkStart < size) {
+                chunks.add(new Chunk(chunkStart, size, chunkFirstLine));
+            }
+        } catch (final IOException ex) {
+            log.error("Error while reading csv file '" + file.getAbsolutePath() + "': " + ex.getMessage(), ex);
+            throw new RuntimeException(ex);
+        }
+        return chunks;
+    }
+
+    /**
+     * Reads and decodes the given chunk.
+     */
+    static CharBuffer read(final File file, final Charset charset, final Chunk chunk) {
+        final ByteBuffer buffer = ByteBuffer.allocate((int) (chunk.getEnd() - chunk.getStart()));
+        try (final FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer, chunk.getStart() + buffer.position()) < 0) {
+                    break;
+                }
+            }
+            buffer.flip();
+            return charset.newDecoder()
+                    .onMalformedInput(CodingErrorAction.REPLACE)
+                    .onUnmappableCharacter(CodingErrorAction.REPLACE)
+                    .decode(buffer);
+        } catch (final CharacterCodingException ex) {
+            log.error("Can't decode csv file '" + file.getAbsolutePath() + "': " + ex.getMessage(), ex);
+            throw new RuntimeException(ex);
+        } catch (final IOException ex) {
+            log.error("Error while reading csv file '" + file.getAbsolutePath() + "': " + ex.getMessage(), ex);
+            throw new RuntimeException(ex);
+        }
+    }
+
+    private static boolean isSupported(final Charset charset) {
+        return StandardCharsets.UTF_8.equals(charset) || StandardCharsets.US_ASCII.equals(charset)
+                || StandardCharsets.ISO_8859_1.equals(charset);
+    }
+}
@@ -0,0 +1,431 @@
+package de.micromata.merlin.csv;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+
+/**
+ * Buffered CSV reader working on large char blocks instead of single chars (see {@link CSVParser}). The cells of a row
+ * are slices of the buffer, and the returned {@link CSVRow} is re-used for every row:
+ * <pre>
+ * CSVReader reader = new CSVReader(new FileReader(file));
+ * CSVRow row;
+ * while ((row = reader.next()) != null) {
+ *     ...
+ * }
+ * </pre>
+ * The syntax is the same as of {@link CSVParser}: Cells may be quoted by " (quotation marks inside quoted cells are
+ * escaped by ""), quoted cells may contain separators and new lines, leading white spaces of cells are ignored.
+ * Different to {@link CSVParser}, an empty last cell is part of the row ("a;b;" results in 3 cells) and empty lines are
+ * skipped.
+ * <p>
+ * Large files may be parsed by several threads, see {@link #forEachRowParallel(File, Charset, char, int, Consumer)}.
+ */
+public class CSVReader implements Closeable {
+    private static final Logger log = LoggerFactory.getLogger(CSVReader.class);
+
+    static final int DEFAULT_BUFFER_SIZE = 1 << 16;
+
+    private final Reader source;
+
+    private char[] buf;
+
+    private int pos;
+
+    private int limit;
+
+    private boolean eof;
+
+    private char csvSeparatorChar = CSVWriter.DEFAULT_CSV_SEPARATOR_CHAR;
+
+    private final CSVRow row = new CSVRow();
+
+    /**
+     * Number of lines read.
+     */
+    private int lineno;
+
+    public CSVReader(final Reader source) {
+        this(source, DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * @param source     The source to read from.
+     * @param bufferSize The initial size of the buffer (the buffer grows, if a single row is larger).
+     */
+    public CSVReader(final Reader source, final int bufferSize) {
+        this.source = source;
+        this.buf = new char[Math.max(bufferSize, 16)];
+    }
+
+    /**
+     * Reads the given chars without copying them.
+     *
+     * @param chars  The csv content.
+     * @param offset Start of the csv content.
+     * @param length Length of the csv content.
+     */
+    public CSVReader(final char[] chars, final int offset, final int length) {
+        this.source = null;
+        this.buf = chars;
+        this.pos = offset;
+        this.limit = offset + length;
+        this.eof = true;
+    }
+
+    /**
+     * Reads the remaining chars of the given buffer (without copying them, if the buffer is backed by an array).
+     *
+     * @param chars The csv content.
+     */
+    public CSVReader(final CharBuffer chars) {
+        this.source = null;
+        if (chars.hasArray()) {
+            this.buf = chars.array();
+            this.pos = chars.arrayOffset() + chars.position();
+            this.limit = chars.arrayOffset() + chars.limit();
+        } else {
+            this.buf = new char[chars.remaining()];
+            chars.duplicate().get(this.buf);
+            this.limit = buf.length;
+        }
+        this.eof = true;
+    }
+
+    /**
+     * @param csvSeparatorChar separator character.
+     * @return this for chaining.
+     */
+    public CSVReader setCsvSeparatorChar(final char csvSeparatorChar) {
+        this.csvSeparatorChar = csvSeparatorChar;
+        return this;
+    }
+
+    /**
+     * @param lineNumber The line number of the first line to read (default is 1).
+     * @return this for chaining.
+     */
+    CSVReader setFirstLineNumber(final int lineNumber) {
+        this.lineno = lineNumber - 1;
+        return this;
+    }
+
+    /**
+     * @return Number of lines read.
+     */
+    public int lineno() {
+        return lineno;
+    }
+
+    /**
+     * Reads the next (non empty) row.
+     *
+     * @return The next row or null, if EOF. The returned row object is re-used for all rows.
+     */
+    public CSVRow next() {
+        while (true) {
+            final int end = parseRow(pos);
+            if (end < 0) {
+                fill(); // Row isn't completely in buffer.
+                continue;
+            }
+            final boolean emptyRow = row.size() == 0;
+            pos = end;
+            if (!emptyRow) {
+                return row;
+            }
+            if (pos >= limit && eof) {
+                return null;
+            }
+        }
+    }
+
+    /**
+     * Convenience method for reading all rows as strings (not recommended for large files).
+     *
+     * @return All rows.
+     */
+    public List<List<String>> readAll() {
+        final List<List<String>> rows = new ArrayList<>();
+        CSVRow current;
+        while ((current = next()) != null) {
+            rows.add(current.toList());
+        }
+        return rows;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (source != null) {
+            source.close();
+        }
+    }
+
+    /**
+     * Parses the row starting at the given position.
+     *
+     * @return The position after the row or -1, if more input is needed.
+     */
+    private int parseRow(final int start) {
+        final char[] buf = this.buf;
+        final char sep = this.csvSeparatorChar;
+        final CSVRow row = this.row;
+        row.clear(buf, lineno + 1);
+        int lines = 1;
+        int i = start;
+        boolean afterSeparator = false;
+        while (true) {
+            // Skip leading white spaces of cell.
+            while (i < limit && buf[i] != sep && buf[i] != '\n' && buf[i] != '\r' && Character.isWhitespace(buf[i])) {
+                ++i;
+            }
+            if (i >= limit) {
+                if (!eof) {
+                    return -1;
+                }
+                if (afterSeparator) {
+                    row.add(i, i);
+                }
+                lineno += lines - 1 + (row.size() > 0 ? 1 : 0);
+                return i;
+            }
+            int eol = lineEnd(i);
+            if (eol < 0) {
+                return -1;
+            }
+            if (eol > 0) {
+                if (afterSeparator) {
+                    row.add(i, i);
+                }
+                lineno += lines;
+                return i + eol;
+            }
+            char ch = buf[i];
+            if (ch == '"') {
+                // Quoted cell:
+                final int cellStart = ++i;
+                int scratchStart = -1;
+                while (true) {
+                    if (i >= limit) {
+                        if (!eof) {
+                            return -1;
+                        }
+                        throw new RuntimeException(createMessage(CSVParser.ERROR_QUOTATIONMARK_MISSED_AT_END_OF_CELL, null, i - start));
+                    }
+                    ch = buf[i];
+                    if (ch == '"') {
+                        if (i + 1 >= limit && !eof) {
+                            return -1;
+                        }
+                        if (i + 1 < limit && buf[i + 1] == '"') {
+                            // Escaped quotation mark:
+                            if (scratchStart < 0) {
+                                scratchStart = row.startScratch(cellStart, i);
+                            }
+                            row.appendScratch('"');
+                            i += 2;
+                            continue;
+                        }
+                        break; // End of cell.
+                    }
+                    if (ch == '\n') {
+                        ++lines; // Quoted new line.
+                    }
+                    if (scratchStart >= 0) {
+                        row.appendScratch(ch);
+                    }
+                    ++i;
+                }
+                if (scratchStart >= 0) {
+                    row.addScratch(scratchStart);
+                } else {
+                    row.add(cellStart, i);
+                }
+                ++i; // Skip quotation mark.
+                while (i < limit && buf[i] != sep && buf[i] != '\n' && buf[i] != '\r' && Character.isWhitespace(buf[i])) {
+                    ++i;
+                }
+                if (i >= limit) {
+                    if (!eof) {
+                        return -1;
+                    }
+                    lineno += lines;
+                    return i;
+                }
+                eol = lineEnd(i);
+                if (eol < 0) {
+                    return -1;
+                }
+                if (eol > 0) {
+                    lineno += lines;
+                    return i + eol;
+                }
+                if (buf[i] != sep) {
+                    throw new RuntimeException(createMessage(CSVParser.ERROR_DELIMITER_OR_NEW_LINE_EXPECTED_AFTER_QUOTATION_MARK, null, i - start));
+                }
+                ++i;
+                afterSeparator = true;
+                continue;
+            }
+            // Unquoted cell:
+            final int cellStart = i;
+            while (i < limit) {
+                ch = buf[i];
+                if (ch == sep || ch == '\n') {
+                    break;
+                }
+                if (ch == '\r') {
+                    eol = lineEnd(i);
+                    if (eol < 0) {
+                        return -1;
+                    }
+                    if (eol > 0) {
+                        break;
+                    }
+                } else if (ch == '"') {
+                    throw new RuntimeException(createMessage(CSVParser.ERROR_UNEXPECTED_QUOTATIONMARK, new String(buf, cellStart, i - cellStart), i - start));
+                }
+                ++i;
+            }
+            if (i >= limit && !eof) {
+                return -1;
+            }
+            row.add(cellStart, i);
+            if (i >= limit) {
+                lineno += lines;
+                return i;
+            }
+            if (buf[i] == sep) {
+                ++i;
+                afterSeparator = true;
+                continue;
+            }
+            lineno += lines;
+            return i + lineEnd(i);
+        }
+    }
+
+    /**
+     * @return Length of the line end ("\n" or "\r\n") at the given position, 0 if no line end or -1, if more input is
+     * needed.
+     */
+    private int lineEnd(final int i) {
+        final char ch = buf[i];
+        if (ch == '\n') {
+            return 1;
+        }
+        if (ch != '\r') {
+            return 0;
+        }
+        if (i + 1 >= limit) {
+            return eof ? 0 : -1;
+        }
+        return buf[i + 1] == '\n' ? 2 : 0;
+    }
+
+    /**
+     * Moves the current (incomplete) row to the start of the buffer (or grows the buffer) and reads more input.
+     */
+    private void fill() {
+        if (pos > 0) {
+            System.arraycopy(buf, pos, buf, 0, limit - pos);
+            limit -= pos;
+            pos = 0;
+        } else if (limit == buf.length) {
+            buf = Arrays.copyOf(buf, buf.length * 2); // Row is larger than buffer.
+        }
+        try {
+            final int read = source.read(buf, limit, buf.length - limit);
+            if (read < 0) {
+                eof = true;
+            } else {
+                limit += read;
+            }
+        } catch (final IOException ex) {
+            throw new RuntimeException("IOException in line: " + lineno, ex);
+        }
+    }
+
+    private String createMessage(final String msg, final String s, final int col) {
+        return CSVParser.createMessage(msg, s, lineno + 1, col);
+    }
+
+    /**
+     * Parses the given file with several threads, if it's safely splittable into chunks of lines (no new lines inside
+     * quoted cells, checked by a fast pre-pass over the bytes of the file). Otherwise (or for charsets not supported for
+     * splitting, see {@link CSVFileSplitter}), the file is parsed sequentially by the calling thread.
+     * <p>
+     * The consumer is called concurrently by the parsing threads and the order of the rows isn't guaranteed (use
+     * {@link CSVRow#getLineNumber()}). Every thread re-uses its own row object. The head row (if any) is given to the
+     * consumer as well (line number 1).
+     *
+     * @param file             The csv file.
+     * @param charset          The charset of the file.
+     * @param csvSeparatorChar The separator char.
+     * @param parallelism      Number of threads, 1 for sequential parsing and values lower than 1 for using all
+     *                         available processors.
+     * @param consumer         Called for every row.
+     */
+    public static void forEachRowParallel(final File file, final Charset charset, final char csvSeparatorChar,
+                                          final int parallelism, final Consumer<CSVRow> consumer) {
+        final int threads = parallelism < 1 ? Runtime.getRuntime().availableProcessors() : parallelism;
+        final List<CSVFileSplitter.Chunk> chunks = threads == 1 ? null : CSVFileSplitter.split(file, charset, threads);
+        if (chunks == null) {
+            try (final CSVReader reader = new CSVReader(new InputStreamReader(new FileInputStream(file), charset))) {
+                reader.setCsvSeparatorChar(csvSeparatorChar);
+                CSVRow current;
+                while ((current = reader.next()) != null) {
+                    consumer.accept(current);
+                }
+            } catch (final IOException ex) {
+                log.error("Error while reading csv file '" + file.getAbsolutePath() + "': " + ex.getMessage(), ex);
+                throw new RuntimeException(ex);
+            }
+            return;
+        }
+        final ExecutorService executor = Executors.newFixedThreadPool(Math.min(threads, chunks.size()));
+        try {
+            final List<Future<?>> futures = new ArrayList<>();
+            for (final CSVFileSplitter.Chunk chunk : chunks) {
+                futures.add(executor.submit((Callable<Void>) () -> {
+                    final CSVReader reader = new CSVReader(CSVFileSplitter.read(file, charset, chunk))
+                            .setCsvSeparatorChar(csvSeparatorChar)
+                            .setFirstLineNumber(chunk.getFirstLineNumber());
+                    CSVRow current;
+                    while ((current = reader.next()) != null) {
+                        consumer.accept(current);
+                    }
+                    return null;
+                }));
+            }
+            for (final Future<?> future : futures) {
+                future.get();
+            }
+        } catch (final ExecutionException ex) {
+            log.error("Error while reading csv file '" + file.getAbsolutePath() + "': " + ex.getCause().getMessage(), ex.getCause());
+            throw new RuntimeException(ex.getCause());
+        } catch (final InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(ex);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,180 @@
+package de.micromata.merlin.csv;
+
+import java.nio.CharBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A row of a {@link CSVReader}. The cells are slices of the reader's buffer (quoted cells with escaped quotation marks
+ * are unescaped into a scratch buffer of the row), so no strings are created unless {@link #getString(int)} or
+ * {@link #toList()} is called.
+ * <p>
+ * The row object is re-used by the reader: its content is only valid until the next row is read.
+ */
+public final class CSVRow {
+    private char[] chars;
+
+    private char[] scratch = new char[64];
+
+    private int scratchLength;
+
+    private int[] starts = new int[16];
+
+    private int[] ends = new int[16];
+
+    private boolean[] inScratch = new boolean[16];
+
+    private int size;
+
+    private int lineNumber;
+
+    CSVRow() {
+    }
+
+    void clear(char[] chars, int lineNumber) {
+        this.chars = chars;
+        this.lineNumber = lineNumber;
+        this.size = 0;
+        this.scratchLength = 0;
+    }
+
+    void add(int start, int end) {
+        add(start, end, false);
+    }
+
+    /**
+     * Starts an unescaped cell in the scratch buffer with the chars already read.
+     *
+     * @return the start of the cell in the scratch buffer.
+     */
+    int startScratch(int start, int end) {
+        int scratchStart = scratchLength;
+        for (int i = start; i < end; i++) {
+            appendScratch(chars[i]);
+        }
+        return scratchStart;
+    }
+
+    void appendScratch(char ch) {
+        if (scratchLength == scratch.length) {
+            scratch = Arrays.copyOf(scratch, scratch.length * 2);
+        }
+        scratch[scratchLength++] = ch;
+    }
+
+    void addScratch(int scratchStart) {
+        add(scratchStart, scratchLength, true);
+    }
+
+    private void add(int start, int end, boolean scratchCell) {
+        if (size == starts.length) {
+            starts = Arrays.copyOf(starts, size * 2);
+            ends = Arrays.copyOf(ends, size * 2);
+            inScratch = Arrays.copyOf(inScratch, size * 2);
+        }
+        starts[size] = start;
+        ends[size] = end;
+        inScratch[size] = scratchCell;
+        ++size;
+    }
+
+    /**
+     * @return Number of cells of this row.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return Line number of the first line of this row (starting with 1).
+     */
+    public int getLineNumber() {
+        return lineNumber;
+    }
+
+    public int length(int index) {
+        checkIndex(index);
+        return ends[index] - starts[index];
+    }
+
+    public boolean isEmpty(int index) {
+        return length(index) == 0;
+    }
+
+    /**
+     * @param index Index of cell.
+     * @return The cell value as new string.
+     */
+    public String getString(int index) {
+        checkIndex(index);
+        return new String(array(index), starts[index], ends[index] - starts[index]);
+    }
+
+    /**
+     * @param index Index of cell.
+     * @return The cell value as slice of the underlying buffer without copying. Only valid until the next row is read.
+     */
+    public CharSequence getCharSequence(int index) {
+        checkIndex(index);
+        return CharBuffer.wrap(array(index), starts[index], ends[index] - starts[index]);
+    }
+
+    /**
+     * @param index Index of cell.
+     * @param sb The cell value will be appended to.
+     */
+    public void appendTo(int index, StringBuilder sb) {
+        checkIndex(index);
+        sb.append(array(index), starts[index], ends[index] - starts[index]);
+    }
+
+    /**
+     * Compares the cell value without creating a string.
+     *
+     * @param index Index of cell.
+     * @param value The value to compare with.
+     * @return true, if the cell value equals the given value.
+     */
+    public boolean contentEquals(int index, CharSequence value) {
+        checkIndex(index);
+        int start = starts[index];
+        int length = ends[index] - start;
+        if (value == null || value.length() != length) {
+            return false;
+        }
+        char[] array = array(index);
+        for (int i = 0; i < length; i++) {
+            if (array[start + i] != value.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return The cell values as new strings.
+     */
+    public List<String> toList() {
+        List<String> list = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            list.add(getString(i));
+        }
+        return list;
+    }
+
+    @Override
+    public String toString() {
+        return "line " + lineNumber + ": " + toList();
+    }
+
+    private char[] array(int index) {
+        return inScratch[index] ? scratch : chars;
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index " + index + " out of bounds for row with " + size + " cells in line " + lineNumber + ".");
+        }
+    }
+}
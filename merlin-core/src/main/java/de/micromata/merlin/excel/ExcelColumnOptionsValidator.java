@@ -51,39 +51,40 @@ public class ExcelColumnOptionsValidator extends ExcelColumnValidator {
     @Override
     public ExcelValidationErrorMessage isValid(Cell cell, int rowNumber) {
         ExcelValidationErrorMessage errorMessage = super.isValid(cell, rowNumber);
-        String cellValue = PoiHelper.getValueAsString(cell);
         if (errorMessage != null) {
             return errorMessage;
         }
-        if (PoiHelper.isEmpty(cell)) {
+        if (PoiHelper.isEmpty(cell) || options == null) {
             return null; // Do not check empty cells. If required, it's done by super.
         }
-        if (options != null) {
-            String val;
+        return validateCached(cell, rowNumber, this::validateOptions);
+    }
+
+    private ExcelValidationErrorMessage validateOptions(Cell cell, int rowNumber) {
+        String cellValue = PoiHelper.getValueAsString(cell);
+        String val;
+        if (caseSensitive) {
+            val = cellValue.trim();
+        } else {
+            val = cellValue.trim().toLowerCase();
+        }
+        for (String option : options) {
             if (caseSensitive) {
-                val = cellValue.trim();
+                if (option.trim().equals(val)) {
+                    return null;
+                }
             } else {
-                val = cellValue.trim().toLowerCase();
-            }
-            for (String option : options) {
-                if (caseSensitive) {
-                    if (option.trim().equals(val)) {
-                        return null;
-                    }
-                } else {
-                    if (option.trim().toLowerCase().equals(val)) {
-                        return null;
-                    }
+                if (option.trim().toLowerCase().equals(val)) {
+                    return null;
                 }
             }
-            return new ExcelValidationErrorMessage("merlin.excel.validation_error.options_mismatch", ResultMessageStatus.ERROR,
-                    StringUtils.join(options, "; "))
-                    .setSheet(getSheet())
-                    .setCellValue(cellValue)
-                    .setColumnDef(getColumnDef())
-                    .setRow(rowNumber);
         }
-        return null;
+        return new ExcelValidationErrorMessage("merlin.excel.validation_error.options_mismatch", ResultMessageStatus.ERROR,
+                StringUtils.join(options, "; "))
+                .setSheet(getSheet())
+                .setCellValue(cellValue)
+                .setColumnDef(getColumnDef())
+                .setRow(rowNumber);
     }
 
     public boolean isCaseSensitive() {
@@ -56,21 +56,23 @@ public class ExcelColumnPatternValidator extends ExcelColumnValidator {
     @Override
     public ExcelValidationErrorMessage isValid(Cell cell, int rowNumber) {
         ExcelValidationErrorMessage errorMessage = super.isValid(cell, rowNumber);
-        String cellValue = PoiHelper.getValueAsString(cell);
         if (errorMessage != null) {
             return errorMessage;
         }
-        if (PoiHelper.isEmpty(cell)) {
+        if (PoiHelper.isEmpty(cell) || pattern == null) {
             return null; // Do not check empty cells. If required, it's done by super.
         }
-        if (pattern != null) {
-            Matcher m = pattern.matcher(cellValue);
-            if (!m.find()) {
-                if (validationErrorMessageId != null) {
-                    return createValidationError(validationErrorMessageId, rowNumber, cellValue, patternRegExp);
-                } else {
-                    return createValidationErrorPatternMismatch(rowNumber, cellValue, patternRegExp);
-                }
+        return validateCached(cell, rowNumber, this::validatePattern);
+    }
+
+    private ExcelValidationErrorMessage validatePattern(Cell cell, int rowNumber) {
+        String cellValue = PoiHelper.getValueAsString(cell);
+        Matcher m = pattern.matcher(cellValue);
+        if (!m.find()) {
+            if (validationErrorMessageId != null) {
+                return createValidationError(validationErrorMessageId, rowNumber, cellValue, patternRegExp);
+            } else {
+                return createValidationErrorPatternMismatch(rowNumber, cellValue, patternRegExp);
             }
         }
         return null;
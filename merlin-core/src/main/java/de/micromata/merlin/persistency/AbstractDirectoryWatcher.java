@@ -24,6 +24,8 @@ public abstract class AbstractDirectoryWatcher {
     private long refreshRateInMillis = STANDARD_REFRESH_RATE_MILLIS;
     private boolean dirty;
     private boolean recheckInProgress;
+    // Incremented on every detected creation, modification or deletion of an item.
+    private long modificationCount;
 
     private Map<Path, DirectoryWatchEntry> directoriesMap;
     private Map<Path, DirectoryWatchEntry> filesMap;
@@ -77,6 +79,7 @@ public abstract class AbstractDirectoryWatcher {
                 entry.getValue().setType(ModificationType.DELETED);
                 deletedMap.put(entry.getKey(), entry.getValue());
                 it.remove();
+                ++modificationCount;
             }
         }
     }
@@ -92,6 +95,7 @@ public abstract class AbstractDirectoryWatcher {
         this.deletedFilesMap.clear();
         this.deletedDirectoriesMap.clear();
         lastCheck = null;
+        ++modificationCount;
     }
 
     /**
@@ -133,20 +137,96 @@ public abstract class AbstractDirectoryWatcher {
             }
             existingEntry = new DirectoryWatchEntry(relPath, lastModified);
             putEntry(relPath, itemType, existingEntry);
+            ++modificationCount;
             return;
         }
         if (existingEntry == null) {
             existingEntry = new DirectoryWatchEntry(relPath, lastModified, ModificationType.CREATED);
             putEntry(relPath, itemType, existingEntry);
+            ++modificationCount;
             return;
         }
         if (lastModified > existingEntry.getLastModified()) {
             // Directory was modified after last run.
+            ++modificationCount;
         }
         existingEntry.setLastModified(lastModified);
         putEntry(relPath, itemType, existingEntry);
     }
 
+    /**
+     * Updates the entry of a single created or modified item. Used by event driven watchers instead of walking through
+     * the whole tree (see {@link #processEvents()}).
+     *
+     * @param path         The created or modified path.
+     * @param itemType     The type of the item.
+     * @param lastModified the value in milliseconds, since the epoch (1970-01-01T00:00:00Z).
+     */
+    protected synchronized void update(Path path, ItemType itemType, long lastModified) {
+        if (itemType == ItemType.FILE && !matches(path)) {
+            log.debug("Ignoring file: " + path);
+            return;
+        }
+        Path relPath = getRelativePath(path);
+        DirectoryWatchEntry entry = itemType == ItemType.DIR ? directoriesMap.get(relPath) : filesMap.get(relPath);
+        if (entry == null) {
+            log.debug("Created: " + path);
+            deletedDirectoriesMap.remove(relPath);
+            deletedFilesMap.remove(relPath);
+            putEntry(relPath, itemType, new DirectoryWatchEntry(relPath, lastModified, ModificationType.CREATED));
+            ++modificationCount;
+            return;
+        }
+        log.debug("Modified: " + path);
+        entry.setLastModified(lastModified);
+        ++modificationCount;
+    }
+
+    /**
+     * Marks the given item and, if it's a directory, all items below as deleted. Used by event driven watchers
+     * instead of walking through the whole tree (see {@link #processEvents()}).
+     *
+     * @param path The deleted path.
+     */
+    protected synchronized void delete(Path path) {
+        Path relPath = getRelativePath(path);
+        log.debug("Deleted: " + path);
+        delete(directoriesMap, deletedDirectoriesMap, relPath);
+        delete(filesMap, deletedFilesMap, relPath);
+    }
+
+    private void delete(Map<Path, DirectoryWatchEntry> map, Map<Path, DirectoryWatchEntry> deletedMap, Path relPath) {
+        Iterator<Map.Entry<Path, DirectoryWatchEntry>> it = map.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<Path, DirectoryWatchEntry> entry = it.next();
+            if (entry.getKey().startsWith(relPath)) {
+                entry.getValue().setType(ModificationType.DELETED);
+                deletedMap.put(entry.getKey(), entry.getValue());
+                it.remove();
+                ++modificationCount;
+            }
+        }
+    }
+
+    /**
+     * Event driven watchers process here all modifications notified since the last call, so walking through the
+     * whole tree isn't needed. If the events couldn't be processed (e. g. on overflow), {@link #forceRecheck()}
+     * should be called.
+     *
+     * @return true, if all modifications are processed and the entries are up to date. False (default), if this
+     * watcher doesn't support events, so the tree will be walked after the refresh rate is expired.
+     */
+    protected boolean processEvents() {
+        return false;
+    }
+
+    /**
+     * Frees all resources (e. g. watch services) of this watcher. The watcher may be used furthermore, but only by
+     * walking through the tree.
+     */
+    public void close() {
+    }
+
     /**
      * Checks by default the path for having one of the file extensions specified in the constructor (case-insensitive).
      *
@@ -191,6 +271,17 @@ public abstract class AbstractDirectoryWatcher {
     /**
      * @return true, if the directory is scanned recursively (including sub directories) or not.
      */
+    /**
+     * Processes all pending modifications (events or, if outdated, walking through the tree) before.
+     *
+     * @return The number of detected creations, modifications and deletions of items. Compare it with a former value
+     * for checking, if anything was modified meanwhile.
+     */
+    public synchronized long getModificationCount() {
+        checkRefresh();
+        return modificationCount;
+    }
+
     public boolean isRecursive() {
         return recursive;
     }
@@ -310,20 +401,28 @@ public abstract class AbstractDirectoryWatcher {
 
     /**
      * Checks weather to walkTree or not. If {@link #forceRecheck()} is called before or if the last check is
-     * outdated, the walkTree is called.
+     * outdated, the walkTree is called. Event driven watchers walk the tree only initially and on any
+     * overflow of events.
      *
      * @see #walkTree()
+     * @see #processEvents()
      */
     protected synchronized void checkRefresh() {
         if (recheckInProgress) {
             return;
         }
-        if (!dirty && lastCheck != null &&
-                lastCheck + this.refreshRateInMillis > System.currentTimeMillis()) {
-            return;
-        }
         try {
             recheckInProgress = true;
+            if (!dirty && lastCheck != null) {
+                if (processEvents()) {
+                    lastCheck = System.currentTimeMillis();
+                    return;
+                }
+                if (!dirty && lastCheck + this.refreshRateInMillis > System.currentTimeMillis()) {
+                    return;
+                }
+            }
+            dirty = false;
             walkTree();
         } finally {
             recheckInProgress = false;
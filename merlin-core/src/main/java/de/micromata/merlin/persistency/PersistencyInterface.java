@@ -11,6 +11,12 @@ public interface PersistencyInterface {
      */
     public Long getLastModified(Path path);
 
+    /**
+     * @param path The path to look for.
+     * @return size of the given file in bytes or null, if no file or size is given.
+     */
+    public Long getSize(Path path);
+
     /**
      * @param path The path to look for.
      * @return the canonical path should specify this file / path bi-unique.
@@ -10,17 +10,139 @@ import org.slf4j.LoggerFactory;
 import java.io.IOException;
 import java.nio.file.*;
 import java.nio.file.attribute.BasicFileAttributes;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
 
 /**
  * Implementation for watching a directory in the filesystem for modifications.
+ * <br>
+ * The tree is walked only initially. All directories are registered on a {@link WatchService}, so later modifications
+ * are processed by events. The tree is walked again only on an overflow of events or if the file system doesn't
+ * support watch services (then the tree is walked after the refresh rate is expired).
  */
 public class FileSystemDirectoryWatcher extends AbstractDirectoryWatcher {
     private Logger log = LoggerFactory.getLogger(FileSystemDirectoryWatcher.class);
 
+    private WatchService watchService;
+    private Map<WatchKey, Path> watchKeys = new HashMap<>();
+    private Set<Path> watchedDirs = new HashSet<>();
+    private boolean watchingDisabled;
+
     public FileSystemDirectoryWatcher(Path root, boolean recursive, String... fileExtensions) {
         super(PersistencyRegistry.getDefault().getCanonicalPath(root), recursive, fileExtensions);
     }
 
+    @Override
+    protected synchronized boolean processEvents() {
+        if (watchService == null) {
+            return false;
+        }
+        WatchKey key;
+        while ((key = watchService.poll()) != null) {
+            Path dir = watchKeys.get(key);
+            if (dir == null) {
+                key.cancel();
+                continue;
+            }
+            for (WatchEvent<?> event : key.pollEvents()) {
+                if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                    log.info("Overflow of file system events, walking through the whole tree: " + rootDir);
+                    key.reset();
+                    forceRecheck();
+                    return false;
+                }
+                Path path = dir.resolve((Path) event.context());
+                if (event.kind() == StandardWatchEventKinds.ENTRY_DELETE) {
+                    delete(path);
+                } else {
+                    processModification(path);
+                }
+            }
+            if (!key.reset()) {
+                // Directory isn't accessible anymore (e. g. deleted).
+                watchedDirs.remove(watchKeys.remove(key));
+            }
+        }
+        return true;
+    }
+
+    private void processModification(Path path) {
+        try {
+            BasicFileAttributes attrs = Files.readAttributes(path, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+            if (!attrs.isDirectory()) {
+                update(path, ItemType.FILE, attrs.lastModifiedTime().toMillis());
+                return;
+            }
+            if (!isRecursive() || watchedDirs.contains(path)) {
+                update(path, ItemType.DIR, attrs.lastModifiedTime().toMillis());
+                return;
+            }
+            // New sub directory: Register it and process all items created before registration.
+            Files.walkFileTree(path, new SimpleFileVisitor<Path>() {
+                @Override
+                public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+                    update(dir, ItemType.DIR, attrs.lastModifiedTime().toMillis());
+                    register(dir);
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                    update(file, ItemType.FILE, attrs.lastModifiedTime().toMillis());
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFileFailed(Path file, IOException io) {
+                    log.warn("Can't access: '" + file.toAbsolutePath() + "'. Skipping.");
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        } catch (NoSuchFileException ex) {
+            // Deleted meanwhile.
+            delete(path);
+        } catch (IOException ex) {
+            log.warn("Can't access: '" + path.toAbsolutePath() + "': " + ex.getMessage());
+        }
+    }
+
+    private void register(Path dir) {
+        if (watchingDisabled || watchedDirs.contains(dir)) {
+            return;
+        }
+        try {
+            if (watchService == null) {
+                watchService = rootDir.getFileSystem().newWatchService();
+            }
+            WatchKey key = dir.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                    StandardWatchEventKinds.ENTRY_DELETE, StandardWatchEventKinds.ENTRY_MODIFY);
+            watchKeys.put(key, dir);
+            watchedDirs.add(dir);
+        } catch (IOException | UnsupportedOperationException ex) {
+            log.warn("Can't watch directory '" + dir.toAbsolutePath() + "' for modifications, walking through the tree periodically instead: "
+                    + ex.getMessage());
+            close();
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        watchingDisabled = true;
+        if (watchService == null) {
+            return;
+        }
+        try {
+            watchService.close();
+        } catch (IOException ex) {
+            log.error("Can't close watch service of '" + rootDir.toAbsolutePath() + "': " + ex.getMessage(), ex);
+        }
+        watchService = null;
+        watchKeys.clear();
+        watchedDirs.clear();
+    }
+
     @Override
     protected synchronized void walkTree(DirectoryWatcherContext context) {
         if (!Files.exists(rootDir)) {
@@ -36,6 +158,7 @@ public class FileSystemDirectoryWatcher extends AbstractDirectoryWatcher {
                     long lastModified = attrs.lastModifiedTime().toMillis();
                     visit(dir, ItemType.DIR, lastModified, context);
                     if (isRecursive() || dir.equals(rootDir)) {
+                        register(dir);
                         return FileVisitResult.CONTINUE;
                     }
                     return FileVisitResult.SKIP_SUBTREE;
@@ -39,6 +39,15 @@ public class FileSystemPersistency implements PersistencyInterface {
         return System.currentTimeMillis();
     }
 
+    public Long getSize(Path path) {
+        try {
+            return Files.size(path);
+        } catch (IOException ex) {
+            log.error("Can't get size of file '" + getCanonicalPath(path) + "': " + ex.getMessage(), ex);
+            return null;
+        }
+    }
+
     public Path getCanonicalPath(Path path) {
         if (path == null) {
             return null;
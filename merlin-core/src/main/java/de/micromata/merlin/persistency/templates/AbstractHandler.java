@@ -22,6 +22,8 @@ abstract class AbstractHandler<T extends FileDescriptorInterface> {
     protected DirectoryScanner directoryScanner;
     private String itemName;
     protected Map<Path, T> itemsMap = new HashMap<>();
+    // Index of all items by primary key.
+    private Map<String, T> primaryKeyMap = new HashMap<>();
     protected String[] supportedFileExtensions;
     // Stores the time of last check. If unsupported files are modified, they will be checked for Merlin files again in walkTree.
     private Map<Path, Long> unsupportedFilesMap = new HashMap<>();
@@ -35,7 +37,9 @@ abstract class AbstractHandler<T extends FileDescriptorInterface> {
 
     void clear() {
         this.itemsMap.clear();
+        this.primaryKeyMap.clear();
         this.unsupportedFilesMap.clear();
+        this.lastRefresh = -1;
     }
 
     /**
@@ -67,10 +71,28 @@ abstract class AbstractHandler<T extends FileDescriptorInterface> {
                 return;
             }
         }
-        log.info(I18nLogger.get("merlin.log.word.templating.scanning", path));
-        //long currentMillis = System.currentTimeMillis();
-        item = read(watchEntry, path, fileDescriptor);
-        //log.info("Time of scanning: " + (System.currentTimeMillis() - currentMillis)  + "ms.");
+        ScanIndex scanIndex = directoryScanner.getScanIndex();
+        ScanIndex.Entry indexEntry = scanIndex != null ? scanIndex.lookup(path) : null;
+        if (indexEntry != null && indexEntry.isSupportedItem()) {
+            item = restore(indexEntry, path, fileDescriptor);
+            if (item == null) {
+                log.debug("Can't restore " + itemName + " from scan index, reading it: " + path);
+                indexEntry = null;
+            }
+        } else {
+            item = null;
+        }
+        if (indexEntry != null) {
+            log.debug("Restored from scan index: " + path);
+        } else {
+            log.info(I18nLogger.get("merlin.log.word.templating.scanning", path));
+            //long currentMillis = System.currentTimeMillis();
+            item = read(watchEntry, path, fileDescriptor);
+            //log.info("Time of scanning: " + (System.currentTimeMillis() - currentMillis)  + "ms.");
+            if (scanIndex != null) {
+                scanIndex.put(path, item != null ? getIndexData(item) : null);
+            }
+        }
         if (item == null) {
             log.info(I18nLogger.get("merlin.log.word.templating.skipping." + itemName, path.toAbsolutePath()));
             watchEntry.setSupportedItem(false);
@@ -84,16 +106,28 @@ abstract class AbstractHandler<T extends FileDescriptorInterface> {
                 item.setFileDescriptor(fileDescriptor);
             }
             watchEntry.setSupportedItem(true);
-            itemsMap.put(path, item);
+            T oldItem = itemsMap.put(path, item);
+            if (oldItem != null) {
+                removeFromIndexes(oldItem);
+            }
+            primaryKeyMap.put(item.getFileDescriptor().getPrimaryKey(), item);
+            itemAdded(item);
             log.info(I18nLogger.get("merlin.log.word.templating.valid_merlin_item_found." + itemName, path.toAbsolutePath()));
         } finally {
             mdc.restore();
         }
     }
 
-    synchronized void checkAndRefreshItems() {
+    void checkAndRefreshItems() {
+        checkAndRefreshItems(false);
+    }
+
+    /**
+     * @param force If true, the items will be refreshed independent of the time of the last refresh.
+     */
+    synchronized void checkAndRefreshItems(boolean force) {
         long now = System.currentTimeMillis();
-        if (now < lastRefresh + MAX_REFRESH_RATE_MILLIS) {
+        if (!force && now < lastRefresh + MAX_REFRESH_RATE_MILLIS) {
             return;
         }
         // Check for new, deleted and updated files:
@@ -121,6 +155,11 @@ abstract class AbstractHandler<T extends FileDescriptorInterface> {
                     mdc.put(getMDCKey(), fileDescriptor.getPrimaryKey());
                     log.debug("Remove deleted " + itemName + ": " + entry.getKey());
                     it.remove();
+                    removeFromIndexes(entry.getValue());
+                    ScanIndex scanIndex = directoryScanner.getScanIndex();
+                    if (scanIndex != null) {
+                        scanIndex.remove(entry.getKey());
+                    }
                 } finally {
                     mdc.restore();
                 }
@@ -134,25 +173,75 @@ abstract class AbstractHandler<T extends FileDescriptorInterface> {
     }
 
     T getItem(FileDescriptor descriptor) {
-        for (T item : getItems()) {
-            if (descriptor.equals(item.getFileDescriptor())) {
-                return item;
-            }
+        T item = primaryKeyMap.get(descriptor.getPrimaryKey());
+        if (item != null && descriptor.equals(item.getFileDescriptor())) {
+            return item;
         }
         return null;
     }
 
     T getItem(String primaryKey) {
-        for (T item : getItems()) {
-            if (primaryKey.equals(item.getFileDescriptor().getPrimaryKey())) {
-                return item;
-            }
+        return primaryKeyMap.get(primaryKey);
+    }
+
+    /**
+     * Replaces an item by a modified copy, e. g. because the item itself is already published and mustn't be modified.
+     *
+     * @param oldItem The item to replace.
+     * @param newItem The copy replacing the old item.
+     */
+    void replaceItem(T oldItem, T newItem) {
+        // Same key as used by processItem:
+        Path path = persistency.getCanonicalPath(oldItem.getFileDescriptor().getCanonicalPath());
+        if (itemsMap.get(path) != oldItem) {
+            return; // Removed or re-read meanwhile.
         }
-        return null;
+        itemsMap.put(path, newItem);
+        removeFromIndexes(oldItem);
+        primaryKeyMap.put(newItem.getFileDescriptor().getPrimaryKey(), newItem);
+        itemAdded(newItem);
+    }
+
+    /**
+     * Called after an item was added or re-read. Override this for maintaining own indexes.
+     *
+     * @param item The added item.
+     */
+    protected void itemAdded(T item) {
+    }
+
+    /**
+     * Called after an item was removed or replaced by a re-read one. Override this for maintaining own indexes.
+     *
+     * @param item The removed item.
+     */
+    protected void itemRemoved(T item) {
+    }
+
+    private void removeFromIndexes(T item) {
+        String primaryKey = item.getFileDescriptor().getPrimaryKey();
+        if (primaryKeyMap.get(primaryKey) == item) {
+            primaryKeyMap.remove(primaryKey);
+        }
+        itemRemoved(item);
     }
 
     abstract T read(DirectoryWatchEntry watchEntry, Path path, FileDescriptor fileDescriptor);
 
+    /**
+     * @param item The read item.
+     * @return The meta data of the item to store in the {@link ScanIndex}.
+     */
+    abstract Object getIndexData(T item);
+
+    /**
+     * Restores an unmodified item from the {@link ScanIndex} without reading the file.
+     *
+     * @param indexEntry The entry of the scan index containing the meta data stored by {@link #getIndexData(Object)}.
+     * @return The restored item or null, if the item couldn't be restored (it will be read instead).
+     */
+    abstract T restore(ScanIndex.Entry indexEntry, Path path, FileDescriptor fileDescriptor);
+
     /**
      * Each item action should be logged with the primary key of the item stored in the log's MDC.
      * @return
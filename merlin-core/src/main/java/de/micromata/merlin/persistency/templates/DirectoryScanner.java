@@ -1,5 +1,6 @@
 package de.micromata.merlin.persistency.templates;
 
+import de.micromata.merlin.excel.ExcelWorkbookCache;
 import de.micromata.merlin.persistency.AbstractDirectoryWatcher;
 import de.micromata.merlin.persistency.FileDescriptor;
 import de.micromata.merlin.persistency.PersistencyInterface;
@@ -12,12 +13,15 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.nio.file.Path;
-import java.util.Collection;
-import java.util.HashSet;
-import java.util.Set;
+import java.util.*;
 
 /**
  * Searches in directories for Merlin template definition files and template files.
+ * <br>
+ * All getters read the templates and template definitions from an immutable snapshot without any locking. The snapshot
+ * is replaced by {@link #refresh()}. By default, the getters call the refresh itself, if the last refresh is outdated.
+ * In background refresh mode (see {@link #setBackgroundRefresh(boolean)}) the getters never do any I/O (except of the
+ * very first scan), so the refresh has to be called by e. g. a refresher thread.
  */
 public class DirectoryScanner {
     private Logger log = LoggerFactory.getLogger(DirectoryScanner.class);
@@ -28,6 +32,11 @@ public class DirectoryScanner {
     private TemplatesHandler templatesHandler;
     private TemplateDefinitionsHandler templateDefinitionsHandler;
     private long lastRefresh = -1;
+    private long lastModificationCount = -1;
+    private volatile Snapshot snapshot;
+    private boolean backgroundRefresh;
+    private ScanIndex scanIndex;
+    private ExcelWorkbookCache workbookCache;
 
     /**
      * @param dir The root dir.
@@ -68,55 +77,161 @@ public class DirectoryScanner {
     /**
      * Deletes all content and reforce a full reload.
      */
-    public void clear() {
+    public synchronized void clear() {
         templateDefinitionsHandler.clear();
         templatesHandler.clear();
         directoryWatcher.clear();
+        lastRefresh = -1;
+        snapshot = null;
     }
 
-    public Collection<Template> getTemplates() {
-        checkAndRefreshAllItems();
-        Collection<Template> templates = templatesHandler.getItems();
-        if (templates != null) {
-            for (Template template : templates) {
-                updateTemplate(template);
-            }
+    /**
+     * Frees the resources of the directory watcher (e. g. watch services). Call this, if this scanner isn't used anymore.
+     */
+    public void close() {
+        directoryWatcher.close();
+    }
+
+    /**
+     * Rescans the directory for new, modified and deleted items and publishes a new snapshot. The getters aren't
+     * blocked meanwhile, they serve the previous snapshot.
+     */
+    public synchronized void refresh() {
+        templateDefinitionsHandler.checkAndRefreshItems(true);
+        templatesHandler.checkAndRefreshItems(true);
+        lastRefresh = System.currentTimeMillis();
+        saveScanIndex();
+        publishSnapshot();
+    }
+
+    /**
+     * Refreshes only, if the directory watcher reports any modification since the last refresh (event driven watchers
+     * don't walk through the tree for this check).
+     *
+     * @return true, if refreshed.
+     */
+    public synchronized boolean refreshIfModified() {
+        long modificationCount = directoryWatcher.getModificationCount();
+        if (snapshot != null && modificationCount == lastModificationCount) {
+            return false;
         }
-        return templates;
+        refresh();
+        lastModificationCount = modificationCount;
+        return true;
+    }
+
+    /**
+     * @param backgroundRefresh If true, the getters will not refresh outdated items, {@link #refresh()} has to be
+     *                          called instead by any background thread. Default is false.
+     */
+    public void setBackgroundRefresh(boolean backgroundRefresh) {
+        this.backgroundRefresh = backgroundRefresh;
+    }
+
+    public boolean isBackgroundRefresh() {
+        return backgroundRefresh;
+    }
+
+    /**
+     * @param scanIndex If given, unmodified files are restored from this index instead of reading them (e. g. after a
+     *                  restart). The index is saved after every refresh. Default is null (no index).
+     */
+    public synchronized void setScanIndex(ScanIndex scanIndex) {
+        this.scanIndex = scanIndex;
+    }
+
+    public ScanIndex getScanIndex() {
+        return scanIndex;
+    }
+
+    /**
+     * @param workbookCache If given, the template definition files are read through this cache, so modified template
+     *                      definitions are read faster, if their content was already read before. Default is null.
+     */
+    public void setWorkbookCache(ExcelWorkbookCache workbookCache) {
+        this.workbookCache = workbookCache;
+    }
+
+    public ExcelWorkbookCache getWorkbookCache() {
+        return workbookCache;
+    }
+
+    private void saveScanIndex() {
+        if (scanIndex != null) {
+            scanIndex.save();
+        }
+    }
+
+    public Collection<Template> getTemplates() {
+        return getSnapshot().templates;
     }
 
     public Template getTemplate(String primaryKey) {
-        checkAndRefreshAllItems();
-        Template template = templatesHandler.getItem(primaryKey);
-        updateTemplate(template);
-        return template;
+        return getSnapshot().templatesByPrimaryKey.get(primaryKey);
+    }
+
+    private Snapshot getSnapshot() {
+        Snapshot current = snapshot;
+        if (current == null || (!backgroundRefresh && System.currentTimeMillis() >= current.time + MAX_REFRESH_RATE_MILLIS)) {
+            checkAndRefreshAllItems();
+            current = snapshot;
+        }
+        return current;
     }
 
     /**
-     * Check template for modifified template definition.
-     * @param template
+     * Templates of the current snapshot are never modified (they are read concurrently without locking). If the
+     * template definition of a published template changes, a copy of the template is modified and published instead.
      */
-    private void updateTemplate(Template template) {
-        if (template == null) {
-            return;
+    private void publishSnapshot() {
+        Set<Template> published = Collections.newSetFromMap(new IdentityHashMap<>());
+        if (snapshot != null) {
+            published.addAll(snapshot.templates);
         }
+        List<Template> templates = new ArrayList<>(templatesHandler.getItems());
+        for (int i = 0; i < templates.size(); i++) {
+            templates.set(i, updateTemplate(templates.get(i), published));
+        }
+        snapshot = new Snapshot(templates, templateDefinitionsHandler.getItems());
+    }
+
+    /**
+     * Check template for modifified template definition.
+     *
+     * @param template  The template to check.
+     * @param published The templates of the current snapshot.
+     * @return The given template or the updated copy of it, if the given template is published.
+     */
+    private Template updateTemplate(Template template, Set<Template> published) {
         TemplateDefinition templateDefinition = template.getTemplateDefinition();
+        TemplateDefinition newTemplateDefinition = null;
         if (templateDefinition != null) {
             // Check updated template definition:
-            TemplateDefinition newTemplateDefinition = templateDefinitionsHandler.getItem(templateDefinition.getPrimaryKey());
-            if (templateDefinition != newTemplateDefinition) {
-                // Template definition was reread:
-                template.assignTemplateDefinition(newTemplateDefinition);
+            newTemplateDefinition = templateDefinitionsHandler.getItem(templateDefinition.getPrimaryKey());
+            if (templateDefinition == newTemplateDefinition) {
+                return template;
             }
+            // Template definition was reread (or deleted).
         } else if (StringUtils.isNotBlank(template.getTemplateDefinitionReferenceId())) {
-           templateDefinition = getTemplateDefinitionsHandler().getTemplateDefinition(template.getTemplateDefinitionReferenceId());
-            if (templateDefinition != null) {
-                template.assignTemplateDefinition(templateDefinition);
-                log.info("Found referenced template definition: " + templateDefinition.getFileDescriptor());
+            newTemplateDefinition = getTemplateDefinitionsHandler().getTemplateDefinition(template.getTemplateDefinitionReferenceId());
+            if (newTemplateDefinition != null) {
+                log.info("Found referenced template definition: " + newTemplateDefinition.getFileDescriptor());
             } else {
-                assignMatchingTemplateDefinitionByFilename(template);
+                newTemplateDefinition = getMatchingTemplateDefinition(template);
+            }
+            if (newTemplateDefinition == null) {
+                return template;
             }
+        } else {
+            return template;
         }
+        Template updated = template;
+        if (published.contains(template)) {
+            updated = (Template) template.clone();
+            templatesHandler.replaceItem(template, updated);
+        }
+        updated.assignTemplateDefinition(newTemplateDefinition);
+        return updated;
     }
 
     /**
@@ -126,25 +241,31 @@ public class DirectoryScanner {
      * @see FileDescriptor#matches(FileDescriptor)
      */
     public void assignMatchingTemplateDefinitionByFilename(Template template) {
-        FileDescriptor fileDescriptor = template.getFileDescriptor();
-        for (TemplateDefinition templateDefinition : getTemplateDefinitionsHandler().getItems()) {
-            if (fileDescriptor.matches(templateDefinition.getFileDescriptor())) {
-                template.assignTemplateDefinition(templateDefinition);
-                log.info(I18nLogger.get("merlin.log.word.templating.found_matching_template_definition",
-                        templateDefinition.getFileDescriptor().getFilename()));
-                break;
-            }
+        TemplateDefinition templateDefinition = getMatchingTemplateDefinition(template);
+        if (templateDefinition != null) {
+            template.assignTemplateDefinition(templateDefinition);
+        }
+    }
+
+    private TemplateDefinition getMatchingTemplateDefinition(Template template) {
+        TemplateDefinition templateDefinition = getTemplateDefinitionsHandler().getMatchingTemplateDefinition(template.getFileDescriptor());
+        if (templateDefinition != null) {
+            log.info(I18nLogger.get("merlin.log.word.templating.found_matching_template_definition",
+                    templateDefinition.getFileDescriptor().getFilename()));
         }
+        return templateDefinition;
     }
 
     public Collection<TemplateDefinition> getTemplateDefinitions() {
-        templateDefinitionsHandler.checkAndRefreshItems();
-        return templateDefinitionsHandler.getItems();
+        return getSnapshot().templateDefinitions;
     }
 
     public TemplateDefinition getTemplateDefinition(FileDescriptor descriptor) {
-        templateDefinitionsHandler.checkAndRefreshItems();
-        return templateDefinitionsHandler.getItem(descriptor);
+        TemplateDefinition templateDefinition = getSnapshot().templateDefinitionsByPrimaryKey.get(descriptor.getPrimaryKey());
+        if (templateDefinition != null && descriptor.equals(templateDefinition.getFileDescriptor())) {
+            return templateDefinition;
+        }
+        return null;
     }
 
     /**
@@ -155,8 +276,12 @@ public class DirectoryScanner {
         if (idOrPrimaryKey == null) {
             return null;
         }
-        templateDefinitionsHandler.checkAndRefreshItems();
-        return templateDefinitionsHandler.getTemplateDefinition(idOrPrimaryKey);
+        Snapshot current = getSnapshot();
+        TemplateDefinition templateDefinition = current.templateDefinitionsByPrimaryKey.get(idOrPrimaryKey);
+        if (templateDefinition != null) {
+            return templateDefinition;
+        }
+        return current.templateDefinitionsById.get(TemplateDefinitionsHandler.normalizeId(idOrPrimaryKey));
     }
 
     TemplateDefinitionsHandler getTemplateDefinitionsHandler() {
@@ -169,15 +294,45 @@ public class DirectoryScanner {
 
     private synchronized void checkAndRefreshAllItems() {
         long now = System.currentTimeMillis();
-        if (now < lastRefresh + MAX_REFRESH_RATE_MILLIS) {
+        if (snapshot != null && now < lastRefresh + MAX_REFRESH_RATE_MILLIS) {
             return;
         }
         templateDefinitionsHandler.checkAndRefreshItems();
         templatesHandler.checkAndRefreshItems();
         lastRefresh = now;
+        saveScanIndex();
+        publishSnapshot();
     }
 
     public AbstractDirectoryWatcher getDirectoryWatcher() {
         return directoryWatcher;
     }
+
+    /**
+     * Immutable view of all templates and template definitions at the time of the last refresh.
+     */
+    private static class Snapshot {
+        private final long time = System.currentTimeMillis();
+        private final Collection<Template> templates;
+        private final Collection<TemplateDefinition> templateDefinitions;
+        private final Map<String, Template> templatesByPrimaryKey = new HashMap<>();
+        private final Map<String, TemplateDefinition> templateDefinitionsByPrimaryKey = new HashMap<>();
+        // Key is the normalized id, the first template definition wins (as done by the handler).
+        private final Map<String, TemplateDefinition> templateDefinitionsById = new HashMap<>();
+
+        private Snapshot(Collection<Template> templates, Collection<TemplateDefinition> templateDefinitions) {
+            this.templates = Collections.unmodifiableList(new ArrayList<>(templates));
+            this.templateDefinitions = Collections.unmodifiableList(new ArrayList<>(templateDefinitions));
+            for (Template template : templates) {
+                templatesByPrimaryKey.put(template.getPrimaryKey(), template);
+            }
+            for (TemplateDefinition templateDefinition : templateDefinitions) {
+                templateDefinitionsByPrimaryKey.put(templateDefinition.getPrimaryKey(), templateDefinition);
+                String id = TemplateDefinitionsHandler.normalizeId(templateDefinition.getId());
+                if (id != null) {
+                    templateDefinitionsById.putIfAbsent(id, templateDefinition);
+                }
+            }
+        }
+    }
 }
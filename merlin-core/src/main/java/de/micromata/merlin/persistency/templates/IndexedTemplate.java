@@ -0,0 +1,128 @@
+package de.micromata.merlin.persistency.templates;
+
+import de.micromata.merlin.word.AbstractConditional;
+import de.micromata.merlin.word.Conditionals;
+import de.micromata.merlin.word.templating.Template;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * The meta data of a template extracted from the Word document and stored in the {@link ScanIndex}, so unmodified
+ * templates can be restored without reading the Word document again.
+ */
+public class IndexedTemplate {
+    private String id;
+    private String templateDefinitionReferenceId;
+    private List<String> usedVariables;
+    private List<IndexedConditional> conditionals;
+
+    public IndexedTemplate() {
+    }
+
+    IndexedTemplate(Template template) {
+        this.id = template.getId();
+        this.templateDefinitionReferenceId = template.getTemplateDefinitionReferenceId();
+        this.usedVariables = template.getStatistics().getUsedVariables();
+        Conditionals conditionals = template.getStatistics().getConditionals();
+        if (conditionals != null && conditionals.getConditionalsSet() != null) {
+            this.conditionals = toIndexed(conditionals.getConditionalsSet());
+        }
+    }
+
+    /**
+     * @return A new template (without file descriptor and template definition) containing the stored meta data.
+     */
+    Template createTemplate() {
+        Template template = new Template();
+        template.setId(id);
+        template.setTemplateDefinitionReferenceId(templateDefinitionReferenceId);
+        template.getStatistics().setUsedVariables(usedVariables != null ? new ArrayList<>(usedVariables) : new ArrayList<>());
+        Conditionals restored = new Conditionals();
+        restore(restored, conditionals, null);
+        template.getStatistics().setConditionals(restored);
+        return template;
+    }
+
+    private static List<IndexedConditional> toIndexed(Collection<AbstractConditional> conditionals) {
+        List<IndexedConditional> result = new ArrayList<>();
+        for (AbstractConditional conditional : conditionals) {
+            IndexedConditional indexed = new IndexedConditional();
+            indexed.setStatement(conditional.getConditionalStatement());
+            if (conditional.getChildConditionals() != null) {
+                indexed.setChildConditionals(toIndexed(conditional.getChildConditionals()));
+            }
+            result.add(indexed);
+        }
+        return result;
+    }
+
+    private static void restore(Conditionals restored, List<IndexedConditional> conditionals, AbstractConditional parent) {
+        if (conditionals == null) {
+            return;
+        }
+        for (IndexedConditional indexed : conditionals) {
+            AbstractConditional conditional = restored.addRestored(indexed.getStatement(), parent);
+            if (conditional != null) {
+                restore(restored, indexed.getChildConditionals(), conditional);
+            }
+        }
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public String getTemplateDefinitionReferenceId() {
+        return templateDefinitionReferenceId;
+    }
+
+    public void setTemplateDefinitionReferenceId(String templateDefinitionReferenceId) {
+        this.templateDefinitionReferenceId = templateDefinitionReferenceId;
+    }
+
+    public List<String> getUsedVariables() {
+        return usedVariables;
+    }
+
+    public void setUsedVariables(List<String> usedVariables) {
+        this.usedVariables = usedVariables;
+    }
+
+    public List<IndexedConditional> getConditionals() {
+        return conditionals;
+    }
+
+    public void setConditionals(List<IndexedConditional> conditionals) {
+        this.conditionals = conditionals;
+    }
+
+    /**
+     * A conditional statement and its child conditionals.
+     */
+    public static class IndexedConditional {
+        private String statement;
+        private List<IndexedConditional> childConditionals;
+
+        public String getStatement() {
+            return statement;
+        }
+
+        public void setStatement(String statement) {
+            this.statement = statement;
+        }
+
+        public List<IndexedConditional> getChildConditionals() {
+            return childConditionals;
+        }
+
+        public void setChildConditionals(List<IndexedConditional> childConditionals) {
+            this.childConditionals = childConditionals;
+        }
+    }
+}
@@ -0,0 +1,264 @@
+package de.micromata.merlin.persistency.templates;
+
+import de.micromata.merlin.persistency.PersistencyInterface;
+import de.micromata.merlin.persistency.PersistencyRegistry;
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * Persistent index of the scanned files of one templates directory. For every scanned file the size, the last
+ * modification time, a hash of the content and the extracted meta data (or the information, that the file isn't a
+ * Merlin file) are stored. So after a restart, unmodified files are restored from the index without reading them again.
+ * <br>
+ * A file is unmodified, if size and modification time are unchanged. If only the modification time differs (e. g. after
+ * a checkout), the hash of the content is compared.
+ * <br>
+ * The meta data is encoded by the given {@link Codec} (e. g. as json). This class is thread safe.
+ */
+public class ScanIndex {
+    private Logger log = LoggerFactory.getLogger(ScanIndex.class);
+    private static final String VERSION_KEY = "merlin.scan-index.version";
+    private static final String VERSION = "1";
+    private static final String SEPARATOR = ";";
+
+    /**
+     * Encodes and decodes the meta data of the items.
+     */
+    public interface Codec {
+        String encode(Object obj);
+
+        <T> T decode(String str, Class<T> clazz);
+    }
+
+    private PersistencyInterface persistency = PersistencyRegistry.getDefault();
+    private Path indexFile;
+    private Path rootDir;
+    private Codec codec;
+    private Map<String, Entry> entries;
+    private boolean dirty;
+
+    /**
+     * @param indexFile The file to store the index in. Will be created, if not exist.
+     * @param rootDir   The directory the index is for. The files are stored by their paths relative to this directory.
+     * @param codec     The codec for encoding the meta data.
+     */
+    public ScanIndex(Path indexFile, Path rootDir, Codec codec) {
+        this.indexFile = indexFile;
+        this.rootDir = rootDir;
+        this.codec = codec;
+    }
+
+    /**
+     * @param file The file to look for.
+     * @return The entry of the file or null, if the file isn't indexed or was modified since indexing.
+     */
+    public synchronized Entry lookup(Path file) {
+        String key = getKey(file);
+        Entry entry = getEntries().get(key);
+        if (entry == null) {
+            return null;
+        }
+        Long size = persistency.getSize(file);
+        Long lastModified = persistency.getLastModified(file);
+        if (size == null || lastModified == null || size != entry.size) {
+            return null;
+        }
+        if (lastModified == entry.lastModified) {
+            return entry;
+        }
+        if (!entry.hash.equals(hash(file))) {
+            return null;
+        }
+        log.debug("File touched but not modified: " + file);
+        entry.lastModified = lastModified;
+        dirty = true;
+        return entry;
+    }
+
+    /**
+     * Stores the meta data of the given file (the size, modification time and hash of the file are determined by this
+     * method).
+     *
+     * @param file The scanned file.
+     * @param data The meta data to store or null, if the file isn't a Merlin file.
+     */
+    public synchronized void put(Path file, Object data) {
+        Long size = persistency.getSize(file);
+        Long lastModified = persistency.getLastModified(file);
+        String hash = hash(file);
+        if (size == null || lastModified == null || hash == null) {
+            remove(file);
+            return;
+        }
+        String encoded = data != null ? codec.encode(data) : null;
+        if (data != null && StringUtils.isEmpty(encoded)) {
+            log.warn("Can't encode meta data of file, it will not be indexed: " + file);
+            remove(file);
+            return;
+        }
+        getEntries().put(getKey(file), new Entry(size, lastModified, hash, encoded));
+        dirty = true;
+    }
+
+    public synchronized void remove(Path file) {
+        if (getEntries().remove(getKey(file)) != null) {
+            dirty = true;
+        }
+    }
+
+    /**
+     * Writes the index file, if any entry was modified since the last save.
+     */
+    public synchronized void save() {
+        if (!dirty) {
+            return;
+        }
+        Properties properties = new Properties();
+        properties.setProperty(VERSION_KEY, VERSION);
+        for (Map.Entry<String, Entry> entry : getEntries().entrySet()) {
+            properties.setProperty(entry.getKey(), entry.getValue().toString());
+        }
+        try {
+            Files.createDirectories(indexFile.toAbsolutePath().getParent());
+            Path tmpFile = indexFile.resolveSibling(indexFile.getFileName() + ".tmp");
+            try (OutputStream out = Files.newOutputStream(tmpFile)) {
+                properties.store(out, "Merlin scan index of " + rootDir);
+            }
+            Files.move(tmpFile, indexFile, StandardCopyOption.REPLACE_EXISTING);
+            dirty = false;
+        } catch (IOException ex) {
+            log.error("Can't write scan index '" + indexFile.toAbsolutePath() + "': " + ex.getMessage(), ex);
+        }
+    }
+
+    public synchronized int getSize() {
+        return getEntries().size();
+    }
+
+    public Path getIndexFile() {
+        return indexFile;
+    }
+
+    private Map<String, Entry> getEntries() {
+        if (entries == null) {
+            entries = new HashMap<>();
+            load();
+        }
+        return entries;
+    }
+
+    private void load() {
+        if (!Files.exists(indexFile)) {
+            return;
+        }
+        Properties properties = new Properties();
+        try (InputStream in = Files.newInputStream(indexFile)) {
+            properties.load(in);
+        } catch (IOException ex) {
+            log.error("Can't read scan index '" + indexFile.toAbsolutePath() + "', ignoring it: " + ex.getMessage(), ex);
+            return;
+        }
+        if (!VERSION.equals(properties.getProperty(VERSION_KEY))) {
+            log.info("Ignoring scan index of other version: " + indexFile.toAbsolutePath());
+            return;
+        }
+        for (String key : properties.stringPropertyNames()) {
+            if (VERSION_KEY.equals(key)) {
+                continue;
+            }
+            Entry entry = parse(properties.getProperty(key));
+            if (entry == null) {
+                log.warn("Ignoring invalid entry '" + key + "' of scan index: " + indexFile.toAbsolutePath());
+                continue;
+            }
+            entries.put(key, entry);
+        }
+        log.info("Scan index loaded with " + entries.size() + " entries: " + indexFile.toAbsolutePath());
+    }
+
+    private Entry parse(String str) {
+        String[] values = str.split(SEPARATOR, 4);
+        if (values.length < 4) {
+            return null;
+        }
+        try {
+            String data = values[3].length() > 0 ? values[3] : null;
+            return new Entry(Long.parseLong(values[0]), Long.parseLong(values[1]), values[2], data);
+        } catch (NumberFormatException ex) {
+            return null;
+        }
+    }
+
+    private String getKey(Path file) {
+        return rootDir.relativize(file).toString().replace('\\', '/');
+    }
+
+    private String hash(Path file) {
+        try (InputStream in = persistency.getInputStream(file)) {
+            if (in == null) {
+                return null;
+            }
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            byte[] buffer = new byte[8192];
+            int length;
+            while ((length = in.read(buffer)) != -1) {
+                digest.update(buffer, 0, length);
+            }
+            return Base64.getEncoder().encodeToString(digest.digest());
+        } catch (IOException | NoSuchAlgorithmException ex) {
+            log.error("Can't compute hash of file '" + file.toAbsolutePath() + "': " + ex.getMessage(), ex);
+            return null;
+        }
+    }
+
+    /**
+     * The indexed state and meta data of one file.
+     */
+    public class Entry {
+        private long size;
+        private long lastModified;
+        private String hash;
+        private String data;
+
+        private Entry(long size, long lastModified, String hash, String data) {
+            this.size = size;
+            this.lastModified = lastModified;
+            this.hash = hash;
+            this.data = data;
+        }
+
+        /**
+         * @return false, if the file was indexed as non Merlin file.
+         */
+        public boolean isSupportedItem() {
+            return data != null;
+        }
+
+        /**
+         * @param clazz The class of the meta data.
+         * @return The decoded meta data or null, if the file isn't a Merlin file or the data isn't decodable.
+         */
+        public <T> T getData(Class<T> clazz) {
+            return data != null ? codec.decode(data, clazz) : null;
+        }
+
+        @Override
+        public String toString() {
+            return size + SEPARATOR + lastModified + SEPARATOR + hash + SEPARATOR + (data != null ? data : "");
+        }
+    }
+}
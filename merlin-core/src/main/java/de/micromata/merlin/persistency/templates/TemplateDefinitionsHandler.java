@@ -1,19 +1,26 @@
 package de.micromata.merlin.persistency.templates;
 
 import de.micromata.merlin.excel.ExcelWorkbook;
+import de.micromata.merlin.excel.ExcelWorkbookCache;
 import de.micromata.merlin.logging.MDCHandler;
 import de.micromata.merlin.logging.MDCKey;
 import de.micromata.merlin.persistency.DirectoryWatchEntry;
 import de.micromata.merlin.persistency.FileDescriptor;
 import de.micromata.merlin.word.templating.TemplateDefinition;
 import de.micromata.merlin.word.templating.TemplateDefinitionExcelReader;
+import org.apache.commons.io.FilenameUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
 
 class TemplateDefinitionsHandler extends AbstractHandler<TemplateDefinition> {
     private Logger log = LoggerFactory.getLogger(TemplateDefinitionsHandler.class);
+    // Indexes by normalized id and by filename stem (see FileDescriptor.matches).
+    private Map<String, TemplateDefinition> idMap = new HashMap<>();
+    private Map<String, TemplateDefinition> filenameStemMap = new HashMap<>();
 
     TemplateDefinitionsHandler(DirectoryScanner directoryScanner) {
         super(directoryScanner, "TemplateDefinition");
@@ -27,7 +34,8 @@ class TemplateDefinitionsHandler extends AbstractHandler<TemplateDefinition> {
         try {
             mdc.put(MDCKey.TEMPLATE_PK, fileDescriptor.getPrimaryKey());
             try {
-                workbook = ExcelWorkbook.create(path);
+                ExcelWorkbookCache workbookCache = directoryScanner.getWorkbookCache();
+                workbook = workbookCache != null ? ExcelWorkbook.createCached(path, workbookCache) : ExcelWorkbook.create(path);
             } catch (Exception ex) {
                 log.info("Ignoring unsupported file: " + path);
                 return null;
@@ -52,21 +60,94 @@ class TemplateDefinitionsHandler extends AbstractHandler<TemplateDefinition> {
         }
     }
 
+    @Override
+    Object getIndexData(TemplateDefinition item) {
+        return item;
+    }
+
+    @Override
+    TemplateDefinition restore(ScanIndex.Entry indexEntry, Path path, FileDescriptor fileDescriptor) {
+        TemplateDefinition templateDefinition = indexEntry.getData(TemplateDefinition.class);
+        if (templateDefinition != null) {
+            // The stored file descriptor may be outdated (e. g. last update).
+            templateDefinition.setFileDescriptor(fileDescriptor);
+        }
+        return templateDefinition;
+    }
+
     /**
      * @param id Id or primary key of the template definition.
      * @return
      */
     TemplateDefinition getTemplateDefinition(String id) {
-        String search = id.trim().toLowerCase();
-        for (TemplateDefinition templateDefinition : getItems()) {
-            if (id.equals(templateDefinition.getFileDescriptor().getPrimaryKey())) {
-                return templateDefinition;
-            }
-            if (search.equals(templateDefinition.getId().trim().toLowerCase())) {
-                return templateDefinition;
+        TemplateDefinition templateDefinition = getItem(id);
+        if (templateDefinition != null) {
+            return templateDefinition;
+        }
+        return idMap.get(normalizeId(id));
+    }
+
+    /**
+     * @param fileDescriptor The file descriptor of e. g. a template.
+     * @return The template definition with the same filename (excluding extension) in the same directory, if any.
+     * @see FileDescriptor#matches(FileDescriptor)
+     */
+    TemplateDefinition getMatchingTemplateDefinition(FileDescriptor fileDescriptor) {
+        String key = getFilenameStemKey(fileDescriptor);
+        return key != null ? filenameStemMap.get(key) : null;
+    }
+
+    @Override
+    protected void itemAdded(TemplateDefinition item) {
+        String id = normalizeId(item.getId());
+        if (id != null) {
+            idMap.putIfAbsent(id, item);
+        }
+        String key = getFilenameStemKey(item.getFileDescriptor());
+        if (key != null) {
+            filenameStemMap.putIfAbsent(key, item);
+        }
+    }
+
+    @Override
+    protected void itemRemoved(TemplateDefinition item) {
+        String id = normalizeId(item.getId());
+        String key = getFilenameStemKey(item.getFileDescriptor());
+        if ((id != null && idMap.get(id) == item) || (key != null && filenameStemMap.get(key) == item)) {
+            // Rebuild the indexes, because another item with the same id or filename may exist.
+            idMap.clear();
+            filenameStemMap.clear();
+            for (TemplateDefinition templateDefinition : getItems()) {
+                if (templateDefinition != item) {
+                    itemAdded(templateDefinition);
+                }
             }
         }
-        return null;
+    }
+
+    @Override
+    void clear() {
+        super.clear();
+        idMap.clear();
+        filenameStemMap.clear();
+    }
+
+    /**
+     * @return The trimmed id in lower case or null, if the given id is null.
+     */
+    static String normalizeId(String id) {
+        return id != null ? id.trim().toLowerCase() : null;
+    }
+
+    /**
+     * @return The key for finding matching items as defined by {@link FileDescriptor#matches(FileDescriptor)}.
+     */
+    private static String getFilenameStemKey(FileDescriptor fileDescriptor) {
+        if (fileDescriptor == null || fileDescriptor.getFilename() == null) {
+            return null;
+        }
+        return fileDescriptor.getDirectory() + "|" + fileDescriptor.getRelativePath() + "|"
+                + FilenameUtils.removeExtension(fileDescriptor.getFilename()).trim().toLowerCase();
     }
 
     @Override
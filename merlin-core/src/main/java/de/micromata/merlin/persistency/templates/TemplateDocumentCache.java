@@ -0,0 +1,247 @@
+package de.micromata.merlin.persistency.templates;
+
+import de.micromata.merlin.persistency.FileDescriptor;
+import de.micromata.merlin.persistency.PersistencyInterface;
+import de.micromata.merlin.persistency.PersistencyRegistry;
+import de.micromata.merlin.utils.MerlinFileUtils;
+import de.micromata.merlin.word.CompiledWordTemplate;
+import de.micromata.merlin.word.WordStreamingRenderer;
+import org.apache.commons.io.IOUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Caches the content of Word templates including their compiled forms ({@link CompiledWordTemplate} and
+ * {@link WordStreamingRenderer}), so templates aren't read and parsed again on every run.
+ * <br>
+ * Entries are keyed by the canonical path of the template file and are validated on every access by the last
+ * modification time of the file. The least recently used entries are evicted, if the sum of the entry weights exceeds
+ * the byte budget. The weight of an entry is the size of the template file plus the estimated memory size of its
+ * compiled template (see {@link CompiledWordTemplate#getEstimatedMemorySize()}), as soon as it's compiled. The
+ * streaming renderer shares the cached file content and adds no weight.
+ * <br>
+ * This class is thread safe.
+ */
+public class TemplateDocumentCache {
+    private Logger log = LoggerFactory.getLogger(TemplateDocumentCache.class);
+    public static final long DEFAULT_MAX_SIZE = 50 * 1024 * 1024; // 50MB
+
+    private PersistencyInterface persistency = PersistencyRegistry.getDefault();
+    private Map<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true); // Access order for LRU.
+    private long maxSize;
+    private long size;
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    public TemplateDocumentCache() {
+        this(DEFAULT_MAX_SIZE);
+    }
+
+    /**
+     * @param maxSize The byte budget (sum of the weights of all entries, see class description).
+     */
+    public TemplateDocumentCache(long maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * @param fileDescriptor The file descriptor of the Word template.
+     * @return The compiled template or null, if the template couldn't be read.
+     */
+    public CompiledWordTemplate getCompiledTemplate(FileDescriptor fileDescriptor) {
+        Entry entry = getEntry(fileDescriptor);
+        if (entry == null) {
+            return null;
+        }
+        CompiledWordTemplate compiledTemplate = entry.getCompiledTemplate();
+        synchronized (this) {
+            if (!entry.compiledTemplateWeighted) {
+                entry.compiledTemplateWeighted = true;
+                long weight = compiledTemplate.getEstimatedMemorySize() - entry.content.length; // Content is shared.
+                entry.weight += weight;
+                if (entries.get(entry.key) == entry) {
+                    size += weight;
+                    evict();
+                }
+            }
+        }
+        return compiledTemplate;
+    }
+
+    /**
+     * @param fileDescriptor The file descriptor of the Word template.
+     * @return The streaming renderer or null, if the template couldn't be read.
+     */
+    public WordStreamingRenderer getStreamingRenderer(FileDescriptor fileDescriptor) {
+        Entry entry = getEntry(fileDescriptor);
+        return entry != null ? entry.getStreamingRenderer() : null;
+    }
+
+    private Entry getEntry(FileDescriptor fileDescriptor) {
+        Path path = fileDescriptor.getCanonicalPath();
+        String key = fileDescriptor.getCanonicalPathString();
+        Long lastModified = persistency.getLastModified(path);
+        synchronized (this) {
+            Entry entry = entries.get(key);
+            if (entry != null && lastModified != null && entry.lastModified == lastModified) {
+                ++hits;
+                return entry;
+            }
+            ++misses;
+            if (entry != null) {
+                log.debug("Template modified, removing it from cache: " + key);
+                remove(key);
+            }
+        }
+        // Read the file outside of the lock, so other templates may be served meanwhile.
+        byte[] content = read(path);
+        if (content == null) {
+            return null;
+        }
+        Entry entry = new Entry(key, content, path.getFileName().toString(), lastModified != null ? lastModified : -1);
+        if (content.length > maxSize) {
+            log.info("Template '" + key + "' exceeds max size of cache (" + MerlinFileUtils.getByteCountToDisplaySize(maxSize)
+                    + "), it will not be cached.");
+            return entry;
+        }
+        synchronized (this) {
+            Entry other = entries.get(key);
+            if (other != null) {
+                if (other.lastModified == entry.lastModified) {
+                    // Read by another thread meanwhile.
+                    return other;
+                }
+                remove(key);
+            }
+            entries.put(key, entry);
+            size += entry.weight;
+            evict();
+        }
+        return entry;
+    }
+
+    private byte[] read(Path path) {
+        try (InputStream inputStream = persistency.getInputStream(path)) {
+            if (inputStream == null) {
+                log.error("Can't get input stream for path: " + path.toAbsolutePath());
+                return null;
+            }
+            return IOUtils.toByteArray(inputStream);
+        } catch (IOException ex) {
+            log.error("Couldn't read File '" + path.toAbsolutePath() + "': " + ex.getMessage(), ex);
+            return null;
+        }
+    }
+
+    private void remove(String key) {
+        Entry entry = entries.remove(key);
+        if (entry != null) {
+            size -= entry.weight;
+        }
+    }
+
+    private void evict() {
+        Iterator<Map.Entry<String, Entry>> it = entries.entrySet().iterator();
+        while (size > maxSize && it.hasNext()) {
+            Map.Entry<String, Entry> eldest = it.next();
+            if (log.isDebugEnabled()) {
+                log.debug("Evicting template from cache: " + eldest.getKey());
+            }
+            size -= eldest.getValue().weight;
+            it.remove();
+            ++evictions;
+        }
+    }
+
+    /**
+     * Removes all entries. The statistics will not be reset.
+     */
+    public synchronized void clear() {
+        entries.clear();
+        size = 0;
+    }
+
+    /**
+     * @param maxSize The new byte budget. Entries are evicted immediately, if the current size exceeds the new budget.
+     */
+    public synchronized void setMaxSize(long maxSize) {
+        this.maxSize = maxSize;
+        evict();
+    }
+
+    public synchronized long getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * @return The sum of the weights of all entries (see class description).
+     */
+    public synchronized long getSize() {
+        return size;
+    }
+
+    public synchronized int getEntryCount() {
+        return entries.size();
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "TemplateDocumentCache[entries=" + entries.size() + ", size=" + MerlinFileUtils.getByteCountToDisplaySize(size)
+                + ", maxSize=" + MerlinFileUtils.getByteCountToDisplaySize(maxSize) + ", hits=" + hits + ", misses=" + misses
+                + ", evictions=" + evictions + "]";
+    }
+
+    private static class Entry {
+        private String key;
+        private byte[] content;
+        private String filename;
+        private long lastModified;
+        private CompiledWordTemplate compiledTemplate;
+        private WordStreamingRenderer streamingRenderer;
+        // Guarded by the cache:
+        private long weight;
+        private boolean compiledTemplateWeighted;
+
+        private Entry(String key, byte[] content, String filename, long lastModified) {
+            this.key = key;
+            this.content = content;
+            this.weight = content.length;
+            this.filename = filename;
+            this.lastModified = lastModified;
+        }
+
+        private synchronized CompiledWordTemplate getCompiledTemplate() {
+            if (compiledTemplate == null) {
+                compiledTemplate = new CompiledWordTemplate(content, filename);
+            }
+            return compiledTemplate;
+        }
+
+        private synchronized WordStreamingRenderer getStreamingRenderer() {
+            if (streamingRenderer == null) {
+                streamingRenderer = new WordStreamingRenderer(content, filename);
+            }
+            return streamingRenderer;
+        }
+    }
+}
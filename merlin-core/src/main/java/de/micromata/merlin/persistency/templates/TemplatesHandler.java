@@ -4,6 +4,7 @@ import de.micromata.merlin.logging.MDCHandler;
 import de.micromata.merlin.logging.MDCKey;
 import de.micromata.merlin.persistency.DirectoryWatchEntry;
 import de.micromata.merlin.persistency.FileDescriptor;
+import de.micromata.merlin.word.DocumentIndex;
 import de.micromata.merlin.word.WordDocument;
 import de.micromata.merlin.word.templating.Template;
 import de.micromata.merlin.word.templating.TemplateDefinition;
@@ -40,26 +41,10 @@ class TemplatesHandler extends AbstractHandler<Template> {
                         + "'. It's seemd to be not a Merlin template. No variables and conditionals found.");
                 return null;
             }
-            String templateId = doc.scanForTemplateId();
-            if (templateId != null) {
-                log.debug("Template id found: " + templateId);
-                templateChecker.getTemplate().setId(templateId);
-            }
-            String templateDefinitionId = doc.scanForTemplateDefinitionReference();
-            if (templateDefinitionId != null) {
-                log.debug("Template definition reference found: " + templateDefinitionId);
-                templateChecker.getTemplate().setTemplateDefinitionReferenceId(templateDefinitionId);
-                TemplateDefinition templateDefinition = directoryScanner.getTemplateDefinitionsHandler().getTemplateDefinition(templateDefinitionId);
-                if (templateDefinition != null) {
-                    templateChecker.getTemplate().assignTemplateDefinition(templateDefinition);
-                } else {
-                    log.warn("Template definition not found: " + templateDefinitionId);
-                }
-            } else {
-                // Needed already here. File descriptor will be set by AbstractHandler too.
-                templateChecker.getTemplate().setFileDescriptor(fileDescriptor);
-                directoryScanner.assignMatchingTemplateDefinitionByFilename(templateChecker.getTemplate());
-            }
+            DocumentIndex documentIndex = templateChecker.getDocumentIndex();
+            templateChecker.getTemplate().setId(documentIndex.getTemplateId());
+            templateChecker.getTemplate().setTemplateDefinitionReferenceId(documentIndex.getTemplateDefinitionReference());
+            assignTemplateDefinition(templateChecker.getTemplate(), fileDescriptor);
             return templateChecker.getTemplate();
         } finally {
             if (doc != null) {
@@ -69,6 +54,52 @@ class TemplatesHandler extends AbstractHandler<Template> {
         }
     }
 
+    @Override
+    Object getIndexData(Template item) {
+        return new IndexedTemplate(item);
+    }
+
+    @Override
+    Template restore(ScanIndex.Entry indexEntry, Path path, FileDescriptor fileDescriptor) {
+        IndexedTemplate indexedTemplate = indexEntry.getData(IndexedTemplate.class);
+        if (indexedTemplate == null) {
+            return null;
+        }
+        MDCHandler mdc = new MDCHandler();
+        try {
+            mdc.put(MDCKey.TEMPLATE_PK, fileDescriptor.getPrimaryKey());
+            Template template = indexedTemplate.createTemplate();
+            assignTemplateDefinition(template, fileDescriptor);
+            return template;
+        } finally {
+            mdc.restore();
+        }
+    }
+
+    /**
+     * Assigns the template definition referenced by the template or, if no reference is given, the template definition
+     * matching the filename of the template.
+     */
+    private void assignTemplateDefinition(Template template, FileDescriptor fileDescriptor) {
+        if (template.getId() != null) {
+            log.debug("Template id found: " + template.getId());
+        }
+        String templateDefinitionId = template.getTemplateDefinitionReferenceId();
+        if (templateDefinitionId != null) {
+            log.debug("Template definition reference found: " + templateDefinitionId);
+            TemplateDefinition templateDefinition = directoryScanner.getTemplateDefinitionsHandler().getTemplateDefinition(templateDefinitionId);
+            if (templateDefinition != null) {
+                template.assignTemplateDefinition(templateDefinition);
+            } else {
+                log.warn("Template definition not found: " + templateDefinitionId);
+            }
+        } else {
+            // Needed already here. File descriptor will be set by AbstractHandler too.
+            template.setFileDescriptor(fileDescriptor);
+            directoryScanner.assignMatchingTemplateDefinitionByFilename(template);
+        }
+    }
+
     @Override
     protected MDCKey getMDCKey() {
         return MDCKey.TEMPLATE_PK;
@@ -6,6 +6,8 @@ import org.slf4j.LoggerFactory;
 
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.zip.ZipEntry;
@@ -18,12 +20,30 @@ public class ZipUtils {
     private String filename;
     private Map<String, Integer> usedFilenames = new HashMap<>();
 
+    /**
+     * The zip archive is buffered in memory, use {@link #closeAndGetByteArray()} to get it.
+     *
+     * @param zipFilename The name of the zip archive (for logging purposes).
+     */
     public ZipUtils(String zipFilename) {
         this.filename = zipFilename;
         outStream = new ByteArrayOutputStream();
         zipOut = new ZipOutputStream(outStream);
     }
 
+    /**
+     * The zip archive is written directly to the given output stream (e. g. a http response or a file), nothing is
+     * buffered in memory. Call {@link #finish()} after adding all entries. Any write error (e. g. a client disconnect)
+     * is thrown as {@link UncheckedIOException} by {@link #addZipEntry(String, byte[])} and {@link #finish()}.
+     *
+     * @param zipFilename The name of the zip archive (for logging purposes).
+     * @param out         The output stream to write the zip archive to.
+     */
+    public ZipUtils(String zipFilename, OutputStream out) {
+        this.filename = zipFilename;
+        zipOut = new ZipOutputStream(out);
+    }
+
     /**
      * For multiple filenames, the filenames will be modified in a MacOS X style:
      * {@code Filename.txt, Filename-2.txt, Filename-2.txt, ...}
@@ -48,10 +68,42 @@ public class ZipUtils {
             zipOut.write(content);
         } catch (IOException ex) {
             log.error("Can't add zipEntry: '" + filename + "': " + ex.getMessage(), ex);
+            throwIfStreaming(ex);
         }
     }
 
+    /**
+     * Finishes writing the zip archive without closing the underlying output stream.
+     */
+    public void finish() {
+        try {
+            zipOut.finish();
+        } catch (IOException ex) {
+            log.error("Can't finish zip archive: '" + filename + "': " + ex.getMessage(), ex);
+            throwIfStreaming(ex);
+        }
+    }
+
+    /**
+     * Errors of the caller's output stream must be propagated, otherwise the caller would continue writing into a dead
+     * stream (buffered archives are written on demand, so the errors are only logged).
+     */
+    private void throwIfStreaming(IOException ex) {
+        if (outStream == null) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    /**
+     * Only available, if the zip archive is buffered in memory.
+     *
+     * @return The zip archive.
+     * @see #ZipUtils(String)
+     */
     public byte[] closeAndGetByteArray() {
+        if (outStream == null) {
+            throw new IllegalStateException("Zip archive '" + filename + "' is written to an output stream and isn't available as byte array.");
+        }
         try {
             zipOut.close();
         } catch (IOException ex) {
@@ -31,6 +31,17 @@ public abstract class AbstractConditional implements Comparable<AbstractConditio
     static Pattern notInComparatorPattern = Pattern.compile("!?\\s*in");
     static Pattern endIfPattern = Pattern.compile("\\{endif\\}");
 
+    /**
+     * Creates a conditional without any position inside a document (used for evaluation only, e. g. by the
+     * {@link WordStreamingRenderer}).
+     *
+     * @param matcher The matcher of {@link #beginIfPattern}.
+     * @return The conditional.
+     */
+    static AbstractConditional createConditional(Matcher matcher) {
+        return createConditional(matcher, -1, null);
+    }
+
     public static AbstractConditional createConditional(Matcher matcher, int bodyElementNumber, RunsProcessor processor) {
         //log.info("not=" + matcher.group(1) + ", var=" + matcher.group(2) + ", operator=" + matcher.group(3) + ", value=" + matcher.group(4));
         String operator = matcher.group(3);
@@ -82,6 +93,9 @@ public abstract class AbstractConditional implements Comparable<AbstractConditio
 
     AbstractConditional(Matcher matcher, int bodyElementNumber, RunsProcessor processor) {
         conditionalStatement = matcher.group();
+        if (processor == null) {
+            return;
+        }
         conditionalExpressionRange = new DocumentRange(processor.getRunIdxAndPosition(bodyElementNumber, matcher.start()),
                 processor.getRunIdxAndPosition(bodyElementNumber, matcher.end() - 1));
     }
@@ -94,6 +108,10 @@ public abstract class AbstractConditional implements Comparable<AbstractConditio
      */
     abstract boolean matches(Variables variables);
 
+    void setConditionalExpressionRange(DocumentRange conditionalExpressionRange) {
+        this.conditionalExpressionRange = conditionalExpressionRange;
+    }
+
     void setEndConditionalExpressionRange(DocumentRange endConditionalExpressionRange) {
         this.endConditionalExpressionRange = endConditionalExpressionRange;
     }
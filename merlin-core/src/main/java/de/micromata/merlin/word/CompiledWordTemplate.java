@@ -0,0 +1,167 @@
+package de.micromata.merlin.word;
+
+import de.micromata.merlin.word.templating.Variables;
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
+import org.apache.commons.compress.archivers.zip.ZipFile;
+import org.apache.commons.compress.utils.SeekableInMemoryByteChannel;
+import org.apache.poi.xwpf.usermodel.XWPFParagraph;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * A Word template parsed once and rendered many times (e. g. for serial runs). The source document is serialized only
+ * once and scanned only once for template id, template definition reference, variables and conditionals. Rendering
+ * reads the cached bytes and processes only the paragraphs containing variables, comments or markers.
+ * <br>
+ * Instances are immutable after construction and may be shared by multiple threads.
+ */
+public class CompiledWordTemplate {
+    private static Logger log = LoggerFactory.getLogger(CompiledWordTemplate.class);
+    // Rough factor of the memory used by a parsed xml part (XMLBeans) in relation to its size.
+    private static final int XML_DOM_SIZE_FACTOR = 3;
+
+    private byte[] content;
+    private String filename;
+    private String templateId;
+    private String templateDefinitionReference;
+    private Set<String> variables;
+    private Conditionals conditionals;
+    // Indexes of all paragraphs (see WordDocument.getAllParagraphs()) containing variables, comments or markers.
+    private int[] paragraphsToProcess;
+    private long estimatedMemorySize;
+
+    /**
+     * @param document The template document to compile. Later modifications of this document will not be reflected.
+     */
+    public CompiledWordTemplate(WordDocument document) {
+        this(document.getAsByteArrayOutputStream().toByteArray(), document.getFilename());
+    }
+
+    /**
+     * @param content  The content of the docx file. Must not be modified afterwards.
+     * @param filename Only for logging purposes if any error occurs.
+     */
+    public CompiledWordTemplate(byte[] content, String filename) {
+        this.content = content;
+        this.filename = filename;
+        // Scan a copy read from the cached content, so all positions match the documents created by render.
+        try (WordDocument copy = createDocument()) {
+            DocumentIndex index = copy.createIndex();
+            templateId = index.getTemplateId();
+            templateDefinitionReference = index.getTemplateDefinitionReference();
+            variables = index.getVariables();
+            conditionals = index.getConditionals();
+            List<Integer> indexes = new ArrayList<>();
+            for (int i = 0; i < index.getParagraphCount(); i++) {
+                String text = index.getParagraphText(i);
+                if (text.indexOf('$') >= 0 || text.indexOf('{') >= 0) {
+                    indexes.add(i);
+                }
+            }
+            paragraphsToProcess = new int[indexes.size()];
+            for (int i = 0; i < paragraphsToProcess.length; i++) {
+                paragraphsToProcess[i] = indexes.get(i);
+            }
+        }
+        estimatedMemorySize = estimateMemorySize();
+        if (log.isDebugEnabled()) {
+            log.debug("Template '" + filename + "' compiled: " + paragraphsToProcess.length + " paragraphs to process.");
+        }
+    }
+
+    /**
+     * Creates a new document from the compiled template by evaluating all conditionals and replacing all variables.
+     *
+     * @param variables The variables to use.
+     * @return The rendered document.
+     */
+    public WordDocument render(Variables variables) {
+        WordDocument document = createDocument();
+        // Get the paragraphs before processing the conditionals, because paragraphs may be removed.
+        List<XWPFParagraph> allParagraphs = document.getAllParagraphs();
+        List<XWPFParagraph> paragraphs = new ArrayList<>(paragraphsToProcess.length);
+        for (int idx : paragraphsToProcess) {
+            paragraphs.add(allParagraphs.get(idx));
+        }
+        conditionals.process(variables, document);
+        // Paragraphs removed by conditionals are disconnected and must not be touched anymore.
+        Set<XWPFParagraph> remaining = Collections.newSetFromMap(new IdentityHashMap<>());
+        remaining.addAll(document.getAllParagraphs());
+        for (XWPFParagraph paragraph : paragraphs) {
+            if (remaining.contains(paragraph)) {
+                new RunsProcessor(paragraph).replace(variables);
+            }
+        }
+        return document;
+    }
+
+    /**
+     * The scanned document is kept by the conditionals (see {@link Conditionals}), so the package parts are held
+     * uncompressed and the xml parts are held parsed in memory.
+     */
+    private long estimateMemorySize() {
+        long size = content.length;
+        try (ZipFile zipFile = new ZipFile(new SeekableInMemoryByteChannel(content))) {
+            Enumeration<ZipArchiveEntry> entries = zipFile.getEntries();
+            while (entries.hasMoreElements()) {
+                ZipArchiveEntry entry = entries.nextElement();
+                long entrySize = Math.max(entry.getSize(), 0); // -1, if unknown.
+                size += entry.getName().endsWith(".xml") ? entrySize * (1 + XML_DOM_SIZE_FACTOR) : entrySize;
+            }
+        } catch (IOException ex) {
+            log.warn("Couldn't read zip entries of template '" + filename + "' for estimating its memory size: " + ex.getMessage());
+        }
+        return size;
+    }
+
+    private WordDocument createDocument() {
+        return new WordDocument(new ByteArrayInputStream(content), filename);
+    }
+
+    /**
+     * @return The template id, such as {@code {id="Employee contract template"}}, if given.
+     */
+    public String getTemplateId() {
+        return templateId;
+    }
+
+    /**
+     * @return The template definition reference, such as {@code {templateDefinition.refid="Employee contract definition"}},
+     * if given.
+     */
+    public String getTemplateDefinitionReference() {
+        return templateDefinitionReference;
+    }
+
+    /**
+     * @return All variables used by the template (unmodifiable).
+     */
+    public Set<String> getVariables() {
+        return variables;
+    }
+
+    public Conditionals getConditionals() {
+        return conditionals;
+    }
+
+    public String getFilename() {
+        return filename;
+    }
+
+    /**
+     * @return Rough estimate of the memory (in bytes) used by this compiled template including the content of the docx
+     * file, e. g. for the byte budget of caches.
+     */
+    public long getEstimatedMemorySize() {
+        return estimatedMemorySize;
+    }
+}
@@ -16,28 +16,102 @@ public class Conditionals {
     private SortedSet<AbstractConditional> conditionals;
     private WordDocument document;
     private DocumentRemover remover;
+    // Only used while reading:
+    private SortedSet<DocumentRange> allControls;
+    private Map<DocumentRange, AbstractConditional> conditionalMap;
+    private int restoredCounter;
 
     Conditionals(WordDocument document) {
         this.document = document;
         remover = new DocumentRemover(document);
     }
 
+    /**
+     * Creates empty conditionals without any document, e. g. for conditionals restored from a scan index
+     * (see {@link #addRestored(String, AbstractConditional)}).
+     */
+    public Conditionals() {
+        conditionals = new TreeSet<>();
+    }
+
+    /**
+     * Adds a conditional restored from its statement (e. g. from a scan index). Restored conditionals have no position
+     * inside any document, so they are only usable for information purposes (statistics etc.), not for processing.
+     *
+     * @param statement The conditional statement, such as {@code {if Gender='male'}}.
+     * @param parent    The parent conditional or null for top level conditionals.
+     * @return The restored conditional or null, if the given statement isn't a valid conditional statement.
+     */
+    public AbstractConditional addRestored(String statement, AbstractConditional parent) {
+        Matcher matcher = AbstractConditional.beginIfPattern.matcher(statement != null ? statement : "");
+        if (!matcher.matches()) {
+            log.warn("Can't restore conditional, invalid statement: " + statement);
+            return null;
+        }
+        AbstractConditional conditional = AbstractConditional.createConditional(matcher);
+        // Synthetic position for keeping the order of the restored conditionals:
+        DocumentPosition position = new DocumentPosition(++restoredCounter, 0, 0);
+        conditional.setConditionalExpressionRange(new DocumentRange(position, position));
+        if (parent != null) {
+            conditional.setParent(parent);
+        } else {
+            conditionals.add(conditional);
+        }
+        return conditional;
+    }
+
     /**
      * Parses all conditionals and build also a conditional tree.
      */
     void read() {
         List<IBodyElement> elements = document.getDocument().getBodyElements();
-        conditionals = new TreeSet<>();
-        SortedSet<DocumentRange> allControls = new TreeSet<>();
-        Map<DocumentRange, AbstractConditional> conditionalMap = new HashMap<>();
         int bodyElementCounter = 0;
         for (IBodyElement element : elements) {
             if (element instanceof XWPFParagraph) {
                 XWPFParagraph paragraph = (XWPFParagraph) element;
-                read(paragraph, bodyElementCounter, allControls, conditionalMap);
+                read(new RunsProcessor(paragraph), bodyElementCounter);
             }
             ++bodyElementCounter;
         }
+        buildTree();
+    }
+
+    /**
+     * Parses all conditionals of the given paragraph of the document body. Call {@link #buildTree()} after reading
+     * all paragraphs.
+     *
+     * @param processor         The processor of the paragraph.
+     * @param bodyElementNumber The number of the paragraph inside the document body.
+     */
+    void read(RunsProcessor processor, int bodyElementNumber) {
+        if (allControls == null) {
+            allControls = new TreeSet<>();
+            conditionalMap = new HashMap<>();
+        }
+        String text = processor.getText();
+        Matcher beginMatcher = AbstractConditional.beginIfPattern.matcher(text);
+        while (beginMatcher.find()) {
+            AbstractConditional conditional = AbstractConditional.createConditional(beginMatcher, bodyElementNumber, processor);
+            allControls.add(conditional.getConditionalExpressionRange());
+            conditionalMap.put(conditional.getConditionalExpressionRange(), conditional);
+        }
+        Matcher endMatcher = AbstractConditional.endIfPattern.matcher(text);
+        while (endMatcher.find()) {
+            DocumentPosition endifStart = processor.getRunIdxAndPosition(bodyElementNumber, endMatcher.start());
+            DocumentPosition endifEnd = processor.getRunIdxAndPosition(bodyElementNumber, endMatcher.end() - 1);
+            DocumentRange range = new DocumentRange(endifStart, endifEnd);
+            allControls.add(range);
+        }
+    }
+
+    /**
+     * Builds the conditional tree of all read conditionals.
+     */
+    void buildTree() {
+        conditionals = new TreeSet<>();
+        if (allControls == null) {
+            return;
+        }
         AbstractConditional current = null;
         for (DocumentRange range : allControls) {
             AbstractConditional conditional = conditionalMap.get(range);
@@ -67,6 +141,8 @@ public class Conditionals {
                 }
             }
         }
+        allControls = null;
+        conditionalMap = null;
         if (log.isDebugEnabled()) {
             log.debug("Conditionals:");
             for (AbstractConditional conditional : conditionals) {
@@ -76,17 +152,33 @@ public class Conditionals {
     }
 
     void process(Variables variables) {
+        process(variables, remover);
+    }
+
+    /**
+     * Processes the already read conditionals on another document. The target document must have the same structure
+     * as the document the conditionals were read from (e. g. a fresh copy of it), because the ranges to remove are
+     * given by body element numbers and run positions.
+     *
+     * @param variables The variables to evaluate the conditionals with.
+     * @param target    The document to remove the non-matching ranges from.
+     */
+    void process(Variables variables, WordDocument target) {
+        process(variables, new DocumentRemover(target));
+    }
+
+    private void process(Variables variables, DocumentRemover remover) {
         for (AbstractConditional conditional : conditionals) {
             if (conditional.getParent() != null) {
                 // Process only top level conditionals. The childs will be processed by its parent.
                 continue;
             }
-            process(conditional, variables);
+            process(conditional, variables, remover);
         }
         remover.action();
     }
 
-    void process(AbstractConditional conditional, Variables variables) {
+    private void process(AbstractConditional conditional, Variables variables, DocumentRemover remover) {
         if (conditional.matches(variables) == false) {
             // Remove all content covered by this conditional.
             remover.add(conditional.getRange());
@@ -94,7 +186,7 @@ public class Conditionals {
             remover.add(conditional.getEndConditionalExpressionRange());
             if (conditional.getChildConditionals() != null) {
                 for (AbstractConditional child : conditional.getChildConditionals()) {
-                    process(child, variables);
+                    process(child, variables, remover);
                 }
             }
             remover.add(conditional.getConditionalExpressionRange());
@@ -102,29 +194,13 @@ public class Conditionals {
     }
 
 
-    private void read(XWPFParagraph paragraph, int bodyElementNumber, SortedSet<DocumentRange> allControls,
-                      Map<DocumentRange, AbstractConditional> conditionalMap) {
-        RunsProcessor processor = new RunsProcessor(paragraph);
-        String text = processor.getText();
-        Matcher beginMatcher = AbstractConditional.beginIfPattern.matcher(text);
-        while (beginMatcher.find()) {
-            AbstractConditional conditional = AbstractConditional.createConditional(beginMatcher, bodyElementNumber, processor);
-            allControls.add(conditional.getConditionalExpressionRange());
-            conditionalMap.put(conditional.getConditionalExpressionRange(), conditional);
-        }
-        Matcher endMatcher = AbstractConditional.endIfPattern.matcher(text);
-        while (endMatcher.find()) {
-            DocumentPosition endifStart = processor.getRunIdxAndPosition(bodyElementNumber, endMatcher.start());
-            DocumentPosition endifEnd = processor.getRunIdxAndPosition(bodyElementNumber, endMatcher.end() - 1);
-            DocumentRange range = new DocumentRange(endifStart, endifEnd);
-            allControls.add(range);
-        }
-    }
-
-    private void process(XWPFParagraph paragraph, int bodyElementNumber) {
-        RunsProcessor processor = new RunsProcessor(paragraph);
-        String text = processor.getText();
-
+    /**
+     * Drops the references to the document read from. Afterwards only {@link #process(Variables, WordDocument)} may
+     * be used.
+     */
+    void detach() {
+        document = null;
+        remover = null;
     }
 
     public SortedSet<AbstractConditional> getConditionalsSet() {
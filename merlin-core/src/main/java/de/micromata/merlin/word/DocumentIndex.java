@@ -0,0 +1,141 @@
+package de.micromata.merlin.word;
+
+import java.util.*;
+
+/**
+ * Result of one single pass over all paragraphs of a Word document (body, tables, headers and footers): used variables,
+ * template id, template definition reference, conditionals and the texts of all paragraphs including the start offsets
+ * of their runs.
+ * <br>
+ * Instances are immutable. Only the conditionals refer the scanned document (for processing them). The index isn't
+ * kept by {@link de.micromata.merlin.word.templating.Template}: {@link CompiledWordTemplate} creates its own index
+ * when compiling (compiled templates are cached by
+ * {@link de.micromata.merlin.persistency.templates.TemplateDocumentCache}) and
+ * {@link de.micromata.merlin.word.templating.WordTemplateChecker} holds one only while checking a template.
+ *
+ * @see WordDocument#createIndex()
+ */
+public class DocumentIndex {
+    private Set<String> variables;
+    private String templateId;
+    private String templateDefinitionReference;
+    private Conditionals conditionals;
+    private List<String> paragraphTexts;
+    private List<int[]> runOffsets;
+
+    private DocumentIndex() {
+    }
+
+    /**
+     * @return All variables used in the document (unmodifiable). Variables only used by conditionals aren't included.
+     */
+    public Set<String> getVariables() {
+        return variables;
+    }
+
+    /**
+     * @return The first template id found, such as {@code {id="Employee contract template"}}, or null.
+     */
+    public String getTemplateId() {
+        return templateId;
+    }
+
+    /**
+     * @return The first template definition reference found, such as
+     * {@code {templateDefinition.refid="Employee contract definition"}}, or null.
+     */
+    public String getTemplateDefinitionReference() {
+        return templateDefinitionReference;
+    }
+
+    /**
+     * @return The conditionals of the document body. They're detached from the scanned document, so only
+     * {@link Conditionals#process(de.micromata.merlin.word.templating.Variables, WordDocument)} is usable.
+     */
+    public Conditionals getConditionals() {
+        return conditionals;
+    }
+
+    /**
+     * @return The number of all paragraphs in the order of {@link WordDocument#getAllParagraphs()}.
+     */
+    public int getParagraphCount() {
+        return paragraphTexts.size();
+    }
+
+    /**
+     * @param paragraphIndex The index of the paragraph in the order of {@link WordDocument#getAllParagraphs()}.
+     * @return The whole text concatenated from all runs of the paragraph.
+     */
+    public String getParagraphText(int paragraphIndex) {
+        return paragraphTexts.get(paragraphIndex);
+    }
+
+    /**
+     * @param paragraphIndex The index of the paragraph in the order of {@link WordDocument#getAllParagraphs()}.
+     * @return The start offsets of all runs of the paragraph inside its text. The returned array is a copy.
+     */
+    public int[] getRunOffsets(int paragraphIndex) {
+        return runOffsets.get(paragraphIndex).clone();
+    }
+
+    /**
+     * Collects all information of the paragraphs. Only used by {@link WordDocument#createIndex()}.
+     */
+    static class Builder {
+        private Set<String> variables = new HashSet<>();
+        private String templateId;
+        private String templateDefinitionReference;
+        private Conditionals conditionals;
+        private List<String> paragraphTexts = new ArrayList<>();
+        private List<int[]> runOffsets = new ArrayList<>();
+
+        Builder(WordDocument document) {
+            conditionals = new Conditionals(document);
+        }
+
+        /**
+         * @param processor         The processor of the next paragraph.
+         * @param bodyElementNumber The number of the paragraph inside the document body or -1 for paragraphs of
+         *                          tables, headers and footers.
+         */
+        void add(RunsProcessor processor, int bodyElementNumber) {
+            String text = processor.getText();
+            paragraphTexts.add(text);
+            int[] runSizes = processor.getRunSizes();
+            int[] offsets = new int[runSizes.length];
+            int offset = 0;
+            for (int i = 0; i < runSizes.length; i++) {
+                offsets[i] = offset;
+                offset += runSizes[i];
+            }
+            runOffsets.add(offsets);
+            if (text.length() == 0) {
+                return;
+            }
+            processor.scanVariables(variables);
+            if (templateId == null) {
+                templateId = processor.scanForTemplateId();
+            }
+            if (templateDefinitionReference == null) {
+                templateDefinitionReference = processor.scanForTemplateDefinitionReference();
+            }
+            if (bodyElementNumber >= 0) {
+                conditionals.read(processor, bodyElementNumber);
+            }
+        }
+
+        DocumentIndex build() {
+            conditionals.buildTree();
+            conditionals.detach();
+            DocumentIndex index = new DocumentIndex();
+            index.variables = Collections.unmodifiableSet(variables);
+            index.templateId = templateId;
+            index.templateDefinitionReference = templateDefinitionReference;
+            index.conditionals = conditionals;
+            index.paragraphTexts = Collections.unmodifiableList(paragraphTexts);
+            index.runOffsets = runOffsets;
+            return index;
+        }
+    }
+}
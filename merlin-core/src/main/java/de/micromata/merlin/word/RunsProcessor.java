@@ -123,6 +123,20 @@ public class RunsProcessor {
     }
 
 
+    /**
+     * @return The text lengths of all runs (after {@link #getText()} was called).
+     */
+    int[] getRunSizes() {
+        if (runSizes == null) {
+            getText();
+        }
+        return runSizes;
+    }
+
+    XWPFParagraph getParagraph() {
+        return paragraph;
+    }
+
     DocumentPosition getEnd(int bodyElementNo) {
         int lastRun = runs.size() - 1;
         return new DocumentPosition(bodyElementNo, lastRun, runs.get(lastRun).getText(0).length() - 1);
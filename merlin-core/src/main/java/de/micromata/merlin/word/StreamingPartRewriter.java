@@ -0,0 +1,321 @@
+package de.micromata.merlin.word;
+
+import de.micromata.merlin.utils.ReplaceEntry;
+import de.micromata.merlin.utils.ReplaceUtils;
+import de.micromata.merlin.word.templating.Variables;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.xml.XMLConstants;
+import javax.xml.namespace.QName;
+import javax.xml.stream.*;
+import javax.xml.stream.events.Attribute;
+import javax.xml.stream.events.StartElement;
+import javax.xml.stream.events.XMLEvent;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.*;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Rewrites a single xml part of a docx file (document, header or footer) with StAX: Variables are replaced, template
+ * id and template definition references are removed and (only for the document body) conditionals are processed.
+ * The texts of all {@code w:t} elements of a paragraph are concatenated, so variables and conditionals may be split
+ * over multiple runs as in {@link RunsProcessor}.
+ * <br>
+ * The visibility state of the conditionals is held over all paragraphs, so use one instance per part.
+ */
+class StreamingPartRewriter {
+    private static Logger log = LoggerFactory.getLogger(StreamingPartRewriter.class);
+    static final String WORD_NAMESPACE = "http://schemas.openxmlformats.org/wordprocessingml/2006/main";
+    private static final QName XML_SPACE = new QName(XMLConstants.XML_NS_URI, "space", "xml");
+
+    private static final XMLInputFactory inputFactory;
+    private static final XMLOutputFactory outputFactory = XMLOutputFactory.newInstance();
+    private static final XMLEventFactory eventFactory = XMLEventFactory.newInstance();
+
+    static {
+        inputFactory = XMLInputFactory.newInstance();
+        inputFactory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        inputFactory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        inputFactory.setProperty(XMLInputFactory.IS_COALESCING, true);
+    }
+
+    private Variables variables;
+    private boolean processConditionals;
+    // Visibility of the current content for every open conditional (top is the innermost).
+    private Deque<Boolean> conditionalStack = new ArrayDeque<>();
+
+    /**
+     * @param variables           The variables to use.
+     * @param processConditionals If true, conditionals of the body paragraphs are processed (only for the document part).
+     */
+    StreamingPartRewriter(Variables variables, boolean processConditionals) {
+        this.variables = variables;
+        this.processConditionals = processConditionals;
+    }
+
+    /**
+     * @param in  The xml part to read. Will not be closed.
+     * @param out The output for the rewritten xml part. Will not be closed.
+     * @throws XMLStreamException If the part isn't readable or writable.
+     */
+    void rewrite(InputStream in, OutputStream out) throws XMLStreamException {
+        XMLEventReader reader = inputFactory.createXMLEventReader(in);
+        XMLEventWriter writer = outputFactory.createXMLEventWriter(out, "UTF-8");
+        int depth = 0;
+        int bodyLevel = -1; // Depth of the children of w:body.
+        while (reader.hasNext()) {
+            XMLEvent event = reader.nextEvent();
+            if (event.isStartElement()) {
+                StartElement start = event.asStartElement();
+                ++depth;
+                if (isWordElement(start, "body")) {
+                    bodyLevel = depth + 1;
+                } else if (isWordElement(start, "p")) {
+                    List<XMLEvent> paragraph = readElement(reader, start);
+                    processParagraph(paragraph, processConditionals && depth == bodyLevel, writer);
+                    --depth;
+                    continue;
+                } else if (processConditionals && depth == bodyLevel && !isVisible()
+                        && (isWordElement(start, "tbl") || isWordElement(start, "sdt"))) {
+                    // Tables and content controls inside a non-matching conditional are removed completely.
+                    readElement(reader, start);
+                    --depth;
+                    continue;
+                }
+            } else if (event.isEndElement()) {
+                --depth;
+            }
+            writer.add(event);
+        }
+        if (!conditionalStack.isEmpty()) {
+            log.warn(conditionalStack.size() + " if-expression(s) without endif found.");
+        }
+        writer.flush();
+        writer.close();
+    }
+
+    private void processParagraph(List<XMLEvent> events, boolean bodyParagraph, XMLEventWriter writer) throws XMLStreamException {
+        List<StringBuilder> texts = new ArrayList<>();
+        boolean inText = false;
+        for (XMLEvent event : events) {
+            if (event.isStartElement() && isWordElement(event.asStartElement(), "t")) {
+                texts.add(new StringBuilder());
+                inText = true;
+            } else if (event.isEndElement() && isWordElement(event.asEndElement().getName(), "t")) {
+                inText = false;
+            } else if (inText && event.isCharacters()) {
+                texts.get(texts.size() - 1).append(event.asCharacters().getData());
+            }
+        }
+        boolean[] modified = new boolean[texts.size()];
+        if (bodyParagraph) {
+            List<ReplaceEntry> removeEntries = processConditionals(getText(texts));
+            if (!removeEntries.isEmpty()) {
+                Collections.reverse(removeEntries);
+                for (ReplaceEntry entry : removeEntries) {
+                    replace(texts, entry, modified);
+                }
+                if (getText(texts).length() == 0) {
+                    // Paragraph contains only conditional expressions or content of non-matching conditionals.
+                    return;
+                }
+            }
+        }
+        String text = getText(texts);
+        if (text.indexOf('$') >= 0 || text.indexOf('{') >= 0) {
+            List<ReplaceEntry> replaceEntries = new ArrayList<>();
+            addRemoveEntries(replaceEntries, RunsProcessor.TEMPLATE_DEFINITION_REFERENCE_PATTERN, text);
+            addRemoveEntries(replaceEntries, RunsProcessor.TEMPLATE_ID_PATTERN, text);
+            ReplaceUtils.createReplaceEntries(text, replaceEntries, variables);
+            for (ReplaceEntry entry : replaceEntries) {
+                replace(texts, entry, modified);
+            }
+        }
+        writeParagraph(events, texts, modified, writer);
+    }
+
+    /**
+     * Processes all if- and endif-expressions of the given paragraph text and updates the visibility state.
+     *
+     * @return The ranges to remove in ascending order (the expressions themselves and all content of non-matching
+     * conditionals).
+     */
+    private List<ReplaceEntry> processConditionals(String text) {
+        List<ReplaceEntry> removeEntries = new ArrayList<>();
+        int hiddenStart = isVisible() ? -1 : 0;
+        Matcher beginMatcher = AbstractConditional.beginIfPattern.matcher(text);
+        Matcher endMatcher = AbstractConditional.endIfPattern.matcher(text);
+        boolean beginFound = beginMatcher.find();
+        boolean endFound = endMatcher.find();
+        while (beginFound || endFound) {
+            if (beginFound && (!endFound || beginMatcher.start() < endMatcher.start())) {
+                if (isVisible()) {
+                    AbstractConditional conditional = AbstractConditional.createConditional(beginMatcher);
+                    boolean matches = conditional.matches(variables);
+                    conditionalStack.push(matches);
+                    if (matches) {
+                        removeEntries.add(new ReplaceEntry(beginMatcher.start(), beginMatcher.end(), ""));
+                    } else {
+                        hiddenStart = beginMatcher.start();
+                    }
+                } else {
+                    conditionalStack.push(false);
+                }
+                beginFound = beginMatcher.find();
+            } else {
+                if (conditionalStack.isEmpty()) {
+                    log.error("endif without if-expression found. Ignoring it.");
+                } else {
+                    boolean wasVisible = isVisible();
+                    conditionalStack.pop();
+                    if (wasVisible) {
+                        removeEntries.add(new ReplaceEntry(endMatcher.start(), endMatcher.end(), ""));
+                    } else if (isVisible()) {
+                        removeEntries.add(new ReplaceEntry(hiddenStart, endMatcher.end(), ""));
+                        hiddenStart = -1;
+                    }
+                }
+                endFound = endMatcher.find();
+            }
+        }
+        if (hiddenStart >= 0) {
+            removeEntries.add(new ReplaceEntry(hiddenStart, text.length(), ""));
+        }
+        return removeEntries;
+    }
+
+    private boolean isVisible() {
+        return conditionalStack.isEmpty() || conditionalStack.peek();
+    }
+
+    private void writeParagraph(List<XMLEvent> events, List<StringBuilder> texts, boolean[] modified, XMLEventWriter writer)
+            throws XMLStreamException {
+        int textIdx = -1;
+        boolean inText = false;
+        for (XMLEvent event : events) {
+            if (event.isStartElement() && isWordElement(event.asStartElement(), "t")) {
+                StartElement start = event.asStartElement();
+                ++textIdx;
+                inText = true;
+                String text = texts.get(textIdx).toString();
+                if (!modified[textIdx]) {
+                    writer.add(start);
+                    writer.add(eventFactory.createCharacters(text));
+                    continue;
+                }
+                start = preserveSpace(start);
+                writer.add(start);
+                // Insert line breaks as done by RunsProcessor:
+                boolean first = true;
+                for (String line : text.replace("\r\n", "\n").split("\n", -1)) {
+                    if (!first) {
+                        String prefix = start.getName().getPrefix();
+                        writer.add(eventFactory.createEndElement(start.getName(), null));
+                        writer.add(eventFactory.createStartElement(prefix, WORD_NAMESPACE, "br"));
+                        writer.add(eventFactory.createEndElement(prefix, WORD_NAMESPACE, "br"));
+                        writer.add(start);
+                    }
+                    first = false;
+                    writer.add(eventFactory.createCharacters(line));
+                }
+                continue;
+            } else if (event.isEndElement() && isWordElement(event.asEndElement().getName(), "t")) {
+                inText = false;
+            } else if (inText && event.isCharacters()) {
+                // Text already written.
+                continue;
+            }
+            writer.add(event);
+        }
+    }
+
+    private StartElement preserveSpace(StartElement start) {
+        List<Attribute> attributes = new ArrayList<>();
+        Iterator<?> it = start.getAttributes();
+        while (it.hasNext()) {
+            Attribute attribute = (Attribute) it.next();
+            if (!XML_SPACE.equals(attribute.getName())) {
+                attributes.add(attribute);
+            }
+        }
+        attributes.add(eventFactory.createAttribute(XML_SPACE, "preserve"));
+        return eventFactory.createStartElement(start.getName(), attributes.iterator(), start.getNamespaces());
+    }
+
+    /**
+     * Replaces the given range of the concatenated texts. The new text is inserted in the text containing the start
+     * position, the rest of the range is removed from the following texts.
+     *
+     * @param modified The flags of all modified texts are set to true.
+     */
+    private static void replace(List<StringBuilder> texts, ReplaceEntry entry, boolean[] modified) {
+        int pos = 0;
+        int firstIdx = -1;
+        for (int i = 0; i < texts.size(); i++) {
+            StringBuilder text = texts.get(i);
+            int textStart = pos;
+            int textEnd = pos + text.length();
+            pos = textEnd;
+            if (textEnd <= entry.start) {
+                continue;
+            }
+            if (textStart >= entry.end) {
+                break;
+            }
+            int from = Math.max(entry.start, textStart) - textStart;
+            int to = Math.min(entry.end, textEnd) - textStart;
+            if (firstIdx < 0) {
+                text.replace(from, to, entry.newText);
+                firstIdx = i;
+            } else {
+                text.delete(from, to);
+            }
+            modified[i] = true;
+        }
+    }
+
+    private static void addRemoveEntries(List<ReplaceEntry> replaceEntries, Pattern pattern, String text) {
+        Matcher matcher = pattern.matcher(text);
+        while (matcher.find()) {
+            replaceEntries.add(new ReplaceEntry(matcher.start(), matcher.end(), ""));
+        }
+    }
+
+    private static String getText(List<StringBuilder> texts) {
+        StringBuilder sb = new StringBuilder();
+        for (StringBuilder text : texts) {
+            sb.append(text);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Reads all events of the given element including the start and end element.
+     */
+    private static List<XMLEvent> readElement(XMLEventReader reader, StartElement start) throws XMLStreamException {
+        List<XMLEvent> events = new ArrayList<>();
+        events.add(start);
+        int depth = 1;
+        while (depth > 0 && reader.hasNext()) {
+            XMLEvent event = reader.nextEvent();
+            if (event.isStartElement()) {
+                ++depth;
+            } else if (event.isEndElement()) {
+                --depth;
+            }
+            events.add(event);
+        }
+        return events;
+    }
+
+    private static boolean isWordElement(StartElement element, String localName) {
+        return isWordElement(element.getName(), localName);
+    }
+
+    private static boolean isWordElement(QName name, String localName) {
+        return localName.equals(name.getLocalPart()) && WORD_NAMESPACE.equals(name.getNamespaceURI());
+    }
+}
@@ -14,6 +14,7 @@ import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
@@ -118,6 +119,29 @@ public class WordDocument implements AutoCloseable {
         }, null);
     }
 
+    /**
+     * Scans all paragraphs in one single pass for template id, template definition reference, variables and
+     * conditionals.
+     *
+     * @return The index of this document. It isn't updated on any modification of this document.
+     */
+    public DocumentIndex createIndex() {
+        DocumentIndex.Builder builder = new DocumentIndex.Builder(this);
+        processAllParagraphs(new RunsProcessorExecutor() {
+            @Override
+            Object process(RunsProcessor processor, Object param) {
+                return process(processor, -1, param);
+            }
+
+            @Override
+            Object process(RunsProcessor processor, int bodyElementNumber, Object param) {
+                builder.add(processor, bodyElementNumber);
+                return null;
+            }
+        }, null);
+        return builder.build();
+    }
+
     public Conditionals getConditionals() {
         Conditionals conditionals = new Conditionals(this);
         conditionals.read();
@@ -173,8 +197,25 @@ public class WordDocument implements AutoCloseable {
         return null;
     }
 
+    /**
+     * @return All paragraphs of the body (including tables), the headers and the footers in the order they are
+     * processed by {@link #process(Variables)}.
+     */
+    List<XWPFParagraph> getAllParagraphs() {
+        List<XWPFParagraph> paragraphs = new ArrayList<>();
+        processAllParagraphs(new RunsProcessorExecutor() {
+            @SuppressWarnings("unchecked")
+            @Override
+            Object process(RunsProcessor processor, Object param) {
+                ((List<XWPFParagraph>) param).add(processor.getParagraph());
+                return null;
+            }
+        }, paragraphs);
+        return paragraphs;
+    }
+
     private Object processAllParagraphs(RunsProcessorExecutor processor, Object param) {
-        Object result = processBodyElements(processor, param, document.getBodyElements());
+        Object result = processBodyElements(processor, param, document.getBodyElements(), true);
         if (result != null)
             return result;
         XWPFHeaderFooterPolicy policy = new XWPFHeaderFooterPolicy(document);
@@ -186,11 +227,17 @@ public class WordDocument implements AutoCloseable {
         return result;
     }
 
-    private Object processBodyElements(RunsProcessorExecutor processor, Object param, List<IBodyElement> list) {
+    /**
+     * @param documentBody True, if the given elements are the body elements of the document. Only for these the body
+     *                     element numbers are given to the executor (as used by {@link Conditionals}).
+     */
+    private Object processBodyElements(RunsProcessorExecutor processor, Object param, List<IBodyElement> list, boolean documentBody) {
+        int bodyElementCounter = -1;
         for (IBodyElement element : list) {
+            ++bodyElementCounter;
             if (element instanceof XWPFParagraph) {
                 XWPFParagraph paragraph = (XWPFParagraph) element;
-                Object result = processor.process(new RunsProcessor(paragraph), param);
+                Object result = processor.process(new RunsProcessor(paragraph), documentBody ? bodyElementCounter : -1, param);
                 if (result != null)
                     return result;
             } else if (element instanceof XWPFTable) {
@@ -198,7 +245,7 @@ public class WordDocument implements AutoCloseable {
                 for (XWPFTableRow row : table.getRows()) {
                     for (XWPFTableCell cell : row.getTableCells()) {
                         for (XWPFParagraph paragraph : cell.getParagraphs()) {
-                            Object result = processor.process(new RunsProcessor(paragraph), param);
+                            Object result = processor.process(new RunsProcessor(paragraph), -1, param);
                             if (result != null)
                                 return result;
                         }
@@ -222,7 +269,7 @@ public class WordDocument implements AutoCloseable {
         Object result;
         for (XWPFHeader header : headers) {
             if (header != null) {
-                result = processBodyElements(processor, param, header.getBodyElements());
+                result = processBodyElements(processor, param, header.getBodyElements(), false);
                 if (result != null)
                     return result;
             }
@@ -234,7 +281,7 @@ public class WordDocument implements AutoCloseable {
         Object result;
         for (XWPFFooter footer : footers) {
             if (footer != null) {
-                result = processBodyElements(processor, param, footer.getBodyElements());
+                result = processBodyElements(processor, param, footer.getBodyElements(), false);
                 if (result != null)
                     return result;
             }
@@ -244,5 +291,13 @@ public class WordDocument implements AutoCloseable {
 
     abstract class RunsProcessorExecutor {
         abstract Object process(RunsProcessor processor, Object param);
+
+        /**
+         * @param bodyElementNumber The number of the paragraph inside the document body or -1 for paragraphs of
+         *                          tables, headers and footers.
+         */
+        Object process(RunsProcessor processor, int bodyElementNumber, Object param) {
+            return process(processor, param);
+        }
     }
 }
@@ -0,0 +1,96 @@
+package de.micromata.merlin.word;
+
+import de.micromata.merlin.persistency.PersistencyRegistry;
+import de.micromata.merlin.word.templating.Variables;
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
+import org.apache.commons.compress.archivers.zip.ZipArchiveOutputStream;
+import org.apache.commons.compress.archivers.zip.ZipFile;
+import org.apache.commons.compress.utils.SeekableInMemoryByteChannel;
+import org.apache.commons.io.IOUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.xml.stream.XMLStreamException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Path;
+import java.util.Enumeration;
+import java.util.regex.Pattern;
+
+/**
+ * Renders Word templates without building a POI document: The document, header and footer parts are rewritten by
+ * streaming their xml (see {@link StreamingPartRewriter}), all other parts of the docx file (styles, fonts, media etc.)
+ * are copied as already compressed bytes. The result is written directly to the given output stream.
+ * <br>
+ * As {@link WordDocument#process(Variables)} conditionals are only processed in the paragraphs of the document body.
+ * <br>
+ * Instances are immutable and may be shared by multiple threads.
+ */
+public class WordStreamingRenderer {
+    private static Logger log = LoggerFactory.getLogger(WordStreamingRenderer.class);
+    private static final String DOCUMENT_PART = "word/document.xml";
+    private static final Pattern HEADER_FOOTER_PART_PATTERN = Pattern.compile("word/(header|footer)\\d*\\.xml");
+
+    private byte[] content;
+    private String filename;
+
+    /**
+     * @param path The path of the Word template.
+     * @return The renderer or null, if the template couldn't be read.
+     */
+    public static WordStreamingRenderer load(Path path) {
+        try (InputStream inputStream = PersistencyRegistry.getDefault().getInputStream(path)) {
+            if (inputStream == null) {
+                log.error("Can't get input stream for path: " + path.toAbsolutePath());
+                return null;
+            }
+            return new WordStreamingRenderer(IOUtils.toByteArray(inputStream), path.getFileName().toString());
+        } catch (IOException ex) {
+            log.error("Couldn't read File '" + path.toAbsolutePath() + "': " + ex.getMessage(), ex);
+            return null;
+        }
+    }
+
+    /**
+     * @param content  The content of the docx file.
+     * @param filename Only for logging purposes if any error occurs.
+     */
+    public WordStreamingRenderer(byte[] content, String filename) {
+        this.content = content;
+        this.filename = filename;
+    }
+
+    /**
+     * @param variables The variables to use.
+     * @param out       The output stream to write the docx file to. Will not be closed.
+     */
+    public void render(Variables variables, OutputStream out) {
+        try (ZipFile zipFile = new ZipFile(new SeekableInMemoryByteChannel(content))) {
+            ZipArchiveOutputStream zipOut = new ZipArchiveOutputStream(out);
+            Enumeration<ZipArchiveEntry> entries = zipFile.getEntriesInPhysicalOrder();
+            while (entries.hasMoreElements()) {
+                ZipArchiveEntry entry = entries.nextElement();
+                String name = entry.getName();
+                boolean documentPart = DOCUMENT_PART.equals(name);
+                if (!documentPart && !HEADER_FOOTER_PART_PATTERN.matcher(name).matches()) {
+                    zipOut.addRawArchiveEntry(entry, zipFile.getRawInputStream(entry));
+                    continue;
+                }
+                zipOut.putArchiveEntry(new ZipArchiveEntry(name));
+                try (InputStream in = zipFile.getInputStream(entry)) {
+                    new StreamingPartRewriter(variables, documentPart).rewrite(in, zipOut);
+                }
+                zipOut.closeArchiveEntry();
+            }
+            zipOut.finish();
+        } catch (IOException | XMLStreamException ex) {
+            log.error("Couldn't render Word template '" + filename + "': " + ex.getMessage(), ex);
+            throw new RuntimeException(ex);
+        }
+    }
+
+    public String getFilename() {
+        return filename;
+    }
+}
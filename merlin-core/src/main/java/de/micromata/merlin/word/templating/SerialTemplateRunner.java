@@ -3,49 +3,205 @@ package de.micromata.merlin.word.templating;
 import de.micromata.merlin.utils.Converter;
 import de.micromata.merlin.utils.MerlinFileUtils;
 import de.micromata.merlin.utils.ZipUtils;
+import de.micromata.merlin.word.CompiledWordTemplate;
 import de.micromata.merlin.word.WordDocument;
 import org.apache.commons.io.FilenameUtils;
+import org.apache.commons.io.output.ByteArrayOutputStream;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
 public class SerialTemplateRunner {
     private static Logger log = LoggerFactory.getLogger(SerialTemplateRunner.class);
 
     private SerialData serialData;
     private WordDocument templateDocument;
+    private CompiledWordTemplate compiledTemplate;
     private String zipFilename;
+    private int parallelism = 1;
+    private int maxBufferedDocuments = -1;
+    private ExecutorService executor;
 
     public SerialTemplateRunner(SerialData serialData, WordDocument templateDocument) {
         this.serialData = serialData;
         this.templateDocument = templateDocument;
     }
 
+    /**
+     * @param serialData       The serial data to run.
+     * @param compiledTemplate The already compiled Word template (e. g. from a cache).
+     */
+    public SerialTemplateRunner(SerialData serialData, CompiledWordTemplate compiledTemplate) {
+        this.serialData = serialData;
+        this.compiledTemplate = compiledTemplate;
+    }
+
     /**
      * @param filename Filename of e. g. Serial template xls file. Used for creating name of zip archive based on this file.
      * @return The zipped byte array containing the result files.
      */
     public byte[] run(String filename) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        run(filename, out);
+        return out.toByteArray();
+    }
+
+    /**
+     * Writes the zip archive directly to the given output stream (e. g. a http response or a spill file), so only
+     * the currently rendered documents are held in memory.
+     *
+     * @param filename Filename of e. g. Serial template xls file. Used for creating name of zip archive based on this file.
+     * @param out      The output stream to write the zip archive to. Will not be closed.
+     * @throws UncheckedIOException if the output stream couldn't be written (e. g. the client disconnected). The run
+     *                              is aborted, no further documents are rendered.
+     * @see #createZipFilename(String)
+     */
+    public void run(String filename, OutputStream out) {
         TemplateDefinition templateDefinition = serialData.getTemplateDefinition();
         Template template = serialData.getTemplate();
-        WordTemplateRunner runner = new WordTemplateRunner(templateDefinition, templateDocument);
+        WordTemplateRunner runner = compiledTemplate != null ? new WordTemplateRunner(templateDefinition, compiledTemplate)
+                : new WordTemplateRunner(templateDefinition, templateDocument);
         template.setId(runner.scanForTemplateId());
 
         String tdString = templateDefinition != null ? templateDefinition.getId() : "-";
         log.info("Processing serial templates for template '" + template.getDisplayName() + "' and template definition '" +
                 tdString + "'.");
-        this.zipFilename = MerlinFileUtils.getISODate() + "_" + FilenameUtils.getBaseName(filename) + ".zip";
-        ZipUtils zipUtil = new ZipUtils(zipFilename);
-        int counter = 0;
+        this.zipFilename = createZipFilename(filename);
+        ZipUtils zipUtil = new ZipUtils(zipFilename, out);
         int maxEntries = serialData.getEntries().size();
-        for (Variables variables : serialData.getEntries()) {
-            WordDocument result = runner.run(variables);
-            variables.getVariables().put("counter", Converter.formatNumber(++counter, maxEntries));
-            String zipEntryFilename = runner.createFilename(serialData.getFilenamePattern(), variables, false);
-            zipUtil.addZipEntry(zipEntryFilename, result.getAsByteArrayOutputStream().toByteArray());
-            log.info("Generating serial template entry: " + zipEntryFilename);
+        int threads = getParallelism();
+        try {
+            if (threads <= 1 || maxEntries <= 1) {
+                int counter = 0;
+                for (Variables variables : serialData.getEntries()) {
+                    addZipEntry(zipUtil, runner, variables, render(runner, variables), ++counter, maxEntries);
+                }
+            } else {
+                runParallel(zipUtil, runner, threads);
+            }
+            zipUtil.finish();
+        } catch (UncheckedIOException ex) {
+            log.error("Aborting serial run '" + zipFilename + "', the zip archive couldn't be written: " + ex.getMessage());
+            throw ex;
+        }
+    }
+
+    /**
+     * @param filename Filename of e. g. Serial template xls file.
+     * @return The name of the zip archive created by {@link #run(String)} for the given filename (prefixed by the
+     * current date).
+     */
+    public static String createZipFilename(String filename) {
+        return MerlinFileUtils.getISODate() + "_" + FilenameUtils.getBaseName(filename) + ".zip";
+    }
+
+    /**
+     * Renders the documents on a worker pool. The zip entries are written in the order of the serial data entries by
+     * the calling thread. At most {@link #getMaxBufferedDocuments()} documents are rendered ahead and held in memory.
+     */
+    private void runParallel(ZipUtils zipUtil, WordTemplateRunner runner, int threads) {
+        int maxEntries = serialData.getEntries().size();
+        int maxBuffered = getMaxBufferedDocuments();
+        log.info("Rendering " + maxEntries + " serial template entries "
+                + (this.executor != null ? "on the given executor." : "with " + threads + " threads."));
+        ExecutorService executor = this.executor != null ? this.executor : Executors.newFixedThreadPool(threads);
+        Deque<Future<byte[]>> pending = new ArrayDeque<>();
+        try {
+            Iterator<Variables> submitIt = serialData.getEntries().iterator();
+            Iterator<Variables> writeIt = serialData.getEntries().iterator();
+            int counter = 0;
+            while (writeIt.hasNext()) {
+                while (submitIt.hasNext() && pending.size() < maxBuffered) {
+                    Variables variables = submitIt.next();
+                    pending.add(executor.submit(() -> render(runner, variables)));
+                }
+                Variables variables = writeIt.next();
+                byte[] content = pending.poll().get();
+                addZipEntry(zipUtil, runner, variables, content, ++counter, maxEntries);
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Serial run interrupted.", ex);
+        } catch (ExecutionException ex) {
+            log.error("Error while rendering serial template entry: " + ex.getCause().getMessage(), ex.getCause());
+            throw new RuntimeException(ex.getCause());
+        } finally {
+            for (Future<byte[]> future : pending) {
+                future.cancel(true);
+            }
+            if (executor != this.executor) {
+                executor.shutdownNow();
+            }
+        }
+    }
+
+    private byte[] render(WordTemplateRunner runner, Variables variables) {
+        try (WordDocument result = runner.run(variables)) {
+            return result.getAsByteArrayOutputStream().toByteArray();
         }
-        byte[] zipByteArray = zipUtil.closeAndGetByteArray();
-        return zipByteArray;
+    }
+
+    private void addZipEntry(ZipUtils zipUtil, WordTemplateRunner runner, Variables variables, byte[] content,
+                             int counter, int maxEntries) {
+        variables.getVariables().put("counter", Converter.formatNumber(counter, maxEntries));
+        String zipEntryFilename = runner.createFilename(serialData.getFilenamePattern(), variables, false);
+        zipUtil.addZipEntry(zipEntryFilename, content);
+        log.info("Generating serial template entry: " + zipEntryFilename);
+    }
+
+    /**
+     * @return The number of documents rendered concurrently.
+     */
+    public int getParallelism() {
+        return parallelism < 1 ? Runtime.getRuntime().availableProcessors() : parallelism;
+    }
+
+    /**
+     * @param parallelism The number of documents rendered concurrently. 1 (default) renders all documents on the
+     *                    calling thread, values less than 1 use the number of available processors.
+     * @return this for chaining.
+     */
+    public SerialTemplateRunner setParallelism(int parallelism) {
+        this.parallelism = parallelism;
+        return this;
+    }
+
+    /**
+     * @return The maximum number of rendered documents held in memory while waiting to be written to the zip archive
+     * (only used for parallel runs). Default is twice the parallelism.
+     */
+    public int getMaxBufferedDocuments() {
+        return maxBufferedDocuments < 1 ? 2 * getParallelism() : maxBufferedDocuments;
+    }
+
+    /**
+     * @param maxBufferedDocuments The maximum number of rendered documents held in memory.
+     * @return this for chaining.
+     * @see #getMaxBufferedDocuments()
+     */
+    public SerialTemplateRunner setMaxBufferedDocuments(int maxBufferedDocuments) {
+        this.maxBufferedDocuments = maxBufferedDocuments;
+        return this;
+    }
+
+    /**
+     * @param executor The executor for rendering the documents of parallel runs (e. g. a pool shared by all runs of a
+     *                 server), otherwise a pool is created per run. The executor isn't shut down by this runner. The
+     *                 number of documents rendered ahead by this run is still limited by {@link #getMaxBufferedDocuments()}.
+     * @return this for chaining.
+     */
+    public SerialTemplateRunner setExecutor(ExecutorService executor) {
+        this.executor = executor;
+        return this;
     }
 
     public String getZipFilename() {
@@ -156,7 +156,7 @@ public class Template implements Cloneable, FileDescriptorInterface {
             throw new UnsupportedOperationException(this.getClass().getCanonicalName() + " isn't cloneable: " + ex.getMessage(), ex);
         }
         template.fileDescriptor = (FileDescriptor) this.fileDescriptor.clone();
-        template.statistics = (TemplateStatistics) this.statistics.clone();
+        template.statistics = this.statistics.copy(template);
         return template;
     }
 
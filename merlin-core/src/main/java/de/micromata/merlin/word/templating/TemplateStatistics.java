@@ -124,6 +124,16 @@ public class TemplateStatistics implements Cloneable {
         return tos.toString();
     }
 
+    /**
+     * @param parent The copy of the template these statistics belong to.
+     * @return A copy of these statistics for the given template (see {@link Template#clone()}).
+     */
+    TemplateStatistics copy(Template parent) {
+        TemplateStatistics statistics = (TemplateStatistics) clone();
+        statistics.template = parent;
+        return statistics;
+    }
+
     @Override
     public Object clone() {
         try {
@@ -1,12 +1,14 @@
 package de.micromata.merlin.word.templating;
 
 import de.micromata.merlin.word.AbstractConditional;
+import de.micromata.merlin.word.DocumentIndex;
 import de.micromata.merlin.word.WordDocument;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.Set;
 
 /**
@@ -16,13 +18,16 @@ public class WordTemplateChecker {
     private Logger log = LoggerFactory.getLogger(WordTemplateChecker.class);
     private Template template;
     private WordDocument document;
+    private DocumentIndex documentIndex;
 
     public WordTemplateChecker(WordDocument document) {
         this.document = document;
-        Set<String> variables = document.getVariables();
+        // Scan the document only once for variables, conditionals, template id and template definition reference:
+        documentIndex = document.createIndex();
+        Set<String> variables = new HashSet<>(documentIndex.getVariables());
         template = new Template();
         TemplateStatistics statistics = template.getStatistics();
-        statistics.setConditionals(document.getConditionals());
+        statistics.setConditionals(documentIndex.getConditionals());
         if (statistics.getConditionals() != null) {
             for (AbstractConditional conditional : statistics.getConditionals().getConditionalsSet()) {
                 variables.add(conditional.getVariable());
@@ -51,4 +56,13 @@ public class WordTemplateChecker {
     public Template getTemplate() {
         return template;
     }
+
+    /**
+     * The index isn't stored in the template, so it's freed together with this checker after scanning.
+     *
+     * @return The index of the scanned Word document (template id, template definition reference etc.).
+     */
+    public DocumentIndex getDocumentIndex() {
+        return documentIndex;
+    }
 }
@@ -1,13 +1,17 @@
 package de.micromata.merlin.word.templating;
 
 import de.micromata.merlin.utils.ReplaceUtils;
+import de.micromata.merlin.word.CompiledWordTemplate;
 import de.micromata.merlin.word.WordDocument;
+import de.micromata.merlin.word.WordStreamingRenderer;
 import org.apache.commons.io.FilenameUtils;
-import org.apache.commons.io.output.ByteArrayOutputStream;
 import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
+import java.io.OutputStream;
+
 /**
  * Runs a template.
  */
@@ -15,6 +19,8 @@ public class WordTemplateRunner {
     private Logger log = LoggerFactory.getLogger(WordTemplateRunner.class);
     private TemplateDefinition templateDefinition;
     private WordDocument srcDocument;
+    private CompiledWordTemplate compiledTemplate;
+    private WordStreamingRenderer streamingRenderer;
 
     /**
      * @param templateDefinition Bind this Template definition to this Word document. Any template definition read inside the
@@ -35,6 +41,28 @@ public class WordTemplateRunner {
         this.srcDocument = document;
     }
 
+    /**
+     * @param templateDefinition Bind this Template definition to this Word document.
+     * @param compiledTemplate   The already compiled Word template (e. g. from a cache).
+     */
+    public WordTemplateRunner(TemplateDefinition templateDefinition, CompiledWordTemplate compiledTemplate) {
+        this.templateDefinition = templateDefinition;
+        this.compiledTemplate = compiledTemplate;
+    }
+
+    /**
+     * Runs the template without building a POI document. Only {@link #run(Variables, OutputStream)} and the
+     * createFilename methods are supported by runners created with this constructor, all methods needing the compiled
+     * source document throw an {@link IllegalStateException}.
+     *
+     * @param templateDefinition Bind this Template definition to this Word document.
+     * @param streamingRenderer  The streaming renderer of the Word template.
+     */
+    public WordTemplateRunner(TemplateDefinition templateDefinition, WordStreamingRenderer streamingRenderer) {
+        this.templateDefinition = templateDefinition;
+        this.streamingRenderer = streamingRenderer;
+    }
+
     public void setTemplateDefinition(TemplateDefinition templateDefinition) {
         this.templateDefinition = templateDefinition;
     }
@@ -45,7 +73,7 @@ public class WordTemplateRunner {
      * @return Id of the referenced template definition.
      */
     public String scanForTemplateDefinitionReference() {
-        return srcDocument.scanForTemplateDefinitionReference();
+        return getCompiledTemplate().getTemplateDefinitionReference();
     }
 
     /**
@@ -54,20 +82,64 @@ public class WordTemplateRunner {
      * @return Id of this template if given.
      */
     public String scanForTemplateId() {
-        return srcDocument.scanForTemplateId();
+        return getCompiledTemplate().getTemplateId();
     }
 
+    /**
+     * The source document is compiled on the first run, so modifications of the source document after the first run
+     * will be ignored.
+     *
+     * @param variables The variables to use.
+     * @return The new document.
+     * @see CompiledWordTemplate
+     */
     public WordDocument run(Variables variables) {
-        ByteArrayOutputStream bos = srcDocument.getAsByteArrayOutputStream();
-        WordDocument newDocument = new WordDocument(bos.toInputStream(), srcDocument.getFilename());
-        newDocument.setFilename(srcDocument.getFilename());
+        putDependentVariables(variables);
+        return getCompiledTemplate().render(variables);
+    }
+
+    /**
+     * Runs the template and writes the result directly to the given output stream. The streaming renderer is used,
+     * if this runner was created with one, otherwise the compiled source document.
+     *
+     * @param variables The variables to use.
+     * @param out       The output stream to write the docx file to. Will not be closed.
+     */
+    public void run(Variables variables, OutputStream out) {
+        if (streamingRenderer != null) {
+            putDependentVariables(variables);
+            streamingRenderer.render(variables, out);
+            return;
+        }
+        try (WordDocument result = run(variables)) {
+            result.getDocument().write(out);
+        } catch (IOException ex) {
+            log.error("Couldn't write document '" + getCompiledTemplate().getFilename() + "': " + ex.getMessage(), ex);
+            throw new RuntimeException(ex);
+        }
+    }
+
+    private void putDependentVariables(Variables variables) {
         if (templateDefinition != null && templateDefinition.getDependentVariableDefinitions() != null) {
             for (DependentVariableDefinition depVar : templateDefinition.getDependentVariableDefinitions()) {
                 variables.put(depVar.getName(), depVar.getMappedValue(variables));
             }
         }
-        newDocument.process(variables);
-        return newDocument;
+    }
+
+    /**
+     * @return The compiled source document (compiled on first call).
+     * @throws IllegalStateException if this runner was created with a streaming renderer only.
+     */
+    public synchronized CompiledWordTemplate getCompiledTemplate() {
+        if (compiledTemplate == null) {
+            if (srcDocument == null) {
+                throw new IllegalStateException("Runner of template '" + (streamingRenderer != null ? streamingRenderer.getFilename() : null)
+                        + "' has no source document: only run(Variables, OutputStream) is supported.");
+            }
+            compiledTemplate = new CompiledWordTemplate(srcDocument);
+        }
+        return compiledTemplate;
     }
 
     /**
@@ -7,7 +7,6 @@ import org.apache.poi.ss.usermodel.CellType
 import org.slf4j.LoggerFactory
 import java.time.LocalDateTime
 import java.time.format.DateTimeFormatter
-import java.time.format.DateTimeParseException
 
 /**
  * Validates each cell of a column: Each cell must be a valid Excel date format.
@@ -18,8 +17,7 @@ abstract class AbstractExcelColumnDateValidator<T>
                           maximum: T? = null)
     : ExcelColumnValidator() {
 
-    private lateinit var dateTimeFormatters: List<DateTimeFormatter>
-        private set
+    private lateinit var dateParser: ExcelDateParser
     var dateFormats: Array<out String>
         private set
 
@@ -39,11 +37,7 @@ abstract class AbstractExcelColumnDateValidator<T>
     }
 
     private fun initDateFormaters() {
-        val formatters = mutableListOf<DateTimeFormatter>()
-        dateFormats.forEach {
-            formatters.add(DateTimeFormatter.ofPattern(it).withLocale(locale))
-        }
-        this.dateTimeFormatters = formatters
+        this.dateParser = ExcelDateParser(dateFormats, locale)
     }
 
     override fun copyFrom(src: ExcelColumnValidator) {
@@ -58,22 +52,20 @@ abstract class AbstractExcelColumnDateValidator<T>
 
     abstract fun getDate(cell: Cell?): T?
 
+    /**
+     * Parses string cells with the [dateFormats]. The format matched last is tried first (see [ExcelDateParser]).
+     */
     protected fun <T> parse(cell: Cell, parse: (String, DateTimeFormatter) -> T, type: String): T? {
         if (cell.cellType == CellType.STRING) {
             val strVal = PoiHelper.getValueAsString(cell, locale, true)
             if (strVal.isNullOrBlank()) {
                 return null
             }
-            this.dateTimeFormatters.forEachIndexed { index, formatter ->
-                try {
-                    return parse(strVal, formatter)
-                } catch (ex: DateTimeParseException) {
-                    // Date doesn't fit this format.
-                    if (log.isDebugEnabled)
-                        log.debug("Couldn't parse '$strVal' ($type) with pattern '${dateFormats[index]}': ${ex.message}. $formatter, locale=${formatter.locale}")
-                    // println("Couldn't parse '$strVal' ($type) with pattern '${dateFormats[index]}': ${ex.message}. $formatter, locale=${formatter.locale}")
-                }
+            val result = dateParser.parse(strVal, parse)
+            if (result == null && log.isDebugEnabled) {
+                log.debug("Couldn't parse '$strVal' ($type) with any of the patterns ${dateFormats.joinToString { "'$it'" }}.")
             }
+            return result
         }
         return null
     }
@@ -107,6 +99,10 @@ abstract class AbstractExcelColumnDateValidator<T>
         if (isEmpty(cell)) {
             return null // Do not check empty cells. If required, it's done by super.
         }
+        return validateCached(cell!!, rowNumber, this::validateDate)
+    }
+
+    private fun validateDate(cell: Cell, rowNumber: Int): ExcelValidationErrorMessage? {
         val date = getDate(cell)
         if (date == null) {
             return createValidationError(MESSAGE_DATE_EXPECTED, rowNumber, getValueAsString(cell))
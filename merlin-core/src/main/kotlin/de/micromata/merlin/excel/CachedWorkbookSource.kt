@@ -0,0 +1,151 @@
+package de.micromata.merlin.excel
+
+import org.apache.poi.ss.usermodel.Row
+import org.apache.poi.ss.usermodel.Sheet
+import org.apache.poi.ss.usermodel.Workbook
+import org.apache.poi.xssf.usermodel.XSSFCell
+import org.openxmlformats.schemas.spreadsheetml.x2006.main.STCellType
+import java.io.File
+import java.io.IOException
+import java.nio.ByteBuffer
+import java.nio.channels.FileChannel
+import java.nio.charset.StandardCharsets
+import java.nio.file.StandardOpenOption
+import java.util.concurrent.atomic.AtomicReferenceArray
+
+/**
+ * Reads the sheets of a cache file of [ExcelWorkbookCache] (written by [CachedWorkbookWriter]) via memory-mapped I/O.
+ * The shared strings are decoded on first usage.
+ *
+ * As for [ExcelStreamingSource], each read row is materialized as a POI row in a given target sheet, data formats are
+ * set as cell styles (needed e. g. for detecting date cells) and strings are stored inline. Different sheets may be
+ * read concurrently.
+ *
+ * @throws IOException if the file isn't a valid cache file (of the current version).
+ */
+internal class CachedWorkbookSource(private val file: File) : ExcelRowSource {
+    private val buffer: ByteBuffer
+    private val stringOffsets: IntArray
+    // Decoded lazily, shared by concurrently read sheets.
+    private val strings: AtomicReferenceArray<String?>
+    private val sheetOffsets = LinkedHashMap<String, Int>()
+    // Key is the index of the format string, value the index of the created style in the target workbook.
+    private val cellStyleMap = mutableMapOf<Int, Short>()
+    private var cellStyleWorkbook: Workbook? = null
+
+    init {
+        buffer = FileChannel.open(file.toPath(), StandardOpenOption.READ).use {
+            if (it.size() > Int.MAX_VALUE) {
+                throw IOException("Cache file '${file.absolutePath}' is too large.")
+            }
+            it.map(FileChannel.MapMode.READ_ONLY, 0, it.size())
+        }
+        if (buffer.limit() < CachedWorkbookWriter.HEADER_SIZE || buffer.getInt(0) != CachedWorkbookWriter.MAGIC
+                || buffer.getInt(4) != CachedWorkbookWriter.VERSION) {
+            throw IOException("File '${file.absolutePath}' isn't a cache file of version ${CachedWorkbookWriter.VERSION}.")
+        }
+        val indexOffset = buffer.getLong(8)
+        if (indexOffset < CachedWorkbookWriter.HEADER_SIZE || indexOffset >= buffer.limit()) {
+            throw IOException("Cache file '${file.absolutePath}' is incomplete.")
+        }
+        val index = buffer.duplicate()
+        index.position(indexOffset.toInt())
+        val stringCount = index.int
+        stringOffsets = IntArray(stringCount)
+        for (i in 0 until stringCount) {
+            stringOffsets[i] = index.position()
+            index.position(index.position() + 4 + index.getInt(index.position()))
+        }
+        strings = AtomicReferenceArray(stringCount)
+        val sheetCount = index.int
+        for (i in 0 until sheetCount) {
+            val name = readString(index)
+            sheetOffsets[name] = index.long.toInt()
+        }
+    }
+
+    override val sheetNames: Collection<String>
+        get() = sheetOffsets.keys
+
+    override fun readRows(sheetName: String, target: Sheet, skipRows: Int, rowHandler: (row: Row, rowNumber: Int) -> Boolean) {
+        val offset = sheetOffsets[sheetName] ?: throw IllegalArgumentException("Sheet '$sheetName' not found.")
+        val buf = buffer.duplicate()
+        buf.position(offset)
+        while (true) {
+            val rowNumber = buf.int
+            if (rowNumber < 0) {
+                break
+            }
+            val cellCount = buf.short.toInt()
+            val row = if (rowNumber > skipRows) target.createRow(rowNumber) else null
+            for (i in 0 until cellCount) {
+                val column = buf.short.toInt()
+                val type = buf.get().toInt()
+                val cell = row?.createCell(column) as XSSFCell?
+                when (type) {
+                    CachedWorkbookWriter.TYPE_STRING -> {
+                        val str = getString(buf.int)
+                        cell?.let {
+                            // Inline strings aren't added to the shared strings table of the target workbook:
+                            it.ctCell.t = STCellType.INLINE_STR
+                            it.setCellValue(str)
+                        }
+                    }
+                    CachedWorkbookWriter.TYPE_NUMERIC -> {
+                        val format = buf.int
+                        val value = buf.double
+                        cell?.let {
+                            if (format >= 0) {
+                                // Set the index directly: XSSFCell.setCellStyle modifies the styles table of the target workbook.
+                                it.ctCell.s = getCellStyleIndex(target.workbook, format).toLong()
+                            }
+                            it.setCellValue(value)
+                        }
+                    }
+                    CachedWorkbookWriter.TYPE_BOOLEAN -> {
+                        val value = buf.get().toInt() != 0
+                        cell?.setCellValue(value)
+                    }
+                    CachedWorkbookWriter.TYPE_ERROR -> {
+                        val value = buf.get()
+                        cell?.setCellErrorValue(value)
+                    }
+                    else -> throw IllegalStateException("Unknown cell type $type in cache file '${file.absolutePath}'.")
+                }
+            }
+            if (row != null && !rowHandler(row, rowNumber)) {
+                target.removeRow(row)
+            }
+        }
+    }
+
+    override fun close() {
+        // Nothing to close: the file channel is closed after mapping, the mapping is released by the garbage collector.
+    }
+
+    private fun getString(index: Int): String {
+        strings.get(index)?.let { return it }
+        val str = readString(buffer.duplicate().also { it.position(stringOffsets[index]) })
+        // Concurrent decoding of the same string is harmless, the first stored instance wins.
+        return if (strings.compareAndSet(index, null, str)) str else strings.get(index)!!
+    }
+
+    @Synchronized
+    private fun getCellStyleIndex(workbook: Workbook, formatIndex: Int): Short {
+        if (cellStyleWorkbook !== workbook) {
+            cellStyleMap.clear()
+            cellStyleWorkbook = workbook
+        }
+        return cellStyleMap.getOrPut(formatIndex) {
+            val cellStyle = workbook.createCellStyle()
+            cellStyle.dataFormat = workbook.creationHelper.createDataFormat().getFormat(getString(formatIndex))
+            cellStyle.index
+        }
+    }
+
+    private fun readString(buf: ByteBuffer): String {
+        val bytes = ByteArray(buf.int)
+        buf.get(bytes)
+        return String(bytes, StandardCharsets.UTF_8)
+    }
+}
@@ -0,0 +1,151 @@
+package de.micromata.merlin.excel
+
+import org.apache.poi.ss.usermodel.BuiltinFormats
+import org.apache.poi.ss.usermodel.Cell
+import org.apache.poi.ss.usermodel.CellType
+import org.apache.poi.ss.usermodel.Row
+import java.io.*
+import java.nio.charset.StandardCharsets
+
+/**
+ * Writes the cell values of a workbook in the binary format of [ExcelWorkbookCache] (read by [CachedWorkbookSource]).
+ *
+ * Layout (big endian):
+ * - Header: magic (int), version (int), offset of the index (long).
+ * - Sheets one after another: rows (row number (int), number of cells (short), cells), terminated by row number -1.
+ *   Cells: column (short), type (byte) and the value: index of the shared string (int), data format (index of the
+ *   shared string or -1 for General) and value (double), boolean (byte) or error code (byte). Blank cells are skipped.
+ * - Index: shared strings (count (int), each as length (int) and UTF-8 bytes), sheets (count (int), each as name
+ *   (length and UTF-8 bytes) and offset of the sheet data (long)).
+ */
+internal class CachedWorkbookWriter(private val file: File) : Closeable {
+    private val out = DataOutputStream(BufferedOutputStream(FileOutputStream(file), 1 shl 16))
+    // Distinct strings and data formats, held in memory until written by finish.
+    private val strings = LinkedHashMap<String, Int>()
+    private val sheets = LinkedHashMap<String, Long>()
+    private var position = 0L
+    private var sheetOpen = false
+
+    init {
+        out.writeInt(MAGIC)
+        out.writeInt(VERSION)
+        out.writeLong(0) // Offset of the index, written by finish.
+        position = HEADER_SIZE.toLong()
+    }
+
+    fun beginSheet(sheetName: String) {
+        endSheet()
+        sheets[sheetName] = position
+        sheetOpen = true
+    }
+
+    fun writeRow(row: Row, rowNumber: Int = row.rowNum) {
+        val cells = row.filter { getCellType(it) != CellType.BLANK && getCellType(it) != CellType._NONE }
+        if (cells.isEmpty()) {
+            return
+        }
+        writeInt(rowNumber)
+        writeShort(cells.size)
+        for (cell in cells) {
+            writeShort(cell.columnIndex)
+            when (getCellType(cell)) {
+                CellType.STRING -> {
+                    writeByte(TYPE_STRING)
+                    writeInt(getStringIndex(cell.stringCellValue))
+                }
+                CellType.NUMERIC -> {
+                    writeByte(TYPE_NUMERIC)
+                    val format = cell.cellStyle?.dataFormatString
+                    writeInt(if (format == null || format == GENERAL_FORMAT) -1 else getStringIndex(format))
+                    out.writeDouble(cell.numericCellValue)
+                    position += 8
+                }
+                CellType.BOOLEAN -> {
+                    writeByte(TYPE_BOOLEAN)
+                    writeByte(if (cell.booleanCellValue) 1 else 0)
+                }
+                else -> {
+                    writeByte(TYPE_ERROR)
+                    writeByte(cell.errorCellValue.toInt())
+                }
+            }
+        }
+    }
+
+    /**
+     * Writes the index and closes the file.
+     */
+    fun finish() {
+        endSheet()
+        val indexOffset = position
+        out.writeInt(strings.size)
+        strings.keys.forEach { writeString(it) }
+        out.writeInt(sheets.size)
+        sheets.forEach { (name, offset) ->
+            writeString(name)
+            out.writeLong(offset)
+        }
+        out.close()
+        if (indexOffset > Int.MAX_VALUE) {
+            throw IOException("Cache file '${file.absolutePath}' exceeds the maximum size of memory mapped files.")
+        }
+        RandomAccessFile(file, "rw").use {
+            it.seek(8)
+            it.writeLong(indexOffset)
+        }
+    }
+
+    override fun close() {
+        out.close()
+    }
+
+    private fun endSheet() {
+        if (sheetOpen) {
+            writeInt(-1)
+            sheetOpen = false
+        }
+    }
+
+    private fun getStringIndex(str: String): Int {
+        return strings.getOrPut(str) { strings.size }
+    }
+
+    private fun writeString(str: String) {
+        val bytes = str.toByteArray(StandardCharsets.UTF_8)
+        out.writeInt(bytes.size)
+        out.write(bytes)
+    }
+
+    private fun writeInt(value: Int) {
+        out.writeInt(value)
+        position += 4
+    }
+
+    private fun writeShort(value: Int) {
+        out.writeShort(value)
+        position += 2
+    }
+
+    private fun writeByte(value: Int) {
+        out.writeByte(value)
+        position += 1
+    }
+
+    companion object {
+        const val MAGIC = 0x4D574331 // MWC1
+        const val VERSION = 1
+        const val HEADER_SIZE = 16
+        const val TYPE_STRING = 1
+        const val TYPE_NUMERIC = 2
+        const val TYPE_BOOLEAN = 3
+        const val TYPE_ERROR = 4
+        private val GENERAL_FORMAT = BuiltinFormats.getBuiltinFormat(0)
+
+        /**
+         * The cached result type for formulas.
+         */
+        private fun getCellType(cell: Cell): CellType {
+            return if (cell.cellType == CellType.FORMULA) cell.cachedFormulaResultType else cell.cellType
+        }
+    }
+}
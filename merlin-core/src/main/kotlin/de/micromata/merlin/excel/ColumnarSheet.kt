@@ -0,0 +1,464 @@
+package de.micromata.merlin.excel
+
+import org.apache.poi.ss.usermodel.Cell
+import org.apache.poi.ss.usermodel.CellType
+import org.apache.poi.ss.usermodel.DateUtil
+import java.text.NumberFormat
+import java.time.LocalDateTime
+import java.time.ZoneOffset
+import java.util.*
+
+/**
+ * Immutable column oriented snapshot of the data rows of an [ExcelSheet]. Only the registered and found columns
+ * (see [ExcelSheet.registerColumn]) are copied. Numbers are stored as `double[]`, dates as `long[]` (epoch millis, UTC),
+ * strings dictionary encoded as `int[]` and empty cells as bitmaps.
+ *
+ * Use this for reading the same sheet many times: no POI objects are held and no values are boxed while scanning
+ * (the filter functions are inline, so the predicates aren't called through boxing function objects).
+ *
+ * The type of a column is detected by its cells: If a column contains values of different types, it's stored as
+ * string column (numbers formatted as done by [PoiHelper.getValueAsString], dates as ISO strings).
+ */
+class ColumnarSheet private constructor(
+        val sheetName: String,
+        private val rowNumbers: IntArray,
+        columnList: List<Column>) {
+
+    enum class ColumnType { NUMBER, DATE, STRING, BOOLEAN, EMPTY }
+
+    private val columns = LinkedHashMap<String, Column>()
+
+    init {
+        columnList.forEach { columns[it.name] = it }
+    }
+
+    /**
+     * Number of data rows.
+     */
+    val rowCount: Int
+        get() = rowNumbers.size
+
+    val columnNames: List<String>
+        get() = columns.keys.toList()
+
+    /**
+     * @param row The index of the row in this snapshot (0-based).
+     * @return The row number in the Excel sheet (0-based).
+     */
+    fun getRowNumber(row: Int): Int {
+        return rowNumbers[row]
+    }
+
+    fun getColumn(columnHeadname: String): Column? {
+        return columns[columnHeadname]
+    }
+
+    fun getNumberColumn(columnHeadname: String): NumberColumn {
+        return getColumn(columnHeadname, NumberColumn::class.java)
+    }
+
+    fun getDateColumn(columnHeadname: String): DateColumn {
+        return getColumn(columnHeadname, DateColumn::class.java)
+    }
+
+    fun getStringColumn(columnHeadname: String): StringColumn {
+        return getColumn(columnHeadname, StringColumn::class.java)
+    }
+
+    fun getBooleanColumn(columnHeadname: String): BooleanColumn {
+        return getColumn(columnHeadname, BooleanColumn::class.java)
+    }
+
+    private fun <T : Column> getColumn(columnHeadname: String, clazz: Class<T>): T {
+        val column = columns[columnHeadname] ?: throw IllegalArgumentException("Column '$columnHeadname' not found.")
+        require(clazz.isInstance(column)) { "Column '$columnHeadname' is of type ${column.type}." }
+        return clazz.cast(column)
+    }
+
+    /**
+     * @return The indexes of all rows matching the given predicate (in ascending order).
+     */
+    inline fun filter(predicate: (row: Int) -> Boolean): IntArray {
+        return filter(null, predicate)
+    }
+
+    /**
+     * @param rows The row indexes to filter or null for all rows.
+     * @return The indexes of all given rows matching the given predicate (in given order).
+     */
+    inline fun filter(rows: IntArray?, predicate: (row: Int) -> Boolean): IntArray {
+        val result = IntArray(rows?.size ?: rowCount)
+        var size = 0
+        val count = rows?.size ?: rowCount
+        for (i in 0 until count) {
+            val row = rows?.get(i) ?: i
+            if (predicate(row)) {
+                result[size++] = row
+            }
+        }
+        return result.copyOf(size)
+    }
+
+    /**
+     * Groups the rows by the values of the given string column. Rows with empty cells are grouped under the key null.
+     *
+     * @param rows The row indexes to group or null for all rows.
+     * @return The row indexes per value in the order of the first occurrence of the values.
+     */
+    @JvmOverloads
+    fun groupBy(columnHeadname: String, rows: IntArray? = null): Map<String?, IntArray> {
+        val column = getStringColumn(columnHeadname)
+        val count = rows?.size ?: rowCount
+        // Code -1 (empty cell) is stored at index 0.
+        val groupSizes = IntArray(column.dictionarySize + 1)
+        for (i in 0 until count) {
+            groupSizes[column.getCode(rows?.get(i) ?: i) + 1]++
+        }
+        val groups = Array(groupSizes.size) { IntArray(groupSizes[it]) }
+        val positions = IntArray(groupSizes.size)
+        val result = LinkedHashMap<String?, IntArray>()
+        for (i in 0 until count) {
+            val row = rows?.get(i) ?: i
+            val idx = column.getCode(row) + 1
+            if (positions[idx] == 0) {
+                result[column.getString(row)] = groups[idx]
+            }
+            groups[idx][positions[idx]++] = row
+        }
+        return result
+    }
+
+    /**
+     * Groups the rows by the given string column and sums up the values of the given number column per group.
+     * Empty cells of the number column are ignored.
+     */
+    fun sumBy(keyColumnHeadname: String, numberColumnHeadname: String): Map<String?, Double> {
+        val numberColumn = getNumberColumn(numberColumnHeadname)
+        return groupBy(keyColumnHeadname).mapValues { numberColumn.sum(it.value) }
+    }
+
+    /**
+     * Base class of all columns. A row is addressed by its index in the snapshot (0-based).
+     */
+    abstract class Column internal constructor(val name: String, val type: ColumnType, protected val nulls: BitSet, val size: Int) {
+        fun isNull(row: Int): Boolean {
+            return nulls.get(row)
+        }
+
+        /**
+         * Number of empty cells.
+         */
+        val nullCount: Int
+            get() = nulls.cardinality()
+
+        /**
+         * @return The boxed value (Double, LocalDateTime, String or Boolean) or null for empty cells.
+         */
+        abstract fun getValue(row: Int): Any?
+    }
+
+    class NumberColumn internal constructor(name: String, nulls: BitSet, @PublishedApi internal val values: DoubleArray)
+        : Column(name, ColumnType.NUMBER, nulls, values.size) {
+        /**
+         * @return The value of the given row or 0.0 for empty cells (see [isNull]).
+         */
+        fun getDouble(row: Int): Double {
+            return values[row]
+        }
+
+        override fun getValue(row: Int): Any? {
+            return if (isNull(row)) null else values[row]
+        }
+
+        /**
+         * @param rows The row indexes to sum up or null for all rows.
+         */
+        @JvmOverloads
+        fun sum(rows: IntArray? = null): Double {
+            var sum = 0.0
+            if (rows == null) {
+                values.forEach { sum += it } // Empty cells are stored as 0.0.
+            } else {
+                rows.forEach { sum += values[it] }
+            }
+            return sum
+        }
+
+        /**
+         * @return The indexes of all non empty rows with values matching the given predicate.
+         */
+        inline fun filter(predicate: (value: Double) -> Boolean): IntArray {
+            val result = IntArray(size)
+            var count = 0
+            for (row in 0 until size) {
+                if (!isNull(row) && predicate(values[row])) {
+                    result[count++] = row
+                }
+            }
+            return result.copyOf(count)
+        }
+    }
+
+    class DateColumn internal constructor(name: String, nulls: BitSet, private val values: LongArray)
+        : Column(name, ColumnType.DATE, nulls, values.size) {
+        /**
+         * @return The date of the given row as epoch millis (UTC) or 0 for empty cells (see [isNull]).
+         */
+        fun getEpochMillis(row: Int): Long {
+            return values[row]
+        }
+
+        fun getDate(row: Int): LocalDateTime? {
+            return if (isNull(row)) null else toLocalDateTime(values[row])
+        }
+
+        override fun getValue(row: Int): Any? {
+            return getDate(row)
+        }
+
+        /**
+         * @param from Inclusive lower bound or null.
+         * @param to Exclusive upper bound or null.
+         * @return The indexes of all non empty rows with dates in the given range.
+         */
+        fun filterRange(from: LocalDateTime?, to: LocalDateTime?): IntArray {
+            val fromMillis = if (from != null) toEpochMillis(from) else Long.MIN_VALUE
+            val toMillis = if (to != null) toEpochMillis(to) else Long.MAX_VALUE
+            val result = IntArray(size)
+            var count = 0
+            for (row in 0 until size) {
+                if (!nulls.get(row) && values[row] >= fromMillis && values[row] < toMillis) {
+                    result[count++] = row
+                }
+            }
+            return result.copyOf(count)
+        }
+    }
+
+    class StringColumn internal constructor(name: String, nulls: BitSet, private val codes: IntArray,
+                                            private val dictionary: Array<String>)
+        : Column(name, ColumnType.STRING, nulls, codes.size) {
+        private val codeMap = HashMap<String, Int>(dictionary.size * 2).also { map ->
+            dictionary.forEachIndexed { idx, value -> map[value] = idx }
+        }
+
+        /**
+         * Number of distinct values.
+         */
+        val dictionarySize: Int
+            get() = dictionary.size
+
+        /**
+         * @return The index of the value of the given row in the dictionary or -1 for empty cells.
+         */
+        fun getCode(row: Int): Int {
+            return codes[row]
+        }
+
+        fun getString(row: Int): String? {
+            val code = codes[row]
+            return if (code < 0) null else dictionary[code]
+        }
+
+        override fun getValue(row: Int): Any? {
+            return getString(row)
+        }
+
+        /**
+         * @return All distinct values in the order of their first occurrence.
+         */
+        val distinctValues: List<String>
+            get() = dictionary.asList()
+
+        /**
+         * @return The indexes of all rows with the given value (compared by dictionary code).
+         */
+        fun filterEquals(value: String?): IntArray {
+            val code = if (value == null) -1 else codeMap[value] ?: return IntArray(0)
+            val result = IntArray(size)
+            var count = 0
+            for (row in 0 until size) {
+                if (codes[row] == code) {
+                    result[count++] = row
+                }
+            }
+            return result.copyOf(count)
+        }
+    }
+
+    class BooleanColumn internal constructor(name: String, nulls: BitSet, private val values: BitSet, size: Int)
+        : Column(name, ColumnType.BOOLEAN, nulls, size) {
+        /**
+         * @return The value of the given row or false for empty cells (see [isNull]).
+         */
+        fun getBoolean(row: Int): Boolean {
+            return values.get(row)
+        }
+
+        override fun getValue(row: Int): Any? {
+            return if (isNull(row)) null else values.get(row)
+        }
+    }
+
+    /**
+     * Column of empty cells only.
+     */
+    class EmptyColumn internal constructor(name: String, size: Int)
+        : Column(name, ColumnType.EMPTY, BitSet(size).also { it.set(0, size) }, size) {
+        override fun getValue(row: Int): Any? {
+            return null
+        }
+    }
+
+    /**
+     * Collects the values of one column and detects the type of the column.
+     */
+    private class ColumnBuilder(val name: String, val locale: Locale) {
+        var type = ColumnType.EMPTY
+        val nulls = BitSet()
+        var size = 0
+        var numbers = DoubleArray(1024)
+        var longs = LongArray(0)
+        var codes = IntArray(0)
+        val dictionary = mutableListOf<String>()
+        val codeMap = HashMap<String, Int>()
+        val booleans = BitSet()
+
+        fun add(cell: Cell?) {
+            val row = size++
+            if (cell == null || PoiHelper.isEmpty(cell)) {
+                nulls.set(row)
+                return
+            }
+            val cellType = when (cell.cellType) {
+                CellType.NUMERIC -> if (DateUtil.isCellDateFormatted(cell)) ColumnType.DATE else ColumnType.NUMBER
+                CellType.BOOLEAN -> ColumnType.BOOLEAN
+                else -> ColumnType.STRING
+            }
+            if (type == ColumnType.EMPTY) {
+                init(cellType)
+            } else if (type != cellType && type != ColumnType.STRING) {
+                convertToStrings()
+            }
+            ensureCapacity(row)
+            when (type) {
+                ColumnType.NUMBER -> numbers[row] = cell.numericCellValue
+                ColumnType.DATE -> longs[row] = toEpochMillis(cell.localDateTimeCellValue)
+                ColumnType.BOOLEAN -> if (cell.booleanCellValue) booleans.set(row)
+                else -> codes[row] = encode(if (cellType == ColumnType.DATE) cell.localDateTimeCellValue.toString()
+                else PoiHelper.getValueAsString(cell, locale)!!)
+            }
+        }
+
+        fun build(): Column {
+            return when (type) {
+                ColumnType.NUMBER -> NumberColumn(name, nulls, numbers.copyOf(size))
+                ColumnType.DATE -> DateColumn(name, nulls, longs.copyOf(size))
+                ColumnType.STRING -> StringColumn(name, nulls, codes.copyOf(size), dictionary.toTypedArray())
+                ColumnType.BOOLEAN -> BooleanColumn(name, nulls, booleans, size)
+                ColumnType.EMPTY -> EmptyColumn(name, size)
+            }
+        }
+
+        private fun init(cellType: ColumnType) {
+            type = cellType
+            val capacity = Math.max(numbers.size, size)
+            when (type) {
+                ColumnType.DATE -> longs = LongArray(capacity)
+                ColumnType.STRING -> codes = IntArray(capacity) { -1 }
+                else -> {
+                }
+            }
+            if (type != ColumnType.NUMBER) {
+                numbers = DoubleArray(0)
+            }
+        }
+
+        /**
+         * Values of different types found: the column will be stored as string column.
+         */
+        private fun convertToStrings() {
+            val current = size - 1 // The current row isn't added yet.
+            val newCodes = IntArray(Math.max(current + 1, 1024)) { -1 }
+            for (row in 0 until current) {
+                if (nulls.get(row)) {
+                    continue
+                }
+                newCodes[row] = encode(when (type) {
+                    ColumnType.NUMBER -> NumberFormat.getInstance(locale).format(numbers[row])
+                    ColumnType.DATE -> toLocalDateTime(longs[row]).toString()
+                    else -> booleans.get(row).toString()
+                })
+            }
+            type = ColumnType.STRING
+            codes = newCodes
+            numbers = DoubleArray(0)
+            longs = LongArray(0)
+            booleans.clear()
+        }
+
+        private fun ensureCapacity(row: Int) {
+            when (type) {
+                ColumnType.NUMBER -> if (row >= numbers.size) numbers = numbers.copyOf(newCapacity(numbers.size, row))
+                ColumnType.DATE -> if (row >= longs.size) longs = longs.copyOf(newCapacity(longs.size, row))
+                ColumnType.STRING -> if (row >= codes.size) {
+                    val oldSize = codes.size
+                    codes = codes.copyOf(newCapacity(oldSize, row))
+                    codes.fill(-1, oldSize)
+                }
+                else -> {
+                }
+            }
+        }
+
+        /**
+         * Rows may be far beyond the current capacity (e. g. after many leading empty cells).
+         */
+        private fun newCapacity(oldSize: Int, row: Int): Int {
+            return Math.max(Math.max(oldSize * 2, row + 1), 1024)
+        }
+
+        private fun encode(value: String): Int {
+            return codeMap.getOrPut(value) {
+                dictionary.add(value)
+                dictionary.size - 1
+            }
+        }
+    }
+
+    companion object {
+        /**
+         * Creates a snapshot of all registered and found columns of the given sheet. The sheet will not be modified.
+         * Not supported in streaming read mode (see [ExcelWorkbook.isStreamingRead]), because the rows aren't held
+         * in memory.
+         */
+        @JvmStatic
+        fun create(sheet: ExcelSheet): ColumnarSheet {
+            check(!sheet.excelWorkbook.isStreamingRead) { "Columnar snapshots aren't supported in streaming read mode." }
+            sheet.headRow // Finds the columns.
+            val columnDefs = sheet.columnDefinitions.filter { it.found() }
+            val builders = columnDefs.map { ColumnBuilder(it.columnHeadname ?: it.columnNumberAsLetters, sheet.locale) }
+            var rowNumbers = IntArray(1024)
+            var rowCount = 0
+            val it = sheet.dataRowIterator
+            while (it.hasNext()) {
+                val row = it.next()
+                if (rowCount >= rowNumbers.size) {
+                    rowNumbers = rowNumbers.copyOf(rowNumbers.size * 2)
+                }
+                rowNumbers[rowCount++] = row.rowNum
+                columnDefs.forEachIndexed { idx, columnDef -> builders[idx].add(row.getCell(columnDef.columnNumber)) }
+            }
+            return ColumnarSheet(sheet.sheetName, rowNumbers.copyOf(rowCount), builders.map { it.build() })
+        }
+
+        private fun toEpochMillis(dateTime: LocalDateTime): Long {
+            return dateTime.toInstant(ZoneOffset.UTC).toEpochMilli()
+        }
+
+        private fun toLocalDateTime(epochMillis: Long): LocalDateTime {
+            return LocalDateTime.ofEpochSecond(Math.floorDiv(epochMillis, 1000L),
+                    (Math.floorMod(epochMillis, 1000L) * 1_000_000).toInt(), ZoneOffset.UTC)
+        }
+    }
+}
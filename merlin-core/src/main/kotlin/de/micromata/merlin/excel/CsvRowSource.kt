@@ -0,0 +1,70 @@
+package de.micromata.merlin.excel
+
+import de.micromata.merlin.csv.CSVReader
+import org.apache.poi.ss.SpreadsheetVersion
+import org.apache.poi.ss.usermodel.Row
+import org.apache.poi.ss.usermodel.Sheet
+import org.apache.poi.xssf.usermodel.XSSFCell
+import org.openxmlformats.schemas.spreadsheetml.x2006.main.STCellType
+import org.slf4j.LoggerFactory
+import java.io.File
+import java.io.FileInputStream
+import java.io.IOException
+import java.io.InputStreamReader
+import java.nio.charset.Charset
+
+/**
+ * Reads a csv file as a single sheet row by row via [CSVReader] (see [ExcelWorkbook.createForCsvRead]).
+ *
+ * All cells are materialized as string cells (empty cells aren't created), the number of a row is the line number of
+ * the csv row minus 1 (rows start with 0 as in Excel). So use [ExcelColumnNumberValidator.isTryToConvertStringToNumber]
+ * for validating number columns.
+ */
+internal class CsvRowSource(private val file: File,
+                            private val charset: Charset,
+                            private val csvSeparatorChar: Char,
+                            sheetName: String) : ExcelRowSource {
+    override val sheetNames: Collection<String> = listOf(sheetName)
+
+    override fun readRows(sheetName: String, target: Sheet, skipRows: Int, rowHandler: (row: Row, rowNumber: Int) -> Boolean) {
+        require(sheetNames.contains(sheetName)) { "Sheet '$sheetName' not found." }
+        try {
+            CSVReader(InputStreamReader(FileInputStream(file), charset)).use { reader ->
+                reader.setCsvSeparatorChar(csvSeparatorChar)
+                while (true) {
+                    val csvRow = reader.next() ?: break
+                    val rowNumber = csvRow.lineNumber - 1
+                    if (rowNumber <= skipRows) {
+                        continue
+                    }
+                    // Rows are removed after handling, so rows beyond the limit of xlsx are materialized in the last row:
+                    val row = target.createRow(Math.min(rowNumber, MAX_ROW_INDEX))
+                    for (col in 0 until csvRow.size()) {
+                        if (csvRow.isEmpty(col)) {
+                            continue
+                        }
+                        val cell = row.createCell(col) as XSSFCell
+                        // Inline strings aren't added to the shared strings table of the target workbook:
+                        cell.ctCell.t = STCellType.INLINE_STR
+                        cell.setCellValue(csvRow.getString(col))
+                    }
+                    if (!rowHandler(row, rowNumber)) {
+                        target.removeRow(row)
+                    }
+                }
+            }
+        } catch (ex: IOException) {
+            log.error("Error while reading csv file '${file.absolutePath}': ${ex.message}", ex)
+            throw RuntimeException(ex)
+        }
+    }
+
+    override fun close() {
+        // Nothing to close: the file is opened by every call of readRows.
+    }
+
+    companion object {
+        private val log = LoggerFactory.getLogger(CsvRowSource::class.java)
+        private val MAX_ROW_INDEX = SpreadsheetVersion.EXCEL2007.lastRowIndex
+    }
+}
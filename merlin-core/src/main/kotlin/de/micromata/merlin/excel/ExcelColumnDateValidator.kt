@@ -22,9 +22,9 @@ class ExcelColumnDateValidator
     override fun getDate(cell: Cell?): LocalDate? {
         if (cell == null)
             return null
-        val date = getLocalDateTimeCellValue(cell)
-        if (date != null)
-            return date.toLocalDate()
+        val epochDay = PoiHelper.getEpochDay(cell)
+        if (epochDay != PoiHelper.NO_EPOCH_DAY)
+            return LocalDate.ofEpochDay(epochDay)
         return parse(cell, LocalDate::parse, "date")
     }
 
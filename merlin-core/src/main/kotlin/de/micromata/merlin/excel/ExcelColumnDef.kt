@@ -56,6 +56,27 @@ constructor(val sheet: ExcelSheet,
 
     private var columnListeners: MutableList<ExcelColumnListener>? = null
 
+    /**
+     * Maximum number of distinct cell values per validator to cache the validation results for (0, if disabled).
+     * @see enableValidationCache
+     */
+    var validationCacheSize = 0
+        private set
+
+    /**
+     * Caches the validation results of the validators of this column by cell value, so every distinct value is validated
+     * only once. Recommended for columns with a few repeating values (e. g. countries or status).
+     *
+     * @param maxSize Maximum number of cached values per validator.
+     * @return this for chaining.
+     * @see ExcelColumnValidator.validationCache
+     */
+    @JvmOverloads
+    fun enableValidationCache(maxSize: Int = 1000): ExcelColumnDef {
+        validationCacheSize = maxSize
+        return this
+    }
+
     @Suppress("UNCHECKED_CAST")
     val columnValidators: List<ExcelColumnValidator>?
         get() = columnListeners?.filter { it is ExcelColumnValidator } as? List<ExcelColumnValidator>
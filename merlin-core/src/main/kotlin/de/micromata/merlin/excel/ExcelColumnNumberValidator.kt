@@ -55,14 +55,15 @@ class ExcelColumnNumberValidator @JvmOverloads constructor(
         if (PoiHelper.isEmpty(cell)) {
             return null // Do not check empty cells. If required, it's done by super.
         }
-        // cell is not null:
-        var doubleValue: Double? = null
-        if (cell!!.cellType == CellType.NUMERIC) {
-            doubleValue = cell.numericCellValue
-        } else if (isTryToConvertStringToNumber && cell.cellType == CellType.STRING) {
-            doubleValue = Converter.createDouble(cell.stringCellValue)
+        return validateCached(cell!!, rowNumber, this::validateNumber)
+    }
+
+    private fun validateNumber(cell: Cell, rowNumber: Int): ExcelValidationErrorMessage? {
+        var doubleValue = PoiHelper.getDouble(cell)
+        if (doubleValue.isNaN() && isTryToConvertStringToNumber && cell.cellType == CellType.STRING) {
+            doubleValue = Converter.createDouble(cell.stringCellValue) ?: Double.NaN
         }
-        if (doubleValue == null) {
+        if (doubleValue.isNaN()) {
             return createValidationError(MESSAGE_NUMBER_EXPECTED, rowNumber, PoiHelper.getValueAsString(cell))
         }
         if (minimum != null && ConditionalComparator.greaterThan(minimum!!, doubleValue)) {
@@ -6,6 +6,8 @@ import de.micromata.merlin.excel.PoiHelper.getValueAsString
 import de.micromata.merlin.excel.PoiHelper.isEmpty
 import org.apache.poi.ss.usermodel.Cell
 import org.slf4j.LoggerFactory
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.atomic.AtomicInteger
 
 open class ExcelColumnValidator
 @JvmOverloads constructor(required: Boolean = false,
@@ -17,16 +19,87 @@ open class ExcelColumnValidator
         private set
 
     // Used for unique constraint.
-    private var cellValueMap = mutableMapOf<String, Int>()
-    //val validationErrorMap = mutableMapOf<Int, MutableSet<ExcelValidationErrorMessage>>()
-    val validationErrors = mutableSetOf<ExcelValidationErrorMessage>()
+    private var uniqueIndex: ExcelUniqueIndex = HashMapUniqueIndex()
+    // If true, the unique index was set by setUniqueIndex and is shared with clones.
+    private var sharedUniqueIndex = false
+    // Identifies the values of this validator in (shared) unique indexes.
+    private val validatorId = validatorIdCounter.incrementAndGet()
+    // Sheet names by validator id of all validators sharing the unique index (for referencing first occurrences).
+    private var uniqueIndexSheetNames: MutableMap<Int, String> = ConcurrentHashMap()
+
+    /**
+     * The validation errors of this column indexed by row. Cleared by [ExcelSheet.analyze] with validate=true.
+     */
+    val errorStore = ExcelValidationErrorStore()
+
+    /**
+     * Unmodifiable view of all stored validation errors ordered by row (backed by [errorStore], nothing is copied).
+     */
+    val storedValidationErrors: Set<ExcelValidationErrorMessage> = object : AbstractSet<ExcelValidationErrorMessage>() {
+        override val size: Int
+            get() = errorStore.size
+
+        override fun contains(element: ExcelValidationErrorMessage): Boolean {
+            return errorStore.getErrors(element.row).contains(element)
+        }
+
+        override fun iterator(): Iterator<ExcelValidationErrorMessage> {
+            return errorStore.asSequence().iterator()
+        }
+    }
+
+    /**
+     * Mutable view of all stored validation errors backed by [errorStore]: Added errors are stored in [errorStore]
+     * (see [ExcelValidationErrorStore.add]) and removed errors are removed from it.
+     */
+    @Deprecated("Use storedValidationErrors (read only) or errorStore instead.", ReplaceWith("storedValidationErrors"))
+    val validationErrors: MutableSet<ExcelValidationErrorMessage> = object : AbstractMutableSet<ExcelValidationErrorMessage>() {
+        override val size: Int
+            get() = errorStore.size
+
+        override fun add(element: ExcelValidationErrorMessage): Boolean {
+            return errorStore.add(element)
+        }
+
+        override fun contains(element: ExcelValidationErrorMessage): Boolean {
+            return storedValidationErrors.contains(element)
+        }
+
+        override fun remove(element: ExcelValidationErrorMessage): Boolean {
+            return errorStore.remove(element)
+        }
+
+        override fun clear() {
+            errorStore.clear()
+        }
+
+        override fun iterator(): MutableIterator<ExcelValidationErrorMessage> {
+            // Iterates over a copy, so errors may be removed while iterating.
+            val iterator = errorStore.allErrors.iterator()
+            return object : MutableIterator<ExcelValidationErrorMessage> {
+                private var current: ExcelValidationErrorMessage? = null
+
+                override fun hasNext(): Boolean {
+                    return iterator.hasNext()
+                }
+
+                override fun next(): ExcelValidationErrorMessage {
+                    return iterator.next().also { current = it }
+                }
+
+                override fun remove() {
+                    errorStore.remove(current ?: throw IllegalStateException("next() wasn't called."))
+                    current = null
+                }
+            }
+        }
+    }
 
     /**
-     * Filters only validation message(s) from all the validation errors for the given row.
      * @return Error messages for the given row or empty list, if no validation error is present for this row.
      */
     fun getValidationErrors(row: Int) : List<ExcelValidationErrorMessage> {
-        return validationErrors.filter { it.row == row }
+        return errorStore.getErrors(row)
     }
 
     protected var i18n: CoreI18n = CoreI18n.getDefault()
@@ -41,11 +114,18 @@ open class ExcelColumnValidator
         this.isRequired = src.isRequired
         this.isUnique = src.isUnique
         this.i18n = src.i18n
+        this.errorStore.maxStoredErrors = src.errorStore.maxStoredErrors
+        if (src.sharedUniqueIndex) {
+            this.uniqueIndex = src.uniqueIndex
+            this.uniqueIndexSheetNames = src.uniqueIndexSheetNames
+            this.sharedUniqueIndex = true
+        }
     }
 
     /**
      * Overwrite this for own validation.
-     * Checks required and unique if configured, otherwise returns null.
+     * Checks required and unique if configured, otherwise returns null. Overriding validators must call this
+     * function, because the unique check registers the cell value.
      *
      * @param cell The cell to validate.
      * @param rowNumber Row number of cell value in given sheet.
@@ -57,11 +137,25 @@ open class ExcelColumnValidator
                 createValidationErrorRequired(rowNumber)
             } else null
         }
+        if (!isUnique) {
+            return null
+        }
         val cellValue = getValueAsString(cell)
-        val firstOccurrenceRowNumber = isUnique(cellValue)
-        return if (firstOccurrenceRowNumber != null && firstOccurrenceRowNumber != rowNumber) {
-            createValidationErrorUnique(rowNumber, cellValue, firstOccurrenceRowNumber)
-        } else null
+        if (cellValue.isNullOrEmpty()) {
+            return null
+        }
+        if (sharedUniqueIndex) {
+            // Registered before the value, so other validators sharing the index will find it.
+            sheet?.let { uniqueIndexSheetNames.putIfAbsent(validatorId, it.sheetName) }
+        }
+        // Check and registration in one atomic step: the index may be shared by concurrently analyzed sheets.
+        val reference = uniqueIndex.putIfAbsent(cellValue, getUniqueReference(rowNumber))
+        if (reference == ExcelUniqueIndex.NONE || reference == getUniqueReference(rowNumber)) {
+            return null
+        }
+        val referenceValidatorId = (reference ushr 32).toInt()
+        val firstOccurrenceSheetName = if (referenceValidatorId != validatorId) uniqueIndexSheetNames[referenceValidatorId] else null
+        return createValidationErrorUnique(rowNumber, cellValue, (reference and 0xffffffffL).toInt(), firstOccurrenceSheetName)
     }
 
     override fun readCell(cell: Cell?, rowNumber: Int) {
@@ -70,26 +164,40 @@ open class ExcelColumnValidator
             if (log.isDebugEnabled) {
                 log.debug("Validation error found: " + resultMessage.getMessageWithAllDetails(i18n))
             }
-            validationErrors.add(resultMessage)
+            errorStore.add(resultMessage)
         }
-        val cellValue = getValueAsString(cell)
-        if (cellValue.isNullOrEmpty()) {
-            return
-        }
-        if (isUnique(cellValue) == null) {
-            cellValueMap[cellValue] = rowNumber
+    }
+
+    /**
+     * The cache of validation results, if enabled by [ExcelColumnDef.enableValidationCache] (for hit rate etc.).
+     */
+    var validationCache: ExcelValidationCache? = null
+        private set
+
+    /**
+     * Validates the given (non empty) cell by the given function or gets the validation result of an equal cell value
+     * from the [validationCache], if enabled. Row dependent checks (required, unique) must not be done by the given
+     * function.
+     */
+    protected fun validateCached(cell: Cell, rowNumber: Int, validate: (Cell, Int) -> ExcelValidationErrorMessage?): ExcelValidationErrorMessage? {
+        val cacheSize = columnDef?.validationCacheSize ?: 0
+        if (cacheSize <= 0) {
+            return validate(cell, rowNumber)
         }
+        val cache = validationCache?.takeIf { it.maxSize == cacheSize }
+                ?: ExcelValidationCache(cacheSize).also { validationCache = it }
+        return cache.validate(cell, rowNumber) { validate(cell, rowNumber) }
     }
 
     fun hasValidationErrors(): Boolean {
-        return validationErrors.isNotEmpty()
+        return errorStore.hasErrors()
     }
 
-    private fun isUnique(cellValue: String?): Int? {
-        if (!isUnique) {
-            return null
-        }
-        return cellValueMap[cellValue]
+    /**
+     * @return The row number combined with the id of this validator.
+     */
+    private fun getUniqueReference(rowNumber: Int): Long {
+        return (validatorId.toLong() shl 32) or rowNumber.toLong()
     }
 
     val columnHeadname: String
@@ -106,6 +214,33 @@ open class ExcelColumnValidator
         return this
     }
 
+    /**
+     * Sets the index of the read cell values used for the unique check. For large sheets use e. g. a
+     * [FingerprintUniqueIndex]. The given index is shared with all clones of this validator (e. g. if this validator
+     * is registered for columns of several sheets), so the values must be unique over all these sheets. The caller
+     * is responsible for closing the index.
+     *
+     * @return this for chaining.
+     */
+    fun setUniqueIndex(uniqueIndex: ExcelUniqueIndex): ExcelColumnValidator {
+        this.uniqueIndex = uniqueIndex
+        this.uniqueIndexSheetNames = ConcurrentHashMap()
+        this.sharedUniqueIndex = true
+        return this
+    }
+
+    /**
+     * Limits the number of stored validation errors of this column. Further errors are only counted.
+     *
+     * @param maxStoredErrors Maximum number of errors to store or -1 (default) for storing all errors.
+     * @return this for chaining.
+     * @see ExcelValidationErrorStore.maxStoredErrors
+     */
+    fun setMaxStoredErrors(maxStoredErrors: Int): ExcelColumnValidator {
+        errorStore.maxStoredErrors = maxStoredErrors
+        return this
+    }
+
     /**
      * All cell values must be unique, if given.
      *
@@ -121,7 +256,17 @@ open class ExcelColumnValidator
         return createValidationError(MESSAGE_MISSING_REQUIRED_FIELD, rowNumber, "")
     }
 
-    fun createValidationErrorUnique(rowNumber: Int, cellValue: Any?, firstOccurrenceRowNumber: Int): ExcelValidationErrorMessage {
+    /**
+     * @param firstOccurrenceSheetName The sheet of the first occurrence, if it differs from the sheet of this column
+     * (e. g. for shared unique indexes, see [setUniqueIndex]).
+     */
+    @JvmOverloads
+    fun createValidationErrorUnique(rowNumber: Int, cellValue: Any?, firstOccurrenceRowNumber: Int,
+                                    firstOccurrenceSheetName: String? = null): ExcelValidationErrorMessage {
+        if (firstOccurrenceSheetName != null) {
+            return createValidationError(MESSAGE_VALUE_NOT_UNIQUE_IN_SHEET, rowNumber, cellValue, firstOccurrenceRowNumber + 1,
+                    firstOccurrenceSheetName)
+        }
         return createValidationError(MESSAGE_VALUE_NOT_UNIQUE, rowNumber, cellValue, firstOccurrenceRowNumber + 1)
     }
 
@@ -134,6 +279,7 @@ open class ExcelColumnValidator
 
     companion object {
         private val log = LoggerFactory.getLogger(ExcelColumnValidator::class.java)
+        private val validatorIdCounter = AtomicInteger()
         /**
          * Parameter: Sheet name, Column in letter format: (A, B, ..., AA, AB, ...), Column head name, Row number
          */
@@ -143,5 +289,10 @@ open class ExcelColumnValidator
          * Cell value, row of first occurrence.
          */
         const val MESSAGE_VALUE_NOT_UNIQUE = "merlin.excel.validation_error.value_not_unique"
+        /**
+         * Parameter: Sheet name, Column in letter format: (A, B, ..., AA, AB, ...), Column head name, Row number,
+         * Cell value, row and sheet name of first occurrence.
+         */
+        const val MESSAGE_VALUE_NOT_UNIQUE_IN_SHEET = "merlin.excel.validation_error.value_not_unique_in_sheet"
     }
 }
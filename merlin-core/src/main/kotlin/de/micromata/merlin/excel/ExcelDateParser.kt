@@ -0,0 +1,223 @@
+package de.micromata.merlin.excel
+
+import java.text.ParsePosition
+import java.time.format.DateTimeFormatter
+import java.time.format.DateTimeParseException
+import java.util.*
+
+/**
+ * Parses date strings of a column with a list of date formats (see [AbstractExcelColumnDateValidator]):
+ * - The format matched last is tried first, because the values of a column are usually of the same format.
+ * - Formats not fitting the shape of the string (separators and letters, e. g. '1.2.2020' vs. '2/1/2020') are skipped.
+ * - Mismatches are detected without throwing (and creating) any [DateTimeParseException].
+ *
+ * Used by one thread at a time (one column of a sheet).
+ */
+class ExcelDateParser(dateFormats: Array<out String>, locale: Locale) {
+    private val formats = dateFormats.map { Format(it, DateTimeFormatter.ofPattern(it).withLocale(locale)) }
+
+    /**
+     * Index of the format matched last.
+     */
+    private var lastMatch = 0
+
+    /**
+     * @param str The (trimmed) date string.
+     * @param parse Parses the string with the given formatter (e. g. LocalDate::parse).
+     * @return The parsed value or null, if no format matches.
+     */
+    fun <T> parse(str: String, parse: (String, DateTimeFormatter) -> T): T? {
+        if (formats.isEmpty()) {
+            return null
+        }
+        val shape = Shape.of(str)
+        val last = lastMatch
+        for (i in formats.indices) {
+            val index = if (i == 0) last else if (i <= last) i - 1 else i
+            val format = formats[index]
+            if (!format.fits(shape) || !format.matches(str)) {
+                continue
+            }
+            try {
+                val result = parse(str, format.formatter)
+                lastMatch = index
+                return result
+            } catch (ex: DateTimeParseException) {
+                // Syntax matches, but invalid date (such as 32.2.2020).
+            }
+        }
+        return null
+    }
+
+    private class Format(pattern: String, val formatter: DateTimeFormatter) {
+        /**
+         * All possible separator sequences of this pattern (optional sections included or not) or null, if the pattern
+         * can't be analyzed.
+         */
+        private val separators: Set<String>?
+        private val allowsLetters: Boolean
+
+        init {
+            var letters = false
+            val variants = try {
+                expandOptionals(pattern).map { variant ->
+                    val sb = StringBuilder()
+                    val tokens = tokenize(variant)
+                    tokens.forEach { token ->
+                        if (token.isField) {
+                            if (TEXT_FIELDS.indexOf(token.text[0]) >= 0 || token.text.length >= 3 && (token.text[0] == 'M' || token.text[0] == 'L')) {
+                                letters = true
+                            }
+                            appendSeparator(sb, null)
+                        } else {
+                            token.text.forEach { ch ->
+                                if (Character.isLetter(ch)) {
+                                    letters = true
+                                }
+                                // Quoted letters and digits are fields in the shape of a string.
+                                appendSeparator(sb, if (Character.isLetterOrDigit(ch)) null else ch)
+                            }
+                        }
+                    }
+                    sb.toString()
+                }.toSet()
+            } catch (ex: IllegalArgumentException) {
+                null // Unsupported pattern syntax: no pre-check.
+            }
+            separators = variants
+            allowsLetters = letters || variants == null
+        }
+
+        fun fits(shape: Shape): Boolean {
+            if (shape.hasLetters && !allowsLetters) {
+                return false
+            }
+            return separators == null || separators.contains(shape.separators)
+        }
+
+        /**
+         * Checks the syntax without throwing exceptions.
+         */
+        fun matches(str: String): Boolean {
+            val pos = ParsePosition(0)
+            return formatter.parseUnresolved(str, pos) != null && pos.errorIndex < 0 && pos.index == str.length
+        }
+    }
+
+    internal class Shape(val separators: String, val hasLetters: Boolean) {
+        companion object {
+            fun of(str: String): Shape {
+                val sb = StringBuilder()
+                var letters = false
+                str.forEach { ch ->
+                    if (Character.isLetter(ch)) {
+                        letters = true
+                        appendSeparator(sb, null)
+                    } else if (Character.isDigit(ch)) {
+                        appendSeparator(sb, null)
+                    } else {
+                        appendSeparator(sb, ch)
+                    }
+                }
+                return Shape(sb.toString(), letters)
+            }
+        }
+    }
+
+    private class Token(val text: String, val isField: Boolean)
+
+    companion object {
+        // Pattern letters of fields formatted as text.
+        private const val TEXT_FIELDS = "GEaBzZVvOXxQqe"
+
+        // Marker of fields (digits or letters) in separator sequences.
+        private const val FIELD = '#'
+
+        /**
+         * Appends the given separator (whitespaces are normalized to one blank) or a field marker (ch = null). Field
+         * markers are collapsed, so 'dd' and 'd' or 'Januar' result in the same shape.
+         */
+        private fun appendSeparator(sb: StringBuilder, ch: Char?) {
+            val last = if (sb.isEmpty()) null else sb[sb.length - 1]
+            val value = when {
+                ch == null -> FIELD
+                Character.isWhitespace(ch) -> ' '
+                else -> ch
+            }
+            if ((value == FIELD || value == ' ') && last == value) {
+                return
+            }
+            sb.append(value)
+        }
+
+        /**
+         * Expands optional sections: "H:m[:s]" results in "H:m" and "H:m:s".
+         */
+        private fun expandOptionals(pattern: String): List<String> {
+            var inQuote = false
+            for (i in pattern.indices) {
+                val ch = pattern[i]
+                if (ch == '\'') {
+                    inQuote = !inQuote
+                } else if (!inQuote && ch == '[') {
+                    val end = findClosingBracket(pattern, i)
+                    val prefix = pattern.substring(0, i)
+                    val optional = pattern.substring(i + 1, end)
+                    val result = mutableListOf<String>()
+                    expandOptionals(pattern.substring(end + 1)).forEach { rest ->
+                        result.add(prefix + rest)
+                        expandOptionals(optional).forEach { result.add(prefix + it + rest) }
+                    }
+                    require(result.size <= MAX_VARIANTS) { "Too many optional sections." }
+                    return result
+                } else if (!inQuote && (ch == ']' || ch == '{' || ch == '}' || ch == '#')) {
+                    throw IllegalArgumentException("Unsupported pattern char '$ch'.")
+                }
+            }
+            return listOf(pattern)
+        }
+
+        private fun findClosingBracket(pattern: String, start: Int): Int {
+            var depth = 0
+            var inQuote = false
+            for (i in start until pattern.length) {
+                when (pattern[i]) {
+                    '\'' -> inQuote = !inQuote
+                    '[' -> if (!inQuote) ++depth
+                    ']' -> if (!inQuote && --depth == 0) return i
+                }
+            }
+            throw IllegalArgumentException("Missing ']'.")
+        }
+
+        private fun tokenize(pattern: String): List<Token> {
+            val tokens = mutableListOf<Token>()
+            var i = 0
+            while (i < pattern.length) {
+                val ch = pattern[i]
+                if (ch == '\'') {
+                    val end = pattern.indexOf('\'', i + 1)
+                    require(end > 0) { "Missing quote." }
+                    require(end == i + 1 || end + 1 >= pattern.length || pattern[end + 1] != '\'') { "Escaped quotes in literals aren't supported." }
+                    // '' is an escaped quote.
+                    tokens.add(Token(if (end == i + 1) "'" else pattern.substring(i + 1, end), false))
+                    i = end + 1
+                } else if (ch in 'A'..'Z' || ch in 'a'..'z') {
+                    var end = i + 1
+                    while (end < pattern.length && pattern[end] == ch) {
+                        ++end
+                    }
+                    require(ch != 'p') { "Padding isn't supported." }
+                    tokens.add(Token(pattern.substring(i, end), true))
+                    i = end
+                } else {
+                    tokens.add(Token(ch.toString(), false))
+                    ++i
+                }
+            }
+            return tokens
+        }
+
+        private const val MAX_VARIANTS = 16
+    }
+}
@@ -0,0 +1,30 @@
+package de.micromata.merlin.excel
+
+import org.apache.poi.ss.usermodel.Row
+import org.apache.poi.ss.usermodel.Sheet
+
+/**
+ * Source of the rows of the sheets of a workbook in streaming read mode (see [ExcelWorkbook.isStreamingRead]): xlsx
+ * files ([ExcelWorkbook.createForStreamingRead]) or csv files ([ExcelWorkbook.createForCsvRead]).
+ *
+ * Each read row is materialized as a POI row in a given (empty) target sheet, so head row detection, all listeners and
+ * validators of [ExcelSheet.analyze] work on POI cells as usual.
+ */
+interface ExcelRowSource : AutoCloseable {
+    /**
+     * The names of the sheets in order.
+     */
+    val sheetNames: Collection<String>
+
+    /**
+     * Reads all rows of the given sheet in order.
+     *
+     * @param sheetName The name of the sheet to read.
+     * @param target The sheet to create the read rows in.
+     * @param skipRows Rows with a row number lower or equal to this value will be skipped (not materialized).
+     * @param rowHandler Called for every materialized row with the number of the row in the source (the row number of the
+     * materialized row may differ for sources with more rows than supported by xlsx). If it returns false, the row will
+     * be removed from the target sheet afterwards, otherwise it will be kept.
+     */
+    fun readRows(sheetName: String, target: Sheet, skipRows: Int, rowHandler: (row: Row, rowNumber: Int) -> Boolean)
+}
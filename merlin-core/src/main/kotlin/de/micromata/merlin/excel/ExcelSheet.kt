@@ -15,6 +15,9 @@ import java.math.BigDecimal
 import java.time.LocalDate
 import java.time.LocalDateTime
 import java.util.*
+import java.util.concurrent.Callable
+import java.util.concurrent.ExecutionException
+import java.util.concurrent.ForkJoinPool
 
 /**
  * Wraps and enhances a POI sheet.
@@ -65,6 +68,16 @@ class ExcelSheet internal constructor(val excelWorkbook: ExcelWorkbook, val poiS
 
     private var rowEmptyColumns: IntArray? = null
 
+    /**
+     * The number of threads used by [analyze]. 1 (default) analyzes all columns on the calling thread, a value lower
+     * than 1 uses all available processors.
+     *
+     * If greater than 1, the sheet is read once into column batches and the listeners of each column run concurrently
+     * (each listener still gets all cells of its column in row order, so the results are the same as for sequential
+     * analyzing). So listeners of different columns must not share any state. Ignored in streaming read mode.
+     */
+    var analyzeParallelism: Int = 1
+
     /**
      * Forces reloading of head row. This is useful if you get the head row, read it manually to add new
      * [ExcelColumnDef] objects and to restart.
@@ -82,46 +95,203 @@ class ExcelSheet internal constructor(val excelWorkbook: ExcelWorkbook, val poiS
      * Each cell will be analyzed by calling ExcelColumnListener for each column with given
      * ExcelColumnListener. If no Analyzer is set for a column, the column cells will not be analyzed.
      *
-     * @param validate if true, then each cell of a column with a given ExcelColumnValidator will be validated.
+     * @param validate if true, then each cell of a column with a given ExcelColumnValidator will be validated. The
+     * validation errors of any previous run are discarded: The [ExcelColumnValidator.errorStore] of every validator is
+     * cleared first (so are the views [ExcelColumnValidator.storedValidationErrors] and
+     * [ExcelColumnValidator.validationErrors]).
      * @return this for chaining.
      */
     fun analyze(validate: Boolean): ExcelSheet {
+        return analyze(validate, null)
+    }
+
+    /**
+     * Analyzes sheet (see [analyze]) and calls the given row handler for every analyzed data row after the column
+     * listeners, e. g. for filling beans by a [de.micromata.merlin.excel.importer.RowMapper] in streaming read mode.
+     * The columns are analyzed sequentially (see [analyzeParallelism]), if a row handler is given.
+     *
+     * @param rowHandler Called with the row and its row number (in streaming read mode, the number of the row in the
+     * source, see [ExcelRowSource.readRows]).
+     * @return this for chaining.
+     */
+    fun analyze(validate: Boolean, rowHandler: ((row: Row, rowNumber: Int) -> Unit)?): ExcelSheet {
+        if (validate) {
+            columnDefList.forEach { columnDef -> columnDef.columnValidators?.forEach { it.errorStore.clear() } }
+        }
+        if (excelWorkbook.isStreamingRead) {
+            return analyzeStreaming(validate, true, rowHandler)
+        }
         findAndReadHeadRow()
-        if (validate) { // Detect missing columns:
-            for (columnDef in columnDefList) {
-                if (!columnDef.hasColumnListeners()) {
-                    continue
-                }
-                for (listener in columnDef.getColumnListeners()!!) {
-                    if (listener is ExcelColumnValidator) {
-                        if (columnDef._columnNumber < 0) {
-                            addValidationError(createValidationErrorMissingColumnByName(columnDef.columnHeadname))
-                        }
-                    }
-                }
+        if (validate) {
+            detectMissingColumns()
+        }
+        if (analyzeParallelism != 1 && rowHandler == null) {
+            analyzeColumnsParallel(validate)
+            return this
+        }
+        val it = dataRowIterator
+        while (it.hasNext()) {
+            val row = it.next()
+            analyzeRow(row, row.rowNum, validate)
+            rowHandler?.invoke(row, row.rowNum)
+        }
+        return this
+    }
+
+    /**
+     * Reads all data rows once into column batches and runs the listeners of each column in a fork-join pool.
+     */
+    private fun analyzeColumnsParallel(validate: Boolean) {
+        val columns = mutableListOf<Pair<ExcelColumnDef, List<ExcelColumnListener>>>()
+        for (columnDef in columnDefList) {
+            if (!columnDef.hasColumnListeners() || columnDef._columnNumber < 0) {
+                continue
+            }
+            val listeners = columnDef.getColumnListeners()!!.filter { it !is ExcelColumnValidator || validate }
+            if (listeners.isNotEmpty()) {
+                columns.add(Pair(columnDef, listeners))
             }
         }
+        val rowNumbers = mutableListOf<Int>()
+        val batches = List(columns.size) { mutableListOf<Cell?>() }
         val it = dataRowIterator
         while (it.hasNext()) {
             val row = it.next()
             if (row.lastCellNum > columnWithValidationErrorMessages) {
                 columnWithValidationErrorMessages = row.lastCellNum.toInt()
             }
-            for (columnDef in columnDefList) {
-                if (!columnDef.hasColumnListeners() || columnDef._columnNumber < 0) {
+            rowNumbers.add(row.rowNum)
+            columns.forEachIndexed { idx, column -> batches[idx].add(row.getCell(column.first._columnNumber)) }
+        }
+        val tasks = columns.mapIndexed { idx, column ->
+            Callable {
+                val cells = batches[idx]
+                for (i in cells.indices) {
+                    for (listener in column.second) {
+                        listener.readCell(cells[i], rowNumbers[i])
+                    }
+                }
+            }
+        }
+        val threads = if (analyzeParallelism < 1) Runtime.getRuntime().availableProcessors() else analyzeParallelism
+        val pool = ForkJoinPool(threads)
+        try {
+            for (future in pool.invokeAll(tasks)) {
+                future.get()
+            }
+        } catch (ex: ExecutionException) {
+            log.error("Error while analyzing sheet '$sheetName': " + ex.cause?.message, ex.cause)
+            throw RuntimeException(ex.cause)
+        } finally {
+            pool.shutdown()
+        }
+    }
+
+    /**
+     * Analyzes the sheet in streaming read mode (see [ExcelWorkbook.createForStreamingRead]): The rows are read one by
+     * one and removed after analyzing, only the head row is kept.
+     */
+    private fun analyzeStreaming(validate: Boolean, analyzeRows: Boolean, rowHandler: ((row: Row, rowNumber: Int) -> Unit)?): ExcelSheet {
+        // Rows read before the head row is detected (the head row is searched in the first rows as done by findAndReadHeadRow):
+        val pendingRows = mutableListOf<Row>()
+        var headRowSearched = _headRow != null
+        val finishHeadRowSearch = {
+            headRowSearched = true
+            findAndReadHeadRow()
+            if (validate) {
+                detectMissingColumns()
+            }
+            for (row in pendingRows) {
+                if (_headRow?.row == row) {
                     continue
                 }
-                for (listener in columnDef.getColumnListeners()!!) {
-                    if (listener !is ExcelColumnValidator || validate) {
-                        val cell = row.getCell(columnDef._columnNumber)
-                        listener.readCell(cell, row.rowNum)
+                if (_headRow == null || row.rowNum > _headRow!!.rowNum) {
+                    if (!isRowEmpty(row)) {
+                        if (analyzeRows) {
+                            analyzeRow(row, row.rowNum, validate)
+                        }
+                        rowHandler?.invoke(row, row.rowNum)
                     }
                 }
+                poiSheet.removeRow(row)
             }
+            pendingRows.clear()
+        }
+        if (headRowSearched && validate) {
+            detectMissingColumns()
+        }
+        // Rows up to the head row of a previous run are skipped, the head row is still present in poiSheet:
+        val skipRows = _headRow?.rowNum ?: -1
+        excelWorkbook.streamingSource!!.readRows(sheetName, poiSheet, skipRows) { row, rowNumber ->
+            if (!headRowSearched) {
+                pendingRows.add(row)
+                if (pendingRows.size >= HEAD_ROW_SEARCH_ROWS) {
+                    finishHeadRowSearch()
+                }
+                return@readRows true // Pending rows are removed by finishHeadRowSearch.
+            }
+            if (!isRowEmpty(row)) {
+                if (analyzeRows) {
+                    analyzeRow(row, rowNumber, validate)
+                }
+                rowHandler?.invoke(row, rowNumber)
+            }
+            false
+        }
+        if (!headRowSearched) {
+            finishHeadRowSearch()
         }
         return this
     }
 
+    /**
+     * Calls the given handler for all (non empty) data rows without calling any column listener. In streaming read mode
+     * the rows are read from the source (see [analyze]).
+     */
+    internal fun forEachDataRow(rowHandler: (row: Row, rowNumber: Int) -> Unit) {
+        if (excelWorkbook.isStreamingRead) {
+            analyzeStreaming(false, false, rowHandler)
+            return
+        }
+        val it = dataRowIterator
+        while (it.hasNext()) {
+            val row = it.next()
+            rowHandler(row, row.rowNum)
+        }
+    }
+
+    private fun detectMissingColumns() {
+        for (columnDef in columnDefList) {
+            if (!columnDef.hasColumnListeners()) {
+                continue
+            }
+            for (listener in columnDef.getColumnListeners()!!) {
+                if (listener is ExcelColumnValidator) {
+                    if (columnDef._columnNumber < 0) {
+                        addValidationError(createValidationErrorMissingColumnByName(columnDef.columnHeadname))
+                    }
+                }
+            }
+        }
+    }
+
+    private fun analyzeRow(row: Row, rowNumber: Int, validate: Boolean) {
+        if (row.lastCellNum > columnWithValidationErrorMessages) {
+            columnWithValidationErrorMessages = row.lastCellNum.toInt()
+        }
+        for (columnDef in columnDefList) {
+            if (!columnDef.hasColumnListeners() || columnDef._columnNumber < 0) {
+                continue
+            }
+            for (listener in columnDef.getColumnListeners()!!) {
+                if (listener !is ExcelColumnValidator || validate) {
+                    val cell = row.getCell(columnDef._columnNumber)
+                    listener.readCell(cell, rowNumber)
+                }
+            }
+        }
+    }
+
     /**
      * @param columnHeads The column heads to register.
      * @return this for chaining.
@@ -387,7 +557,7 @@ class ExcelSheet internal constructor(val excelWorkbook: ExcelWorkbook, val poiS
         log.debug("Reading head row of sheet '" + poiSheet.sheetName + "'.")
         val rowIterator = poiSheet.rowIterator()
         var current: Row? = null
-        for (i in 0..9) { // Detect head row, check Row 0-9 for column heads.
+        for (i in 0 until HEAD_ROW_SEARCH_ROWS) { // Detect head row, check Row 0-9 for column heads.
             if (!rowIterator.hasNext()) {
                 break
             }
@@ -518,24 +688,53 @@ class ExcelSheet internal constructor(val excelWorkbook: ExcelWorkbook, val poiS
      * An empty set will be returned if no validation error was found.
      */
     val allValidationErrors: Set<ExcelValidationErrorMessage>
+        get() = validationErrorSequence().toCollection(LinkedHashSet())
+
+    /**
+     * @return The validation errors of the given row (of all registered [ExcelColumnValidator] and of the sheet itself).
+     */
+    fun getValidationErrors(row: Int): List<ExcelValidationErrorMessage> {
+        val result = mutableListOf<ExcelValidationErrorMessage>()
+        validationErrors?.filterTo(result) { it.row == row }
+        forEachColumnValidator { result.addAll(it.getValidationErrors(row)) }
+        return result.distinct()
+    }
+
+    /**
+     * @return The number of all validation errors by message id, including errors not stored due to
+     * [ExcelColumnValidator.setMaxStoredErrors].
+     */
+    val validationErrorCounts: Map<String?, Int>
         get() {
-            val allValidationErrors = mutableSetOf<ExcelValidationErrorMessage>()
-            if (validationErrors != null) {
-                allValidationErrors.addAll(validationErrors!!)
-            }
-            for (columnDef in columnDefList) {
-                if (!columnDef.hasColumnListeners()) {
-                    continue
-                }
-                columnDef.columnValidators?.forEach { columnValidator ->
-                    if (columnValidator.hasValidationErrors()) {
-                        allValidationErrors.addAll(columnValidator.validationErrors)
-                    }
+            val result = mutableMapOf<String?, Int>()
+            validationErrors?.forEach { result[it.messageId] = (result[it.messageId] ?: 0) + 1 }
+            forEachColumnValidator { validator ->
+                validator.errorStore.countByMessageId.forEach { (messageId, count) ->
+                    result[messageId] = (result[messageId] ?: 0) + count
                 }
             }
-            return allValidationErrors
+            return result
         }
 
+    /**
+     * Iterates the stored validation errors lazily: errors of the sheet first, followed by the errors of the columns.
+     */
+    private fun validationErrorSequence(): Sequence<ExcelValidationErrorMessage> {
+        val validators = mutableListOf<ExcelColumnValidator>()
+        forEachColumnValidator { validators.add(it) }
+        return (validationErrors?.asSequence() ?: emptySequence()) +
+                validators.asSequence().flatMap { it.errorStore.asSequence() }
+    }
+
+    private fun forEachColumnValidator(action: (ExcelColumnValidator) -> Unit) {
+        for (columnDef in columnDefList) {
+            if (!columnDef.hasColumnListeners()) {
+                continue
+            }
+            columnDef.columnValidators?.forEach { if (it.hasValidationErrors()) action(it) }
+        }
+    }
+
     /**
      * Marks and comments validation errors of cells of this sheet by manipulating the Excel sheet.
      * Refer [isModified] for checking if any modification was done.
@@ -555,7 +754,7 @@ class ExcelSheet internal constructor(val excelWorkbook: ExcelWorkbook, val poiS
         analyze(true)
         val highlightedColumnHeads: MutableSet<ExcelColumnDef> = HashSet()
         var errorCount = 0
-        for (validationError in allValidationErrors) {
+        for (validationError in validationErrorSequence().distinct()) {
             if (maxMarkedErrors >= 0 && ++errorCount > maxMarkedErrors) { // Maximum number of errors to mark is exceeded.
                 break
             }
@@ -925,10 +1124,21 @@ class ExcelSheet internal constructor(val excelWorkbook: ExcelWorkbook, val poiS
         if (excelRow == null) {
             excelRow = ExcelRow(this, row)
             excelRowMap[row.rowNum] = excelRow
+            if (excelWorkbook.isStreamingWrite && excelRowMap.size > 2 * excelWorkbook.rowAccessWindowSize) {
+                releaseFlushedRows()
+            }
         }
         return excelRow
     }
 
+    /**
+     * Releases the wrappers of all rows already flushed to disk in streaming write mode. The flushed POI rows aren't
+     * available anymore (getRow returns null).
+     */
+    private fun releaseFlushedRows() {
+        excelRowMap.values.removeIf { poiSheet.getRow(it.rowNum) == null }
+    }
+
     fun autosize() {
         for (i in 0..lastColumn) {
             poiSheet.autoSizeColumn(i)
@@ -976,5 +1186,7 @@ class ExcelSheet internal constructor(val excelWorkbook: ExcelWorkbook, val poiS
         const val MESSAGE_MISSING_COLUMN_NUMBER = "merlin.excel.validation_error.missing_column_number"
         const val MESSAGE_MISSING_COLUMN_BY_NAME = "merlin.excel.validation_error.missing_column_by_name"
         private val log = LoggerFactory.getLogger(ExcelSheet::class.java)
+        // The head row is searched in the first rows of the sheet.
+        private const val HEAD_ROW_SEARCH_ROWS = 10
     }
 }
@@ -0,0 +1,236 @@
+package de.micromata.merlin.excel
+
+import de.micromata.merlin.csv.CSVWriter
+import org.apache.poi.ss.usermodel.Cell
+import org.apache.poi.ss.usermodel.CellType
+import org.apache.poi.ss.usermodel.DateUtil
+import org.apache.poi.ss.usermodel.Row
+import org.apache.poi.ss.util.CellReference
+import org.slf4j.LoggerFactory
+import java.io.BufferedWriter
+import java.io.IOException
+import java.io.OutputStream
+import java.io.OutputStreamWriter
+import java.io.Writer
+import java.nio.charset.Charset
+import java.nio.charset.StandardCharsets
+import java.time.LocalTime
+import java.time.format.DateTimeFormatter
+
+/**
+ * Exports the data rows of a sheet as csv or as JSON lines (one JSON object per row) to an output stream. The rows are
+ * written one by one through a write buffer, so the whole export is never held in memory. Sheets of workbooks in
+ * streaming read mode (see [ExcelWorkbook.isStreamingRead]) are read from their source while exporting (the column
+ * listeners aren't called).
+ *
+ * The exported columns are the registered [ExcelColumnDef]s found in the head row (or the columns given by
+ * [setColumns]). If no columns are registered, all cells of the rows are exported (JSON keys are the column letters).
+ */
+class ExcelSheetExporter(val sheet: ExcelSheet) {
+    /**
+     * The columns to export. If null (default), all registered columns are exported.
+     */
+    var columns: List<ExcelColumnDef>? = null
+
+    var charset: Charset = StandardCharsets.UTF_8
+
+    var csvSeparatorChar: Char = CSVWriter.DEFAULT_CSV_SEPARATOR_CHAR
+
+    /**
+     * If true (default), the column heads are written as first csv line.
+     */
+    var writeHeadRow: Boolean = true
+
+    var bufferSize: Int = 1 shl 16
+
+    /**
+     * @param columnHeads The heads of the registered columns to export in this order.
+     * @return this for chaining.
+     */
+    fun setColumns(vararg columnHeads: String): ExcelSheetExporter {
+        columns = columnHeads.map {
+            sheet.getColumnDef(it) ?: throw IllegalArgumentException("Column '$it' isn't registered in sheet '${sheet.sheetName}'.")
+        }
+        return this
+    }
+
+    /**
+     * Numbers are formatted with the locale of the workbook, dates as formatted in the sheet.
+     *
+     * @return Number of exported data rows.
+     */
+    fun exportCsv(out: OutputStream): Int {
+        return export(out, { writer, columnDefs ->
+            if (writeHeadRow && columnDefs != null) {
+                columnDefs.forEachIndexed { index, columnDef -> writeCsvValue(writer, index, getHead(columnDef)) }
+                writer.write(LINE_SEPARATOR)
+            }
+        }, { writer, columnDefs, row ->
+            if (columnDefs != null) {
+                columnDefs.forEachIndexed { index, columnDef -> writeCsvValue(writer, index, getCsvValue(getCell(row, columnDef))) }
+            } else {
+                for (col in 0 until row.lastCellNum) {
+                    writeCsvValue(writer, col, getCsvValue(row.getCell(col)))
+                }
+            }
+            writer.write(LINE_SEPARATOR)
+        })
+    }
+
+    /**
+     * Writes one JSON object per row and line. Numbers and booleans are written as JSON numbers and booleans, dates as
+     * ISO strings and empty cells as null.
+     *
+     * @return Number of exported data rows.
+     */
+    fun exportJsonLines(out: OutputStream): Int {
+        var keys: List<String>? = null
+        return export(out, { _, columnDefs ->
+            keys = columnDefs?.map { jsonString(getHead(it)) }
+        }, { writer, columnDefs, row ->
+            writer.write('{'.toInt())
+            if (columnDefs != null) {
+                columnDefs.forEachIndexed { index, columnDef ->
+                    if (index > 0) writer.write(','.toInt())
+                    writer.write(keys!![index])
+                    writer.write(':'.toInt())
+                    writeJsonValue(writer, getCell(row, columnDef))
+                }
+            } else {
+                for (col in 0 until row.lastCellNum) {
+                    if (col > 0) writer.write(','.toInt())
+                    writer.write(jsonString(CellReference.convertNumToColString(col)))
+                    writer.write(':'.toInt())
+                    writeJsonValue(writer, row.getCell(col))
+                }
+            }
+            writer.write('}'.toInt())
+            writer.write(LINE_SEPARATOR)
+        })
+    }
+
+    /**
+     * The columns are resolved after reading the head row, which is done by iterating the rows in streaming mode, so
+     * the head is written lazily before the first data row.
+     */
+    private fun export(out: OutputStream,
+                       writeHead: (Writer, List<ExcelColumnDef>?) -> Unit,
+                       writeRow: (Writer, List<ExcelColumnDef>?, Row) -> Unit): Int {
+        val writer = BufferedWriter(OutputStreamWriter(out, charset), bufferSize)
+        var counter = 0
+        var columnDefs: List<ExcelColumnDef>? = null
+        var headWritten = false
+        val ensureHead = {
+            if (!headWritten) {
+                headWritten = true
+                columnDefs = columns ?: sheet.columnDefinitions.filter { it.found() }.takeIf { it.isNotEmpty() }
+                writeHead(writer, columnDefs)
+            }
+        }
+        try {
+            sheet.forEachDataRow { row, _ ->
+                ensureHead()
+                writeRow(writer, columnDefs, row)
+                ++counter
+            }
+            ensureHead()
+            writer.flush() // The output stream isn't closed.
+        } catch (ex: IOException) {
+            log.error("Error while exporting sheet '${sheet.sheetName}': ${ex.message}", ex)
+            throw RuntimeException(ex)
+        }
+        return counter
+    }
+
+    private fun getHead(columnDef: ExcelColumnDef): String {
+        return columnDef.columnHeadname ?: columnDef.columnNumberAsLetters
+    }
+
+    private fun getCell(row: Row, columnDef: ExcelColumnDef): Cell? {
+        return if (columnDef.found()) row.getCell(columnDef.columnNumber) else null
+    }
+
+    private fun getCsvValue(cell: Cell?): String? {
+        return if (cell?.cellType == CellType.FORMULA) {
+            when (cell.cachedFormulaResultType) {
+                CellType.STRING -> cell.stringCellValue
+                CellType.BOOLEAN -> cell.booleanCellValue.toString()
+                CellType.NUMERIC -> {
+                    if (DateUtil.isCellDateFormatted(cell)) PoiHelper.formatDateValue(cell)
+                    else PoiHelper.getNumberFormat(sheet.locale).format(cell.numericCellValue)
+                }
+                else -> null
+            }
+        } else {
+            PoiHelper.getValueAsString(cell, sheet.locale)
+        }
+    }
+
+    private fun writeJsonValue(writer: Writer, cell: Cell?) {
+        val type = if (cell?.cellType == CellType.FORMULA) cell.cachedFormulaResultType else cell?.cellType
+        when (type) {
+            CellType.STRING -> writer.write(jsonString(cell!!.stringCellValue))
+            CellType.BOOLEAN -> writer.write(cell!!.booleanCellValue.toString())
+            CellType.NUMERIC -> {
+                if (DateUtil.isCellDateFormatted(cell)) {
+                    val date = cell!!.localDateTimeCellValue
+                    val str = if (date.toLocalTime() == LocalTime.MIDNIGHT) DateTimeFormatter.ISO_LOCAL_DATE.format(date)
+                    else DateTimeFormatter.ISO_LOCAL_DATE_TIME.format(date)
+                    writer.write(jsonString(str))
+                } else {
+                    val value = cell!!.numericCellValue
+                    when {
+                        value.isNaN() || value.isInfinite() -> writer.write("null")
+                        value == Math.rint(value) && Math.abs(value) < 1e15 -> writer.write(value.toLong().toString())
+                        else -> writer.write(value.toString())
+                    }
+                }
+            }
+            else -> writer.write("null")
+        }
+    }
+
+    /**
+     * Quotes the value only if needed (separator, quotation mark, new line or leading white space).
+     */
+    private fun writeCsvValue(writer: Writer, index: Int, value: String?) {
+        if (index > 0) {
+            writer.write(csvSeparatorChar.toInt())
+        }
+        if (value.isNullOrEmpty()) {
+            return
+        }
+        if (value.none { it == csvSeparatorChar || it == '"' || it == '\n' || it == '\r' } && !Character.isWhitespace(value[0])) {
+            writer.write(value)
+            return
+        }
+        writer.write('"'.toInt())
+        value.forEach {
+            if (it == '"') writer.write('"'.toInt())
+            writer.write(it.toInt())
+        }
+        writer.write('"'.toInt())
+    }
+
+    companion object {
+        private val log = LoggerFactory.getLogger(ExcelSheetExporter::class.java)
+        private const val LINE_SEPARATOR = "\n"
+
+        private fun jsonString(value: String): String {
+            val sb = StringBuilder(value.length + 2)
+            sb.append('"')
+            value.forEach {
+                when (it) {
+                    '"' -> sb.append("\\\"")
+                    '\\' -> sb.append("\\\\")
+                    '\n' -> sb.append("\\n")
+                    '\r' -> sb.append("\\r")
+                    '\t' -> sb.append("\\t")
+                    else -> if (it < ' ') sb.append(String.format("\\u%04x", it.toInt())) else sb.append(it)
+                }
+            }
+            sb.append('"')
+            return sb.toString()
+        }
+    }
+}
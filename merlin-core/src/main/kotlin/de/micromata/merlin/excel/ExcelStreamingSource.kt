@@ -0,0 +1,195 @@
+package de.micromata.merlin.excel
+
+import org.apache.poi.ooxml.util.SAXHelper
+import org.apache.poi.openxml4j.opc.OPCPackage
+import org.apache.poi.openxml4j.opc.PackagePart
+import org.apache.poi.ss.usermodel.*
+import org.apache.poi.ss.util.CellReference
+import org.apache.poi.xssf.eventusermodel.ReadOnlySharedStringsTable
+import org.apache.poi.xssf.eventusermodel.XSSFReader
+import org.apache.poi.xssf.model.StylesTable
+import org.apache.poi.xssf.usermodel.XSSFCell
+import org.openxmlformats.schemas.spreadsheetml.x2006.main.STCellType
+import org.slf4j.LoggerFactory
+import org.xml.sax.Attributes
+import org.xml.sax.InputSource
+import org.xml.sax.helpers.DefaultHandler
+import java.time.LocalDate
+import java.time.LocalDateTime
+import java.time.LocalTime
+import java.time.OffsetDateTime
+import java.time.format.DateTimeParseException
+
+/**
+ * Reads the sheets of a xlsx file with the XSSF event API (SAX) row by row without building the POI model of the
+ * whole workbook. Used by [ExcelWorkbook] in streaming read mode.
+ *
+ * Each read row is materialized as a POI row in a given (empty) target sheet, so all listeners and validators work
+ * on POI cells as usual. Cell values are taken as given (cached results of formulas), the data formats of the
+ * cell styles are copied (needed e. g. for detecting date cells). String values are stored inline, so the shared
+ * strings table of the target workbook doesn't grow.
+ *
+ * Different sheets may be read concurrently (see [ExcelWorkbook.analyzeAll]).
+ */
+internal class ExcelStreamingSource(private val pkg: OPCPackage) : ExcelRowSource {
+    private val reader = XSSFReader(pkg)
+    private val sharedStrings = ReadOnlySharedStringsTable(pkg)
+    private val stylesTable: StylesTable? = reader.stylesTable
+    private val sheetParts = LinkedHashMap<String, PackagePart>()
+    // Key is the style index of the source workbook, value the index of the copied style in the target workbook.
+    private val cellStyleMap = mutableMapOf<Int, Short>()
+
+    init {
+        val it = reader.sheetsData as XSSFReader.SheetIterator
+        while (it.hasNext()) {
+            it.next().close()
+            sheetParts[it.sheetName] = it.sheetPart
+        }
+    }
+
+    override val sheetNames: Collection<String>
+        get() = sheetParts.keys
+
+    override fun readRows(sheetName: String, target: Sheet, skipRows: Int, rowHandler: (row: Row, rowNumber: Int) -> Boolean) {
+        val part = sheetParts[sheetName] ?: throw IllegalArgumentException("Sheet '$sheetName' not found.")
+        val xmlReader = SAXHelper.newXMLReader()
+        xmlReader.contentHandler = SheetHandler(target, skipRows, rowHandler)
+        part.inputStream.use { xmlReader.parse(InputSource(it)) }
+    }
+
+    override fun close() {
+        // Opened read-only, so don't save anything.
+        pkg.revert()
+    }
+
+    @Synchronized
+    private fun getCellStyleIndex(workbook: Workbook, styleIndex: Int): Short? {
+        val styles = stylesTable ?: return null
+        if (styleIndex < 0 || styleIndex >= styles.numCellStyles) {
+            return null
+        }
+        return cellStyleMap.getOrPut(styleIndex) {
+            val srcStyle = styles.getStyleAt(styleIndex)
+            val cellStyle = workbook.createCellStyle()
+            cellStyle.dataFormat = workbook.creationHelper.createDataFormat().getFormat(srcStyle.dataFormatString)
+            cellStyle.index
+        }
+    }
+
+    private inner class SheetHandler(private val target: Sheet,
+                                     private val skipRows: Int,
+                                     private val rowHandler: (row: Row, rowNumber: Int) -> Boolean) : DefaultHandler() {
+        private var row: Row? = null
+        private var rowNum = -1
+        private var columnIndex = -1
+        private var cellType: String? = null
+        private var styleIndex = -1
+        private val value = StringBuilder()
+        private var readValue = false
+
+        override fun startElement(uri: String?, localName: String?, qName: String?, attributes: Attributes) {
+            when (localName) {
+                "row" -> {
+                    rowNum = attributes.getValue("r")?.toInt()?.minus(1) ?: rowNum + 1
+                    columnIndex = -1
+                    row = if (rowNum > skipRows) target.createRow(rowNum) else null
+                }
+                "c" -> {
+                    val ref = attributes.getValue("r")
+                    columnIndex = if (ref != null) CellReference(ref).col.toInt() else columnIndex + 1
+                    cellType = attributes.getValue("t")
+                    styleIndex = attributes.getValue("s")?.toInt() ?: -1
+                    value.setLength(0)
+                }
+                "v", "t" -> readValue = true // t for inline strings.
+            }
+        }
+
+        override fun endElement(uri: String?, localName: String?, qName: String?) {
+            when (localName) {
+                "v", "t" -> readValue = false
+                "c" -> row?.let { createCell(it) }
+                "row" -> {
+                    val current = row ?: return
+                    row = null
+                    if (!rowHandler(current, current.rowNum)) {
+                        target.removeRow(current)
+                    }
+                }
+            }
+        }
+
+        override fun characters(ch: CharArray, start: Int, length: Int) {
+            if (readValue) {
+                value.append(ch, start, length)
+            }
+        }
+
+        private fun createCell(row: Row) {
+            val cell = row.createCell(columnIndex) as XSSFCell
+            // Set the index directly: XSSFCell.setCellStyle modifies the styles table of the target workbook.
+            getCellStyleIndex(target.workbook, styleIndex)?.let { cell.ctCell.s = it.toLong() }
+            val str = value.toString()
+            when (cellType) {
+                "s" -> setStringValue(cell, sharedStrings.getItemAt(str.toInt()).string)
+                "inlineStr", "str" -> setStringValue(cell, str)
+                "b" -> cell.setCellValue(str == "1")
+                "d" -> {
+                    // ISO 8601 date (inline dates aren't written by Excel itself, but by other tools).
+                    val excelDate = parseIsoDate(str)
+                    if (excelDate != null) {
+                        cell.setCellValue(excelDate)
+                    } else {
+                        log.warn("Unsupported date value '$str' in cell ${CellReference(rowNum, columnIndex).formatAsString()}, read as string.")
+                        setStringValue(cell, str)
+                    }
+                }
+                "e" -> {
+                    try {
+                        cell.setCellErrorValue(FormulaError.forString(str).code)
+                    } catch (ex: IllegalArgumentException) {
+                        log.warn("Unsupported error value '$str' in cell ${CellReference(rowNum, columnIndex).formatAsString()}.")
+                    }
+                }
+                else -> if (str.isNotEmpty()) cell.setCellValue(str.toDouble()) // Otherwise blank.
+            }
+        }
+
+        private fun setStringValue(cell: XSSFCell, str: String) {
+            // Inline strings aren't added to the shared strings table of the target workbook:
+            cell.ctCell.t = STCellType.INLINE_STR
+            cell.setCellValue(str)
+        }
+    }
+
+    companion object {
+        private val log = LoggerFactory.getLogger(ExcelStreamingSource::class.java)
+
+        /**
+         * @param str ISO 8601 date, date time or time (a time zone or offset is ignored).
+         * @return The Excel date value or null, if the given string isn't a supported ISO 8601 value.
+         */
+        internal fun parseIsoDate(str: String): Double? {
+            val value = str.trim()
+            try {
+                return when {
+                    value.contains('T') -> DateUtil.getExcelDate(parseIsoDateTime(value))
+                    value.contains('-') -> DateUtil.getExcelDate(LocalDate.parse(value))
+                    else -> LocalTime.parse(value).toNanoOfDay().toDouble() / NANOS_PER_DAY // Time only.
+                }
+            } catch (ex: DateTimeParseException) {
+                return null
+            }
+        }
+
+        private fun parseIsoDateTime(value: String): LocalDateTime {
+            return try {
+                LocalDateTime.parse(value)
+            } catch (ex: DateTimeParseException) {
+                OffsetDateTime.parse(value).toLocalDateTime() // E. g. 2020-01-15T10:30:00Z
+            }
+        }
+
+        private const val NANOS_PER_DAY = 24 * 60 * 60 * 1_000_000_000.0
+    }
+}
@@ -0,0 +1,66 @@
+package de.micromata.merlin.excel
+
+/**
+ * Index of the cell values already read for checking unique constraints (see [ExcelColumnValidator.setUnique]).
+ * An index may be shared by several validators (e. g. for checking uniqueness over several sheets or files), so
+ * implementations must be thread safe.
+ *
+ * Each value is registered with a reference to its first occurrence (row and validator, see
+ * [ExcelColumnValidator.setUniqueIndex]).
+ */
+interface ExcelUniqueIndex : AutoCloseable {
+    /**
+     * @return The reference of the registered value or [NONE], if the value isn't registered.
+     */
+    fun get(value: String): Long
+
+    /**
+     * Registers the given value, if not yet registered.
+     *
+     * @return [NONE], if the value wasn't registered before, otherwise the reference of the registered value.
+     */
+    fun putIfAbsent(value: String, reference: Long): Long
+
+    /**
+     * Number of registered values.
+     */
+    val size: Long
+
+    fun clear()
+
+    /**
+     * Releases any resources (memory, files). Does nothing by default.
+     */
+    override fun close() {
+    }
+
+    companion object {
+        const val NONE = -1L
+    }
+}
+
+/**
+ * Default index holding all values as strings in a [HashMap].
+ */
+class HashMapUniqueIndex : ExcelUniqueIndex {
+    private val map = HashMap<String, Long>()
+
+    @Synchronized
+    override fun get(value: String): Long {
+        return map[value] ?: ExcelUniqueIndex.NONE
+    }
+
+    @Synchronized
+    override fun putIfAbsent(value: String, reference: Long): Long {
+        return map.putIfAbsent(value, reference) ?: ExcelUniqueIndex.NONE
+    }
+
+    override val size: Long
+        @Synchronized
+        get() = map.size.toLong()
+
+    @Synchronized
+    override fun clear() {
+        map.clear()
+    }
+}
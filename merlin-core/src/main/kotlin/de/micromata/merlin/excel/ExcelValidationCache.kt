@@ -0,0 +1,82 @@
+package de.micromata.merlin.excel
+
+import de.micromata.merlin.ResultMessageStatus
+import org.apache.poi.ss.usermodel.Cell
+import org.apache.poi.ss.usermodel.CellType
+
+/**
+ * Caches the validation results of a validator by cell value and type (see [ExcelColumnDef.enableValidationCache]).
+ * Useful for columns with a few repeating values (e. g. countries or status), so the validation (regexp, parsing etc.)
+ * is done only once per distinct value. The least recently used values are removed, if [maxSize] is exceeded.
+ *
+ * Not thread safe: a validator (column) is analyzed by one thread at a time.
+ */
+class ExcelValidationCache(val maxSize: Int) {
+    private val map = object : LinkedHashMap<Any, ExcelValidationErrorMessage>(16, 0.75f, true) {
+        override fun removeEldestEntry(eldest: MutableMap.MutableEntry<Any, ExcelValidationErrorMessage>?): Boolean {
+            return size > maxSize
+        }
+    }
+
+    var hits = 0L
+        private set
+
+    var misses = 0L
+        private set
+
+    /**
+     * Ratio of hits to all requests (0.0 if not yet used).
+     */
+    val hitRate: Double
+        get() = if (hits + misses == 0L) 0.0 else hits.toDouble() / (hits + misses)
+
+    val size: Int
+        get() = map.size
+
+    /**
+     * @param validate Called on cache misses.
+     * @return The cached or determined validation error (with the given row number) or null, if valid.
+     */
+    fun validate(cell: Cell, rowNumber: Int, validate: () -> ExcelValidationErrorMessage?): ExcelValidationErrorMessage? {
+        val key = createKey(cell) ?: return validate()
+        val cached = map[key]
+        if (cached != null) {
+            ++hits
+            return if (cached === VALID) null else cached.copyForRow(rowNumber)
+        }
+        ++misses
+        val result = validate()
+        map[key] = result ?: VALID
+        return result
+    }
+
+    fun clear() {
+        map.clear()
+        hits = 0
+        misses = 0
+    }
+
+    override fun toString(): String {
+        return "size=$size, hits=$hits, misses=$misses, hitRate=${"%.2f".format(hitRate)}"
+    }
+
+    private data class NumericKey(val value: Double, val dataFormat: Short)
+
+    companion object {
+        // Marker for valid values.
+        private val VALID = ExcelValidationErrorMessage("valid", ResultMessageStatus.OK)
+
+        /**
+         * @return The key of the cell value and type or null, if the cell type isn't supported for caching.
+         */
+        private fun createKey(cell: Cell): Any? {
+            return when (cell.cellType) {
+                CellType.STRING -> cell.stringCellValue
+                // The data format is part of the key, because values are formatted e. g. in error messages.
+                CellType.NUMERIC -> NumericKey(cell.numericCellValue, cell.cellStyle?.dataFormat ?: 0)
+                CellType.BOOLEAN -> cell.booleanCellValue
+                else -> null
+            }
+        }
+    }
+}
@@ -116,6 +116,17 @@ class ExcelValidationErrorMessage(messageId: String,
         return this
     }
 
+    /**
+     * @return A copy of this message for another row.
+     */
+    fun copyForRow(row: Int): ExcelValidationErrorMessage {
+        return ExcelValidationErrorMessage(messageId!!, status, *parameters)
+                .setColumnDef(columnDef)
+                .setSheet(sheet)
+                .setCellValue(cellValue)
+                .setRow(row)
+    }
+
     override fun equals(other: Any?): Boolean {
         if (other !is ExcelValidationErrorMessage) {
             return false
@@ -0,0 +1,69 @@
+package de.micromata.merlin.excel
+
+import de.micromata.merlin.CoreI18n
+import de.micromata.merlin.I18n
+import de.micromata.merlin.csv.CSVWriter
+import java.io.Writer
+
+/**
+ * Writes validation errors as list (one error per row: row number, column, column head, cell value and message), e. g.
+ * for csv files or for sheets read in streaming mode, which can't be marked via [ExcelSheet.markErrors].
+ */
+object ExcelValidationErrorReport {
+    /**
+     * Writes the errors as csv.
+     *
+     * @param errors The errors to write (e. g. [ExcelSheet.allValidationErrors]).
+     * @param writer The writer to write to (not closed).
+     */
+    @JvmStatic
+    @JvmOverloads
+    fun writeCsv(errors: Collection<ExcelValidationErrorMessage>,
+                 writer: Writer,
+                 i18n: I18n = CoreI18n.getDefault(),
+                 csvSeparatorChar: Char = CSVWriter.DEFAULT_CSV_SEPARATOR_CHAR) {
+        val csvWriter = CSVWriter(writer)
+        csvWriter.setCsvSeparator(csvSeparatorChar)
+        writeLine(csvWriter, getHeadCells(i18n))
+        errors.forEach { writeLine(csvWriter, getCells(it, i18n)) }
+        csvWriter.flush()
+    }
+
+    /**
+     * Writes the errors into the given sheet (appended after the last row).
+     *
+     * @param errors The errors to write (e. g. [ExcelSheet.allValidationErrors]).
+     * @param sheet The sheet to write the errors to, e. g. a new sheet of a new workbook.
+     */
+    @JvmStatic
+    @JvmOverloads
+    fun writeSheet(errors: Collection<ExcelValidationErrorMessage>,
+                   sheet: ExcelSheet,
+                   i18n: I18n = CoreI18n.getDefault()): ExcelSheet {
+        sheet.createRow().createCells(*getHeadCells(i18n))
+        errors.forEach { sheet.createRow().createCells(null, *getCells(it, i18n)) }
+        return sheet
+    }
+
+    private fun writeLine(csvWriter: CSVWriter, cells: Array<out String?>) {
+        cells.forEach { csvWriter.write(it) }
+        csvWriter.writeEndOfLine()
+    }
+
+    private fun getHeadCells(i18n: I18n): Array<String> {
+        return arrayOf(i18n.getMessage("merlin.excel.validation_error.report.row"),
+                i18n.getMessage("merlin.excel.validation_error.report.column"),
+                i18n.getMessage("merlin.excel.validation_error.report.column_head"),
+                i18n.getMessage("merlin.excel.validation_error.report.value"),
+                i18n.getMessage("merlin.excel.validation_error.report.message"))
+    }
+
+    private fun getCells(error: ExcelValidationErrorMessage, i18n: I18n): Array<String?> {
+        val columnDef = error.columnDef
+        return arrayOf(if (columnDef != null || error.row > 0) "${error.row + 1}" else null, // Excel row number.
+                columnDef?.takeIf { it.found() }?.columnNumberAsLetters,
+                columnDef?.columnHeadname,
+                error.cellValue?.toString(),
+                error.getMessage(i18n))
+    }
+}
@@ -0,0 +1,133 @@
+package de.micromata.merlin.excel
+
+import java.util.*
+
+/**
+ * Stores validation errors indexed by row, so the errors of a row are found without scanning all errors. Equal errors
+ * (same row, message id and column, see [ExcelValidationErrorMessage.equals]) are stored only once.
+ *
+ * The number of stored errors may be limited by [maxStoredErrors]: For very large Excel sheets with a lot of errors,
+ * further errors are only counted (see [totalCount] and [getCount]), but not stored.
+ */
+class ExcelValidationErrorStore
+@JvmOverloads constructor(
+        /**
+         * Maximum number of errors to store. If set to -1 (default), all errors are stored.
+         */
+        var maxStoredErrors: Int = -1) {
+    private val rowMap = TreeMap<Int, MutableList<ExcelValidationErrorMessage>>()
+    private val messageIdCounter = mutableMapOf<String?, Int>()
+
+    /**
+     * Number of stored errors.
+     */
+    var size = 0
+        private set
+
+    /**
+     * Number of all errors including the errors not stored due to [maxStoredErrors].
+     */
+    var totalCount = 0
+        private set
+
+    /**
+     * @return true, if the message was stored, false if an equal message was already stored or if the maximum number
+     * of errors is exceeded (the error is counted anyway).
+     */
+    fun add(message: ExcelValidationErrorMessage): Boolean {
+        val rowErrors = rowMap[message.row]
+        if (rowErrors != null && rowErrors.contains(message)) {
+            return false
+        }
+        ++totalCount
+        messageIdCounter[message.messageId] = (messageIdCounter[message.messageId] ?: 0) + 1
+        if (maxStoredErrors in 0..size) {
+            return false
+        }
+        (rowErrors ?: mutableListOf<ExcelValidationErrorMessage>().also { rowMap[message.row] = it }).add(message)
+        ++size
+        return true
+    }
+
+    /**
+     * Removes the given stored error (errors only counted due to [maxStoredErrors] can't be removed).
+     * @return true, if the message was stored and is removed.
+     */
+    fun remove(message: ExcelValidationErrorMessage): Boolean {
+        val rowErrors = rowMap[message.row] ?: return false
+        if (!rowErrors.remove(message)) {
+            return false
+        }
+        if (rowErrors.isEmpty()) {
+            rowMap.remove(message.row)
+        }
+        --size
+        --totalCount
+        val count = (messageIdCounter[message.messageId] ?: 0) - 1
+        if (count > 0) messageIdCounter[message.messageId] = count else messageIdCounter.remove(message.messageId)
+        return true
+    }
+
+    /**
+     * @return Stored errors of the given row or empty list.
+     */
+    fun getErrors(row: Int): List<ExcelValidationErrorMessage> {
+        return rowMap[row] ?: emptyList()
+    }
+
+    /**
+     * @return Stored errors of the given row and column or empty list.
+     */
+    fun getErrors(row: Int, columnNumber: Int): List<ExcelValidationErrorMessage> {
+        return getErrors(row).filter { it.columnDef?._columnNumber == columnNumber }
+    }
+
+    /**
+     * @return All stored errors ordered by row.
+     */
+    val allErrors: List<ExcelValidationErrorMessage>
+        get() = rowMap.values.flatten()
+
+    /**
+     * @return All stored errors ordered by row without copying them.
+     */
+    fun asSequence(): Sequence<ExcelValidationErrorMessage> {
+        return rowMap.values.asSequence().flatten()
+    }
+
+    /**
+     * The rows with stored errors in ascending order.
+     */
+    val rows: Set<Int>
+        get() = Collections.unmodifiableSet(rowMap.keys)
+
+    /**
+     * @return Number of all errors with the given message id (including the errors not stored).
+     */
+    fun getCount(messageId: String): Int {
+        return messageIdCounter[messageId] ?: 0
+    }
+
+    /**
+     * Number of all errors (including the errors not stored) by message id.
+     */
+    val countByMessageId: Map<String?, Int>
+        get() = messageIdCounter.toMap()
+
+    /**
+     * True, if more errors occurred than stored (see [maxStoredErrors]).
+     */
+    val isTruncated: Boolean
+        get() = totalCount > size
+
+    fun hasErrors(): Boolean {
+        return totalCount > 0
+    }
+
+    fun clear() {
+        rowMap.clear()
+        messageIdCounter.clear()
+        size = 0
+        totalCount = 0
+    }
+}
@@ -1,14 +1,25 @@
 package de.micromata.merlin.excel
 
 import de.micromata.merlin.CoreI18n
+import de.micromata.merlin.csv.CSVWriter
 import de.micromata.merlin.persistency.PersistencyRegistry
 import org.apache.commons.collections4.CollectionUtils
 import org.apache.commons.io.output.ByteArrayOutputStream
+import org.apache.poi.openxml4j.opc.OPCPackage
+import org.apache.poi.openxml4j.opc.PackageAccess
 import org.apache.poi.ss.usermodel.*
+import org.apache.poi.ss.util.WorkbookUtil
+import org.apache.poi.xssf.streaming.SXSSFWorkbook
+import org.apache.poi.xssf.usermodel.XSSFWorkbook
 import org.slf4j.LoggerFactory
 import java.io.*
+import java.nio.charset.Charset
+import java.nio.charset.StandardCharsets
 import java.nio.file.Path
 import java.util.*
+import java.util.concurrent.Callable
+import java.util.concurrent.ExecutionException
+import java.util.concurrent.Executors
 
 /**
  * Wraps and enhances a POI workbook.
@@ -23,14 +34,51 @@ class ExcelWorkbook
 
     lateinit var pOIWorkbook: Workbook
         private set
-    private val sheetList = mutableListOf<ExcelSheet>()
-    private var sheetListInitialized = false
+    // Replaced as a whole (not modified), so it may be read without locking.
+    @Volatile
+    private var sheetList: List<ExcelSheet>? = null
     private val cellStyleMap: MutableMap<String, CellStyle?> = HashMap()
     private val fontMap: MutableMap<String, Font?> = HashMap()
     private var inputStream: InputStream? = null
     var filename: String? = null
         private set
 
+    /**
+     * The source of the sheets in streaming read mode, otherwise null.
+     * @see createForStreamingRead
+     */
+    internal var streamingSource: ExcelRowSource? = null
+        private set
+
+    /**
+     * If true, the sheets are read row by row by [ExcelSheet.analyze] without holding the content of the sheets in memory.
+     * @see createForStreamingRead
+     */
+    val isStreamingRead: Boolean
+        get() = streamingSource != null
+
+    /**
+     * If true, the workbook reads a csv file in streaming read mode (all cells are strings).
+     * @see createForCsvRead
+     */
+    val isCsvRead: Boolean
+        get() = streamingSource is CsvRowSource
+
+    /**
+     * If true, the rows are written via a POI [SXSSFWorkbook]: Only the last [rowAccessWindowSize] rows of each sheet
+     * are held in memory, older rows are flushed to disk and can't be accessed anymore.
+     * @see createForStreamingWrite
+     */
+    val isStreamingWrite: Boolean
+        get() = pOIWorkbook is SXSSFWorkbook
+
+    /**
+     * The number of rows per sheet held in memory in streaming write mode.
+     * @see createForStreamingWrite
+     */
+    var rowAccessWindowSize: Int = -1
+        private set
+
     val filenameExtension: String?
         get() = File(filename ?: "unkown.xlsx").extension
 
@@ -38,6 +86,7 @@ class ExcelWorkbook
         get() = File(filename ?: "unkown.xlsx").nameWithoutExtension
 
     var formulaEvaluator: FormulaEvaluator? = null
+        @Synchronized
         get() {
             if (field == null) {
                 field = pOIWorkbook.creationHelper.createFormulaEvaluator()
@@ -106,18 +155,32 @@ class ExcelWorkbook
         }
     }
 
+    private fun openStreaming(pkg: OPCPackage, filename: String) {
+        this.filename = File(filename).name
+        try {
+            val source = ExcelStreamingSource(pkg)
+            // The sheets of the workbook contain only the rows read by ExcelSheet.analyze.
+            pOIWorkbook = XSSFWorkbook()
+            source.sheetNames.forEach { pOIWorkbook.createSheet(it) }
+            streamingSource = source
+        } catch (ex: Exception) {
+            pkg.revert()
+            log.error("Couldn't open File '" + filename + "' for streaming read: " + ex.message, ex)
+            throw RuntimeException(ex)
+        }
+    }
+
     fun getSheet(idx: Int): ExcelSheet? {
-        initializeSheetList()
-        return sheetList[idx]
+        return initializeSheetList()[idx]
     }
 
     fun getSheet(sheetName: String?): ExcelSheet? {
-        initializeSheetList()
+        val sheets = initializeSheetList()
         if (sheetName == null) {
             log.error("Can't get sheet by name without given name. Name parameter is null.")
             return null
         }
-        for (sheet in sheetList) {
+        for (sheet in sheets) {
             if (sheetName == sheet.sheetName) {
                 return sheet
             }
@@ -170,8 +233,7 @@ class ExcelWorkbook
         sheet = ExcelSheet(this, pOIWorkbook.createSheet(sheetName))
         sheet.isModified = true
         synchronized(this) {
-            sheetListInitialized = false
-            sheetList.clear()
+            sheetList = null
         }
         return sheet
     }
@@ -187,8 +249,7 @@ class ExcelWorkbook
         this.pOIWorkbook.setSheetName(index, name)
         val sheet = ExcelSheet(this, poiSheet)
         synchronized(this) {
-            sheetListInitialized = false
-            sheetList.clear()
+            sheetList = null
         }
         return sheet
     }
@@ -203,16 +264,16 @@ class ExcelWorkbook
         pOIWorkbook.removeSheetAt(idx)
     }
 
-    private fun initializeSheetList() {
+    private fun initializeSheetList(): List<ExcelSheet> {
+        sheetList?.let { return it } // Already initialized.
         synchronized(this) {
-            if (sheetListInitialized) {
-                return  // Already initialized.
-            }
+            sheetList?.let { return it }
+            val sheets = mutableListOf<ExcelSheet>()
             for (poiSheet in pOIWorkbook) {
-                val excelSheet = ExcelSheet(this, poiSheet)
-                sheetList.add(excelSheet)
+                sheets.add(ExcelSheet(this, poiSheet))
             }
-            sheetListInitialized = true
+            sheetList = sheets
+            return sheets
         }
     }
 
@@ -221,8 +282,7 @@ class ExcelWorkbook
      */
     val isModified: Boolean
         get() {
-            initializeSheetList()
-            for (sheet in sheetList) {
+            for (sheet in initializeSheetList()) {
                 if (sheet.isModified) {
                     return true
                 }
@@ -230,6 +290,56 @@ class ExcelWorkbook
             return false
         }
 
+    /**
+     * Analyzes all sheets with registered columns (see [ExcelSheet.registerColumn]) by calling [ExcelSheet.analyze].
+     * Sheets without registered columns are skipped. The sheets are independent of each other, so they may be analyzed
+     * concurrently.
+     *
+     * @param validate if true, then each cell of a column with a given ExcelColumnValidator will be validated.
+     * @param parallelism Number of sheets to analyze concurrently. 1 (default) analyzes the sheets one after another,
+     * a value lower than 1 uses all available processors.
+     * @return this for chaining.
+     * @see allValidationErrors
+     */
+    @JvmOverloads
+    fun analyzeAll(validate: Boolean = true, parallelism: Int = 1): ExcelWorkbook {
+        val sheets = initializeSheetList().filter { it.columnDefinitions.isNotEmpty() }
+        if (parallelism == 1 || sheets.size <= 1) {
+            sheets.forEach { it.analyze(validate) }
+            return this
+        }
+        val threads = if (parallelism < 1) Runtime.getRuntime().availableProcessors() else parallelism
+        val executor = Executors.newFixedThreadPool(Math.min(threads, sheets.size))
+        try {
+            val futures = sheets.map { sheet -> executor.submit(Callable { sheet.analyze(validate) }) }
+            for (future in futures) {
+                future.get()
+            }
+        } catch (ex: ExecutionException) {
+            log.error("Error while analyzing workbook '$filename': " + ex.cause?.message, ex.cause)
+            throw RuntimeException(ex.cause)
+        } finally {
+            executor.shutdownNow()
+        }
+        return this
+    }
+
+    /**
+     * @return All validation errors of all sheets (see [ExcelSheet.allValidationErrors]) in the order of the sheets.
+     * An empty list will be returned if no validation error was found.
+     */
+    val allValidationErrors: List<ExcelValidationErrorMessage>
+        get() = initializeSheetList().flatMap { it.allValidationErrors }
+
+    /**
+     * @return true, if any sheet has validation errors.
+     * @see allValidationErrors
+     */
+    fun hasValidationErrors(): Boolean {
+        return initializeSheetList().any { it.allValidationErrors.isNotEmpty() }
+    }
+
+    @Synchronized
     fun doesCellStyleExist(id: String?): Boolean {
         return cellStyleMap.containsKey(id)
     }
@@ -240,6 +350,7 @@ class ExcelWorkbook
      * @param id Id of the cell style for re-usage. If not given, cell style will not saved for re-usage.
      * @return The CellStyle to use.
      */
+    @Synchronized
     fun createOrGetCellStyle(id: String? = null): CellStyle {
         var cellStyle = cellStyleMap[id]
         if (cellStyle == null) {
@@ -251,6 +362,7 @@ class ExcelWorkbook
         return cellStyle
     }
 
+    @Synchronized
     fun ensureCellStyle(format: ExcelCellStandardFormat): CellStyle? {
         val exist = doesCellStyleExist("DataFormat." + format.name)
         val cellStyle = createOrGetCellStyle("DataFormat." + format.name)
@@ -264,6 +376,7 @@ class ExcelWorkbook
         return cellStyle
     }
 
+    @Synchronized
     fun ensureDateCellStyle(dateFormat: String): CellStyle? {
         val exist = doesCellStyleExist("DataFormat." + ExcelCellStandardFormat.DATE.name + "." + dateFormat)
         val cellStyle = createOrGetCellStyle("DataFormat." + ExcelCellStandardFormat.DATE.name + "." + dateFormat)
@@ -292,6 +405,7 @@ class ExcelWorkbook
      * @param id The font id to re-use or create.
      * @return The font to use.
      */
+    @Synchronized
     fun createOrGetFont(id: String): Font? {
         var font = fontMap[id]
         if (font == null) {
@@ -334,7 +448,9 @@ class ExcelWorkbook
             if (inputStream != null) {
                 inputStream!!.close()
             }
+            streamingSource?.close()
             pOIWorkbook.close()
+            (pOIWorkbook as? SXSSFWorkbook)?.dispose() // Deletes the temporary files of the flushed rows.
         } catch (ioe: IOException) { // ignore
         }
     }
@@ -351,5 +467,145 @@ class ExcelWorkbook
             val filename = path.fileName.toString()
             return ExcelWorkbook(inputStream, filename)
         }
+
+        /**
+         * Reads the workbook through the given cache (see [ExcelWorkbookCache.open]). The returned workbook contains
+         * the cell values only (no formulas, comments or styles), if served from the cache, so use it for reading only.
+         */
+        @JvmStatic
+        fun createCached(path: Path, cache: ExcelWorkbookCache): ExcelWorkbook? {
+            val inputStream = PersistencyRegistry.getDefault().getInputStream(path)
+            if (inputStream == null) {
+                log.error("Can't get input stream for path: " + path.toAbsolutePath())
+                return null
+            }
+            val filename = path.fileName.toString()
+            val byteArray = try {
+                inputStream.use { it.readBytes() }
+            } catch (ex: IOException) {
+                log.error("Couldn't read File '" + path.toAbsolutePath() + "': " + ex.message, ex)
+                throw RuntimeException(ex)
+            }
+            return cache.open(byteArray, filename)
+        }
+
+        /**
+         * Creates a new xlsx workbook in streaming write mode for writing large sheets (e. g. exports with millions of
+         * rows): Only the last [rowAccessWindowSize] rows of each sheet are held in memory (including their [ExcelRow]
+         * and [ExcelCell] wrappers), older rows are flushed to temporary files and can't be accessed anymore. Cell styles
+         * and fonts are shared as usual (see [createOrGetCellStyle] and [ensureDateCellStyle]).
+         *
+         * Don't forget to close the workbook after writing for deleting the temporary files.
+         *
+         * @param rowAccessWindowSize The number of rows per sheet held in memory.
+         */
+        @JvmStatic
+        @JvmOverloads
+        fun createForStreamingWrite(rowAccessWindowSize: Int = SXSSFWorkbook.DEFAULT_WINDOW_SIZE,
+                                    locale: Locale = Locale.getDefault()): ExcelWorkbook {
+            require(rowAccessWindowSize > 0) { "Row access window size must be positive: $rowAccessWindowSize" }
+            val workbook = ExcelWorkbook(SXSSFWorkbook(rowAccessWindowSize), locale)
+            workbook.rowAccessWindowSize = rowAccessWindowSize
+            return workbook
+        }
+
+        /**
+         * Opens a xlsx file in streaming read mode: The sheets are read row by row (via POI's XSSF event API) by
+         * [ExcelSheet.analyze], so the head row detection and all registered [ExcelColumnListener]s work as usual in
+         * constant memory.
+         *
+         * The sheets contain only the detected head row after analyzing, so use this mode only for analyzing and
+         * validating, not for modifying (e. g. [ExcelSheet.markErrors]) or random access to cells.
+         *
+         * @param excelFile The xlsx file (xls isn't supported).
+         */
+        @JvmStatic
+        @JvmOverloads
+        fun createForStreamingRead(excelFile: File, locale: Locale = Locale.getDefault()): ExcelWorkbook {
+            val pkg = try {
+                OPCPackage.open(excelFile, PackageAccess.READ)
+            } catch (ex: Exception) {
+                log.error("Couldn't open File '" + excelFile.absolutePath + "': " + ex.message)
+                throw RuntimeException(ex)
+            }
+            val workbook = ExcelWorkbook(locale)
+            workbook.openStreaming(pkg, excelFile.name)
+            return workbook
+        }
+
+        /**
+         * Opens a csv file in streaming read mode (see [createForStreamingRead]): The workbook contains one sheet
+         * (named as the file without extension), which is read row by row by [ExcelSheet.analyze], so the same
+         * [ExcelColumnDef] registrations, validators and row handlers (e. g. for filling beans) work for csv files as
+         * for Excel files. All cells are strings.
+         *
+         * @param csvFile The csv file.
+         * @param charset The charset of the csv file.
+         * @param csvSeparatorChar The separator char of the csv file.
+         * @see ExcelValidationErrorReport
+         */
+        @JvmStatic
+        @JvmOverloads
+        fun createForCsvRead(csvFile: File,
+                             charset: Charset = StandardCharsets.UTF_8,
+                             csvSeparatorChar: Char = CSVWriter.DEFAULT_CSV_SEPARATOR_CHAR,
+                             locale: Locale = Locale.getDefault()): ExcelWorkbook {
+            if (!csvFile.canRead()) {
+                log.error("Couldn't open File '" + csvFile.absolutePath + "'.")
+                throw RuntimeException(FileNotFoundException(csvFile.absolutePath))
+            }
+            val sheetName = WorkbookUtil.createSafeSheetName(csvFile.nameWithoutExtension)
+            val workbook = ExcelWorkbook(locale)
+            workbook.filename = csvFile.name
+            // The sheet of the workbook contains only the rows read by ExcelSheet.analyze.
+            workbook.pOIWorkbook = XSSFWorkbook()
+            workbook.pOIWorkbook.createSheet(sheetName)
+            workbook.streamingSource = CsvRowSource(csvFile, charset, csvSeparatorChar, sheetName)
+            return workbook
+        }
+
+        /**
+         * Creates a workbook with the sheets of the given source (used by [ExcelWorkbookCache]).
+         *
+         * @param streaming If true, the workbook is in streaming read mode (see [createForStreamingRead]), otherwise
+         * all rows are read into the sheets and the source is closed.
+         */
+        internal fun createForSource(source: ExcelRowSource, filename: String, locale: Locale, streaming: Boolean): ExcelWorkbook {
+            val workbook = ExcelWorkbook(locale)
+            workbook.filename = File(filename).name
+            workbook.pOIWorkbook = XSSFWorkbook()
+            source.sheetNames.forEach { workbook.pOIWorkbook.createSheet(it) }
+            if (streaming) {
+                workbook.streamingSource = source
+                return workbook
+            }
+            source.use {
+                it.sheetNames.forEach { sheetName ->
+                    it.readRows(sheetName, workbook.pOIWorkbook.getSheet(sheetName), -1) { _, _ -> true }
+                }
+            }
+            return workbook
+        }
+
+        /**
+         * Opens a xlsx file in streaming read mode (see [createForStreamingRead]). Prefer the file variant, because
+         * the zip entries of the input stream have to be buffered.
+         *
+         * @param inputStream The input stream to read the Excel content from.
+         * @param filename    Only for logging purposes if any error occurs.
+         */
+        @JvmStatic
+        @JvmOverloads
+        fun createForStreamingRead(inputStream: InputStream, filename: String, locale: Locale = Locale.getDefault()): ExcelWorkbook {
+            val pkg = try {
+                OPCPackage.open(inputStream)
+            } catch (ex: Exception) {
+                log.error("Couldn't open File '" + filename + "' from InputStream: " + ex.message, ex)
+                throw RuntimeException(ex)
+            }
+            val workbook = ExcelWorkbook(locale)
+            workbook.openStreaming(pkg, filename)
+            return workbook
+        }
     }
 }
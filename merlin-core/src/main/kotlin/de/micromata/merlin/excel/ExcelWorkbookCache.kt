@@ -0,0 +1,200 @@
+package de.micromata.merlin.excel
+
+import org.slf4j.LoggerFactory
+import java.io.File
+import java.io.FileInputStream
+import java.io.IOException
+import java.io.InputStream
+import java.nio.file.Files
+import java.nio.file.StandardCopyOption
+import java.security.MessageDigest
+import java.util.*
+import java.util.concurrent.atomic.AtomicLong
+
+/**
+ * Optional persistent cache of parsed workbooks (e. g. template definitions, serial data or config sheets, which are
+ * read again and again, but rarely change). The cell values of all sheets (typed values, data formats and shared
+ * strings) are stored in a compact binary file in [cacheDir], keyed by the hash (SHA-256) of the file content, so
+ * modified files are never served from an outdated cache entry.
+ *
+ * Cache files are read via memory-mapped I/O without unzipping and parsing the xlsx content. The returned workbooks
+ * contain the cell values as read, but no formulas, comments, merged regions or styles except data formats, so use
+ * them for reading only.
+ *
+ * Workbooks are only read through a cache if requested explicitly (by this class or [ExcelWorkbook.createCached]).
+ *
+ * @param maxEntries The maximum number of cache files, the least recently used files are deleted.
+ */
+class ExcelWorkbookCache @JvmOverloads constructor(val cacheDir: File, val maxEntries: Int = 100) {
+    private val hitCounter = AtomicLong()
+    private val missCounter = AtomicLong()
+
+    val hits: Long
+        get() = hitCounter.get()
+
+    val misses: Long
+        get() = missCounter.get()
+
+    init {
+        require(maxEntries > 0) { "Maximum number of cache entries must be positive: $maxEntries" }
+        if (!cacheDir.exists() && !cacheDir.mkdirs()) {
+            log.error("Can't create cache directory '${cacheDir.absolutePath}'.")
+        }
+    }
+
+    /**
+     * Opens the workbook from the cache. If not cached, the file is read as usual ([ExcelWorkbook] constructor) and
+     * stored in the cache.
+     */
+    @JvmOverloads
+    fun open(excelFile: File, locale: Locale = Locale.getDefault()): ExcelWorkbook {
+        val hash = FileInputStream(excelFile).use { hash(it, excelFile) }
+        return open(hash, excelFile.name, locale) { ExcelWorkbook(excelFile, locale) }
+    }
+
+    /**
+     * Opens the workbook from the cache. If not cached, the content is read as usual ([ExcelWorkbook] constructor) and
+     * stored in the cache.
+     *
+     * @param filename Only for logging purposes if any error occurs.
+     */
+    @JvmOverloads
+    fun open(byteArray: ByteArray, filename: String, locale: Locale = Locale.getDefault()): ExcelWorkbook {
+        val hash = byteArray.inputStream().use { hash(it, File(filename)) }
+        return open(hash, filename, locale) { ExcelWorkbook(byteArray, filename, locale) }
+    }
+
+    /**
+     * Opens the workbook from the cache in streaming read mode (see [ExcelWorkbook.createForStreamingRead]). If not
+     * cached, the xlsx file is read in streaming read mode and stored in the cache, so the rows of large files aren't
+     * held in memory while caching. Only the distinct strings and data formats are held (for the shared strings
+     * table of the cache file), so the memory usage grows with the number of distinct strings.
+     *
+     * @param excelFile The xlsx file (xls isn't supported).
+     */
+    @JvmOverloads
+    fun openForStreamingRead(excelFile: File, locale: Locale = Locale.getDefault()): ExcelWorkbook {
+        val hash = FileInputStream(excelFile).use { hash(it, excelFile) }
+        getCachedSource(hash)?.let {
+            return ExcelWorkbook.createForSource(it, excelFile.name, locale, true)
+        }
+        ExcelWorkbook.createForStreamingRead(excelFile, locale).use { workbook ->
+            val source = workbook.streamingSource!!
+            write(hash, excelFile.name) { writer ->
+                source.sheetNames.forEach { sheetName ->
+                    writer.beginSheet(sheetName)
+                    source.readRows(sheetName, workbook.pOIWorkbook.getSheet(sheetName), -1) { row, rowNumber ->
+                        writer.writeRow(row, rowNumber)
+                        false // Remove the row from the scratch sheet.
+                    }
+                }
+            }
+        }
+        val source = getCachedSource(hash, false)
+                ?: return ExcelWorkbook.createForStreamingRead(excelFile, locale) // Cache file couldn't be written.
+        return ExcelWorkbook.createForSource(source, excelFile.name, locale, true)
+    }
+
+    /**
+     * Deletes all cache files.
+     */
+    fun clear() {
+        cacheFiles().forEach { it.delete() }
+    }
+
+    private fun open(hash: String, filename: String, locale: Locale, read: () -> ExcelWorkbook): ExcelWorkbook {
+        getCachedSource(hash)?.let {
+            return ExcelWorkbook.createForSource(it, filename, locale, false)
+        }
+        val workbook = read()
+        write(hash, filename) { writer ->
+            workbook.pOIWorkbook.forEach { sheet ->
+                writer.beginSheet(sheet.sheetName)
+                sheet.forEach { writer.writeRow(it) }
+            }
+        }
+        return workbook
+    }
+
+    private fun getCachedSource(hash: String, count: Boolean = true): CachedWorkbookSource? {
+        val file = getCacheFile(hash)
+        if (!file.exists()) {
+            if (count) missCounter.incrementAndGet()
+            return null
+        }
+        return try {
+            val source = CachedWorkbookSource(file)
+            file.setLastModified(System.currentTimeMillis()) // For deleting least recently used files.
+            if (count) hitCounter.incrementAndGet()
+            source
+        } catch (ex: Exception) {
+            log.warn("Ignoring invalid cache file '${file.absolutePath}': ${ex.message}")
+            file.delete()
+            if (count) missCounter.incrementAndGet()
+            null
+        }
+    }
+
+    /**
+     * Failures are logged, but not thrown: the workbook is usable without cache.
+     */
+    private fun write(hash: String, filename: String, writeSheets: (CachedWorkbookWriter) -> Unit) {
+        // Written to a temporary file and moved, so concurrent readers never see incomplete files.
+        val tmpFile = File(cacheDir, "$hash.${UUID.randomUUID()}.tmp")
+        try {
+            CachedWorkbookWriter(tmpFile).use { writer ->
+                writeSheets(writer)
+                writer.finish()
+            }
+            Files.move(tmpFile.toPath(), getCacheFile(hash).toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE)
+            log.debug("Workbook '$filename' written to cache.")
+        } catch (ex: Exception) {
+            log.error("Can't write workbook '$filename' to cache directory '${cacheDir.absolutePath}': ${ex.message}", ex)
+            tmpFile.delete()
+            return
+        }
+        cleanUp()
+    }
+
+    private fun cleanUp() {
+        val files = cacheFiles()
+        if (files.size <= maxEntries) {
+            return
+        }
+        files.sortedBy { it.lastModified() }.take(files.size - maxEntries).forEach {
+            log.debug("Deleting least recently used cache file '${it.absolutePath}'.")
+            it.delete()
+        }
+    }
+
+    private fun cacheFiles(): List<File> {
+        return cacheDir.listFiles { file -> file.name.endsWith(CACHE_FILE_EXTENSION) }?.toList() ?: emptyList()
+    }
+
+    private fun getCacheFile(hash: String): File {
+        return File(cacheDir, "$hash$CACHE_FILE_EXTENSION")
+    }
+
+    private fun hash(inputStream: InputStream, file: File): String {
+        try {
+            val digest = MessageDigest.getInstance("SHA-256")
+            val buffer = ByteArray(1 shl 16)
+            while (true) {
+                val length = inputStream.read(buffer)
+                if (length < 0) {
+                    break
+                }
+                digest.update(buffer, 0, length)
+            }
+            return digest.digest().joinToString("") { String.format("%02x", it) }
+        } catch (ex: IOException) {
+            log.error("Couldn't read File '${file.absolutePath}': ${ex.message}", ex)
+            throw RuntimeException(ex)
+        }
+    }
+
+    companion object {
+        private val log = LoggerFactory.getLogger(ExcelWorkbookCache::class.java)
+        private const val CACHE_FILE_EXTENSION = ".mwc"
+    }
+}
@@ -0,0 +1,283 @@
+package de.micromata.merlin.excel
+
+import org.slf4j.LoggerFactory
+import java.io.File
+import java.io.IOException
+import java.nio.ByteBuffer
+import java.nio.channels.FileChannel
+import java.nio.file.Files
+import java.nio.file.StandardOpenOption
+
+/**
+ * Unique index for very large sheets: Only 64 bit fingerprints of the values are held in an off-heap hash table
+ * (open addressing, 24 bytes per slot). The values itself are appended to a value log, which is used for exact
+ * verification, if fingerprints are equal. The value log is held off-heap or, if a spill directory is given, in a
+ * temporary file. Hence the Java heap isn't used for the registered values at all.
+ *
+ * Please call [close] after usage for releasing the temporary file.
+ */
+class FingerprintUniqueIndex
+@JvmOverloads constructor(initialCapacity: Int = 1 shl 16,
+                          /**
+                           * If given, the values are written to a temporary file in this directory instead of
+                           * off-heap memory.
+                           */
+                          spillDirectory: File? = null)
+    : ExcelUniqueIndex {
+    private var capacity = Integer.highestOneBit(Math.max(initialCapacity, 16) - 1) shl 1
+    private var slots = allocateSlots(capacity)
+    private var count = 0L
+    private val valueLog: ValueLog = if (spillDirectory != null) FileValueLog(spillDirectory) else MemoryValueLog()
+
+    @Synchronized
+    override fun get(value: String): Long {
+        val bytes = value.toByteArray(Charsets.UTF_8)
+        val slot = findSlot(fingerprint(value), bytes)
+        return if (slot < 0) ExcelUniqueIndex.NONE else slots.getLong(slot * SLOT_SIZE + 8)
+    }
+
+    @Synchronized
+    override fun putIfAbsent(value: String, reference: Long): Long {
+        val bytes = value.toByteArray(Charsets.UTF_8)
+        val fingerprint = fingerprint(value)
+        val slot = findSlot(fingerprint, bytes)
+        if (slot >= 0) {
+            return slots.getLong(slot * SLOT_SIZE + 8)
+        }
+        if ((count + 1) * 2 > capacity) {
+            resize()
+        }
+        insert(slots, capacity, fingerprint, reference, valueLog.append(bytes))
+        ++count
+        return ExcelUniqueIndex.NONE
+    }
+
+    override val size: Long
+        @Synchronized
+        get() = count
+
+    @Synchronized
+    override fun clear() {
+        slots = allocateSlots(capacity)
+        count = 0
+        valueLog.clear()
+    }
+
+    @Synchronized
+    override fun close() {
+        valueLog.close()
+    }
+
+    /**
+     * @return The slot of the given value or -1, if not found.
+     */
+    private fun findSlot(fingerprint: Long, bytes: ByteArray): Int {
+        val mask = capacity - 1
+        var slot = (fingerprint and mask.toLong()).toInt()
+        while (true) {
+            val current = slots.getLong(slot * SLOT_SIZE)
+            if (current == EMPTY) {
+                return -1
+            }
+            if (current == fingerprint && valueLog.equals(slots.getLong(slot * SLOT_SIZE + 16), bytes)) {
+                return slot
+            }
+            slot = (slot + 1) and mask // Fingerprint collision or other value: probe next slot.
+        }
+    }
+
+    private fun resize() {
+        check(capacity < MAX_CAPACITY) { "Maximum number of values of unique index exceeded: $count." }
+        val newCapacity = capacity shl 1
+        val newSlots = allocateSlots(newCapacity)
+        for (slot in 0 until capacity) {
+            val fingerprint = slots.getLong(slot * SLOT_SIZE)
+            if (fingerprint != EMPTY) {
+                insert(newSlots, newCapacity, fingerprint, slots.getLong(slot * SLOT_SIZE + 8), slots.getLong(slot * SLOT_SIZE + 16))
+            }
+        }
+        slots = newSlots
+        capacity = newCapacity
+    }
+
+    private fun insert(slots: ByteBuffer, capacity: Int, fingerprint: Long, reference: Long, valueOffset: Long) {
+        val mask = capacity - 1
+        var slot = (fingerprint and mask.toLong()).toInt()
+        while (slots.getLong(slot * SLOT_SIZE) != EMPTY) {
+            slot = (slot + 1) and mask
+        }
+        slots.putLong(slot * SLOT_SIZE, fingerprint)
+        slots.putLong(slot * SLOT_SIZE + 8, reference)
+        slots.putLong(slot * SLOT_SIZE + 16, valueOffset)
+    }
+
+    /**
+     * Append only storage of the values (UTF-8 with length prefix).
+     */
+    private interface ValueLog : AutoCloseable {
+        /**
+         * @return The offset of the appended value.
+         */
+        fun append(bytes: ByteArray): Long
+
+        fun equals(offset: Long, bytes: ByteArray): Boolean
+
+        fun clear()
+
+        override fun close()
+    }
+
+    private class MemoryValueLog : ValueLog {
+        private val chunks = mutableListOf<ByteBuffer>()
+
+        override fun append(bytes: ByteArray): Long {
+            val last = chunks.lastOrNull()
+            val chunk = if (last != null && last.remaining() >= bytes.size + 4) {
+                last
+            } else {
+                ByteBuffer.allocateDirect(Math.max(CHUNK_SIZE, bytes.size + 4)).also { chunks.add(it) }
+            }
+            val offset = (chunks.size - 1).toLong() shl 32 or chunk.position().toLong()
+            chunk.putInt(bytes.size)
+            chunk.put(bytes)
+            return offset
+        }
+
+        override fun equals(offset: Long, bytes: ByteArray): Boolean {
+            val chunk = chunks[(offset ushr 32).toInt()]
+            var pos = offset.toInt()
+            if (chunk.getInt(pos) != bytes.size) {
+                return false
+            }
+            pos += 4
+            for (i in bytes.indices) {
+                if (chunk.get(pos + i) != bytes[i]) {
+                    return false
+                }
+            }
+            return true
+        }
+
+        override fun clear() {
+            chunks.clear()
+        }
+
+        override fun close() {
+            chunks.clear()
+        }
+    }
+
+    private class FileValueLog(directory: File) : ValueLog {
+        private val file = File.createTempFile("merlin-unique-index-", ".bin", directory)
+        private val channel = FileChannel.open(file.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE)
+        private val writeBuffer = ByteBuffer.allocate(WRITE_BUFFER_SIZE)
+        private var flushedSize = 0L
+
+        init {
+            file.deleteOnExit()
+        }
+
+        override fun append(bytes: ByteArray): Long {
+            if (writeBuffer.remaining() < bytes.size + 4) {
+                flush()
+            }
+            val offset = flushedSize + writeBuffer.position()
+            if (bytes.size + 4 > writeBuffer.capacity()) {
+                write(ByteBuffer.allocate(bytes.size + 4).putInt(bytes.size).put(bytes))
+            } else {
+                writeBuffer.putInt(bytes.size).put(bytes)
+            }
+            return offset
+        }
+
+        override fun equals(offset: Long, bytes: ByteArray): Boolean {
+            flush()
+            val buffer = ByteBuffer.allocate(bytes.size + 4)
+            try {
+                while (buffer.hasRemaining()) {
+                    if (channel.read(buffer, offset + buffer.position()) < 0) {
+                        break
+                    }
+                }
+            } catch (ex: IOException) {
+                log.error("Can't read value log of unique index '${file.absolutePath}': ${ex.message}", ex)
+                throw RuntimeException(ex)
+            }
+            buffer.flip()
+            if (buffer.remaining() < 4 || buffer.getInt() != bytes.size || buffer.remaining() < bytes.size) {
+                return false
+            }
+            return buffer.slice() == ByteBuffer.wrap(bytes)
+        }
+
+        override fun clear() {
+            writeBuffer.clear()
+            try {
+                channel.truncate(0)
+            } catch (ex: IOException) {
+                log.error("Can't truncate value log of unique index '${file.absolutePath}': ${ex.message}", ex)
+                throw RuntimeException(ex)
+            }
+            flushedSize = 0
+        }
+
+        override fun close() {
+            try {
+                channel.close()
+                Files.deleteIfExists(file.toPath())
+            } catch (ex: IOException) {
+                log.warn("Can't delete value log of unique index '${file.absolutePath}': ${ex.message}")
+            }
+        }
+
+        private fun flush() {
+            if (writeBuffer.position() == 0) {
+                return
+            }
+            writeBuffer.flip()
+            write(writeBuffer)
+            writeBuffer.clear()
+        }
+
+        private fun write(buffer: ByteBuffer) {
+            if (buffer.position() > 0 && buffer !== writeBuffer) {
+                buffer.flip()
+            }
+            try {
+                while (buffer.hasRemaining()) {
+                    flushedSize += channel.write(buffer, flushedSize)
+                }
+            } catch (ex: IOException) {
+                log.error("Can't write value log of unique index '${file.absolutePath}': ${ex.message}", ex)
+                throw RuntimeException(ex)
+            }
+        }
+    }
+
+    companion object {
+        private val log = LoggerFactory.getLogger(FingerprintUniqueIndex::class.java)
+        private const val SLOT_SIZE = 24 // fingerprint, reference, value offset.
+        private const val EMPTY = 0L
+        private const val MAX_CAPACITY = 1 shl 26 // Slots must fit into one ByteBuffer (< 2 GB).
+        private const val CHUNK_SIZE = 1 shl 22
+        private const val WRITE_BUFFER_SIZE = 1 shl 16
+
+        private fun allocateSlots(capacity: Int): ByteBuffer {
+            return ByteBuffer.allocateDirect(capacity * SLOT_SIZE) // Initialized with 0 (EMPTY).
+        }
+
+        /**
+         * 64 bit FNV-1a hash of the chars with final avalanche mixing. 0 is reserved for empty slots.
+         */
+        internal fun fingerprint(value: String): Long {
+            var hash = -0x340d631b7bdddcdbL
+            for (i in 0 until value.length) {
+                hash = (hash xor value[i].toLong()) * 0x100000001b3L
+            }
+            hash = (hash xor (hash ushr 33)) * -0xae502812aa7333L
+            hash = (hash xor (hash ushr 33)) * -0x3b314601e57a13adL
+            hash = hash xor (hash ushr 33)
+            return if (hash == EMPTY) 1L else hash
+        }
+    }
+}
@@ -3,6 +3,7 @@ package de.micromata.merlin.excel
 import org.apache.poi.ss.usermodel.Cell
 import org.apache.poi.ss.usermodel.CellType
 import org.apache.poi.ss.usermodel.DataFormatter
+import org.apache.poi.ss.usermodel.Date1904Support
 import org.apache.poi.ss.usermodel.DateUtil
 import org.slf4j.LoggerFactory
 import java.text.NumberFormat
@@ -14,6 +15,16 @@ import java.util.*
  */
 object PoiHelper {
     private val log = LoggerFactory.getLogger(PoiHelper::class.java)
+
+    // Formatters aren't thread safe and expensive to create, so they are cached per thread (and locale).
+    private val numberFormats = ThreadLocal.withInitial { HashMap<Locale, NumberFormat>() }
+    private val dataFormatter = ThreadLocal.withInitial { DataFormatter() }
+
+    /**
+     * Returned by [getEpochDay] for cells without a date value.
+     */
+    const val NO_EPOCH_DAY = Long.MIN_VALUE
+
     /**
      * @param trimValue If true, the result string will be trimmed. Default is false.
      */
@@ -23,15 +34,77 @@ object PoiHelper {
         if (cell == null) {
             return null
         }
-        val value = getValue(cell)
-        if (value == null)
-            return null
-        return when (value) {
-            is String -> if (trimValue) value.trim { it <= ' ' } else value
-            is Number -> NumberFormat.getInstance(locale).format(value)
-            is LocalDateTime -> DataFormatter().formatCellValue(cell)
-            else -> value.toString()
+        return when (cell.cellType) {
+            CellType.STRING -> if (trimValue) cell.stringCellValue.trim { it <= ' ' } else cell.stringCellValue
+            CellType.NUMERIC -> {
+                if (DateUtil.isCellDateFormatted(cell))
+                    dataFormatter.get().formatCellValue(cell)
+                else
+                    getNumberFormat(locale).format(cell.numericCellValue)
+            }
+            CellType.BOOLEAN -> cell.booleanCellValue.toString()
+            CellType.BLANK -> null
+            else -> {
+                log.warn("Unsupported Excel cell type: " + cell.cellType)
+                dataFormatter.get().formatCellValue(cell)
+            }
+        }
+    }
+
+    /**
+     * Formats the numeric value of the given date formatted cell (see [DateUtil.isCellDateFormatted]) by its data
+     * format, as [getValueAsString] does. Works for formula cells too (the cached result is formatted).
+     */
+    @JvmStatic
+    fun formatDateValue(cell: Cell): String {
+        val style = cell.cellStyle
+        val date1904 = (cell.sheet.workbook as? Date1904Support)?.isDate1904 == true
+        return dataFormatter.get().formatRawCellContents(cell.numericCellValue, style.dataFormat.toInt(), style.dataFormatString, date1904)
+    }
+
+    /**
+     * Appends the cell value as string (see [getValueAsString]) to the given buffer.
+     *
+     * @return false, if the cell has no value (nothing is appended), otherwise true.
+     */
+    @JvmStatic
+    @JvmOverloads
+    fun getStringInto(cell: Cell?, sb: StringBuilder, locale: Locale = Locale.getDefault(), trimValue: Boolean = false): Boolean {
+        val value = getValueAsString(cell, locale, trimValue) ?: return false
+        sb.append(value)
+        return true
+    }
+
+    /**
+     * @return The value of a numeric cell without boxing or [Double.NaN], if the cell isn't numeric.
+     */
+    @JvmStatic
+    fun getDouble(cell: Cell?): Double {
+        return if (cell?.cellType == CellType.NUMERIC) cell.numericCellValue else Double.NaN
+    }
+
+    /**
+     * Interprets the value of a numeric cell as Excel date (the time of day is ignored) without creating any date
+     * objects. The date windowing of the workbook (1900 or 1904) is regarded.
+     *
+     * @return The days since 1970-01-01 (see [java.time.LocalDate.toEpochDay]) or [NO_EPOCH_DAY], if the cell isn't
+     * numeric or its value isn't a valid Excel date.
+     */
+    @JvmStatic
+    fun getEpochDay(cell: Cell?): Long {
+        if (cell?.cellType != CellType.NUMERIC) {
+            return NO_EPOCH_DAY
+        }
+        val value = cell.numericCellValue
+        if (!DateUtil.isValidExcelDate(value)) {
+            return NO_EPOCH_DAY
+        }
+        val wholeDays = Math.floor(value).toLong()
+        if ((cell.sheet.workbook as? Date1904Support)?.isDate1904 == true) {
+            return wholeDays - 24107 // 0 is 1904-01-01.
         }
+        // 1 is 1900-01-01. Excel treats 1900 as leap year, so 60 is the non existing 1900-02-29 (same handling as POI).
+        return if (wholeDays < 61) wholeDays - 25568 else wholeDays - 25569
     }
 
     /**
@@ -54,13 +127,19 @@ object PoiHelper {
             }
             CellType.STRING -> cell.stringCellValue
             CellType.BLANK -> null
-            else -> {
-                log.warn("Unsupported Excel cell type: " + cell.cellType)
-                getValueAsString(cell)
-            }
+            else -> getValueAsString(cell)
         }
     }
 
+    /**
+     * @return The cached number format of the current thread for the given locale. Don't modify it and don't pass it
+     * to other threads.
+     */
+    @JvmStatic
+    fun getNumberFormat(locale: Locale): NumberFormat {
+        return numberFormats.get().getOrPut(locale) { NumberFormat.getInstance(locale) }
+    }
+
     @JvmStatic
     fun isEmpty(cell: Cell?): Boolean {
         if (cell == null) {
@@ -23,37 +23,48 @@
 package de.micromata.merlin.excel.importer
 
 import de.micromata.merlin.excel.ExcelSheet
-import de.micromata.merlin.excel.PoiHelper
-import de.micromata.merlin.utils.BeanHelper
+import java.util.*
+import java.util.concurrent.ConcurrentHashMap
 
 /**
  * @author Kai Reinhard (k.reinhard@micromata.de)
  */
 object ImportHelper {
+    // Row mappers by sheet and bean class. The sheets are weakly referenced, so they may be garbage collected.
+    private val mapperCache = WeakHashMap<ExcelSheet, MutableMap<Class<*>, CachedMapper>>()
+
     /**
      * Try to copy registered cell values of the given Excel row by name. This works for base data types.
      * Columns should be registered and have a targetProperty which fits the given bean.
      * Ignores null values.
+     * The [RowMapper] is created once per sheet and bean class and re-created, if the registered columns of the sheet
+     * are changed. For importing many rows, [RowMapper] may also be used directly.
      * @param locale The locale is used to format numbers as Strings (if numbers will be written to string properties of beans).
      * @see de.micromata.merlin.excel.ExcelColumnDef.targetProperty
      */
     fun fillBean(bean: Any, sheet: ExcelSheet, row: Int) {
-        sheet.columnDefinitions.forEach { columnDef ->
-            if (columnDef.found()) {
-                val targetProperty = columnDef.targetProperty
-                val cell = sheet.getCell(row, columnDef)
-                if (targetProperty != null && cell != null) {
-                    val setter = BeanHelper.determineSetter(bean::class.java, targetProperty)
-                    if (setter != null) {
-                        val type = setter.parameterTypes[0]
-                        val cellValue = if (type?.isAssignableFrom(String::class.java) == true)
-                            PoiHelper.getValueAsString(cell, sheet.locale, true)
-                        else
-                            PoiHelper.getValue(cell)
-                        BeanHelper.setProperty(bean, setter, type, cellValue, true)
-                    }
-                }
-            }
+        getRowMapper(bean::class.java, sheet).fillBean(bean, sheet, row)
+    }
+
+    /**
+     * @return The cached mapper of the given sheet and bean class, if the mapped columns weren't changed since
+     * creation, otherwise a new one.
+     */
+    internal fun getRowMapper(beanClass: Class<*>, sheet: ExcelSheet): RowMapper<Any> {
+        sheet.headRow // Finds the columns.
+        val columnsKey = sheet.columnDefinitions.map { if (it.found()) "${it.columnNumber}:${it.targetProperty}" else null }
+        val sheetMappers = synchronized(mapperCache) {
+            mapperCache.getOrPut(sheet) { ConcurrentHashMap() }
+        }
+        val cached = sheetMappers[beanClass]
+        if (cached != null && cached.columnsKey == columnsKey && cached.mapper.locale == sheet.locale) {
+            return cached.mapper
         }
+        @Suppress("UNCHECKED_CAST")
+        val mapper = RowMapper.create(beanClass as Class<Any>, sheet)
+        sheetMappers[beanClass] = CachedMapper(columnsKey, mapper)
+        return mapper
     }
+
+    private class CachedMapper(val columnsKey: List<String?>, val mapper: RowMapper<Any>)
 }
@@ -0,0 +1,178 @@
+package de.micromata.merlin.excel.importer
+
+import de.micromata.merlin.excel.ExcelSheet
+import de.micromata.merlin.excel.PoiHelper
+import de.micromata.merlin.utils.BeanHelper
+import org.apache.poi.ss.usermodel.Cell
+import org.apache.poi.ss.usermodel.CellType
+import org.apache.poi.ss.usermodel.DateUtil
+import org.apache.poi.ss.usermodel.Row
+import org.slf4j.LoggerFactory
+import java.lang.invoke.LambdaMetafactory
+import java.lang.invoke.MethodHandles
+import java.lang.invoke.MethodType
+import java.lang.reflect.Method
+import java.math.BigDecimal
+import java.math.BigInteger
+import java.time.LocalDate
+import java.time.LocalDateTime
+import java.util.*
+import java.util.concurrent.ConcurrentHashMap
+import java.util.function.BiConsumer
+
+/**
+ * Copies the cell values of Excel rows to beans (see [ImportHelper.fillBean]). Setters and value converters are
+ * determined once on creation for the registered columns of the sheet, so filling a bean is a loop over the columns
+ * without any reflection lookups. Create one mapper per sheet and bean class and re-use it for all rows.
+ *
+ * The registered columns (and their target properties) of the sheet shouldn't be changed after creation.
+ */
+class RowMapper<T : Any> private constructor(val beanClass: Class<T>,
+                                             private val columnNumbers: IntArray,
+                                             private val writers: Array<PropertyWriter>,
+                                             internal val locale: Locale) {
+    /**
+     * Copies the cell values of the given row to the given bean. Empty cells and values not convertible to the type of
+     * the target property are ignored.
+     */
+    fun fillBean(bean: T, row: Row) {
+        for (i in columnNumbers.indices) {
+            val cell = row.getCell(columnNumbers[i]) ?: continue
+            writers[i].write(bean, cell, locale)
+        }
+    }
+
+    /**
+     * @param rowNum Excel row number (starting with 0, POI row number).
+     */
+    fun fillBean(bean: T, sheet: ExcelSheet, rowNum: Int) {
+        val row = sheet.poiSheet.getRow(rowNum) ?: return
+        fillBean(bean, row)
+    }
+
+    /**
+     * Number of columns mapped to properties of the bean.
+     */
+    val size: Int
+        get() = columnNumbers.size
+
+    /**
+     * Sets the converted cell value via a compiled setter.
+     */
+    internal class PropertyWriter(private val setter: BiConsumer<Any, Any>, private val converter: (Cell, Locale) -> Any?) {
+        fun write(bean: Any, cell: Cell, locale: Locale) {
+            val value = converter(cell, locale) ?: return // Null values are ignored.
+            setter.accept(bean, value)
+        }
+    }
+
+    companion object {
+        private val log = LoggerFactory.getLogger(RowMapper::class.java)
+        private const val PARSE_STRINGS_SUFFIX = "#parseStrings"
+
+        // Compiled writers per bean class and property (empty, if the property isn't writable).
+        private val writerCache = ConcurrentHashMap<Class<*>, ConcurrentHashMap<String, Optional<PropertyWriter>>>()
+
+        /**
+         * Creates a mapper for all registered and found columns of the given sheet having a target property with a setter
+         * in the given bean class. For csv files (see [de.micromata.merlin.excel.ExcelWorkbook.isCsvRead]), number
+         * properties are also filled by string cells containing numbers.
+         *
+         * @see de.micromata.merlin.excel.ExcelColumnDef.targetProperty
+         */
+        @JvmStatic
+        fun <T : Any> create(beanClass: Class<T>, sheet: ExcelSheet): RowMapper<T> {
+            sheet.headRow // Finds the columns.
+            val columnNumbers = mutableListOf<Int>()
+            val writers = mutableListOf<PropertyWriter>()
+            val classWriters = writerCache.computeIfAbsent(beanClass) { ConcurrentHashMap() }
+            val parseStrings = sheet.excelWorkbook.isCsvRead
+            sheet.columnDefinitions.forEach { columnDef ->
+                val targetProperty = columnDef.targetProperty
+                if (columnDef.found() && targetProperty != null) {
+                    val key = if (parseStrings) "$targetProperty$PARSE_STRINGS_SUFFIX" else targetProperty
+                    val writer = classWriters.computeIfAbsent(key) { Optional.ofNullable(compile(beanClass, targetProperty, parseStrings)) }
+                    if (writer.isPresent) {
+                        columnNumbers.add(columnDef.columnNumber)
+                        writers.add(writer.get())
+                    }
+                }
+            }
+            return RowMapper(beanClass, columnNumbers.toIntArray(), writers.toTypedArray(), sheet.locale)
+        }
+
+        private fun compile(beanClass: Class<*>, property: String, parseStrings: Boolean): PropertyWriter? {
+            val setter = BeanHelper.determineSetter(beanClass, property) ?: return null
+            val type = setter.parameterTypes[0]
+            return PropertyWriter(createSetter(setter, type), createConverter(type, parseStrings))
+        }
+
+        /**
+         * Uses [LambdaMetafactory] for calling the setter directly. Falls back to reflection, if not possible (e. g. for
+         * non public classes or methods).
+         */
+        private fun createSetter(setter: Method, type: Class<*>): BiConsumer<Any, Any> {
+            try {
+                val lookup = MethodHandles.lookup()
+                val handle = lookup.unreflect(setter)
+                val callSite = LambdaMetafactory.metafactory(lookup, "accept",
+                        MethodType.methodType(BiConsumer::class.java),
+                        MethodType.methodType(Void.TYPE, Any::class.java, Any::class.java),
+                        handle,
+                        MethodType.methodType(Void.TYPE, setter.declaringClass, MethodType.methodType(type).wrap().returnType()))
+                @Suppress("UNCHECKED_CAST")
+                return callSite.target.invokeWithArguments() as BiConsumer<Any, Any>
+            } catch (ex: Throwable) {
+                log.debug("Can't compile setter '${setter.name}' of class ${setter.declaringClass.name}, using reflection: ${ex.message}")
+                try {
+                    setter.isAccessible = true
+                } catch (ex: SecurityException) {
+                    log.debug("Can't make setter '${setter.name}' accessible: ${ex.message}")
+                }
+                return BiConsumer { bean, value -> BeanHelper.invoke(bean, setter, value) }
+            }
+        }
+
+        /**
+         * Converters for the types supported by [BeanHelper.setProperty] and additionally for primitives and booleans.
+         */
+        private fun createConverter(type: Class<*>, parseStrings: Boolean): (Cell, Locale) -> Any? {
+            if (type.isAssignableFrom(String::class.java)) {
+                return { cell, locale -> PoiHelper.getValueAsString(cell, locale, true) }
+            }
+            return when (type) {
+                java.lang.Integer::class.java, Integer.TYPE -> numeric(parseStrings) { it.toInt() }
+                java.lang.Double::class.java, java.lang.Double.TYPE -> numeric(parseStrings) { it }
+                java.lang.Float::class.java, java.lang.Float.TYPE -> numeric(parseStrings) { it.toFloat() }
+                java.lang.Long::class.java, java.lang.Long.TYPE -> numeric(parseStrings) { it.toLong() }
+                BigDecimal::class.java -> numeric(parseStrings) { BigDecimal(it.toString()) }
+                BigInteger::class.java -> numeric(parseStrings) { BigInteger(it.toLong().toString()) }
+                java.lang.Boolean::class.java, java.lang.Boolean.TYPE -> { cell, _ ->
+                    if (cell.cellType == CellType.BOOLEAN) cell.booleanCellValue else null
+                }
+                LocalDate::class.java -> date { it.toLocalDate() }
+                LocalDateTime::class.java -> date { it }
+                else -> { cell, _ -> PoiHelper.getValue(cell)?.takeIf { type.isInstance(it) } }
+            }
+        }
+
+        /**
+         * @param parseStrings If true, string cells containing numbers (e. g. of csv files) are converted as well.
+         */
+        private fun numeric(parseStrings: Boolean, convert: (Double) -> Any): (Cell, Locale) -> Any? {
+            return { cell, _ ->
+                when {
+                    cell.cellType == CellType.NUMERIC && !DateUtil.isCellDateFormatted(cell) -> convert(cell.numericCellValue)
+                    parseStrings && cell.cellType == CellType.STRING -> cell.stringCellValue.trim().toDoubleOrNull()?.let(convert)
+                    else -> null
+                }
+            }
+        }
+
+        private fun date(convert: (LocalDateTime) -> Any): (Cell, Locale) -> Any? {
+            return { cell, _ ->
+                if (cell.cellType == CellType.NUMERIC && DateUtil.isCellDateFormatted(cell)) cell.localDateTimeCellValue?.let(convert) else null
+            }
+        }
+    }
+}
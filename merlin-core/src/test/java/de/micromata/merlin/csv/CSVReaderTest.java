@@ -0,0 +1,95 @@
+package de.micromata.merlin.csv;
+
+import de.micromata.merlin.Definitions;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CSVReaderTest {
+    @Test
+    void parseTest() {
+        String csv = "Name;Description;Amount\n" +
+                "Berta; \"Hello \"\"world\"\"\" ;12\r\n" +
+                "\n" +
+                "\"Horst\";\"Multi\nline; text\";\n" +
+                "Kai;;3";
+        // Small buffer for testing refilling and growing of the buffer:
+        for (int bufferSize : new int[]{16, 17, 100}) {
+            CSVReader reader = new CSVReader(new StringReader(csv), bufferSize);
+            CSVRow row = reader.next();
+            assertEquals(Arrays.asList("Name", "Description", "Amount"), row.toList());
+            assertEquals(1, row.getLineNumber());
+            row = reader.next();
+            assertEquals(Arrays.asList("Berta", "Hello \"world\"", "12"), row.toList());
+            assertTrue(row.contentEquals(0, "Berta"));
+            assertEquals(2, row.getLineNumber());
+            row = reader.next();
+            assertEquals(Arrays.asList("Horst", "Multi\nline; text", ""), row.toList());
+            assertEquals(4, row.getLineNumber());
+            assertTrue(row.isEmpty(2));
+            row = reader.next();
+            assertEquals(Arrays.asList("Kai", "", "3"), row.toList());
+            assertEquals(6, row.getLineNumber());
+            assertEquals("3", row.getCharSequence(2).toString());
+            assertNull(reader.next());
+            assertNull(reader.next());
+        }
+        char[] chars = ("xxx" + csv).toCharArray();
+        assertEquals(4, new CSVReader(chars, 3, csv.length()).readAll().size());
+    }
+
+    @Test
+    void errorTest() {
+        assertThrows(RuntimeException.class, () -> new CSVReader(new StringReader("a;b\"c")).next());
+        assertThrows(RuntimeException.class, () -> new CSVReader(new StringReader("a;\"b")).next());
+        assertThrows(RuntimeException.class, () -> new CSVReader(new StringReader("a;\"b\"c")).next());
+    }
+
+    @Test
+    void parallelTest() throws IOException {
+        File file = new File(Definitions.OUTPUT_DIR, "csv-reader-test.csv");
+        StringBuilder sb = new StringBuilder();
+        sb.append("Id;Name\n");
+        for (int i = 1; i <= 20000; i++) {
+            sb.append(i).append(";\"Name ").append(i).append("\"\n");
+        }
+        Files.write(file.toPath(), sb.toString().getBytes(StandardCharsets.UTF_8));
+        List<CSVFileSplitter.Chunk> chunks = CSVFileSplitter.split(file, StandardCharsets.UTF_8, 4);
+        assertNotNull(chunks);
+        assertTrue(chunks.size() >= 4);
+        for (int parallelism : new int[]{1, 4}) {
+            AtomicInteger counter = new AtomicInteger();
+            Set<Integer> ids = Collections.newSetFromMap(new ConcurrentHashMap<>());
+            CSVReader.forEachRowParallel(file, StandardCharsets.UTF_8, ';', parallelism, row -> {
+                counter.incrementAndGet();
+                if (row.getLineNumber() > 1) {
+                    int id = Integer.parseInt(row.getString(0));
+                    assertEquals(id + 1, row.getLineNumber());
+                    assertEquals("Name " + id, row.getString(1));
+                    ids.add(id);
+                }
+            });
+            assertEquals(20001, counter.get());
+            assertEquals(20000, ids.size());
+        }
+
+        // Quoted new lines: not splittable.
+        Files.write(file.toPath(), (sb.toString() + "1;\"a\nb\"\n").getBytes(StandardCharsets.UTF_8));
+        assertNull(CSVFileSplitter.split(file, StandardCharsets.UTF_8, 4));
+        AtomicInteger counter = new AtomicInteger();
+        CSVReader.forEachRowParallel(file, StandardCharsets.UTF_8, ';', 4, row -> counter.incrementAndGet());
+        assertEquals(20002, counter.get());
+    }
+}
@@ -2,6 +2,7 @@ package de.micromata.merlin.excel;
 
 import de.micromata.merlin.CoreI18n;
 import de.micromata.merlin.Definitions;
+import org.apache.poi.ss.usermodel.Cell;
 import org.apache.poi.ss.usermodel.Row;
 import org.apache.poi.xssf.usermodel.XSSFWorkbook;
 import org.junit.jupiter.api.Test;
@@ -11,10 +12,11 @@ import org.slf4j.LoggerFactory;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.time.LocalDate;
 import java.util.Iterator;
 import java.util.Locale;
 
-import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.*;
 
 class ExcelWorkbookMassTest {
     private Logger log = LoggerFactory.getLogger(ExcelWorkbookMassTest.class);
@@ -45,4 +47,47 @@ class ExcelWorkbookMassTest {
         }
         assertEquals(10000, i);
     }
+
+    @Test
+    void streamingWriteTest() throws IOException {
+        File file = new File(Definitions.OUTPUT_DIR, "Test-mass-streaming.xlsx");
+        try (ExcelWorkbook xlsx = ExcelWorkbook.createForStreamingWrite(100)) {
+            assertTrue(xlsx.isStreamingWrite());
+            ExcelSheet sheet = xlsx.createOrGetSheet("Mass data");
+            sheet.createRow().createCells("Name", "Number", "Birthday");
+            for (int i = 1; i <= 100000; i++) {
+                ExcelRow row = sheet.createRow();
+                row.createCells("Name " + i);
+                sheet.setIntValue(row.getRowNum(), 1, i);
+                sheet.setDateValue(row.getRowNum(), 2, LocalDate.of(2000, 1, 1).plusDays(i % 1000), "yyyy-MM-dd");
+            }
+            assertNull(sheet.getPoiSheet().getRow(0), "Head row should be flushed.");
+            assertNotNull(sheet.getPoiSheet().getRow(100000));
+            try (FileOutputStream out = new FileOutputStream(file)) {
+                xlsx.write(out);
+            }
+        }
+        try (ExcelWorkbook xlsx = ExcelWorkbook.createForStreamingRead(file)) {
+            ExcelSheet sheet = xlsx.getSheet("Mass data");
+            BirthdayChecker checker = new BirthdayChecker();
+            sheet.registerColumn("Birthday").addColumnListener(checker);
+            sheet.analyze(false);
+            assertEquals(100000, checker.counter);
+        }
+    }
+
+    private static class BirthdayChecker extends ExcelColumnListener {
+        private int counter;
+
+        @Override
+        public void readCell(Cell cell, int rowNumber) {
+            assertEquals(LocalDate.of(2000, 1, 1).plusDays(rowNumber % 1000).atStartOfDay(), PoiHelper.getValue(cell));
+            ++counter;
+        }
+
+        @Override
+        protected ExcelColumnListener clone() {
+            return new BirthdayChecker();
+        }
+    }
 }
@@ -0,0 +1,172 @@
+package de.micromata.merlin.excel;
+
+import de.micromata.merlin.CoreI18n;
+import de.micromata.merlin.Definitions;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.CellType;
+import org.apache.poi.ss.usermodel.DateUtil;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.function.UnaryOperator;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ExcelWorkbookStreamingTest {
+    @Test
+    void streamingAnalyzeTest() throws IOException {
+        CoreI18n coreI18N = CoreI18n.setDefault(Locale.ROOT);
+        ExcelWorkbook xlsx = new ExcelWorkbook(new XSSFWorkbook());
+        ExcelSheet sheet = xlsx.createOrGetSheet("Streaming");
+        sheet.createRow().createCells("Title of the sheet");
+        sheet.createRow();
+        sheet.createRow().createCells("Name", "Number", "Birthday");
+        for (int i = 1; i <= 1000; i++) {
+            int rowNum = sheet.createRow().getRowNum();
+            sheet.setStringValue(rowNum, 0, i % 100 == 0 ? null : "Name " + (i % 500));
+            sheet.setIntValue(rowNum, 1, i);
+            sheet.setDateValue(rowNum, 2, LocalDate.of(2000, 1, 1).plusDays(i), "yyyy-MM-dd");
+        }
+        File file = new File(Definitions.OUTPUT_DIR, "Test-streaming.xlsx");
+        try (FileOutputStream out = new FileOutputStream(file)) {
+            xlsx.write(out);
+        }
+
+        Set<String> expectedErrors;
+        List<String> expectedValues;
+        try (ExcelWorkbook workbook = new ExcelWorkbook(file)) {
+            ValueCollector collector = new ValueCollector();
+            expectedErrors = analyze(workbook.getSheet("Streaming"), collector, coreI18N);
+            expectedValues = collector.values;
+        }
+        assertEquals(1000, expectedValues.size());
+        assertFalse(expectedErrors.isEmpty());
+
+        try (ExcelWorkbook workbook = ExcelWorkbook.createForStreamingRead(file)) {
+            assertTrue(workbook.isStreamingRead());
+            ExcelSheet streamingSheet = workbook.getSheet("Streaming");
+            ValueCollector collector = new ValueCollector();
+            assertEquals(expectedErrors, analyze(streamingSheet, collector, coreI18N));
+            assertEquals(expectedValues, collector.values);
+            assertEquals(2, streamingSheet.getHeadRow().getRowNum());
+            assertEquals(1, streamingSheet.getPoiSheet().getPhysicalNumberOfRows(), "Only the head row should be kept.");
+        }
+    }
+
+    @Test
+    void inlineDateTest() throws IOException {
+        ExcelWorkbook xlsx = new ExcelWorkbook(new XSSFWorkbook());
+        ExcelSheet sheet = xlsx.createOrGetSheet("Dates");
+        sheet.createRow().createCells("Date");
+        String[] isoValues = {"2020-01-15T10:30:00", "2020-01-16", "2020-01-17T08:00:00Z", "12:00:00", "no date"};
+        for (int i = 0; i < isoValues.length; i++) {
+            sheet.setIntValue(sheet.createRow().getRowNum(), 0, i); // Placeholder, replaced by inline date below.
+        }
+        File file = new File(Definitions.OUTPUT_DIR, "Test-streaming-inline-dates.xlsx");
+        try (FileOutputStream out = new FileOutputStream(file)) {
+            xlsx.write(out);
+        }
+        // POI can't write inline dates (t="d"), so patch the sheet xml:
+        rewriteZipEntry(file, "xl/worksheets/sheet1.xml", xml -> {
+            for (int i = 0; i < isoValues.length; i++) {
+                String ref = "A" + (i + 2);
+                xml = xml.replaceFirst("<c r=\"" + ref + "\"[^>]*><v>[^<]*</v>",
+                        "<c r=\"" + ref + "\" t=\"d\"><v>" + isoValues[i] + "</v>");
+            }
+            return xml;
+        });
+
+        try (ExcelWorkbook workbook = ExcelWorkbook.createForStreamingRead(file)) {
+            ExcelSheet streamingSheet = workbook.getSheet("Dates");
+            RawValueCollector collector = new RawValueCollector();
+            streamingSheet.registerColumn("Date").addColumnListener(collector);
+            streamingSheet.analyze(false);
+            List<Object> values = collector.values;
+            assertEquals(isoValues.length, values.size());
+            assertEquals(DateUtil.getExcelDate(LocalDateTime.of(2020, 1, 15, 10, 30)), (double) values.get(0), 0.000001);
+            assertEquals(DateUtil.getExcelDate(LocalDate.of(2020, 1, 16)), (double) values.get(1), 0.000001);
+            assertEquals(DateUtil.getExcelDate(LocalDateTime.of(2020, 1, 17, 8, 0)), (double) values.get(2), 0.000001);
+            assertEquals(0.5, (double) values.get(3), 0.000001);
+            assertEquals("no date", values.get(4), "Unsupported dates are read as strings.");
+        }
+    }
+
+    private static void rewriteZipEntry(File file, String entryName, UnaryOperator<String> rewriter) throws IOException {
+        File tmpFile = new File(file.getPath() + ".tmp");
+        try (ZipInputStream in = new ZipInputStream(new FileInputStream(file));
+             ZipOutputStream out = new ZipOutputStream(new FileOutputStream(tmpFile))) {
+            ZipEntry entry;
+            while ((entry = in.getNextEntry()) != null) {
+                out.putNextEntry(new ZipEntry(entry.getName()));
+                if (entryName.equals(entry.getName())) {
+                    String content = IOUtils.toString(in, StandardCharsets.UTF_8);
+                    out.write(rewriter.apply(content).getBytes(StandardCharsets.UTF_8));
+                } else {
+                    IOUtils.copy(in, out);
+                }
+                out.closeEntry();
+            }
+        }
+        FileUtils.copyFile(tmpFile, file);
+        FileUtils.deleteQuietly(tmpFile);
+    }
+
+    private Set<String> analyze(ExcelSheet sheet, ValueCollector collector, CoreI18n coreI18N) {
+        sheet.registerColumn("Name").addColumnListener(new ExcelColumnValidator().setRequired().setUnique());
+        sheet.registerColumn("Number").addColumnListener(new ExcelColumnNumberValidator());
+        sheet.registerColumn("Birthday").addColumnListener(new ExcelColumnDateValidator());
+        sheet.getColumnDef("Birthday").addColumnListener(collector);
+        sheet.registerColumn("Missing").addColumnListener(new ExcelColumnValidator());
+        sheet.analyze(true);
+        Set<String> errors = new TreeSet<>();
+        for (ExcelValidationErrorMessage message : sheet.getAllValidationErrors()) {
+            errors.add(message.getMessageWithAllDetails(coreI18N));
+        }
+        return errors;
+    }
+
+    private static class ValueCollector extends ExcelColumnListener {
+        private List<String> values = new ArrayList<>();
+
+        @Override
+        public void readCell(Cell cell, int rowNumber) {
+            values.add(rowNumber + ": " + PoiHelper.getValue(cell));
+        }
+
+        @Override
+        protected ExcelColumnListener clone() {
+            return new ValueCollector();
+        }
+    }
+
+    private static class RawValueCollector extends ExcelColumnListener {
+        private List<Object> values = new ArrayList<>();
+
+        @Override
+        public void readCell(Cell cell, int rowNumber) {
+            values.add(cell.getCellType() == CellType.NUMERIC ? cell.getNumericCellValue() : cell.getStringCellValue());
+        }
+
+        @Override
+        protected ExcelColumnListener clone() {
+            return new RawValueCollector();
+        }
+    }
+}
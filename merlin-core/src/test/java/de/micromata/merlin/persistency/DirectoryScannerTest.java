@@ -1,14 +1,17 @@
 package de.micromata.merlin.persistency;
 
 import de.micromata.merlin.Definitions;
+import de.micromata.merlin.excel.ExcelWorkbookCache;
 import de.micromata.merlin.persistency.templates.DirectoryScanner;
 import de.micromata.merlin.word.templating.Template;
+import de.micromata.merlin.word.templating.TemplateDefinition;
+import org.apache.commons.io.FileUtils;
 import org.junit.jupiter.api.Test;
 
 import java.io.File;
+import java.io.IOException;
 
-import static org.junit.jupiter.api.Assertions.assertEquals;
-import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.*;
 
 class DirectoryScannerTest {
     @Test
@@ -27,4 +30,82 @@ class DirectoryScannerTest {
         assertNotNull(template.getTemplateDefinition());
         assertEquals("Letter-Definition", template.getTemplateDefinitionId());
     }
+
+    @Test
+    void backgroundRefreshTest() throws IOException {
+        File dir = new File(Definitions.OUTPUT_DIR, "directoryScannerTest").getAbsoluteFile();
+        if (dir.exists()) {
+            FileUtils.deleteDirectory(dir);
+        }
+        dir.mkdir();
+        FileUtils.copyFile(new File(Definitions.EXAMPLES_TEMPLATES_TEST_DIR, "LetterTemplate.docx"), new File(dir, "LetterTemplate.docx"));
+        DirectoryScanner directoryScanner = new DirectoryScanner(dir.toPath(), false);
+        directoryScanner.setBackgroundRefresh(true);
+        assertEquals(1, directoryScanner.getTemplates().size()); // Initial scan.
+        FileUtils.copyFile(new File(Definitions.EXAMPLES_TEMPLATES_TEST_DIR, "EmploymentContractTemplate.docx"),
+                new File(dir, "EmploymentContractTemplate.docx"));
+        directoryScanner.getDirectoryWatcher().forceRecheck();
+        // The getters serve the last snapshot until refresh is called:
+        assertEquals(1, directoryScanner.getTemplates().size());
+        directoryScanner.refresh();
+        assertEquals(2, directoryScanner.getTemplates().size());
+        directoryScanner.close();
+        FileUtils.deleteDirectory(dir);
+    }
+
+    @Test
+    void snapshotTest() throws IOException {
+        File dir = new File(Definitions.OUTPUT_DIR, "directoryScannerSnapshotTest").getAbsoluteFile();
+        if (dir.exists()) {
+            FileUtils.deleteDirectory(dir);
+        }
+        dir.mkdir();
+        File definitionFile = new File(dir, "LetterTemplate.xlsx");
+        FileUtils.copyFile(new File(Definitions.EXAMPLES_TEMPLATES_TEST_DIR, "LetterTemplate.docx"), new File(dir, "LetterTemplate.docx"));
+        FileUtils.copyFile(new File(Definitions.EXAMPLES_TEMPLATES_TEST_DIR, "LetterTemplate.xlsx"), definitionFile);
+        DirectoryScanner directoryScanner = new DirectoryScanner(dir.toPath(), false);
+        directoryScanner.setBackgroundRefresh(true);
+        assertTrue(directoryScanner.refreshIfModified()); // Initial scan.
+        assertFalse(directoryScanner.refreshIfModified()); // Nothing modified.
+        Template template = directoryScanner.getTemplates().iterator().next();
+        TemplateDefinition templateDefinition = template.getTemplateDefinition();
+        assertNotNull(templateDefinition);
+
+        assertTrue(definitionFile.setLastModified(System.currentTimeMillis() + 10000));
+        directoryScanner.getDirectoryWatcher().forceRecheck();
+        assertTrue(directoryScanner.refreshIfModified());
+        Template newTemplate = directoryScanner.getTemplates().iterator().next();
+        // The published template isn't modified, a copy with the re-read template definition is published instead:
+        assertNotSame(template, newTemplate);
+        assertSame(templateDefinition, template.getTemplateDefinition());
+        assertNotSame(templateDefinition, newTemplate.getTemplateDefinition());
+        assertEquals("Letter-Definition", newTemplate.getTemplateDefinitionId());
+        assertSame(newTemplate, directoryScanner.getTemplate(newTemplate.getPrimaryKey()));
+        assertEquals(template.getStatistics().getUsedVariables(), newTemplate.getStatistics().getUsedVariables());
+        directoryScanner.close();
+        FileUtils.deleteDirectory(dir);
+    }
+
+    @Test
+    void workbookCacheTest() {
+        ExcelWorkbookCache cache = new ExcelWorkbookCache(new File(Definitions.OUTPUT_DIR, "directoryScannerWorkbookCache"));
+        cache.clear();
+        TemplateDefinition templateDefinition = null;
+        for (int i = 0; i < 2; i++) {
+            DirectoryScanner directoryScanner = new DirectoryScanner(Definitions.EXAMPLES_TEMPLATES_TEST_DIR.toPath(), false);
+            directoryScanner.setWorkbookCache(cache);
+            TemplateDefinition definition = directoryScanner.getTemplateDefinition("Letter-Definition");
+            assertNotNull(definition);
+            if (templateDefinition != null) {
+                // Read from cache:
+                assertEquals(templateDefinition.getVariableDefinitions().size(), definition.getVariableDefinitions().size());
+                assertEquals(templateDefinition.getFilenamePattern(), definition.getFilenamePattern());
+            }
+            templateDefinition = definition;
+            directoryScanner.close();
+        }
+        // All xlsx files of the directory (template definitions and serial data) are read through the cache:
+        assertTrue(cache.getMisses() > 0);
+        assertEquals(cache.getMisses(), cache.getHits());
+    }
 }
@@ -0,0 +1,70 @@
+package de.micromata.merlin.persistency;
+
+import de.micromata.merlin.Definitions;
+import de.micromata.merlin.persistency.templates.ScanIndex;
+import org.apache.commons.io.FileUtils;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ScanIndexTest {
+    @Test
+    void indexTest() throws IOException {
+        File dir = new File(Definitions.OUTPUT_DIR, "scanIndexTest").getAbsoluteFile();
+        if (dir.exists()) {
+            FileUtils.deleteDirectory(dir);
+        }
+        dir.mkdir();
+        File file1 = new File(dir, "template1.docx");
+        File file2 = new File(dir, "unsupported.docx");
+        FileUtils.writeStringToFile(file1, "content 1", StandardCharsets.UTF_8);
+        FileUtils.writeStringToFile(file2, "content 2", StandardCharsets.UTF_8);
+        Path indexFile = new File(dir, "index/scan-index.properties").toPath();
+
+        ScanIndex index = new ScanIndex(indexFile, dir.toPath(), new StringCodec());
+        assertNull(index.lookup(file1.toPath()));
+        index.put(file1.toPath(), "meta data; 1");
+        index.put(file2.toPath(), null);
+        index.save();
+        assertTrue(indexFile.toFile().exists());
+
+        // Restored after restart:
+        index = new ScanIndex(indexFile, dir.toPath(), new StringCodec());
+        assertEquals(2, index.getSize());
+        ScanIndex.Entry entry = index.lookup(file1.toPath());
+        assertTrue(entry.isSupportedItem());
+        assertEquals("meta data; 1", entry.getData(String.class));
+        entry = index.lookup(file2.toPath());
+        assertFalse(entry.isSupportedItem());
+        assertNull(entry.getData(String.class));
+
+        // Touched, but not modified (same hash):
+        file1.setLastModified(file1.lastModified() - 10000);
+        assertEquals("meta data; 1", index.lookup(file1.toPath()).getData(String.class));
+
+        // Modified with same size:
+        FileUtils.writeStringToFile(file1, "content 3", StandardCharsets.UTF_8);
+        file1.setLastModified(file1.lastModified() - 20000);
+        assertNull(index.lookup(file1.toPath()));
+
+        index.remove(file2.toPath());
+        assertNull(index.lookup(file2.toPath()));
+    }
+
+    private static class StringCodec implements ScanIndex.Codec {
+        @Override
+        public String encode(Object obj) {
+            return (String) obj;
+        }
+
+        @Override
+        public <T> T decode(String str, Class<T> clazz) {
+            return clazz.cast(str);
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package de.micromata.merlin.persistency;
+
+import de.micromata.merlin.Definitions;
+import de.micromata.merlin.persistency.templates.TemplateDocumentCache;
+import de.micromata.merlin.word.CompiledWordTemplate;
+import org.apache.commons.io.FileUtils;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TemplateDocumentCacheTest {
+    @Test
+    void cacheTest() throws IOException {
+        File dir = new File(Definitions.OUTPUT_DIR, "templateDocumentCacheTest").getAbsoluteFile();
+        if (dir.exists()) {
+            FileUtils.deleteDirectory(dir);
+        }
+        dir.mkdir();
+        File src = new File(Definitions.EXAMPLES_TEMPLATES_TEST_DIR, "EmploymentContractTemplate.docx");
+        File file1 = new File(dir, "template1.docx");
+        File file2 = new File(dir, "template2.docx");
+        FileUtils.copyFile(src, file1);
+        FileUtils.copyFile(src, file2);
+        FileDescriptor fd1 = createFileDescriptor(dir, file1);
+        FileDescriptor fd2 = createFileDescriptor(dir, file2);
+
+        TemplateDocumentCache cache = new TemplateDocumentCache();
+        assertNotNull(cache.getStreamingRenderer(fd1));
+        assertEquals(src.length(), cache.getSize(), "The streaming renderer shares the file content.");
+        CompiledWordTemplate compiledTemplate = cache.getCompiledTemplate(fd1);
+        assertEquals("Employment contract template", compiledTemplate.getTemplateId());
+        assertSame(compiledTemplate, cache.getCompiledTemplate(fd1));
+        assertEquals(1, cache.getMisses());
+        assertEquals(2, cache.getHits());
+        long weight = compiledTemplate.getEstimatedMemorySize();
+        assertTrue(weight > 2 * src.length(), "The parsed document should be weighted.");
+        assertEquals(weight, cache.getSize(), "The compiled template should be weighted only once.");
+
+        // Modified files are read again:
+        file1.setLastModified(file1.lastModified() - 10000);
+        assertNotSame(compiledTemplate, cache.getCompiledTemplate(fd1));
+        assertEquals(2, cache.getMisses());
+        assertEquals(1, cache.getEntryCount());
+
+        // Least recently used entries are evicted, if the byte budget is exceeded:
+        cache.setMaxSize(weight + src.length());
+        cache.getStreamingRenderer(fd2);
+        assertEquals(2, cache.getEntryCount(), "Compiled template 1 and template file 2 fit into the budget.");
+        cache.getCompiledTemplate(fd2);
+        assertEquals(1, cache.getEntryCount());
+        assertEquals(1, cache.getEvictions());
+        cache.getCompiledTemplate(fd2);
+        assertEquals(4, cache.getHits());
+        cache.getCompiledTemplate(fd1);
+        assertEquals(4, cache.getMisses());
+        assertEquals(2, cache.getEvictions());
+        assertEquals(weight, cache.getSize());
+    }
+
+    private FileDescriptor createFileDescriptor(File dir, File file) {
+        return new FileDescriptor().setDirectory(dir.toPath()).setRelativePath(file.toPath());
+    }
+}
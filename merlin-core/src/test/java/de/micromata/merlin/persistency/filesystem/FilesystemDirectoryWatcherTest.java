@@ -9,6 +9,7 @@ import org.junit.jupiter.api.Test;
 import java.io.File;
 import java.io.IOException;
 import java.nio.charset.Charset;
+import java.util.function.BooleanSupplier;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -69,6 +70,47 @@ class FilesystemDirectoryWatcherTest {
         FileUtils.deleteDirectory(rootDir);
     }
 
+    @Test
+    void eventTest() throws Exception {
+        File rootDir = new File(Definitions.OUTPUT_DIR, "directoryWatcherEventTest").getAbsoluteFile();
+        if (rootDir.exists()) {
+            FileUtils.deleteDirectory(rootDir);
+        }
+        rootDir.mkdir();
+        FileSystemDirectoryWatcher watcher = new FileSystemDirectoryWatcher(rootDir.toPath(), true, "docx");
+        assertTrue(watcher.listFiles(false).isEmpty()); // Initial walk.
+        long lastCheck = watcher.getLastCheck();
+
+        // No forceRecheck and no expired refresh rate: modifications must be processed by events.
+        File f1 = writeFile(rootDir, "test.docx");
+        waitFor(() -> watcher.getEntry(f1.toPath()) != null);
+        assertEquals(ModificationType.CREATED, watcher.getEntry(f1.toPath()).getType());
+
+        File d_a = mkdir(rootDir, "a");
+        File f_a = writeFile(d_a, "test_a.docx");
+        waitFor(() -> watcher.getEntry(f_a.toPath()) != null);
+
+        f1.delete();
+        waitFor(() -> watcher.isDeleted(f1.toPath()));
+        FileUtils.deleteDirectory(d_a);
+        waitFor(() -> watcher.isDeleted(f_a.toPath()));
+        assertTrue(watcher.listFiles(false).isEmpty());
+        assertTrue(lastCheck < watcher.getLastCheck());
+        watcher.close();
+        FileUtils.deleteDirectory(rootDir);
+    }
+
+    /**
+     * Waits shorter than the refresh rate of the watcher, so the condition isn't fulfilled by walking the tree.
+     */
+    private void waitFor(BooleanSupplier condition) throws InterruptedException {
+        long start = System.currentTimeMillis();
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.currentTimeMillis() - start < 4000, "Event not processed in time.");
+            Thread.sleep(50);
+        }
+    }
+
     private File writeFile(File dir, String filename) throws IOException {
         File file = new File(dir, filename);
         FileUtils.write(file, "Merlin is great.", Charset.defaultCharset());
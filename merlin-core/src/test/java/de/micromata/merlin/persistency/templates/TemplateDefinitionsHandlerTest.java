@@ -0,0 +1,87 @@
+package de.micromata.merlin.persistency.templates;
+
+import de.micromata.merlin.Definitions;
+import de.micromata.merlin.persistency.FileDescriptor;
+import de.micromata.merlin.persistency.PersistencyRegistry;
+import de.micromata.merlin.word.templating.TemplateDefinition;
+import org.apache.commons.io.FileUtils;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TemplateDefinitionsHandlerTest {
+    @Test
+    void indexesTest() throws IOException {
+        File dir = new File(Definitions.OUTPUT_DIR, "templateDefinitionsHandlerTest").getAbsoluteFile();
+        if (dir.exists()) {
+            FileUtils.deleteDirectory(dir);
+        }
+        dir.mkdir();
+        File letterFile = new File(dir, "LetterTemplate.xlsx");
+        File contractFile = new File(dir, "EmploymentContractTemplate.xlsx");
+        FileUtils.copyFile(new File(Definitions.EXAMPLES_TEMPLATES_TEST_DIR, "LetterTemplate.xlsx"), letterFile);
+        FileUtils.copyFile(new File(Definitions.EXAMPLES_TEMPLATES_TEST_DIR, "EmploymentContractTemplate.xlsx"), contractFile);
+        String letterKey = PersistencyRegistry.getDefault().getPrimaryKey(letterFile.toPath());
+        String contractKey = PersistencyRegistry.getDefault().getPrimaryKey(contractFile.toPath());
+        DirectoryScanner directoryScanner = new DirectoryScanner(dir.toPath(), false);
+        directoryScanner.refresh();
+        TemplateDefinitionsHandler handler = directoryScanner.getTemplateDefinitionsHandler();
+        FileDescriptor letterTemplate = createFileDescriptor(directoryScanner, "LetterTemplate.docx");
+
+        // Primary key, id (normalized) and filename stem:
+        TemplateDefinition letter = handler.getItem(letterKey);
+        assertNotNull(letter);
+        assertEquals("Letter-Definition", letter.getId());
+        assertSame(letter, handler.getTemplateDefinition(letterKey));
+        assertSame(letter, handler.getTemplateDefinition(" letter-definition "));
+        assertSame(letter, handler.getMatchingTemplateDefinition(letterTemplate));
+        assertNull(handler.getMatchingTemplateDefinition(createFileDescriptor(directoryScanner, "Unknown.docx")));
+        TemplateDefinition contract = handler.getItem(contractKey);
+        assertSame(contract, handler.getTemplateDefinition("Employment contract definition"));
+
+        // Replaced item:
+        TemplateDefinition copy = (TemplateDefinition) letter.clone();
+        handler.replaceItem(letter, copy);
+        assertEquals(2, handler.getItems().size());
+        assertSame(copy, handler.getItem(letterKey));
+        assertSame(copy, handler.getTemplateDefinition("Letter-Definition"));
+        assertSame(copy, handler.getMatchingTemplateDefinition(letterTemplate));
+        handler.replaceItem(letter, (TemplateDefinition) letter.clone()); // Already replaced, nothing to do.
+        assertSame(copy, handler.getItem(letterKey));
+
+        // Modified definition (now with the id of the other definition):
+        FileUtils.copyFile(contractFile, letterFile);
+        assertTrue(letterFile.setLastModified(System.currentTimeMillis() + 10000));
+        directoryScanner.getDirectoryWatcher().forceRecheck();
+        directoryScanner.refresh();
+        TemplateDefinition modified = handler.getItem(letterKey);
+        assertNotNull(modified);
+        assertNotSame(copy, modified);
+        assertEquals("Employment contract definition", modified.getId());
+        assertNull(handler.getTemplateDefinition("Letter-Definition"));
+        assertSame(modified, handler.getMatchingTemplateDefinition(letterTemplate));
+        assertNotNull(handler.getTemplateDefinition("Employment contract definition"));
+
+        // Deleted definition:
+        assertTrue(letterFile.delete());
+        directoryScanner.getDirectoryWatcher().forceRecheck();
+        directoryScanner.refresh();
+        assertEquals(1, handler.getItems().size());
+        assertNull(handler.getItem(letterKey));
+        assertNull(handler.getTemplateDefinition(letterKey));
+        assertNull(handler.getMatchingTemplateDefinition(letterTemplate));
+        // The index by id falls back to the other definition with the same id:
+        assertSame(contract, handler.getTemplateDefinition("Employment contract definition"));
+        assertSame(contract, handler.getMatchingTemplateDefinition(createFileDescriptor(directoryScanner, "EmploymentContractTemplate.docx")));
+        directoryScanner.close();
+        FileUtils.deleteDirectory(dir);
+    }
+
+    private FileDescriptor createFileDescriptor(DirectoryScanner directoryScanner, String filename) {
+        return new FileDescriptor().setDirectory(directoryScanner.getDir())
+                .setRelativePath(directoryScanner.getDir().resolve(filename));
+    }
+}
@@ -0,0 +1,51 @@
+package de.micromata.merlin.word;
+
+import de.micromata.merlin.Definitions;
+import de.micromata.merlin.word.templating.Variables;
+import org.apache.poi.xwpf.usermodel.XWPFParagraph;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CompiledWordTemplateTest {
+    @Test
+    void renderTest() {
+        WordDocument templateDocument = new WordDocument(new File(Definitions.EXAMPLES_TEMPLATES_TEST_DIR, "EmploymentContractTemplate.docx"));
+        CompiledWordTemplate compiledTemplate = new CompiledWordTemplate(templateDocument);
+        assertEquals("Employment contract template", compiledTemplate.getTemplateId());
+        assertEquals("Employment contract definition", compiledTemplate.getTemplateDefinitionReference());
+        assertTrue(compiledTemplate.getVariables().contains("Employee"));
+
+        assertRender(templateDocument, compiledTemplate, createVariables("Stéph Ciçá", "male"));
+        assertRender(templateDocument, compiledTemplate, createVariables("Bärta Üßten", "female"));
+    }
+
+    private void assertRender(WordDocument templateDocument, CompiledWordTemplate compiledTemplate, Variables variables) {
+        WordDocument expected = new WordDocument(templateDocument.getAsByteArrayOutputStream().toInputStream(), "expected.docx");
+        expected.process(variables);
+        WordDocument rendered = compiledTemplate.render(variables);
+        List<XWPFParagraph> expectedParagraphs = expected.getAllParagraphs();
+        List<XWPFParagraph> renderedParagraphs = rendered.getAllParagraphs();
+        assertEquals(expectedParagraphs.size(), renderedParagraphs.size());
+        for (int i = 0; i < expectedParagraphs.size(); i++) {
+            assertEquals(expectedParagraphs.get(i).getText(), renderedParagraphs.get(i).getText());
+        }
+        assertFalse(rendered.getVariables().contains("Employee"));
+    }
+
+    private Variables createVariables(String employee, String gender) {
+        Variables variables = new Variables();
+        variables.put("Employee", employee);
+        variables.put("Gender", gender);
+        variables.put("Vertragstyp", "befristet");
+        variables.put("Vertragsende", "31.08.2017");
+        variables.put("Date", "3/16/2001");
+        variables.put("BeginDate", "4/1/2001");
+        variables.put("WeeklyHours", "25");
+        variables.put("NumberOfLeaveDays", "30");
+        return variables;
+    }
+}
@@ -0,0 +1,48 @@
+package de.micromata.merlin.word;
+
+import de.micromata.merlin.Definitions;
+import org.apache.poi.xwpf.usermodel.XWPFParagraph;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.util.Iterator;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DocumentIndexTest {
+    @Test
+    void createIndexTest() {
+        WordDocument document = new WordDocument(new File(Definitions.EXAMPLES_TEMPLATES_TEST_DIR, "EmploymentContractTemplate.docx"));
+        DocumentIndex index = document.createIndex();
+        assertEquals(document.scanForTemplateId(), index.getTemplateId());
+        assertEquals(document.scanForTemplateDefinitionReference(), index.getTemplateDefinitionReference());
+        assertEquals(document.getVariables(), index.getVariables());
+
+        Conditionals conditionals = document.getConditionals();
+        assertEquals(conditionals.getConditionalsSet().size(), index.getConditionals().getConditionalsSet().size());
+        Iterator<AbstractConditional> it = index.getConditionals().getConditionalsSet().iterator();
+        for (AbstractConditional expected : conditionals.getConditionalsSet()) {
+            AbstractConditional conditional = it.next();
+            assertEquals(expected.getConditionalStatement(), conditional.getConditionalStatement());
+            assertEquals(expected.getRange().toString(), conditional.getRange().toString());
+        }
+
+        List<XWPFParagraph> paragraphs = document.getAllParagraphs();
+        assertEquals(paragraphs.size(), index.getParagraphCount());
+        for (int i = 0; i < paragraphs.size(); i++) {
+            RunsProcessor processor = new RunsProcessor(paragraphs.get(i));
+            assertEquals(processor.getText(), index.getParagraphText(i));
+            int[] offsets = index.getRunOffsets(i);
+            assertEquals(paragraphs.get(i).getRuns().size(), offsets.length);
+            int[] runSizes = processor.getRunSizes();
+            for (int j = 0; j < offsets.length; j++) {
+                if (runSizes[j] > 0) {
+                    DocumentPosition position = processor.getRunIdxAndPosition(-1, offsets[j]);
+                    assertEquals(j, position.getRunIndex());
+                    assertEquals(0, position.getRunCharAt());
+                }
+            }
+        }
+    }
+}
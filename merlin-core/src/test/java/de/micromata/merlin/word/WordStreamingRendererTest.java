@@ -0,0 +1,50 @@
+package de.micromata.merlin.word;
+
+import de.micromata.merlin.Definitions;
+import de.micromata.merlin.word.templating.Variables;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.output.ByteArrayOutputStream;
+import org.apache.poi.xwpf.usermodel.XWPFParagraph;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class WordStreamingRendererTest {
+    @Test
+    void renderTest() throws Exception {
+        File file = new File(Definitions.EXAMPLES_TEMPLATES_TEST_DIR, "EmploymentContractTemplate.docx");
+        WordStreamingRenderer renderer = new WordStreamingRenderer(FileUtils.readFileToByteArray(file), file.getName());
+        CompiledWordTemplate compiledTemplate = new CompiledWordTemplate(new WordDocument(file));
+        assertRender(renderer, compiledTemplate, createVariables("Stéph Ciçá", "male", "25", "30"));
+        assertRender(renderer, compiledTemplate, createVariables("Bärta Üßten", "female", "40", "20"));
+    }
+
+    private void assertRender(WordStreamingRenderer renderer, CompiledWordTemplate compiledTemplate, Variables variables) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        renderer.render(variables, out);
+        WordDocument rendered = new WordDocument(out.toInputStream(), "rendered.docx");
+        WordDocument expected = compiledTemplate.render(variables);
+        List<XWPFParagraph> expectedParagraphs = expected.getAllParagraphs();
+        List<XWPFParagraph> renderedParagraphs = rendered.getAllParagraphs();
+        assertEquals(expectedParagraphs.size(), renderedParagraphs.size());
+        for (int i = 0; i < expectedParagraphs.size(); i++) {
+            assertEquals(expectedParagraphs.get(i).getText(), renderedParagraphs.get(i).getText());
+        }
+    }
+
+    private Variables createVariables(String employee, String gender, String weeklyHours, String numberOfLeaveDays) {
+        Variables variables = new Variables();
+        variables.put("Employee", employee);
+        variables.put("Gender", gender);
+        variables.put("Vertragstyp", "befristet");
+        variables.put("Vertragsende", "31.08.2017");
+        variables.put("Date", "3/16/2001");
+        variables.put("BeginDate", "4/1/2001");
+        variables.put("WeeklyHours", weeklyHours);
+        variables.put("NumberOfLeaveDays", numberOfLeaveDays);
+        return variables;
+    }
+}
@@ -0,0 +1,161 @@
+package de.micromata.merlin.word.templating;
+
+import de.micromata.merlin.Definitions;
+import de.micromata.merlin.word.CompiledWordTemplate;
+import de.micromata.merlin.word.WordDocument;
+import org.apache.commons.io.IOUtils;
+import org.apache.poi.xwpf.extractor.XWPFWordExtractor;
+import org.apache.poi.xwpf.usermodel.XWPFDocument;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SerialTemplateRunnerTest {
+    @Test
+    void parallelRunTest() throws Exception {
+        WordDocument templateDocument = new WordDocument(new File(Definitions.EXAMPLES_TEMPLATES_TEST_DIR, "EmploymentContractTemplate.docx"));
+        List<String> expected = getZipEntryNames(new SerialTemplateRunner(createSerialData(), templateDocument).run("test.xlsx"));
+        assertEquals(12, expected.size());
+        assertEquals("contract-Employee_0.docx", expected.get(0));
+        List<String> entryNames = getZipEntryNames(new SerialTemplateRunner(createSerialData(), templateDocument)
+                .setParallelism(4).setMaxBufferedDocuments(3).run("test.xlsx"));
+        assertEquals(expected, entryNames);
+    }
+
+    @Test
+    void parallelContentTest() throws Exception {
+        WordDocument templateDocument = new WordDocument(new File(Definitions.EXAMPLES_TEMPLATES_TEST_DIR, "EmploymentContractTemplate.docx"));
+        List<String> expected = getDocumentTexts(new SerialTemplateRunner(createSerialData(), templateDocument).run("test.xlsx"));
+        // Compiled once and shared by the concurrent runs (as done by the server):
+        CompiledWordTemplate compiledTemplate = new CompiledWordTemplate(templateDocument);
+        for (int i = 0; i < expected.size(); i++) {
+            assertTrue(expected.get(i).contains("Employee " + (i % 10)));
+            assertEquals(i, expected.indexOf(expected.get(i)), "Documents of all entries should differ.");
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+        try {
+            // Two runs sharing the executor:
+            Callable<List<String>> run = () -> getDocumentTexts(new SerialTemplateRunner(createSerialData(), compiledTemplate)
+                    .setParallelism(4).setMaxBufferedDocuments(3).setExecutor(executor).run("test.xlsx"));
+            ExecutorService callers = Executors.newFixedThreadPool(2);
+            try {
+                Future<List<String>> result1 = callers.submit(run);
+                Future<List<String>> result2 = callers.submit(run);
+                assertEquals(expected, result1.get());
+                assertEquals(expected, result2.get());
+            } finally {
+                callers.shutdownNow();
+            }
+            assertFalse(executor.isShutdown());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void streamingRunTest() throws Exception {
+        WordDocument templateDocument = new WordDocument(new File(Definitions.EXAMPLES_TEMPLATES_TEST_DIR, "EmploymentContractTemplate.docx"));
+        List<String> expected = getZipEntryNames(new SerialTemplateRunner(createSerialData(), templateDocument).run("test.xlsx"));
+        for (int parallelism : new int[]{1, 4}) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream() {
+                @Override
+                public void close() {
+                    fail("Output stream of the caller mustn't be closed.");
+                }
+            };
+            new SerialTemplateRunner(createSerialData(), templateDocument).setParallelism(parallelism).run("test.xlsx", out);
+            assertEquals(expected, getZipEntryNames(out.toByteArray()));
+
+            // Broken stream (e. g. client disconnected): the run is aborted.
+            FailingOutputStream failingOut = new FailingOutputStream(10000);
+            SerialTemplateRunner runner = new SerialTemplateRunner(createSerialData(), templateDocument).setParallelism(parallelism);
+            assertThrows(UncheckedIOException.class, () -> runner.run("test.xlsx", failingOut));
+            assertEquals(0, failingOut.writesAfterFailure);
+        }
+    }
+
+    private SerialData createSerialData() {
+        SerialData serialData = new SerialData();
+        for (int i = 0; i < 12; i++) {
+            Variables variables = new Variables();
+            variables.put("Employee", "Employee " + (i % 10)); // Filename collisions for the last entries.
+            variables.put("Gender", i % 2 == 0 ? "female" : "male");
+            variables.put("WeeklyHours", 20 + i * 2);
+            variables.put("NumberOfLeaveDays", 30);
+            serialData.add(variables);
+        }
+        serialData.setFilenamePattern("contract-${Employee}");
+        Template template = new Template();
+        serialData.setTemplate(template);
+        return serialData;
+    }
+
+    /**
+     * @return The texts of the Word documents of the given zip archive in the order of the zip entries.
+     */
+    private List<String> getDocumentTexts(byte[] zip) throws Exception {
+        List<String> texts = new ArrayList<>();
+        try (ZipInputStream in = new ZipInputStream(new ByteArrayInputStream(zip))) {
+            while (in.getNextEntry() != null) {
+                try (XWPFWordExtractor extractor = new XWPFWordExtractor(new XWPFDocument(new ByteArrayInputStream(IOUtils.toByteArray(in))))) {
+                    texts.add(extractor.getText());
+                }
+            }
+        }
+        return texts;
+    }
+
+    private List<String> getZipEntryNames(byte[] zip) throws Exception {
+        List<String> names = new ArrayList<>();
+        try (ZipInputStream in = new ZipInputStream(new ByteArrayInputStream(zip))) {
+            ZipEntry entry;
+            while ((entry = in.getNextEntry()) != null) {
+                names.add(entry.getName());
+            }
+        }
+        return names;
+    }
+
+    private static class FailingOutputStream extends OutputStream {
+        private final int maxBytes;
+        private int bytes;
+        private boolean failed;
+        private int writesAfterFailure;
+
+        private FailingOutputStream(int maxBytes) {
+            this.maxBytes = maxBytes;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            if (failed) {
+                ++writesAfterFailure;
+            }
+            bytes += len;
+            if (bytes > maxBytes) {
+                failed = true;
+                throw new IOException("Broken pipe");
+            }
+        }
+    }
+}
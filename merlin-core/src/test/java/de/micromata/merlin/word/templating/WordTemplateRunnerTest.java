@@ -2,11 +2,13 @@ package de.micromata.merlin.word.templating;
 
 import de.micromata.merlin.Definitions;
 import de.micromata.merlin.word.WordDocument;
+import de.micromata.merlin.word.WordStreamingRenderer;
 import org.apache.poi.xwpf.usermodel.XWPFDocument;
 import org.junit.jupiter.api.Test;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileOutputStream;
 
@@ -32,6 +34,23 @@ class WordTemplateRunnerTest {
                 "19/1/2017", "40", "30");
     }
 
+    @Test
+    void streamingRendererTest() {
+        TemplateDefinition templateDefinition = DefinitionExcelConverterTest.create();
+        WordStreamingRenderer renderer = WordStreamingRenderer.load(new File(Definitions.EXAMPLES_TEMPLATES_TEST_DIR, "EmploymentContractTemplate.docx").toPath());
+        WordTemplateRunner runner = new WordTemplateRunner(templateDefinition, renderer);
+        Variables variables = new Variables();
+        variables.put("Employee", "Berta");
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        runner.run(variables, out);
+        assertTrue(out.size() > 0);
+        assertNotEquals("file", runner.createFilename("file", variables));
+        // No source document to compile:
+        assertThrows(IllegalStateException.class, runner::scanForTemplateId);
+        assertThrows(IllegalStateException.class, runner::scanForTemplateDefinitionReference);
+        assertThrows(IllegalStateException.class, () -> runner.run(variables));
+    }
+
     private void runDocument(WordTemplateRunner runner, String employee, String gender, String date,
                              String beginDate, String weeklyHours, String numberOfLeaveDays) throws Exception {
         Variables variables = new Variables();
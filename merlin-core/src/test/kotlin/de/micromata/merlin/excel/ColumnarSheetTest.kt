@@ -0,0 +1,90 @@
+package de.micromata.merlin.excel
+
+import org.apache.poi.xssf.usermodel.XSSFWorkbook
+import org.junit.jupiter.api.Assertions
+import org.junit.jupiter.api.Test
+import java.time.LocalDate
+import java.time.LocalDateTime
+import java.util.*
+
+internal class ColumnarSheetTest {
+    @Test
+    fun columnarTest() {
+        val workbook = ExcelWorkbook(XSSFWorkbook(), Locale.ENGLISH)
+        val sheet = workbook.createOrGetSheet("Columnar")!!
+        sheet.createRow().createCells("Name", "City", "Amount", "Date", "Mixed", "Flag", "Empty")
+        for (i in 1..1000) {
+            val rowNum = sheet.createRow().rowNum
+            sheet.setStringValue(rowNum, 0, "Name $i")
+            sheet.setStringValue(rowNum, 1, if (i % 10 == 0) null else "City ${i % 3}")
+            sheet.setIntValue(rowNum, 2, i)
+            sheet.setDateValue(rowNum, 3, LocalDate.of(2020, 1, 1).plusDays(i.toLong()), "yyyy-MM-dd")
+            if (i == 500) sheet.setStringValue(rowNum, 4, "text") else sheet.setIntValue(rowNum, 4, i)
+            sheet.getCell(rowNum, 5, true)!!.setCellValue(i % 2 == 0)
+        }
+        listOf("Name", "City", "Amount", "Date", "Mixed", "Flag", "Empty", "Not existing").forEach { sheet.registerColumn(it) }
+
+        val columnar = ColumnarSheet.create(sheet)
+        Assertions.assertEquals(1000, columnar.rowCount)
+        Assertions.assertEquals(listOf("Name", "City", "Amount", "Date", "Mixed", "Flag", "Empty"), columnar.columnNames)
+        Assertions.assertEquals(1, columnar.getRowNumber(0))
+        Assertions.assertEquals(ColumnarSheet.ColumnType.STRING, columnar.getColumn("Mixed")!!.type)
+        Assertions.assertEquals("1", columnar.getStringColumn("Mixed").getString(0))
+        Assertions.assertEquals("text", columnar.getStringColumn("Mixed").getString(499))
+        Assertions.assertEquals(ColumnarSheet.ColumnType.EMPTY, columnar.getColumn("Empty")!!.type)
+
+        val amount = columnar.getNumberColumn("Amount")
+        Assertions.assertEquals(500500.0, amount.sum())
+        Assertions.assertEquals(100, amount.filter { it > 900 }.size)
+
+        val city = columnar.getStringColumn("City")
+        Assertions.assertEquals(3, city.dictionarySize)
+        Assertions.assertEquals(100, city.nullCount)
+        Assertions.assertNull(city.getString(9))
+        val groups = columnar.groupBy("City")
+        Assertions.assertEquals(listOf("City 1", "City 2", "City 0", null), groups.keys.toList())
+        Assertions.assertEquals(100, groups[null]!!.size)
+        Assertions.assertArrayEquals(city.filterEquals("City 1"), groups["City 1"])
+        val sums = columnar.sumBy("City", "Amount")
+        Assertions.assertEquals(500500.0, sums.values.sum())
+
+        val date = columnar.getDateColumn("Date")
+        Assertions.assertEquals(LocalDateTime.of(2020, 1, 2, 0, 0), date.getDate(0))
+        Assertions.assertEquals(31, date.filterRange(LocalDateTime.of(2020, 2, 1, 0, 0), LocalDateTime.of(2020, 3, 3, 0, 0)).size)
+
+        val flag = columnar.getBooleanColumn("Flag")
+        Assertions.assertEquals(true, flag.getValue(1))
+        Assertions.assertEquals(250, columnar.filter { flag.getBoolean(it) && amount.getDouble(it) <= 500 }.size)
+        Assertions.assertThrows(IllegalArgumentException::class.java) { columnar.getNumberColumn("City") }
+    }
+
+    @Test
+    fun leadingEmptyRowsTest() {
+        val workbook = ExcelWorkbook(XSSFWorkbook(), Locale.ENGLISH)
+        val sheet = workbook.createOrGetSheet("Columnar")!!
+        sheet.createRow().createCells("Id", "Amount", "Date", "Name")
+        for (i in 1..5000) {
+            val rowNum = sheet.createRow().rowNum
+            sheet.setIntValue(rowNum, 0, i)
+            if (i > 4000) { // Many leading empty cells, more than twice the initial capacity.
+                sheet.setIntValue(rowNum, 1, i)
+                sheet.setDateValue(rowNum, 2, LocalDate.of(2020, 1, 1), "yyyy-MM-dd")
+                sheet.setStringValue(rowNum, 3, "Name $i")
+            }
+        }
+        listOf("Id", "Amount", "Date", "Name").forEach { sheet.registerColumn(it) }
+
+        val columnar = ColumnarSheet.create(sheet)
+        Assertions.assertEquals(5000, columnar.rowCount)
+        val amount = columnar.getNumberColumn("Amount")
+        Assertions.assertEquals(4000, amount.nullCount)
+        Assertions.assertEquals(5000.0, amount.getDouble(4999))
+        Assertions.assertEquals(1000, amount.filter { it > 0 }.size)
+        Assertions.assertEquals(4000, columnar.getDateColumn("Date").nullCount)
+        Assertions.assertEquals(LocalDateTime.of(2020, 1, 1, 0, 0), columnar.getDateColumn("Date").getDate(4000))
+        val name = columnar.getStringColumn("Name")
+        Assertions.assertNull(name.getString(3999))
+        Assertions.assertEquals("Name 4001", name.getString(4000))
+        Assertions.assertEquals(1000, columnar.filter { !name.isNull(it) }.size)
+    }
+}
@@ -0,0 +1,77 @@
+package de.micromata.merlin.excel
+
+import de.micromata.merlin.CoreI18n
+import de.micromata.merlin.Definitions
+import de.micromata.merlin.csv.CSVReader
+import de.micromata.merlin.excel.importer.RowMapper
+import org.apache.poi.xssf.usermodel.XSSFWorkbook
+import org.junit.jupiter.api.Assertions
+import org.junit.jupiter.api.Test
+import java.io.File
+import java.io.StringReader
+import java.io.StringWriter
+import java.util.*
+
+internal class CsvRowSourceTest {
+    class Person(var name: String? = null,
+                 var age: Int? = null,
+                 var birthday: String? = null)
+
+    @Test
+    fun analyzeCsvTest() {
+        val file = File(Definitions.OUTPUT_DIR, "csv-row-source-test.csv")
+        file.writeText("Full name;Age;Birthday\n" +
+                "Berta;42;1.2.1978\n" +
+                "Horst;old;31.12.1980\n" +
+                ";17;no date\n" +
+                "\"Kai; Jr.\";7;\n", Charsets.UTF_8)
+        ExcelWorkbook.createForCsvRead(file, locale = Locale.GERMAN).use { workbook ->
+            Assertions.assertTrue(workbook.isStreamingRead)
+            Assertions.assertTrue(workbook.isCsvRead)
+            val sheet = workbook.getSheet(0)!!
+            Assertions.assertEquals("csv-row-source-test", sheet.sheetName)
+            sheet.registerColumn("Name", "Full name").setTargetProperty("name").addColumnListener(ExcelColumnValidator().setRequired())
+            sheet.registerColumn("Age").setTargetProperty("age")
+                    .addColumnListener(ExcelColumnNumberValidator().also { it.isTryToConvertStringToNumber = true })
+            sheet.registerColumn("Birthday").setTargetProperty("birthday")
+                    .addColumnListener(ExcelColumnDateValidator(ExcelColumnDateValidator.GERMAN_FORMATS))
+
+            val persons = mutableListOf<Person>()
+            var mapper: RowMapper<Person>? = null
+            sheet.analyze(true) { row, _ ->
+                // The head row is detected before the first data row:
+                val rowMapper = mapper ?: RowMapper.create(Person::class.java, sheet).also { mapper = it }
+                persons.add(Person().also { rowMapper.fillBean(it, row) })
+            }
+            Assertions.assertEquals(4, persons.size)
+            Assertions.assertEquals("Berta", persons[0].name)
+            Assertions.assertEquals(42, persons[0].age)
+            Assertions.assertEquals("1.2.1978", persons[0].birthday)
+            Assertions.assertNull(persons[1].age)
+            Assertions.assertEquals("Kai; Jr.", persons[3].name)
+            Assertions.assertEquals(7, persons[3].age)
+
+            val errors = sheet.allValidationErrors
+            Assertions.assertEquals(3, errors.size)
+            Assertions.assertEquals(listOf(2, 3, 3), errors.map { it.row }.sorted())
+            val dateError = errors.first { it.messageId == AbstractExcelColumnDateValidator.MESSAGE_DATE_EXPECTED }
+            Assertions.assertEquals(3, dateError.row) // Line 4.
+
+            val writer = StringWriter()
+            ExcelValidationErrorReport.writeCsv(errors, writer, CoreI18n.getDefault())
+            val lines = CSVReader(StringReader(writer.toString())).readAll()
+            Assertions.assertEquals(4, lines.size)
+            Assertions.assertEquals(listOf("3", "B", "Age", "old"), lines.first { it[0] == "3" }.subList(0, 4))
+            Assertions.assertEquals(2, lines.count { it[0] == "4" })
+
+            ExcelWorkbook(XSSFWorkbook()).use { report ->
+                val reportSheet = ExcelValidationErrorReport.writeSheet(errors, report.createOrGetSheet("Errors")!!)
+                Assertions.assertEquals(4, reportSheet.poiSheet.physicalNumberOfRows)
+            }
+
+            // Re-analyzing reads the file again:
+            sheet.analyze(true)
+            Assertions.assertEquals(3, sheet.allValidationErrors.size)
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package de.micromata.merlin.excel
+
+import org.junit.jupiter.api.Assertions
+import org.junit.jupiter.api.Test
+import java.time.LocalDate
+import java.time.LocalDateTime
+import java.util.*
+
+internal class ExcelDateParserTest {
+    @Test
+    fun parseTest() {
+        val parser = ExcelDateParser(arrayOf("M/d/yyyy", "d.M.yyyy", "d.M.yy", "d. MMMM yyyy", "yyyy-MM-dd", "yyyyMMdd"), Locale.GERMAN)
+        Assertions.assertEquals(LocalDate.of(2020, 2, 1), parser.parse("1.2.2020", LocalDate::parse))
+        Assertions.assertEquals(LocalDate.of(2020, 2, 1), parser.parse("01.02.20", LocalDate::parse))
+        Assertions.assertEquals(LocalDate.of(2020, 1, 2), parser.parse("1/2/2020", LocalDate::parse))
+        Assertions.assertEquals(LocalDate.of(2020, 3, 1), parser.parse("1. März 2020", LocalDate::parse))
+        Assertions.assertEquals(LocalDate.of(2020, 3, 1), parser.parse("2020-03-01", LocalDate::parse))
+        Assertions.assertEquals(LocalDate.of(2020, 3, 1), parser.parse("20200301", LocalDate::parse))
+        Assertions.assertNull(parser.parse("32.2.2020", LocalDate::parse))
+        Assertions.assertNull(parser.parse("1.2.2020 12:00", LocalDate::parse))
+        Assertions.assertNull(parser.parse("Januar", LocalDate::parse))
+        Assertions.assertNull(parser.parse("1-2-2020", LocalDate::parse))
+        // Last matched format is tried first:
+        Assertions.assertEquals(LocalDate.of(2020, 2, 1), parser.parse("1.2.2020", LocalDate::parse))
+        Assertions.assertEquals(LocalDate.of(2020, 1, 2), parser.parse("1/2/2020", LocalDate::parse))
+    }
+
+    @Test
+    fun optionalSectionsTest() {
+        val parser = ExcelDateParser(ExcelColumnDateTimeValidator.GERMAN_DATETIME_FORMATS + "yyyy-MM-dd'T'HH:mm", Locale.GERMAN)
+        Assertions.assertEquals(LocalDateTime.of(2020, 2, 1, 16, 5), parser.parse("1.2.2020 16:05", LocalDateTime::parse))
+        Assertions.assertEquals(LocalDateTime.of(2020, 2, 1, 16, 5, 17), parser.parse("1.2.2020 16:05:17", LocalDateTime::parse))
+        Assertions.assertEquals(LocalDateTime.of(2020, 2, 1, 16, 5), parser.parse("2020-02-01T16:05", LocalDateTime::parse))
+        Assertions.assertNull(parser.parse("1.2.2020", LocalDateTime::parse))
+    }
+}
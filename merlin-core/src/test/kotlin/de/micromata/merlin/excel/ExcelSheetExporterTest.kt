@@ -0,0 +1,118 @@
+package de.micromata.merlin.excel
+
+import de.micromata.merlin.Definitions
+import de.micromata.merlin.csv.CSVReader
+import org.apache.poi.xssf.usermodel.XSSFFormulaEvaluator
+import org.apache.poi.xssf.usermodel.XSSFWorkbook
+import org.junit.jupiter.api.Assertions
+import org.junit.jupiter.api.Test
+import java.io.ByteArrayOutputStream
+import java.io.File
+import java.io.StringReader
+import java.time.LocalDate
+import java.util.*
+
+internal class ExcelSheetExporterTest {
+    @Test
+    fun exportTest() {
+        ExcelWorkbook(XSSFWorkbook(), Locale.GERMAN).use { workbook ->
+            val sheet = workbook.createOrGetSheet("Persons")!!
+            sheet.createRow().createCells("Name", "Amount", "Active", "Comment")
+            addRow(sheet, "Berta", 12.5, true, "Hello \"world\"")
+            addRow(sheet, "Horst", 3.0, false, null)
+            addRow(sheet, "Kai; Jr.", null, null, " multi\nline")
+
+            // No registered columns: all cells are exported.
+            var csv = exportCsv(ExcelSheetExporter(sheet))
+            Assertions.assertEquals(4, CSVReader(StringReader(csv)).readAll().size) // Head row is a data row.
+
+            sheet.registerColumn("Name")
+            sheet.registerColumn("Amount")
+            sheet.registerColumn("Active")
+            sheet.registerColumn("Comment")
+            csv = exportCsv(ExcelSheetExporter(sheet))
+            val lines = CSVReader(StringReader(csv)).readAll()
+            Assertions.assertEquals(4, lines.size)
+            Assertions.assertEquals(listOf("Name", "Amount", "Active", "Comment"), lines[0])
+            Assertions.assertEquals(listOf("Berta", "12,5", "true", "Hello \"world\""), lines[1])
+            Assertions.assertEquals(listOf("Horst", "3", "false", ""), lines[2])
+            Assertions.assertEquals(listOf("Kai; Jr.", "", "", " multi\nline"), lines[3])
+
+            val exporter = ExcelSheetExporter(sheet).setColumns("Comment", "Name")
+            exporter.writeHeadRow = false
+            Assertions.assertEquals("\"Hello \"\"world\"\"\";Berta\n;Horst\n\" multi\nline\";\"Kai; Jr.\"\n", exportCsv(exporter))
+            Assertions.assertThrows(IllegalArgumentException::class.java) { ExcelSheetExporter(sheet).setColumns("Unknown") }
+
+            val out = ByteArrayOutputStream()
+            Assertions.assertEquals(3, ExcelSheetExporter(sheet).exportJsonLines(out))
+            val json = out.toString(Charsets.UTF_8.name()).split('\n')
+            Assertions.assertEquals("{\"Name\":\"Berta\",\"Amount\":12.5,\"Active\":true,\"Comment\":\"Hello \\\"world\\\"\"}", json[0])
+            Assertions.assertEquals("{\"Name\":\"Horst\",\"Amount\":3,\"Active\":false,\"Comment\":null}", json[1])
+            Assertions.assertEquals("{\"Name\":\"Kai; Jr.\",\"Amount\":null,\"Active\":null,\"Comment\":\" multi\\nline\"}", json[2])
+        }
+    }
+
+    @Test
+    fun exportDateFormulaTest() {
+        ExcelWorkbook(XSSFWorkbook(), Locale.GERMAN).use { workbook ->
+            val sheet = workbook.createOrGetSheet("Dates")!!
+            sheet.createRow().createCells("Date", "Due", "Days")
+            val rowNum = sheet.createRow().rowNum
+            sheet.setDateValue(rowNum, 0, LocalDate.of(2020, 1, 15), "yyyy-MM-dd")
+            val row = sheet.poiSheet.getRow(rowNum)
+            row.createCell(1).also {
+                it.cellFormula = "A2+14"
+                it.cellStyle = row.getCell(0).cellStyle
+            }
+            row.createCell(2).cellFormula = "B2-A2"
+            XSSFFormulaEvaluator.evaluateAllFormulaCells(workbook.pOIWorkbook as XSSFWorkbook)
+
+            sheet.registerColumn("Date")
+            sheet.registerColumn("Due")
+            sheet.registerColumn("Days")
+            val lines = CSVReader(StringReader(exportCsv(ExcelSheetExporter(sheet)))).readAll()
+            Assertions.assertEquals(listOf("2020-01-15", "2020-01-29", "14"), lines[1])
+
+            val out = ByteArrayOutputStream()
+            ExcelSheetExporter(sheet).exportJsonLines(out)
+            Assertions.assertEquals("{\"Date\":\"2020-01-15\",\"Due\":\"2020-01-29\",\"Days\":14}",
+                    out.toString(Charsets.UTF_8.name()).split('\n')[0])
+        }
+    }
+
+    @Test
+    fun exportStreamingTest() {
+        val file = File(Definitions.OUTPUT_DIR, "excel-sheet-exporter-test.csv")
+        val sb = StringBuilder()
+        sb.append("Id;Name\n")
+        for (i in 1..1000) {
+            sb.append(i).append(";Name ").append(i).append('\n')
+        }
+        file.writeText(sb.toString(), Charsets.UTF_8)
+        ExcelWorkbook.createForCsvRead(file).use { workbook ->
+            val sheet = workbook.getSheet(0)!!
+            sheet.registerColumn("Name")
+            sheet.registerColumn("Id")
+            val out = ByteArrayOutputStream()
+            Assertions.assertEquals(1000, ExcelSheetExporter(sheet).exportCsv(out))
+            val lines = CSVReader(StringReader(out.toString(Charsets.UTF_8.name()))).readAll()
+            Assertions.assertEquals(1001, lines.size)
+            Assertions.assertEquals(listOf("Name", "Id"), lines[0])
+            Assertions.assertEquals(listOf("Name 1000", "1000"), lines[1000])
+        }
+    }
+
+    private fun addRow(sheet: ExcelSheet, name: String, amount: Double?, active: Boolean?, comment: String?) {
+        val row = sheet.createRow().row
+        row.createCell(0).setCellValue(name)
+        amount?.let { row.createCell(1).setCellValue(it) }
+        active?.let { row.createCell(2).setCellValue(it) }
+        comment?.let { row.createCell(3).setCellValue(it) }
+    }
+
+    private fun exportCsv(exporter: ExcelSheetExporter): String {
+        val out = ByteArrayOutputStream()
+        exporter.exportCsv(out)
+        return out.toString(Charsets.UTF_8.name())
+    }
+}
@@ -0,0 +1,41 @@
+package de.micromata.merlin.excel
+
+import de.micromata.merlin.CoreI18n
+import org.apache.poi.xssf.usermodel.XSSFWorkbook
+import org.junit.jupiter.api.Assertions
+import org.junit.jupiter.api.Test
+import java.util.*
+
+internal class ExcelSheetParallelAnalyzeTest {
+    @Test
+    fun parallelAnalyzeTest() {
+        val coreI18N = CoreI18n.setDefault(Locale.ROOT)
+        val expected = analyze(1, coreI18N)
+        Assertions.assertTrue(expected.size > 100)
+        Assertions.assertEquals(expected, analyze(4, coreI18N))
+        Assertions.assertEquals(expected, analyze(0, coreI18N))
+    }
+
+    /**
+     * @return All validation error messages in the order served by the sheet.
+     */
+    private fun analyze(parallelism: Int, coreI18N: CoreI18n): List<String> {
+        val workbook = ExcelWorkbook(XSSFWorkbook())
+        val sheet = workbook.createOrGetSheet("Parallel")!!
+        sheet.createRow().createCells("Id", "Code", "Amount", "Date")
+        for (i in 1..2000) {
+            val rowNum = sheet.createRow().rowNum
+            sheet.setStringValue(rowNum, 0, if (i % 97 == 0) null else "${i % 1500}")
+            sheet.setStringValue(rowNum, 1, if (i % 13 == 0) "invalid" else "C-$i")
+            if (i % 17 == 0) sheet.setStringValue(rowNum, 2, "no number") else sheet.setIntValue(rowNum, 2, i)
+            sheet.setStringValue(rowNum, 3, if (i % 19 == 0) "no date" else "2020-01-${i % 28 + 1}")
+        }
+        sheet.registerColumn("Id").addColumnListener(ExcelColumnValidator().setRequired().setUnique())
+        sheet.registerColumn("Code").addColumnListener(ExcelColumnPatternValidator("C-\\d+"))
+        sheet.registerColumn("Amount").addColumnListener(ExcelColumnNumberValidator())
+        sheet.registerColumn("Date").addColumnListener(ExcelColumnDateValidator())
+        sheet.analyzeParallelism = parallelism
+        sheet.analyze(true)
+        return sheet.allValidationErrors.map { it.getMessageWithAllDetails(coreI18N) }
+    }
+}
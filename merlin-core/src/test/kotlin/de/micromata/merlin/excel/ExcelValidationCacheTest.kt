@@ -0,0 +1,48 @@
+package de.micromata.merlin.excel
+
+import org.apache.poi.xssf.usermodel.XSSFWorkbook
+import org.junit.jupiter.api.Assertions
+import org.junit.jupiter.api.Test
+
+internal class ExcelValidationCacheTest {
+    @Test
+    fun cacheTest() {
+        val uncached = analyze(false)
+        val cached = analyze(true)
+        Assertions.assertEquals(uncached.allValidationErrors.size, cached.allValidationErrors.size)
+        Assertions.assertEquals(uncached.allValidationErrors.map { "${it.row}:${it.messageId}:${it.cellValue}" },
+                cached.allValidationErrors.map { "${it.row}:${it.messageId}:${it.cellValue}" })
+        Assertions.assertEquals(200, cached.allValidationErrors.size) // Every 5th country and every 5th amount.
+
+        val countryCache = cached.getColumnDef("Country")!!.columnValidators!![0].validationCache!!
+        Assertions.assertEquals(5, countryCache.size)
+        Assertions.assertEquals(495, countryCache.hits)
+        Assertions.assertTrue(countryCache.hitRate > 0.98)
+        val amountCache = cached.getColumnDef("Amount")!!.columnValidators!![0].validationCache!!
+        Assertions.assertEquals(2, amountCache.maxSize)
+        Assertions.assertTrue(amountCache.size <= 2)
+        Assertions.assertNull(uncached.getColumnDef("Country")!!.columnValidators!![0].validationCache)
+    }
+
+    private fun analyze(cached: Boolean): ExcelSheet {
+        val workbook = ExcelWorkbook(XSSFWorkbook())
+        val sheet = workbook.createOrGetSheet("Cache")!!
+        sheet.createRow().createCells("Country", "Amount")
+        val countries = arrayOf("DE", "FR", "IT", "US", "XX")
+        for (i in 0 until 500) {
+            val rowNum = sheet.createRow().rowNum
+            sheet.setStringValue(rowNum, 0, countries[i % 5])
+            sheet.setStringValue(rowNum, 1, if (i % 5 == 0) "no number" else "${i % 3}")
+        }
+        val countryDef = sheet.registerColumn("Country")
+        countryDef.addColumnListener(ExcelColumnOptionsValidator("DE", "FR", "IT", "US"))
+        val amountDef = sheet.registerColumn("Amount")
+        amountDef.addColumnListener(ExcelColumnNumberValidator().also { it.isTryToConvertStringToNumber = true })
+        if (cached) {
+            countryDef.enableValidationCache()
+            amountDef.enableValidationCache(2)
+        }
+        sheet.analyze(true)
+        return sheet
+    }
+}
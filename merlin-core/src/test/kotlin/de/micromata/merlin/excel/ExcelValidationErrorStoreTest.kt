@@ -0,0 +1,81 @@
+package de.micromata.merlin.excel
+
+import org.apache.poi.xssf.usermodel.XSSFWorkbook
+import org.junit.jupiter.api.Assertions
+import org.junit.jupiter.api.Test
+
+internal class ExcelValidationErrorStoreTest {
+    @Test
+    fun storeTest() {
+        val workbook = ExcelWorkbook(XSSFWorkbook())
+        val sheet = workbook.createOrGetSheet("Errors")!!
+        sheet.createRow().createCells("Id", "Amount")
+        for (i in 1..1000) {
+            val rowNum = sheet.createRow().rowNum
+            sheet.setStringValue(rowNum, 0, if (i % 2 == 0) null else "${i % 100}")
+            sheet.setStringValue(rowNum, 1, "no number")
+        }
+        val idValidator = ExcelColumnValidator().setRequired().setUnique().setMaxStoredErrors(100)
+        sheet.registerColumn("Id").addColumnListener(idValidator)
+        sheet.registerColumn("Amount").addColumnListener(ExcelColumnNumberValidator())
+        sheet.analyze(true)
+
+        val store = sheet.getColumnDef("Id")!!.columnValidators!![0].errorStore
+        Assertions.assertEquals(100, store.size)
+        Assertions.assertEquals(950, store.totalCount) // 500 missing and 450 not unique.
+        Assertions.assertTrue(store.isTruncated)
+        Assertions.assertEquals(500, store.getCount(ExcelColumnValidator.MESSAGE_MISSING_REQUIRED_FIELD))
+        Assertions.assertEquals(450, store.getCount(ExcelColumnValidator.MESSAGE_VALUE_NOT_UNIQUE))
+        Assertions.assertEquals(1, store.getErrors(2, 0).size)
+        Assertions.assertEquals(0, store.getErrors(2, 1).size)
+
+        Assertions.assertEquals(2, sheet.getValidationErrors(2).size, "Errors of both columns expected.")
+        Assertions.assertEquals(1100, sheet.allValidationErrors.size)
+        Assertions.assertEquals(1000, sheet.validationErrorCounts[ExcelColumnNumberValidator.MESSAGE_NUMBER_EXPECTED])
+
+        // Re-analyzing doesn't count errors twice:
+        sheet.analyze(true)
+        Assertions.assertEquals(950, store.totalCount)
+        Assertions.assertEquals(1100, sheet.allValidationErrors.size)
+    }
+
+    @Test
+    @Suppress("DEPRECATION")
+    fun viewsTest() {
+        val workbook = ExcelWorkbook(XSSFWorkbook())
+        val sheet = workbook.createOrGetSheet("Errors")!!
+        sheet.createRow().createCells("Id", "Name")
+        for (i in 1..10) {
+            val rowNum = sheet.createRow().rowNum
+            sheet.setStringValue(rowNum, 0, if (i % 2 == 0) null else "$i")
+            sheet.setStringValue(rowNum, 1, "Name $i")
+        }
+        val validator = ExcelColumnValidator().setRequired()
+        sheet.registerColumn("Id").addColumnListener(validator)
+        sheet.analyze(true)
+
+        val view = validator.storedValidationErrors
+        Assertions.assertEquals(5, view.size)
+        Assertions.assertEquals(listOf(2, 4, 6, 8, 10), view.map { it.row })
+        Assertions.assertThrows(UnsupportedOperationException::class.java) {
+            (view as java.util.Set<ExcelValidationErrorMessage>).clear()
+        }
+
+        // The deprecated mutable form writes through to the store:
+        val error = view.first()
+        Assertions.assertTrue(validator.validationErrors.remove(error))
+        Assertions.assertEquals(4, validator.errorStore.size)
+        Assertions.assertEquals(4, validator.errorStore.totalCount)
+        Assertions.assertFalse(view.contains(error))
+        Assertions.assertTrue(validator.validationErrors.add(error))
+        Assertions.assertFalse(validator.validationErrors.add(error), "Equal error is stored only once.")
+        Assertions.assertEquals(5, view.size)
+        validator.validationErrors.removeIf { it.row > 5 }
+        Assertions.assertEquals(listOf(2, 4), view.map { it.row })
+
+        // The views reflect the cleared store of re-analyzing:
+        sheet.analyze(true)
+        Assertions.assertEquals(5, view.size)
+        Assertions.assertEquals(5, validator.validationErrors.size)
+    }
+}
@@ -0,0 +1,50 @@
+package de.micromata.merlin.excel
+
+import de.micromata.merlin.CoreI18n
+import de.micromata.merlin.Definitions
+import org.apache.poi.xssf.usermodel.XSSFWorkbook
+import org.junit.jupiter.api.Assertions
+import org.junit.jupiter.api.Test
+import java.io.File
+import java.util.*
+
+internal class ExcelWorkbookAnalyzeAllTest {
+    @Test
+    fun analyzeAllTest() {
+        val coreI18N = CoreI18n.setDefault(Locale.ROOT)
+        val file = File(Definitions.OUTPUT_DIR, "Test-analyzeAll.xlsx")
+        ExcelWorkbook(XSSFWorkbook()).use { workbook ->
+            for (i in 1..4) {
+                val sheet = workbook.createOrGetSheet("Sheet $i")!!
+                sheet.createRow().createCells("Id", "Amount")
+                for (j in 1..500) {
+                    val rowNum = sheet.createRow().rowNum
+                    sheet.setStringValue(rowNum, 0, if (j % (10 + i) == 0) null else "${j % (400 + i)}")
+                    if (j % (20 + i) == 0) sheet.setStringValue(rowNum, 1, "no number") else sheet.setIntValue(rowNum, 1, j)
+                }
+            }
+            workbook.createOrGetSheet("Not analyzed")!!.createRow().createCells("Id")
+            file.outputStream().use { workbook.write(it) }
+        }
+        val expected = ExcelWorkbook(file).use { analyze(it, 1, coreI18N) }
+        Assertions.assertTrue(expected.size > 100)
+        Assertions.assertEquals(expected, ExcelWorkbook(file).use { analyze(it, 4, coreI18N) })
+        Assertions.assertEquals(expected, ExcelWorkbook(file).use { analyze(it, 0, coreI18N) })
+        Assertions.assertEquals(expected, ExcelWorkbook.createForStreamingRead(file).use { analyze(it, 4, coreI18N) })
+    }
+
+    /**
+     * @return All validation error messages of the workbook.
+     */
+    private fun analyze(workbook: ExcelWorkbook, parallelism: Int, coreI18N: CoreI18n): List<String> {
+        for (i in 1..4) {
+            val sheet = workbook.getSheet("Sheet $i")!!
+            sheet.registerColumn("Id").addColumnListener(ExcelColumnValidator().setRequired().setUnique())
+            sheet.registerColumn("Amount").addColumnListener(ExcelColumnNumberValidator())
+        }
+        workbook.analyzeAll(true, parallelism)
+        Assertions.assertTrue(workbook.hasValidationErrors())
+        Assertions.assertNull(workbook.getSheet("Not analyzed")!!.headRow, "Sheet without registered columns shouldn't be analyzed.")
+        return workbook.allValidationErrors.map { it.getMessageWithAllDetails(coreI18N) }
+    }
+}
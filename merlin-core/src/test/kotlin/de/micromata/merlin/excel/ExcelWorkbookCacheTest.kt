@@ -0,0 +1,146 @@
+package de.micromata.merlin.excel
+
+import de.micromata.merlin.Definitions
+import org.apache.poi.ss.usermodel.DateUtil
+import org.apache.poi.xssf.usermodel.XSSFWorkbook
+import org.junit.jupiter.api.Assertions
+import org.junit.jupiter.api.Test
+import java.io.File
+import java.time.LocalDateTime
+import java.util.concurrent.Callable
+import java.util.concurrent.Executors
+
+internal class ExcelWorkbookCacheTest {
+    @Test
+    fun cacheTest() {
+        val cacheDir = File(Definitions.OUTPUT_DIR, "workbook-cache-test")
+        val cache = ExcelWorkbookCache(cacheDir)
+        cache.clear()
+        val file = File(Definitions.OUTPUT_DIR, "workbook-cache-test.xlsx")
+        writeWorkbook(file, "Berta")
+
+        cache.open(file).use { checkWorkbook(it, "Berta") } // Parsed as usual.
+        Assertions.assertEquals(1, cache.misses)
+        cache.open(file).use { checkWorkbook(it, "Berta") } // Read from cache.
+        Assertions.assertEquals(1, cache.hits)
+        cache.open(file.readBytes(), file.name).use { checkWorkbook(it, "Berta") }
+        Assertions.assertEquals(2, cache.hits)
+
+        writeWorkbook(file, "Horst") // Modified content.
+        cache.open(file).use { checkWorkbook(it, "Horst") }
+        Assertions.assertEquals(2, cache.misses)
+        cache.open(file).use { checkWorkbook(it, "Horst") }
+        Assertions.assertEquals(3, cache.hits)
+
+        cacheDir.listFiles()!!.forEach { it.writeText("invalid") }
+        cache.open(file).use { checkWorkbook(it, "Horst") } // Invalid cache file is replaced.
+        Assertions.assertEquals(3, cache.misses)
+        cache.open(file).use { checkWorkbook(it, "Horst") }
+        Assertions.assertEquals(4, cache.hits)
+
+        ExcelWorkbook.createCached(file.toPath(), cache)!!.use { checkWorkbook(it, "Horst") }
+        Assertions.assertEquals(5, cache.hits)
+        ExcelWorkbook.create(file.toPath())!!.use { checkWorkbook(it, "Horst") } // Never uses a cache.
+        Assertions.assertEquals(5, cache.hits)
+        Assertions.assertEquals(3, cache.misses)
+    }
+
+    @Test
+    fun concurrentReadTest() {
+        val cache = ExcelWorkbookCache(File(Definitions.OUTPUT_DIR, "workbook-cache-concurrent-test"))
+        cache.clear()
+        val file = File(Definitions.OUTPUT_DIR, "workbook-cache-concurrent-test.xlsx")
+        ExcelWorkbook(XSSFWorkbook()).use { workbook ->
+            for (sheetNumber in 0..7) {
+                val sheet = workbook.createOrGetSheet("Sheet $sheetNumber")!!
+                sheet.createRow().createCells("Name")
+                for (i in 1..1000) {
+                    sheet.setStringValue(sheet.createRow().rowNum, 0, "Name $i") // Shared strings of all sheets.
+                }
+            }
+            file.outputStream().use { workbook.write(it) }
+        }
+        cache.openForStreamingRead(file).close() // Written to cache.
+        cache.openForStreamingRead(file).use { workbook ->
+            val executor = Executors.newFixedThreadPool(8)
+            try {
+                // The shared strings of the cache file are decoded concurrently.
+                val futures = (0..7).map { sheetNumber ->
+                    executor.submit(Callable {
+                        val sheet = workbook.getSheet("Sheet $sheetNumber")!!
+                        sheet.registerColumn("Name")
+                        val names = mutableListOf<String>()
+                        sheet.analyze(false) { row, _ -> names.add(sheet.getCell(row, "Name")!!.stringCellValue) }
+                        names
+                    })
+                }
+                val expected = (1..1000).map { "Name $it" }
+                futures.forEach { Assertions.assertEquals(expected, it.get()) }
+            } finally {
+                executor.shutdownNow()
+            }
+        }
+        Assertions.assertEquals(1, cache.hits)
+    }
+
+    @Test
+    fun streamingTest() {
+        val cache = ExcelWorkbookCache(File(Definitions.OUTPUT_DIR, "workbook-cache-streaming-test"), 1)
+        cache.clear()
+        val file = File(Definitions.OUTPUT_DIR, "workbook-cache-streaming-test.xlsx")
+        writeWorkbook(file, "Kai")
+        for (i in 0..1) {
+            cache.openForStreamingRead(file).use { workbook ->
+                Assertions.assertTrue(workbook.isStreamingRead)
+                val sheet = workbook.getSheet("Persons")!!
+                sheet.registerColumn("Name")
+                sheet.registerColumn("Birthday").addColumnListener(ExcelColumnDateValidator())
+                val names = mutableListOf<String>()
+                sheet.analyze(true) { row, _ -> names.add(sheet.getCell(row, "Name")!!.stringCellValue) }
+                Assertions.assertEquals(listOf("Kai", "Name 2", "Name 3"), names)
+                Assertions.assertFalse(sheet.hasValidationErrors())
+            }
+        }
+        Assertions.assertEquals(1, cache.misses)
+        Assertions.assertEquals(1, cache.hits)
+    }
+
+    private fun writeWorkbook(file: File, name: String) {
+        ExcelWorkbook(XSSFWorkbook()).use { workbook ->
+            val sheet = workbook.createOrGetSheet("Persons")!!
+            workbook.createOrGetSheet("Empty")
+            sheet.createRow().createCells("Name", "Birthday", "Amount", "Active", "Total")
+            val dateStyle = workbook.ensureDateCellStyle("dd.mm.yyyy")
+            for (i in 1..3) {
+                val row = sheet.createRow().row
+                row.createCell(0).setCellValue(if (i == 1) name else "Name $i")
+                row.createCell(1).also {
+                    it.setCellValue(LocalDateTime.of(1980, 1, i, 0, 0))
+                    it.cellStyle = dateStyle
+                }
+                row.createCell(2).setCellValue(i * 1.5)
+                row.createCell(3).setCellValue(i % 2 == 0)
+                row.createCell(4).cellFormula = "C${i + 1}*2"
+            }
+            workbook.formulaEvaluator!!.evaluateAll()
+            file.outputStream().use { workbook.write(it) }
+        }
+    }
+
+    private fun checkWorkbook(workbook: ExcelWorkbook, name: String) {
+        Assertions.assertEquals(2, workbook.numberOfSheets)
+        val sheet = workbook.getSheet("Persons")!!
+        Assertions.assertEquals(0, workbook.getSheet("Empty")!!.poiSheet.physicalNumberOfRows)
+        Assertions.assertEquals(4, sheet.poiSheet.physicalNumberOfRows)
+        val row = sheet.poiSheet.getRow(1)
+        Assertions.assertEquals(name, row.getCell(0).stringCellValue)
+        Assertions.assertTrue(DateUtil.isCellDateFormatted(row.getCell(1)))
+        Assertions.assertEquals(LocalDateTime.of(1980, 1, 1, 0, 0), row.getCell(1).localDateTimeCellValue)
+        Assertions.assertEquals(1.5, row.getCell(2).numericCellValue)
+        Assertions.assertFalse(row.getCell(3).booleanCellValue)
+        Assertions.assertTrue(sheet.poiSheet.getRow(2).getCell(3).booleanCellValue)
+        Assertions.assertEquals(3.0, row.getCell(4).numericCellValue) // Cached result of the formula.
+        sheet.registerColumn("Amount")
+        Assertions.assertEquals(4.5, sheet.getCellDouble(sheet.poiSheet.getRow(3), "Amount"))
+    }
+}
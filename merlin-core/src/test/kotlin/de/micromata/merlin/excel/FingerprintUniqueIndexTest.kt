@@ -0,0 +1,88 @@
+package de.micromata.merlin.excel
+
+import de.micromata.merlin.CoreI18n
+import de.micromata.merlin.Definitions
+import org.apache.poi.xssf.usermodel.XSSFWorkbook
+import org.junit.jupiter.api.Assertions
+import org.junit.jupiter.api.Test
+
+internal class FingerprintUniqueIndexTest {
+    @Test
+    fun indexTest() {
+        val spillDir = Definitions.OUTPUT_DIR
+        spillDir.mkdirs()
+        for (index in listOf(FingerprintUniqueIndex(16), FingerprintUniqueIndex(16, spillDir))) {
+            index.use {
+                for (i in 0 until 100_000) {
+                    Assertions.assertEquals(ExcelUniqueIndex.NONE, index.putIfAbsent("value-$i", i.toLong()))
+                }
+                Assertions.assertEquals(100_000L, index.size)
+                Assertions.assertEquals(42L, index.putIfAbsent("value-42", 1000L))
+                Assertions.assertEquals(99_999L, index.get("value-99999"))
+                Assertions.assertEquals(ExcelUniqueIndex.NONE, index.get("value-100000"))
+                Assertions.assertEquals(ExcelUniqueIndex.NONE, index.get("value-")) // Prefix of existing values.
+                val long = "x".repeat(100_000)
+                index.putIfAbsent(long, 7L)
+                Assertions.assertEquals(7L, index.get(long))
+                Assertions.assertEquals(ExcelUniqueIndex.NONE, index.get(long + "y"))
+                index.clear()
+                Assertions.assertEquals(0L, index.size)
+                Assertions.assertEquals(ExcelUniqueIndex.NONE, index.get("value-42"))
+                index.putIfAbsent("value-42", 3L)
+                Assertions.assertEquals(3L, index.get("value-42"))
+            }
+        }
+    }
+
+    @Test
+    fun sharedIndexTest() {
+        val workbook = ExcelWorkbook(XSSFWorkbook())
+        FingerprintUniqueIndex().use { uniqueIndex ->
+            val validator = ExcelColumnValidator().setUnique().setUniqueIndex(uniqueIndex)
+            val sheets = (0..1).map { workbook.createOrGetSheet("Sheet $it")!! }
+            for (sheetNumber in 0..1) {
+                val sheet = sheets[sheetNumber]
+                sheet.createRow().createCells("Id")
+                for (i in 1..100) {
+                    // Sheet 1 contains ids 50..149, so 50 ids are duplicates of sheet 0 (in same rows as well).
+                    sheet.setStringValue(sheet.createRow().rowNum, 0, "${i + sheetNumber * 49}")
+                }
+                sheet.registerColumn("Id").addColumnListener(validator)
+                sheet.analyze(true)
+            }
+            Assertions.assertEquals(0, sheets[0].allValidationErrors.size)
+            Assertions.assertEquals(51, sheets[1].allValidationErrors.size)
+            Assertions.assertEquals(149L, uniqueIndex.size)
+            Assertions.assertEquals("Cell value isn't unique. It's already used in sheet 'Sheet 0', row #51: '50'.",
+                    sheets[1].allValidationErrors.first().getMessage(CoreI18n.getDefault()))
+        }
+    }
+
+    @Test
+    fun concurrentSharedIndexTest() {
+        for (uniqueIndex in listOf(HashMapUniqueIndex(), FingerprintUniqueIndex())) {
+            uniqueIndex.use {
+                val workbook = ExcelWorkbook(XSSFWorkbook())
+                val validator = ExcelColumnValidator().setUnique().setUniqueIndex(uniqueIndex)
+                for (sheetNumber in 0..7) {
+                    val sheet = workbook.createOrGetSheet("Sheet $sheetNumber")!!
+                    sheet.createRow().createCells("Id")
+                    for (i in 1..1000) {
+                        // Each sheet shares 500 ids with the previous sheet.
+                        sheet.setStringValue(sheet.createRow().rowNum, 0, "${i + sheetNumber * 500}")
+                    }
+                }
+                for (sheetNumber in 0..7) {
+                    workbook.getSheet("Sheet $sheetNumber")!!.registerColumn("Id").addColumnListener(validator)
+                }
+                workbook.analyzeAll(true, 8)
+                // Exactly one occurrence of each of the 4,500 ids is accepted, all others are reported.
+                Assertions.assertEquals(4500L, uniqueIndex.size)
+                Assertions.assertEquals(3500, workbook.allValidationErrors.size)
+                workbook.allValidationErrors.forEach {
+                    Assertions.assertEquals(ExcelColumnValidator.MESSAGE_VALUE_NOT_UNIQUE_IN_SHEET, it.messageId)
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package de.micromata.merlin.excel
+
+import org.apache.poi.xssf.usermodel.XSSFWorkbook
+import org.junit.jupiter.api.Assertions
+import org.junit.jupiter.api.Test
+import java.util.*
+
+internal class PoiHelperTest {
+    @Test
+    fun epochDayTest() {
+        for (date1904 in listOf(false, true)) {
+            val workbook = XSSFWorkbook()
+            workbook.ctWorkbook.addNewWorkbookPr().date1904 = date1904
+            val cell = workbook.createSheet().createRow(0).createCell(0)
+            for (value in listOf(1.0, 59.0, 60.5, 61.0, 366.0, 25569.0, 43831.75, 73050.0)) {
+                cell.setCellValue(value)
+                Assertions.assertEquals(cell.localDateTimeCellValue.toLocalDate().toEpochDay(), PoiHelper.getEpochDay(cell),
+                        "Excel date $value (date1904=$date1904)")
+            }
+            cell.setCellValue(-1.0)
+            Assertions.assertEquals(PoiHelper.NO_EPOCH_DAY, PoiHelper.getEpochDay(cell))
+            cell.setCellValue("2020-01-01")
+            Assertions.assertEquals(PoiHelper.NO_EPOCH_DAY, PoiHelper.getEpochDay(cell))
+        }
+    }
+
+    @Test
+    fun accessorsTest() {
+        val row = XSSFWorkbook().createSheet().createRow(0)
+        row.createCell(0).setCellValue(1234.5)
+        row.createCell(1).setCellValue(" text ")
+        row.createCell(2).cellFormula = "A1*2"
+        Assertions.assertEquals(1234.5, PoiHelper.getDouble(row.getCell(0)))
+        Assertions.assertTrue(PoiHelper.getDouble(row.getCell(1)).isNaN())
+        Assertions.assertTrue(PoiHelper.getDouble(null).isNaN())
+        Assertions.assertEquals("1,234.5", PoiHelper.getValueAsString(row.getCell(0), Locale.ENGLISH))
+        Assertions.assertEquals("1.234,5", PoiHelper.getValueAsString(row.getCell(0), Locale.GERMAN))
+        Assertions.assertEquals("A1*2", PoiHelper.getValueAsString(row.getCell(2)))
+
+        val sb = StringBuilder()
+        Assertions.assertTrue(PoiHelper.getStringInto(row.getCell(1), sb, Locale.ENGLISH, true))
+        Assertions.assertFalse(PoiHelper.getStringInto(row.getCell(3), sb))
+        Assertions.assertTrue(PoiHelper.getStringInto(row.getCell(0), sb, Locale.ENGLISH))
+        Assertions.assertEquals("text1,234.5", sb.toString())
+    }
+}
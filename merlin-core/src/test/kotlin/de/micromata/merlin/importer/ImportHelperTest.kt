@@ -3,6 +3,7 @@ package de.micromata.merlin.importer
 import de.micromata.merlin.Definitions
 import de.micromata.merlin.excel.ExcelWorkbook
 import de.micromata.merlin.excel.importer.ImportHelper
+import de.micromata.merlin.excel.importer.RowMapper
 import org.apache.poi.ss.usermodel.Row
 import org.junit.jupiter.api.Assertions
 import org.junit.jupiter.api.Test
@@ -24,6 +25,19 @@ internal class ImportHelperTest {
                  var floatValue: Float? = null,
                  var text: String? = null)
 
+    class PrimitivePerson {
+        var name: String = ""
+        var age: Int = 0
+        var money: Double = 0.0
+        var floatValue: Float = 0f
+        var date: Any? = null // Object setters get the cell values as string (as done by ImportHelper.fillBean).
+    }
+
+    private class PrivatePerson {
+        var name: String? = null
+        var age: Int? = null
+    }
+
     @Test
     fun fillBeanTest() {
         val excelWorkbook = ExcelWorkbook(File(Definitions.EXAMPLES_EXCEL_TEST_DIR, "Workbook-Test.xlsx"), Locale.GERMAN)
@@ -60,5 +74,43 @@ internal class ImportHelperTest {
         Assertions.assertEquals(23, person.dateTime!!.hour)
         Assertions.assertEquals(55, person.dateTime!!.minute)
         Assertions.assertEquals(0, person.dateTime!!.second)
+
+        // The row mapper is created only once per sheet and bean class:
+        val mapper = ImportHelper.getRowMapper(Person::class.java, sheet)
+        ImportHelper.fillBean(Person(), sheet, it.next().rowNum)
+        Assertions.assertSame(mapper, ImportHelper.getRowMapper(Person::class.java, sheet))
+        Assertions.assertNotSame(mapper, ImportHelper.getRowMapper(PrimitivePerson::class.java, sheet))
+        // Modified columns are regarded:
+        sheet.getColumnDef("Text")!!.setTargetProperty("name")
+        val modifiedMapper = ImportHelper.getRowMapper(Person::class.java, sheet)
+        Assertions.assertNotSame(mapper, modifiedMapper)
+        Assertions.assertSame(modifiedMapper, ImportHelper.getRowMapper(Person::class.java, sheet))
+        person = Person()
+        ImportHelper.fillBean(person, sheet, row.rowNum)
+        Assertions.assertEquals("1,3", person.name)
+    }
+
+    @Test
+    fun rowMapperTest() {
+        val excelWorkbook = ExcelWorkbook(File(Definitions.EXAMPLES_EXCEL_TEST_DIR, "Workbook-Test.xlsx"), Locale.GERMAN)
+        val sheet = excelWorkbook.getSheet("fillBean")!!
+        listOf("Name", "Age", "Date", "Money", "FloatValue", "unknown").forEach { sheet.registerColumn(it) }
+        val row = sheet.dataRowIterator.next()
+
+        val mapper = RowMapper.create(PrimitivePerson::class.java, sheet)
+        Assertions.assertEquals(5, mapper.size, "Column 'unknown' isn't found.")
+        val person = PrimitivePerson()
+        mapper.fillBean(person, row)
+        Assertions.assertEquals("Kai Reinhard", person.name)
+        Assertions.assertEquals(48, person.age)
+        Assertions.assertEquals(37.25, person.money)
+        Assertions.assertEquals(1.27f, person.floatValue)
+        Assertions.assertTrue(person.date is String)
+
+        // Setters of private classes are called via reflection:
+        val privatePerson = PrivatePerson()
+        RowMapper.create(PrivatePerson::class.java, sheet).fillBean(privatePerson, sheet, row.rowNum)
+        Assertions.assertEquals("Kai Reinhard", privatePerson.name)
+        Assertions.assertEquals(48, privatePerson.age)
     }
 }
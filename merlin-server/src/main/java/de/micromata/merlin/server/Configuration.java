@@ -1,5 +1,6 @@
 package de.micromata.merlin.server;
 
+import de.micromata.merlin.persistency.templates.TemplateDocumentCache;
 import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -17,6 +18,9 @@ public class Configuration {
     private int port;
     private boolean showTestData = true;
     private boolean webDevelopmentMode = false;
+    private long templateCacheMaxSize = TemplateDocumentCache.DEFAULT_MAX_SIZE;
+    private String scanIndexDir;
+    private boolean workbookCacheEnabled = false;
     private List<ConfigurationTemplatesDir> templatesDirs;
     private boolean templatesDirModified = false;
 
@@ -78,6 +82,44 @@ public class Configuration {
         this.webDevelopmentMode = webDevelopmentMode;
     }
 
+    /**
+     * @return The byte budget of the cache of parsed Word templates.
+     * @see TemplateDocumentCache
+     */
+    public long getTemplateCacheMaxSize() {
+        return templateCacheMaxSize;
+    }
+
+    public void setTemplateCacheMaxSize(long templateCacheMaxSize) {
+        this.templateCacheMaxSize = templateCacheMaxSize;
+    }
+
+    /**
+     * @return The directory of the scan indexes of the templates directories (so unmodified templates aren't read
+     * again after a restart) or null for the default directory 'scan-index' in the application home.
+     * @see #getApplicationHome()
+     */
+    public String getScanIndexDir() {
+        return scanIndexDir;
+    }
+
+    public void setScanIndexDir(String scanIndexDir) {
+        this.scanIndexDir = scanIndexDir;
+    }
+
+    /**
+     * @return true, if the template definition files should be read through a persistent cache of parsed workbooks
+     * (directory 'workbook-cache' in the application home). Default is false.
+     * @see de.micromata.merlin.excel.ExcelWorkbookCache
+     */
+    public boolean isWorkbookCacheEnabled() {
+        return workbookCacheEnabled;
+    }
+
+    public void setWorkbookCacheEnabled(boolean workbookCacheEnabled) {
+        this.workbookCacheEnabled = workbookCacheEnabled;
+    }
+
     public List<ConfigurationTemplatesDir> getTemplatesDirs() {
         return templatesDirs;
     }
@@ -109,6 +151,9 @@ public class Configuration {
         this.port = other.port;
         this.showTestData = other.showTestData;
         this.webDevelopmentMode = other.webDevelopmentMode;
+        this.templateCacheMaxSize = other.templateCacheMaxSize;
+        this.scanIndexDir = other.scanIndexDir;
+        this.workbookCacheEnabled = other.workbookCacheEnabled;
         if (!Objects.equals(this.templatesDirs, other.templatesDirs)) {
             templatesDirModified = true;
         }
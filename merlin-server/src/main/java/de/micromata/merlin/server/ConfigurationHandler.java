@@ -1,6 +1,7 @@
 package de.micromata.merlin.server;
 
 import com.fasterxml.jackson.core.type.TypeReference;
+import de.micromata.merlin.persistency.templates.TemplateDocumentCache;
 import de.micromata.merlin.server.json.JsonUtils;
 import org.apache.commons.collections4.CollectionUtils;
 import org.apache.commons.lang3.StringUtils;
@@ -25,6 +26,9 @@ public class ConfigurationHandler {
     private static final boolean SHOW_TEST_DATA_PREF_DEFAULT = true;
     private static final String WEB_DEVELOPMENT_MODE_PREF = "web-development-mode";
     private static final boolean WEB_DEVELOPMENT_MODE_PREF_DEFAULT = false;
+    private static final String TEMPLATE_CACHE_MAX_SIZE_PREF = "template-cache-max-size";
+    private static final String SCAN_INDEX_DIR_PREF = "scan-index-dir";
+    private static final String WORKBOOK_CACHE_ENABLED_PREF = "workbook-cache-enabled";
     static final String TEMPLATES_DIRS = "template-directories";
 
     private Preferences preferences;
@@ -66,6 +70,9 @@ public class ConfigurationHandler {
         configuration.setPort(preferences.getInt(WEBSERVER_PORT_PREF, WEBSERVER_PORT_DEFAULT));
         configuration.setShowTestData(preferences.getBoolean(SHOW_TEST_DATA_PREF, SHOW_TEST_DATA_PREF_DEFAULT));
         configuration.setWebDevelopmentMode(preferences.getBoolean(WEB_DEVELOPMENT_MODE_PREF, WEB_DEVELOPMENT_MODE_PREF_DEFAULT));
+        configuration.setTemplateCacheMaxSize(preferences.getLong(TEMPLATE_CACHE_MAX_SIZE_PREF, TemplateDocumentCache.DEFAULT_MAX_SIZE));
+        configuration.setScanIndexDir(preferences.get(SCAN_INDEX_DIR_PREF, null));
+        configuration.setWorkbookCacheEnabled(preferences.getBoolean(WORKBOOK_CACHE_ENABLED_PREF, false));
         String json = preferences.get(TEMPLATES_DIRS, null);
         if (json != null) {
             try {
@@ -87,6 +94,13 @@ public class ConfigurationHandler {
         preferences.putInt(WEBSERVER_PORT_PREF, configuration.getPort());
         preferences.putBoolean(SHOW_TEST_DATA_PREF, configuration.isShowTestData());
         preferences.putBoolean(WEB_DEVELOPMENT_MODE_PREF, configuration.isWebDevelopmentMode());
+        preferences.putLong(TEMPLATE_CACHE_MAX_SIZE_PREF, configuration.getTemplateCacheMaxSize());
+        preferences.putBoolean(WORKBOOK_CACHE_ENABLED_PREF, configuration.isWorkbookCacheEnabled());
+        if (StringUtils.isNotBlank(configuration.getScanIndexDir())) {
+            preferences.put(SCAN_INDEX_DIR_PREF, configuration.getScanIndexDir());
+        } else {
+            preferences.remove(SCAN_INDEX_DIR_PREF);
+        }
         if (CollectionUtils.isNotEmpty(configuration.getTemplatesDirs())) {
             String json = JsonUtils.toJson(configuration.getTemplatesDirs());
             preferences.put(TEMPLATES_DIRS, json);
@@ -145,6 +159,7 @@ public class ConfigurationHandler {
         preferences.remove(TEMPLATES_DIRS);
         preferences.remove(SHOW_TEST_DATA_PREF);
         preferences.remove(WEB_DEVELOPMENT_MODE_PREF);
+        preferences.remove(TEMPLATE_CACHE_MAX_SIZE_PREF);
         for(String extraKey : extraPreferences) {
             preferences.remove(extraKey);
         }
@@ -0,0 +1,18 @@
+package de.micromata.merlin.server.json;
+
+import de.micromata.merlin.persistency.templates.ScanIndex;
+
+/**
+ * Stores the meta data of the scan index as json.
+ */
+public class JsonScanIndexCodec implements ScanIndex.Codec {
+    @Override
+    public String encode(Object obj) {
+        return JsonUtils.toJson(obj);
+    }
+
+    @Override
+    public <T> T decode(String str, Class<T> clazz) {
+        return JsonUtils.fromJson(clazz, str);
+    }
+}
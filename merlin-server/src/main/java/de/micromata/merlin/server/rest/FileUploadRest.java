@@ -7,8 +7,9 @@ import de.micromata.merlin.logging.MDCKey;
 import de.micromata.merlin.persistency.PersistencyRegistry;
 import de.micromata.merlin.server.user.UserUtils;
 import de.micromata.merlin.utils.MerlinFileUtils;
-import de.micromata.merlin.word.WordDocument;
+import de.micromata.merlin.word.CompiledWordTemplate;
 import de.micromata.merlin.word.templating.*;
+import org.apache.commons.io.output.CountingOutputStream;
 import org.apache.commons.lang3.StringUtils;
 import org.glassfish.jersey.media.multipart.ContentDisposition;
 import org.glassfish.jersey.media.multipart.FormDataBodyPart;
@@ -21,7 +22,9 @@ import javax.ws.rs.POST;
 import javax.ws.rs.Path;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
+import javax.ws.rs.core.StreamingOutput;
 import java.io.InputStream;
+import java.io.UncheckedIOException;
 
 @Path("/files")
 public class FileUploadRest {
@@ -84,16 +87,33 @@ public class FileUploadRest {
         if (!PersistencyRegistry.getDefault().exists(path)) {
             return RestUtils.get404Response(log, "Template file not found by canonical path: " + path);
         }
-        WordDocument templateDocument = WordDocument.load(path);
-        SerialTemplateRunner runner = new SerialTemplateRunner(serialData, templateDocument);
+        CompiledWordTemplate compiledTemplate = Storage.getInstance().getCompiledTemplate(template);
+        if (compiledTemplate == null) {
+            return RestUtils.get404Response(log, "Can't read template file: " + path);
+        }
+        SerialTemplateRunner runner = new SerialTemplateRunner(serialData, compiledTemplate);
+        runner.setParallelism(Runtime.getRuntime().availableProcessors());
+        runner.setExecutor(Storage.getInstance().getRenderExecutor());
         reader.readVariables(serialData.getTemplate().getStatistics());
-        byte[] zipByteArray = runner.run(filename);
-        Response.ResponseBuilder builder = Response.ok(zipByteArray);
-        builder.header("Content-Disposition", "attachment; filename=" + runner.getZipFilename());
+        String zipFilename = SerialTemplateRunner.createZipFilename(filename);
+        // The zip archive is streamed to the client while the documents are rendered:
+        StreamingOutput output = out -> {
+            CountingOutputStream countingOut = new CountingOutputStream(out);
+            try {
+                runner.run(filename, countingOut);
+            } catch (UncheckedIOException ex) {
+                // E. g. client disconnected, the run is aborted.
+                throw ex.getCause();
+            }
+            countingOut.flush();
+            log.info("Downloaded file '" + zipFilename + "', length: " + MerlinFileUtils.getByteCountToDisplaySize(countingOut.getByteCount()));
+        };
+        Response.ResponseBuilder builder = Response.ok(output);
+        builder.header("Content-Disposition", "attachment; filename=" + zipFilename);
         // Needed to get the Content-Disposition by client:
         builder.header("Access-Control-Expose-Headers", "Content-Disposition");
         Response response = builder.build();
-        log.info("Downloading file '" + runner.getZipFilename() + "', length: " + MerlinFileUtils.getByteCountToDisplaySize(zipByteArray.length));
+        log.info("Downloading file '" + zipFilename + "'...");
         return response;
     }
 }
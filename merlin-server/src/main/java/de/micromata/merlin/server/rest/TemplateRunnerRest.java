@@ -7,8 +7,9 @@ import de.micromata.merlin.server.json.JsonUtils;
 import de.micromata.merlin.server.storage.Storage;
 import de.micromata.merlin.server.user.UserUtils;
 import de.micromata.merlin.utils.MerlinFileUtils;
-import de.micromata.merlin.word.WordDocument;
+import de.micromata.merlin.word.WordStreamingRenderer;
 import de.micromata.merlin.word.templating.*;
+import org.apache.commons.io.output.CountingOutputStream;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -17,6 +18,8 @@ import javax.ws.rs.Path;
 import javax.ws.rs.Produces;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
+import javax.ws.rs.core.StreamingOutput;
+import java.io.IOException;
 
 @Path("/templates")
 public class TemplateRunnerRest {
@@ -60,20 +63,36 @@ public class TemplateRunnerRest {
             }
             Response response = null;
             try {
-                WordDocument doc = WordDocument.load(path);
-                WordTemplateRunner runner = new WordTemplateRunner(templateDefinition, doc);
+                WordStreamingRenderer renderer = Storage.getInstance().getStreamingRenderer(template);
+                if (renderer == null) {
+                    return RestUtils.get404Response(log, "Can't read template file: " + path);
+                }
+                WordTemplateRunner runner = new WordTemplateRunner(templateDefinition, renderer);
                 TemplateRunContext context = new TemplateRunContext();
                 context.setLocale(UserUtils.getUserDateFormat(), UserUtils.getUserLocale());
                 Variables variables = context.convertVariables(data.getVariables(), templateDefinition);
-                WordDocument result = runner.run(variables);
                 String filename = runner.createFilename(path.getFileName().toString(), variables);
-                byte[] byteArray = result.getAsByteArrayOutputStream().toByteArray();
-                Response.ResponseBuilder builder = Response.ok(byteArray);
+                // The document is streamed to the client while rendering:
+                StreamingOutput output = out -> {
+                    CountingOutputStream countingOut = new CountingOutputStream(out);
+                    try {
+                        runner.run(variables, countingOut);
+                    } catch (RuntimeException ex) {
+                        if (ex.getCause() instanceof IOException) {
+                            // E. g. client disconnected.
+                            throw (IOException) ex.getCause();
+                        }
+                        throw ex;
+                    }
+                    countingOut.flush();
+                    log.info("Downloaded file '" + filename + "', length: " + MerlinFileUtils.getByteCountToDisplaySize(countingOut.getByteCount()));
+                };
+                Response.ResponseBuilder builder = Response.ok(output);
                 builder.header("Content-Disposition", "attachment; filename=" + filename);
                 // Needed to get the Content-Disposition by client:
                 builder.header("Access-Control-Expose-Headers", "Content-Disposition");
                 response = builder.build();
-                log.info("Downloading file '" + filename + "', length: " + MerlinFileUtils.getByteCountToDisplaySize(byteArray.length));
+                log.info("Downloading file '" + filename + "'...");
                 return response;
             } catch (Exception ex) {
                 String errorMsg = "Error while try to run template '" + data.getTemplatePrimaryKey() + "'.";
@@ -1,48 +1,142 @@
 package de.micromata.merlin.server.storage;
 
 import de.micromata.merlin.server.*;
+import de.micromata.merlin.excel.ExcelWorkbookCache;
+import de.micromata.merlin.server.json.JsonScanIndexCodec;
+import de.micromata.merlin.persistency.PersistencyRegistry;
 import de.micromata.merlin.persistency.templates.DirectoryScanner;
+import de.micromata.merlin.persistency.templates.ScanIndex;
+import de.micromata.merlin.persistency.templates.TemplateDocumentCache;
 import de.micromata.merlin.utils.I18nLogger;
+import de.micromata.merlin.word.CompiledWordTemplate;
+import de.micromata.merlin.word.WordStreamingRenderer;
 import de.micromata.merlin.word.templating.Template;
 import de.micromata.merlin.word.templating.TemplateDefinition;
+import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.Validate;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.File;
+import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
+/**
+ * Holds all directory scanners of the configured template directories.
+ * <br>
+ * After {@link #onStartup()} the scanners are refreshed by a background thread (stale-while-revalidate): Lookups only
+ * read the last published snapshots of the scanners and never wait for any rescan or I/O.
+ */
 public class Storage implements ConfigurationListener {
     private Logger log = LoggerFactory.getLogger(Storage.class);
     private static final Storage instance = new Storage();
+    private static final int REFRESH_RATE_MILLIS = 5000;
 
-    // Key is the canonical path of the directory.
-    private Map<String, DirectoryScanner> directoryScannerMap;
+    // Key is the canonical path of the directory. Replaced as a whole on refresh, never modified.
+    private volatile Map<String, DirectoryScanner> directoryScannerMap;
+    private ScheduledExecutorService refresher;
+    // Shared by all serial runs, so concurrent uploads don't create threads per request. Created eagerly, so getting
+    // it never waits for the monitor of this storage (held by refresh).
+    private final ExecutorService renderExecutor = createRenderExecutor();
+    private volatile boolean backgroundRefresh;
 
-    private boolean dirty = true;
+    // Created on first usage (if enabled), called by refresh only.
+    private ExcelWorkbookCache workbookCache;
+
+    // Survives refreshs, the entries are validated by the last modification of the template files.
+    private TemplateDocumentCache templateDocumentCache;
+
+    private volatile boolean dirty = true;
 
     public static Storage getInstance() {
         return instance;
     }
 
     private Storage() {
-        directoryScannerMap = new HashMap<>();
+        directoryScannerMap = Collections.emptyMap();
+        templateDocumentCache = new TemplateDocumentCache(ConfigurationHandler.getDefaultConfiguration().getTemplateCacheMaxSize());
         ConfigurationHandler.getInstance().register(this);
     }
 
     /**
      * Will be called on start-up of the server. The templates should be scanned already (takes some time).
+     * Afterwards the templates are refreshed by a background thread.
      */
     public void onStartup() {
-        getAllTemplates();
+        synchronized (this) {
+            refresh();
+            for (DirectoryScanner directoryScanner : directoryScannerMap.values()) {
+                directoryScanner.refresh();
+                directoryScanner.setBackgroundRefresh(true);
+            }
+            backgroundRefresh = true;
+        }
+        startRefresher();
+    }
+
+    public synchronized void add(DirectoryScanner directoryScanner) {
+        Map<String, DirectoryScanner> map = new HashMap<>(directoryScannerMap);
+        add(map, directoryScanner);
+        directoryScannerMap = Collections.unmodifiableMap(map);
+    }
+
+    private void add(Map<String, DirectoryScanner> map, DirectoryScanner directoryScanner) {
+        if (backgroundRefresh) {
+            directoryScanner.setBackgroundRefresh(true);
+            // Scan before publishing, so lookups don't need to wait for the initial scan.
+            directoryScanner.refresh();
+        }
+        map.put(directoryScanner.getCanonicalPath(), directoryScanner);
+    }
+
+    /**
+     * @return The pool for rendering the documents of serial runs, one thread per available processor. The pool is
+     * shared by all requests.
+     */
+    public ExecutorService getRenderExecutor() {
+        return renderExecutor;
+    }
+
+    private static ExecutorService createRenderExecutor() {
+        AtomicInteger counter = new AtomicInteger();
+        return Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), runnable -> {
+            Thread thread = new Thread(runnable, "merlin-renderer-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
     }
 
-    public void add(DirectoryScanner directoryScanner) {
-        directoryScannerMap.put(directoryScanner.getCanonicalPath(), directoryScanner);
+    private synchronized void startRefresher() {
+        if (refresher != null) {
+            return;
+        }
+        refresher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "merlin-storage-refresher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        refresher.scheduleWithFixedDelay(this::refreshInBackground, REFRESH_RATE_MILLIS, REFRESH_RATE_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    private void refreshInBackground() {
+        try {
+            if (dirty) {
+                refresh();
+            }
+            for (DirectoryScanner directoryScanner : directoryScannerMap.values()) {
+                // Rescans only, if the directory watcher reports any modifications:
+                directoryScanner.refreshIfModified();
+            }
+        } catch (Exception ex) {
+            // Don't stop the refresher on any error.
+            log.error("Error while refreshing templates: " + ex.getMessage(), ex);
+        }
     }
 
     public List<TemplateDefinition> getAllTemplateDefinitions() {
@@ -113,32 +207,105 @@ public class Storage implements ConfigurationListener {
         return null;
     }
 
+    /**
+     * @param template The template to get the compiled Word document for.
+     * @return The compiled template from the cache (read and compiled on first usage or after modification) or null,
+     * if the template file couldn't be read.
+     */
+    public CompiledWordTemplate getCompiledTemplate(Template template) {
+        return templateDocumentCache.getCompiledTemplate(template.getFileDescriptor());
+    }
+
+    /**
+     * @param template The template to get the streaming renderer for.
+     * @return The streaming renderer from the cache (read on first usage or after modification) or null, if the
+     * template file couldn't be read.
+     */
+    public WordStreamingRenderer getStreamingRenderer(Template template) {
+        return templateDocumentCache.getStreamingRenderer(template.getFileDescriptor());
+    }
+
+    /**
+     * @return The cache of the Word templates (e. g. for getting statistics).
+     */
+    public TemplateDocumentCache getTemplateDocumentCache() {
+        return templateDocumentCache;
+    }
+
     public synchronized void refresh() {
         log.info(I18nLogger.get("merlin.log.word.templating.reload_storage"));
         dirty = false;
         List<ConfigurationTemplatesDir> templatesDirs = ConfigurationHandler.getDefaultConfiguration().getTemplatesDirs();
-        this.directoryScannerMap.clear();
+        templateDocumentCache.setMaxSize(ConfigurationHandler.getDefaultConfiguration().getTemplateCacheMaxSize());
+        log.info("Template cache statistics: " + templateDocumentCache);
+        Map<String, DirectoryScanner> map = new HashMap<>();
         if (templatesDirs != null) {
             for (ConfigurationTemplatesDir configDir : templatesDirs) {
                 DirectoryScanner scanner = new DirectoryScanner(Paths.get(configDir.getDirectory()), configDir.isRecursive());
-                add(scanner);
+                scanner.setScanIndex(createScanIndex(scanner));
+                scanner.setWorkbookCache(getWorkbookCache());
+                add(map, scanner);
             }
         }
         if (ConfigurationHandler.getDefaultConfiguration().isShowTestData()) {
             // Creating data for testing.
-            add(TestData.getTestDirectory(new File(Configuration.getApplicationHome())));
+            add(map, TestData.getTestDirectory(new File(Configuration.getApplicationHome())));
+        }
+        Collection<DirectoryScanner> oldScanners = directoryScannerMap.values();
+        directoryScannerMap = Collections.unmodifiableMap(map);
+        for (DirectoryScanner directoryScanner : oldScanners) {
+            if (!map.containsValue(directoryScanner)) {
+                directoryScanner.close();
+            }
+        }
+    }
+
+    /**
+     * @return The cache of the template definition files or null, if not enabled by the configuration.
+     */
+    private ExcelWorkbookCache getWorkbookCache() {
+        if (!ConfigurationHandler.getDefaultConfiguration().isWorkbookCacheEnabled()) {
+            return null;
+        }
+        if (workbookCache == null) {
+            workbookCache = new ExcelWorkbookCache(new File(Configuration.getApplicationHome(), "workbook-cache"));
         }
+        return workbookCache;
+    }
+
+    private ScanIndex createScanIndex(DirectoryScanner scanner) {
+        Path indexFile = getScanIndexDir().resolve(PersistencyRegistry.getDefault().getPrimaryKey(scanner.getDir()) + ".properties");
+        return new ScanIndex(indexFile, scanner.getDir(), new JsonScanIndexCodec());
+    }
+
+    /**
+     * @return The configured directory of the scan indexes or the default directory in the application home.
+     */
+    private Path getScanIndexDir() {
+        String scanIndexDir = ConfigurationHandler.getDefaultConfiguration().getScanIndexDir();
+        if (StringUtils.isNotBlank(scanIndexDir)) {
+            return Paths.get(scanIndexDir);
+        }
+        return Paths.get(Configuration.getApplicationHome(), "scan-index");
     }
 
     private String normalizeTemplateId(String templateId) {
         return templateId != null ? templateId.trim().toLowerCase() : null;
     }
 
-    private synchronized void checkRefresh() {
-        if (!dirty) {
+    /**
+     * Refreshes the directory scanners after modification of the configuration. In background mode the refresh is
+     * done by the refresher thread, so the lookups will serve the old scanners meanwhile.
+     */
+    private void checkRefresh() {
+        if (!dirty || backgroundRefresh) {
             return;
         }
-        refresh();
+        synchronized (this) {
+            if (dirty) {
+                refresh();
+            }
+        }
     }
 
     /**
@@ -147,5 +314,10 @@ public class Storage implements ConfigurationListener {
     @Override
     public void templatesDirsModified() {
         dirty = true;
+        synchronized (this) {
+            if (refresher != null) {
+                refresher.execute(this::refreshInBackground);
+            }
+        }
     }
 }
@@ -0,0 +1,100 @@
+package de.micromata.merlin.server.json;
+
+import de.micromata.merlin.persistency.PersistencyRegistry;
+import de.micromata.merlin.persistency.templates.DirectoryScanner;
+import de.micromata.merlin.persistency.templates.ScanIndex;
+import de.micromata.merlin.word.templating.Template;
+import de.micromata.merlin.word.templating.TemplateDefinition;
+import org.apache.commons.io.FileUtils;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JsonScanIndexCodecTest {
+    private static final File TEMPLATES_DIR = new File("../examples/templates");
+
+    @Test
+    void restoreTest() throws IOException {
+        File dir = Files.createTempDirectory("merlin-scan-index-test").toFile();
+        try {
+            File letterFile = new File(dir, "LetterTemplate.docx");
+            FileUtils.copyFile(new File(TEMPLATES_DIR, "LetterTemplate.docx"), letterFile);
+            FileUtils.copyFile(new File(TEMPLATES_DIR, "LetterTemplate.xlsx"), new File(dir, "LetterTemplate.xlsx"));
+            FileUtils.copyFile(new File(TEMPLATES_DIR, "EmploymentContractTemplate.docx"), new File(dir, "EmploymentContractTemplate.docx"));
+            Path indexFile = new File(dir, "index/scan-index.properties").toPath();
+            String letterKey = PersistencyRegistry.getDefault().getPrimaryKey(letterFile.toPath());
+
+            // Initial scan: all files are read and stored in the index.
+            CountingCodec codec = new CountingCodec();
+            DirectoryScanner scanner = createScanner(dir, indexFile, codec);
+            Template template = scanner.getTemplate(letterKey);
+            TemplateDefinition definition = scanner.getTemplateDefinition("Letter-Definition");
+            assertEquals(3, codec.encoded);
+            assertEquals(0, codec.decoded);
+            scanner.close();
+
+            // After restart all items are restored from the index without reading the files:
+            codec = new CountingCodec();
+            scanner = createScanner(dir, indexFile, codec);
+            Template restored = scanner.getTemplate(letterKey);
+            assertEquals(0, codec.encoded);
+            assertEquals(3, codec.decoded);
+            assertEquals(template.getId(), restored.getId());
+            assertEquals(template.getTemplateDefinitionReferenceId(), restored.getTemplateDefinitionReferenceId());
+            assertEquals(template.getStatistics().getUsedVariables(), restored.getStatistics().getUsedVariables());
+            assertEquals(template.getStatistics().getConditionals().getConditionalsSet().size(),
+                    restored.getStatistics().getConditionals().getConditionalsSet().size());
+            TemplateDefinition restoredDefinition = scanner.getTemplateDefinition("Letter-Definition");
+            assertNotNull(restoredDefinition);
+            assertEquals(definition.getVariableDefinitions().size(), restoredDefinition.getVariableDefinitions().size());
+            assertEquals(definition.getFilenamePattern(), restoredDefinition.getFilenamePattern());
+            assertSame(restoredDefinition, restored.getTemplateDefinition());
+
+            // Modified file is read again:
+            FileUtils.copyFile(new File(TEMPLATES_DIR, "EmploymentContractTemplate.docx"), letterFile);
+            assertTrue(letterFile.setLastModified(System.currentTimeMillis() + 10000));
+            scanner.getDirectoryWatcher().forceRecheck();
+            scanner.refresh();
+            assertEquals(1, codec.encoded);
+            assertEquals("Employment contract definition", scanner.getTemplate(letterKey).getTemplateDefinitionReferenceId());
+            scanner.close();
+
+            // The modified file is restored from the index after the next restart:
+            codec = new CountingCodec();
+            scanner = createScanner(dir, indexFile, codec);
+            assertEquals("Employment contract definition", scanner.getTemplate(letterKey).getTemplateDefinitionReferenceId());
+            assertEquals(0, codec.encoded);
+            assertEquals(3, codec.decoded);
+            scanner.close();
+        } finally {
+            FileUtils.deleteDirectory(dir);
+        }
+    }
+
+    private DirectoryScanner createScanner(File dir, Path indexFile, ScanIndex.Codec codec) {
+        DirectoryScanner scanner = new DirectoryScanner(dir.toPath(), false);
+        scanner.setScanIndex(new ScanIndex(indexFile, scanner.getDir(), codec));
+        return scanner;
+    }
+
+    private static class CountingCodec extends JsonScanIndexCodec {
+        private int encoded, decoded;
+
+        @Override
+        public String encode(Object obj) {
+            encoded++;
+            return super.encode(obj);
+        }
+
+        @Override
+        public <T> T decode(String str, Class<T> clazz) {
+            decoded++;
+            return super.decode(str, clazz);
+        }
+    }
+}